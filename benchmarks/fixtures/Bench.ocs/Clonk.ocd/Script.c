@@ -0,0 +1,58 @@
+/*-- Clonk --*/
+
+local tools;
+local lorry;
+
+protected func Initialize()
+{
+	tools = [];
+	SetAction("Walk");
+	return _inherited(...);
+}
+
+public func GiveTools()
+{
+	PushBack(tools, CreateContents(Shovel));
+	PushBack(tools, CreateContents(Pickaxe));
+	return tools;
+}
+
+public func FindTool(string name)
+{
+	for (var tool in tools)
+		if (tool && tool->GetName() == name)
+			return tool;
+	return nil;
+}
+
+public func UseTool(object tool, int x, int y)
+{
+	if (!tool || !tool->~IsTool())
+		return false;
+	tool->ControlUseStart(this, x, y);
+	for (var i = 0; i < 10; i++)
+		tool->ControlUseHolding(this, x, y);
+	return tool->ControlUseStop(this, x, y);
+}
+
+public func DumpIntoLorry()
+{
+	if (!lorry)
+		lorry = FindObject(Find_ID(Lorry), Sort_Distance());
+	if (!lorry)
+		return 0;
+	var moved = 0;
+	for (var obj in FindObjects(Find_Container(this), Find_Func("IsValuable")))
+	{
+		obj->Enter(lorry);
+		moved++;
+	}
+	return moved;
+}
+
+public func Mine()
+{
+	var pickaxe = FindTool("Pickaxe");
+	UseTool(pickaxe, 10, 10);
+	return DumpIntoLorry();
+}
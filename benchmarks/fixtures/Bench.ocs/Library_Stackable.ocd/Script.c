@@ -0,0 +1,66 @@
+/*-- Stackable --*/
+
+local count;
+
+public func MaxStackCount() { return 20; }
+public func InitialStackCount() { return 1; }
+
+protected func Construction()
+{
+	count = InitialStackCount();
+	return _inherited(...);
+}
+
+public func GetStackCount() { return Max(1, count); }
+
+public func SetStackCount(int amount)
+{
+	count = BoundBy(amount, 0, MaxStackCount());
+	UpdateStackDisplay();
+	return this;
+}
+
+public func DoStackCount(int change)
+{
+	return SetStackCount(count + change);
+}
+
+public func IsFullStack() { return count >= MaxStackCount(); }
+
+public func TakeObject()
+{
+	if (count == 1)
+	{
+		Exit();
+		return this;
+	}
+	else if (count > 1)
+	{
+		var take = CreateObject(GetID(), 0, 0, GetOwner());
+		take->SetStackCount(1);
+		DoStackCount(-1);
+		return take;
+	}
+}
+
+public func TryAddToStack(object other)
+{
+	if (other == this || other->GetID() != GetID())
+		return 0;
+	var howmany = Min(other->GetStackCount(), MaxStackCount() - GetStackCount());
+	if (howmany <= 0)
+		return 0;
+	DoStackCount(howmany);
+	if (other->DoStackCount(-howmany)->GetStackCount() == 0)
+		other->RemoveObject();
+	return howmany;
+}
+
+private func UpdateStackDisplay()
+{
+	var names = ["", "", "", ""];
+	for (var i = 0; i < GetLength(names); i++)
+		names[i] = Format("%d", count + i);
+	SetGraphics(nil, nil, 1);
+	return true;
+}
@@ -0,0 +1,49 @@
+/*-- Tool --*/
+
+local uses;
+local user;
+
+public func IsTool() { return true; }
+public func IsToolProduct() { return true; }
+public func MaxUses() { return 100; }
+
+public func ControlUseStart(object clonk, int x, int y)
+{
+	user = clonk;
+	return StartUsage(clonk, x, y);
+}
+
+public func ControlUseHolding(object clonk, int x, int y)
+{
+	if (!user)
+		return false;
+	return Hold(clonk, Angle(0, 0, x, y));
+}
+
+public func ControlUseStop(object clonk, int x, int y)
+{
+	user = nil;
+	uses++;
+	if (uses >= MaxUses())
+		Wear();
+	return true;
+}
+
+public func ControlUseCancel(object clonk, int x, int y)
+{
+	return ControlUseStop(clonk, x, y);
+}
+
+protected func StartUsage(object clonk, int x, int y) { return true; }
+protected func Hold(object clonk, int angle) { return true; }
+
+private func Wear()
+{
+	Sound("ToolBreak");
+	var pieces = [];
+	for (var i = 0; i < 3; i++)
+		PushBack(pieces, CreateObject(Nugget, RandomX(-3, 3), 0, GetOwner()));
+	for (var piece in pieces)
+		piece->SetSpeed(RandomX(-10, 10), -RandomX(10, 20));
+	RemoveObject();
+}
@@ -0,0 +1,46 @@
+/*-- Lorry --*/
+
+local capacity = 50;
+
+public func IsLorry() { return true; }
+public func IsContainer() { return true; }
+
+public func RejectCollect(id def, object obj)
+{
+	if (ContentsCount() >= capacity)
+		return true;
+	return false;
+}
+
+public func Collection2(object obj)
+{
+	for (var other in FindObjects(Find_Container(this), Find_ID(obj->GetID()), Find_Exclude(obj)))
+	{
+		if (other->~TryAddToStack(obj))
+			if (!obj)
+				return;
+	}
+}
+
+public func TotalValue()
+{
+	var value = 0;
+	for (var i = 0; i < ContentsCount(); i++)
+	{
+		var obj = Contents(i);
+		value += obj->~CalcValue(this, GetOwner()) ?? GetValue(obj);
+	}
+	return value;
+}
+
+public func Unload(int x, int y)
+{
+	var unloaded = [];
+	while (Contents())
+	{
+		var obj = Contents();
+		obj->Exit(x, y);
+		PushBack(unloaded, obj);
+	}
+	return unloaded;
+}
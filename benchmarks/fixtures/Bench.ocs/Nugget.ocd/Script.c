@@ -0,0 +1,17 @@
+/*-- Nugget --*/
+
+#include Library_Stackable
+
+public func MaxStackCount() { return 50; }
+public func IsValuable() { return true; }
+
+public func CalcValue(object in_base, int for_player)
+{
+	return GetStackCount() * GetDefValue(GetID());
+}
+
+protected func Hit()
+{
+	Sound("GoldHit?");
+	return true;
+}
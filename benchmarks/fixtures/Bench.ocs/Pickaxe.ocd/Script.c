@@ -0,0 +1,21 @@
+/*-- Pickaxe --*/
+
+#include Library_Tool
+
+local strikes;
+
+protected func Hold(object clonk, int angle)
+{
+	strikes++;
+	if (strikes % 10 != 0)
+		return true;
+	var x = Sin(angle, 10), y = -Cos(angle, 10);
+	var mat = GetMaterial(x, y);
+	if (mat == Material("Gold") || mat == Material("Ore"))
+	{
+		var nugget = CreateObject(Nugget, x, y, clonk->GetOwner());
+		nugget->SetStackCount(1 + Random(3));
+		clonk->Collect(nugget);
+	}
+	return BlastFree(clonk->GetX() + x, clonk->GetY() + y, 5, clonk->GetController());
+}
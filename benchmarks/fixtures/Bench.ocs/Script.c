@@ -0,0 +1,34 @@
+/*-- Bench --*/
+
+static g_crew;
+
+func Initialize()
+{
+	g_crew = [];
+	CreateObject(Lorry, 100, 200, NO_OWNER);
+	return true;
+}
+
+func InitializePlayer(int player)
+{
+	for (var i = 0; i < GetCrewCount(player); i++)
+	{
+		var clonk = GetCrew(player, i);
+		clonk->GiveTools();
+		PushBack(g_crew, clonk);
+	}
+	ScheduleCall(nil, "Work", 36, 0);
+	return true;
+}
+
+func Work()
+{
+	var total = 0;
+	for (var clonk in g_crew)
+		if (clonk)
+			total += clonk->Mine();
+	var lorry = FindObject(Find_ID(Lorry));
+	if (lorry && lorry->TotalValue() > 1000)
+		GameOver();
+	return total;
+}
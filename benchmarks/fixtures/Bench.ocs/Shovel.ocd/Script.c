@@ -0,0 +1,34 @@
+/*-- Shovel --*/
+
+#include Library_Tool
+
+local digging;
+
+public func MaxUses() { return 250; }
+
+protected func StartUsage(object clonk, int x, int y)
+{
+	if (clonk->GetAction() != "Walk" && clonk->GetAction() != "Dig")
+		return false;
+	digging = true;
+	clonk->SetAction("Dig");
+	return true;
+}
+
+protected func Hold(object clonk, int angle)
+{
+	if (!digging)
+		return false;
+	var speed = clonk->GetPhysical("Dig") / 1000;
+	clonk->SetXDir(Sin(angle, speed), 100);
+	clonk->SetYDir(-Cos(angle, speed), 100);
+	return DigFree(clonk->GetX(), clonk->GetY(), 8);
+}
+
+public func ControlUseStop(object clonk, int x, int y)
+{
+	digging = false;
+	if (clonk->GetAction() == "Dig")
+		clonk->SetAction("Walk");
+	return _inherited(clonk, x, y, ...);
+}
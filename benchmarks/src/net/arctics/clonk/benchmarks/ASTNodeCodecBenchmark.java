@@ -0,0 +1,115 @@
+package net.arctics.clonk.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.arctics.clonk.c4script.Function;
+import net.arctics.clonk.c4script.Script;
+import net.arctics.clonk.index.serialization.ASTNodeCodec;
+import net.arctics.clonk.index.serialization.IndexEntityInputStream;
+import net.arctics.clonk.index.serialization.IndexEntityOutputStream;
+
+/**
+ * Writing and reading the function bodies of a parsed and inferred fixture with {@link ASTNodeCodec} compared to default serialization,
+ * one index stream per script like {@link IndexEntityOutputStream#writeSeparately(net.arctics.clonk.ast.ASTNode)} does per body.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ASTNodeCodecBenchmark {
+
+	@Param(Fixture.DEFAULT)
+	public String fixture;
+
+	private Fixture setup;
+	private byte[][] defaultBytes;
+	private byte[][] codecBytes;
+
+	@Setup(Level.Trial)
+	public void parse() throws IOException {
+		Fixture.initialize();
+		setup = new Fixture(Fixture.folder(fixture), null).parse();
+		setup.infer();
+		defaultBytes = new byte[setup.scripts.size()][];
+		codecBytes = new byte[setup.scripts.size()][];
+		int defaultSize = 0, codecSize = 0;
+		for (int i = 0; i < setup.scripts.size(); i++) {
+			defaultBytes[i] = write(setup.scripts.get(i), false);
+			codecBytes[i] = write(setup.scripts.get(i), true);
+			defaultSize += defaultBytes[i].length;
+			codecSize += codecBytes[i].length;
+		}
+		System.out.println(String.format("Function bodies: %d bytes with default serialization, %d bytes with codec", defaultSize, codecSize));
+	}
+
+	private byte[] write(final Script script, final boolean codec) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (final ObjectOutputStream out = new IndexEntityOutputStream(setup.index, script, bytes)) {
+			for (final Function f : script.functions()) {
+				if (codec) {
+					ASTNodeCodec.write(out, f.body());
+				} else {
+					out.writeObject(f.body());
+				}
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	private void read(final byte[][] bytes, final boolean codec, final Blackhole blackhole) throws IOException, ClassNotFoundException {
+		for (int i = 0; i < bytes.length; i++) {
+			final Script script = setup.scripts.get(i);
+			try (final ObjectInputStream in = new IndexEntityInputStream(setup.index, script, new ByteArrayInputStream(bytes[i]))) {
+				for (int f = script.functions().size(); f > 0; f--) {
+					blackhole.consume(codec ? ASTNodeCodec.read(in) : in.readObject());
+				}
+			}
+		}
+	}
+
+	@Benchmark
+	public void writeDefault(final Blackhole blackhole) throws IOException {
+		for (final Script s : setup.scripts) {
+			blackhole.consume(write(s, false));
+		}
+	}
+
+	@Benchmark
+	public void writeCodec(final Blackhole blackhole) throws IOException {
+		for (final Script s : setup.scripts) {
+			blackhole.consume(write(s, true));
+		}
+	}
+
+	@Benchmark
+	public void readDefault(final Blackhole blackhole) throws IOException, ClassNotFoundException {
+		read(defaultBytes, false, blackhole);
+	}
+
+	@Benchmark
+	public void readCodec(final Blackhole blackhole) throws IOException, ClassNotFoundException {
+		read(codecBytes, true, blackhole);
+	}
+
+}
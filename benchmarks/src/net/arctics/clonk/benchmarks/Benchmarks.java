@@ -0,0 +1,22 @@
+package net.arctics.clonk.benchmarks;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point running the benchmarks of this project. Arguments are the usual JMH command line options;
+ * without any benchmark patterns given all benchmarks are run. Benchmarks needing access to package-private code live in the package of that code.
+ */
+public class Benchmarks {
+	public static void main(final String[] args) throws RunnerException, CommandLineOptionException {
+		final CommandLineOptions cmd = new CommandLineOptions(args);
+		final OptionsBuilder options = new OptionsBuilder();
+		if (cmd.getIncludes().isEmpty()) {
+			options.include("net\\.arctics\\.clonk\\..*Benchmark\\..*");
+		}
+		new Runner(options.parent(cmd).build()).run();
+	}
+}
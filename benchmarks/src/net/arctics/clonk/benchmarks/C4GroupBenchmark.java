@@ -0,0 +1,78 @@
+package net.arctics.clonk.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.CoreException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.arctics.clonk.c4group.C4Group;
+import net.arctics.clonk.c4group.C4GroupInvalidDataException;
+import net.arctics.clonk.c4group.C4GroupItem;
+import net.arctics.clonk.c4group.C4GroupPacker;
+
+/**
+ * {@link C4Group#readIntoMemory(boolean, net.arctics.clonk.c4group.C4GroupHeaderFilterBase)} of a whole group.
+ * The group parameter is resolved like a fixture name. A folder is read as is and, packed into a temporary group file with {@link C4GroupPacker},
+ * as a compressed group. A group file (<tt>-p group=/path/to/Objects.ocd</tt>) is read as is.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class C4GroupBenchmark {
+
+	@Param(Fixture.DEFAULT)
+	public String group;
+
+	/** Whether to read a folder unpacked or packed */
+	@Param({"unpacked", "packed"})
+	public String form;
+
+	private File file;
+	private File packed;
+
+	@Setup(Level.Trial)
+	public void pack() throws IOException {
+		file = new File(group).isAbsolute() ? new File(group) : Fixture.folder(group);
+		if (file.isDirectory() && form.equals("packed")) {
+			packed = File.createTempFile("c4dt-group", ".ocs");
+			new C4GroupPacker(file, packed).pack(null);
+			file = packed;
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void delete() {
+		if (packed != null) {
+			packed.delete();
+		}
+	}
+
+	@Benchmark
+	public C4Group readIntoMemory() throws C4GroupInvalidDataException, IOException, CoreException {
+		final C4Group g = file.isDirectory() ? C4Group.openDirectory(file) : C4Group.openFile(file);
+		try {
+			g.readIntoMemory(true, C4GroupItem.ACCEPT_EVERYTHING);
+			return g;
+		} finally {
+			g.close();
+		}
+	}
+
+}
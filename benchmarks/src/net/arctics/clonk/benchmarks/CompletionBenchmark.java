@@ -0,0 +1,97 @@
+package net.arctics.clonk.benchmarks;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.ITextViewer;
+import org.eclipse.jface.text.contentassist.ICompletionProposal;
+import org.eclipse.swt.graphics.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.arctics.clonk.Core;
+import net.arctics.clonk.c4script.Script;
+import net.arctics.clonk.ui.editors.c4script.ScriptCompletionProcessor;
+import net.arctics.clonk.ui.editors.c4script.ScriptEditingState;
+import net.arctics.clonk.util.SelfcontainedStorage;
+
+/**
+ * {@link ScriptCompletionProcessor#computeCompletionProposals(ITextViewer, int)} in a script of a parsed and inferred fixture.
+ * The position is given as the script name and a snippet of its source, completion being requested right after the snippet.
+ * The default positions complete a member call (<tt>tool-&gt;</tt>) and the start of an expression where functions and variables of the script and the engine are proposed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CompletionBenchmark {
+
+	@Param(Fixture.DEFAULT)
+	public String fixture;
+
+	@Param({"Clonk:\ttool->", "Clonk:\tvar pickaxe = "})
+	public String position;
+
+	private ScriptEditingState state;
+	private ITextViewer viewer;
+	private int offset;
+
+	@Setup(Level.Trial)
+	public void load() throws IOException {
+		Fixture.initialize();
+		final Fixture setup = new Fixture(Fixture.folder(fixture), null).parse();
+		setup.infer();
+		final int colon = position.indexOf(':');
+		final Script script = setup.script(position.substring(0, colon));
+		final String snippet = position.substring(colon+1);
+		final String source = script != null ? ((SelfcontainedStorage)script.source()).contentsAsString() : "";
+		final int at = source.indexOf(snippet);
+		if (at == -1) {
+			throw new IllegalArgumentException(String.format("Position '%s' not found in fixture '%s'", position, fixture));
+		}
+		offset = at + snippet.length();
+		final IDocument document = new Document(source);
+		state = new ScriptEditingState(Core.instance().getPreferenceStore());
+		state.set(null, script, document);
+		viewer = viewer(document, offset);
+	}
+
+	/**
+	 * Text viewer only serving the document and the selection since that is all the processor needs without an editor.
+	 */
+	private static ITextViewer viewer(final IDocument document, final int offset) {
+		return (ITextViewer)Proxy.newProxyInstance(ITextViewer.class.getClassLoader(), new Class<?>[] {ITextViewer.class}, (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "getDocument":
+				return document;
+			case "getSelectedRange":
+				return new Point(offset, 0);
+			default:
+				final Class<?> type = method.getReturnType();
+				return type == boolean.class ? Boolean.FALSE : type == int.class ? 0 : null;
+			}
+		});
+	}
+
+	@Benchmark
+	public ICompletionProposal[] computeCompletionProposals() {
+		// processors cycle through proposal categories when asked repeatedly so use a new one each time
+		return new ScriptCompletionProcessor(state).computeCompletionProposals(viewer, offset);
+	}
+
+}
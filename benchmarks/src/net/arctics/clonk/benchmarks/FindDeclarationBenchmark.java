@@ -0,0 +1,74 @@
+package net.arctics.clonk.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.arctics.clonk.c4script.Function;
+import net.arctics.clonk.c4script.Script;
+import net.arctics.clonk.c4script.Variable;
+
+/**
+ * {@link Script#findDeclaration(String)} in every script of a fixture for the names declared anywhere in the fixture,
+ * some engine functions and a name that is not declared at all.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class FindDeclarationBenchmark {
+
+	@Param(Fixture.DEFAULT)
+	public String fixture;
+
+	private Fixture setup;
+	private String[] names;
+
+	@Setup(Level.Trial)
+	public void load() throws IOException {
+		Fixture.initialize();
+		setup = new Fixture(Fixture.folder(fixture), null).parse();
+		setup.infer();
+		final List<String> n = new ArrayList<String>();
+		for (final Script s : setup.scripts) {
+			for (final Function f : s.functions()) {
+				n.add(f.name());
+			}
+			for (final Variable v : s.variables()) {
+				n.add(v.name());
+			}
+		}
+		n.add("CreateObject");
+		n.add("FindObjects");
+		n.add("Format");
+		n.add("NotDeclaredAnywhere");
+		names = n.toArray(new String[n.size()]);
+	}
+
+	@Benchmark
+	public void findDeclaration(final Blackhole hole) {
+		for (final Script s : setup.scripts) {
+			for (final String name : names) {
+				hole.consume(s.findDeclaration(name));
+			}
+		}
+	}
+
+}
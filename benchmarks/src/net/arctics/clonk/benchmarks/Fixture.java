@@ -0,0 +1,172 @@
+package net.arctics.clonk.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.eclipse.core.resources.IStorage;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import net.arctics.clonk.Core;
+import net.arctics.clonk.Flags;
+import net.arctics.clonk.c4script.Script;
+import net.arctics.clonk.c4script.ScriptParser;
+import net.arctics.clonk.c4script.typing.dabble.DabbleInference;
+import net.arctics.clonk.index.Definition;
+import net.arctics.clonk.index.Engine;
+import net.arctics.clonk.index.ID;
+import net.arctics.clonk.index.Index;
+import net.arctics.clonk.parser.Markers;
+import net.arctics.clonk.util.SelfcontainedStorage;
+
+/**
+ * Checked-in project loaded into an {@link Index} without a workspace, the way the tests set up their scripts.
+ * Every <tt>.ocd</tt> folder becomes a {@link Definition} with the id from its <tt>DefCore.txt</tt> and a <tt>Script.c</tt> in the top folder becomes a plain {@link Script}.
+ * Scripts keep their source in a {@link SelfcontainedStorage} so they survive being saved to and loaded from the index.
+ */
+public class Fixture {
+
+	public static final String ENGINE = "OpenClonk";
+	public static final String DEFAULT = "Bench.ocs";
+
+	private static final Pattern DEFCORE_ID = Pattern.compile("^id=(\\w+)", Pattern.MULTILINE);
+
+	/**
+	 * Initialize {@link Core} headlessly. Engine configurations are taken from <tt>-Dc4dt.engines</tt>, defaulting to the ones in the plugin sources.
+	 */
+	public static void initialize() {
+		Core.headlessInitialize(System.getProperty("c4dt.engines", "../main/res/engines"), ENGINE);
+		Flags.DEBUG = false;
+	}
+
+	/**
+	 * Return the folder of a fixture. Fixtures are looked up in <tt>-Dc4dt.fixtures</tt>, defaulting to the fixtures folder of this project.
+	 * @param name Name of the fixture
+	 * @return The folder
+	 */
+	public static File folder(final String name) {
+		return new File(System.getProperty("c4dt.fixtures", "fixtures"), name);
+	}
+
+	public static class FixtureIndex extends Index {
+		private static final long serialVersionUID = Core.SERIAL_VERSION_UID;
+		public FixtureIndex(final File folder) { super(folder); }
+		@Override
+		public Engine engine() { return Core.instance().loadEngine(ENGINE); }
+	}
+
+	public static class FixtureDefinition extends Definition {
+		private static final long serialVersionUID = Core.SERIAL_VERSION_UID;
+		private final SelfcontainedStorage source;
+		public FixtureDefinition(final Index index, final ID id, final String source) {
+			super(index, id, id.stringValue());
+			this.source = new SelfcontainedStorage(id.stringValue(), source);
+		}
+		@Override
+		public IStorage source() { return source; }
+	}
+
+	public static class FixtureScript extends Script {
+		private static final long serialVersionUID = Core.SERIAL_VERSION_UID;
+		private final SelfcontainedStorage source;
+		public FixtureScript(final Index index, final String name, final String source) {
+			super(index);
+			setName(name);
+			this.source = new SelfcontainedStorage(name, source);
+		}
+		@Override
+		public IStorage source() { return source; }
+	}
+
+	public final File folder;
+	public final Index index;
+	public final List<Script> scripts = new ArrayList<Script>();
+	public final Markers markers = new Markers();
+
+	/**
+	 * Load a fixture into a new index.
+	 * @param folder The fixture folder
+	 * @param indexFolder Folder the index is saved to. May be null if the index is not going to be saved.
+	 * @throws IOException
+	 */
+	public Fixture(final File folder, final File indexFolder) throws IOException {
+		this.folder = folder;
+		this.index = new FixtureIndex(indexFolder);
+		final File[] children = folder.listFiles();
+		if (children == null) {
+			throw new IOException(String.format("Fixture '%s' does not exist", folder));
+		}
+		Arrays.sort(children);
+		for (final File child : children) {
+			if (child.isDirectory() && child.getName().endsWith(".ocd")) {
+				final File script = new File(child, "Script.c");
+				final Matcher id = DEFCORE_ID.matcher(read(new File(child, "DefCore.txt")));
+				if (script.isFile() && id.find()) {
+					scripts.add(new FixtureDefinition(index, ID.get(id.group(1)), read(script)));
+				}
+			}
+		}
+		final File scenarioScript = new File(folder, "Script.c");
+		if (scenarioScript.isFile()) {
+			scripts.add(new FixtureScript(index, folder.getName(), read(scenarioScript)));
+		}
+		scripts.forEach(index::addScript);
+	}
+
+	private static String read(final File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Create fresh parsers for all scripts.
+	 * @return The parsers
+	 */
+	public List<ScriptParser> parsers() {
+		return scripts.stream().map(script -> new ScriptParser(
+			((SelfcontainedStorage)script.source()).contentsAsString(), script, null
+		)).collect(Collectors.toList());
+	}
+
+	/**
+	 * Parse all scripts and derive the information inference depends on.
+	 * @return This fixture
+	 */
+	public Fixture parse() {
+		parsers().forEach(Runnable::run);
+		index.refresh();
+		scripts.forEach(Script::deriveInformation);
+		return this;
+	}
+
+	/**
+	 * Run inference over all scripts.
+	 * @return The inference so results can be inspected
+	 */
+	public DabbleInference infer() {
+		final DabbleInference inference = new DabbleInference(index, "");
+		inference.initialize(markers, new NullProgressMonitor(), scripts.toArray(new Script[scripts.size()]));
+		inference.steer(() -> {
+			inference.run();
+			inference.apply();
+			inference.run2();
+		});
+		return inference;
+	}
+
+	/**
+	 * Return the script with the given name.
+	 * @param name The name
+	 * @return The script or null
+	 */
+	public Script script(final String name) {
+		return scripts.stream().filter(s -> name.equals(s.name())).findFirst().orElse(null);
+	}
+
+}
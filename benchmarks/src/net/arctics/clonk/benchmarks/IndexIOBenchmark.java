@@ -0,0 +1,86 @@
+package net.arctics.clonk.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.arctics.clonk.Core;
+import net.arctics.clonk.c4script.Script;
+import net.arctics.clonk.index.Index;
+import net.arctics.clonk.index.IndexEntity;
+
+/**
+ * {@link Index#saveShallow()} and {@link Index#loadShallow(Class, File, File, net.arctics.clonk.index.Engine)} of a parsed and inferred fixture,
+ * the latter once on its own and once followed by loading every entity.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class IndexIOBenchmark {
+
+	@Param(Fixture.DEFAULT)
+	public String fixture;
+
+	private File indexFolder;
+	private Fixture setup;
+
+	@Setup(Level.Trial)
+	public void save() throws IOException {
+		Fixture.initialize();
+		indexFolder = Files.createTempDirectory("c4dt-index").toFile();
+		setup = new Fixture(Fixture.folder(fixture), indexFolder).parse();
+		setup.infer();
+		for (final Script s : setup.scripts) {
+			s.save();
+		}
+		setup.index.saveShallow();
+	}
+
+	@TearDown(Level.Trial)
+	public void delete() throws IOException {
+		try (Stream<Path> files = Files.walk(indexFolder.toPath())) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	@Benchmark
+	public void saveShallow() {
+		setup.index.saveShallow();
+	}
+
+	@Benchmark
+	public Index loadShallow() {
+		return Index.loadShallow(Fixture.FixtureIndex.class, indexFolder, null, Core.instance().loadEngine(Fixture.ENGINE));
+	}
+
+	@Benchmark
+	public Index loadShallowAndEntities() {
+		final Index index = loadShallow();
+		for (final IndexEntity e : index.entities()) {
+			e.requireLoaded();
+		}
+		return index;
+	}
+
+}
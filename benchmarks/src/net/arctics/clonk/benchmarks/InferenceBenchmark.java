@@ -0,0 +1,58 @@
+package net.arctics.clonk.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.arctics.clonk.c4script.typing.dabble.DabbleInference;
+
+/**
+ * {@link DabbleInference} over all scripts of a fixture, once on its own and once including parsing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class InferenceBenchmark {
+
+	@Param(Fixture.DEFAULT)
+	public String fixture;
+
+	private Fixture setup;
+
+	@Setup(Level.Trial)
+	public void initialize() {
+		Fixture.initialize();
+	}
+
+	// inference results are stored in the scripts so start each invocation from freshly parsed ones
+	@Setup(Level.Invocation)
+	public void load() throws IOException {
+		setup = new Fixture(Fixture.folder(fixture), null).parse();
+	}
+
+	@Benchmark
+	public DabbleInference infer() {
+		return setup.infer();
+	}
+
+	@Benchmark
+	public DabbleInference parseAndInfer() throws IOException {
+		return new Fixture(Fixture.folder(fixture), null).parse().infer();
+	}
+
+}
@@ -0,0 +1,105 @@
+package net.arctics.clonk.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.arctics.clonk.c4script.Script;
+import net.arctics.clonk.c4script.ScriptParser;
+import net.arctics.clonk.index.ID;
+import net.arctics.clonk.index.Index;
+import net.arctics.clonk.util.SelfcontainedStorage;
+
+/**
+ * {@link ScriptParser#parse()} of generated definitions referencing lots of {@link ID}s, on one thread and on all cores.
+ * With a contended ID pool the parallel run barely improves on the serial one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ParallelParseBenchmark {
+
+	private static final int DEFINITIONS = 200;
+
+	/** Number of threads parsing, 0 for one per core */
+	@Param({"1", "0"})
+	public int threads;
+
+	private final List<Script> scripts = new ArrayList<Script>();
+	private ExecutorService pool;
+	private List<ScriptParser> parsers;
+
+	private static String idName(final int i) {
+		return String.format("T%03d", i % 1000);
+	}
+
+	@Setup(Level.Trial)
+	public void load() {
+		Fixture.initialize();
+		final Index index = new Fixture.FixtureIndex(null);
+		for (int d = 0; d < DEFINITIONS; d++) {
+			final StringBuilder source = new StringBuilder();
+			source.append(String.format("#include %s\n", idName(d + 1)));
+			for (int f = 0; f < 50; f++) {
+				source.append(String.format("func F%d() {\n", f));
+				for (int i = 0; i < 20; i++) {
+					source.append(String.format("\tCreateObject(%s, %d, 0);\n", idName(d * 31 + f * 7 + i), i));
+				}
+				source.append("}\n");
+			}
+			scripts.add(new Fixture.FixtureDefinition(index, ID.get(idName(d)), source.toString()));
+		}
+		scripts.forEach(index::addScript);
+		pool = Executors.newFixedThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+	}
+
+	@TearDown(Level.Trial)
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	// parsers hold per-parse state so every invocation gets fresh ones
+	@Setup(Level.Invocation)
+	public void createParsers() {
+		parsers = new ArrayList<ScriptParser>(scripts.size());
+		for (final Script script : scripts) {
+			parsers.add(new ScriptParser(((SelfcontainedStorage)script.source()).contentsAsString(), script, null));
+		}
+	}
+
+	@Benchmark
+	public void parse() throws Exception {
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(parsers.size());
+		for (final ScriptParser parser : parsers) {
+			tasks.add(() -> {
+				parser.parse();
+				return null;
+			});
+		}
+		for (final Future<Void> f : pool.invokeAll(tasks)) {
+			f.get();
+		}
+	}
+
+}
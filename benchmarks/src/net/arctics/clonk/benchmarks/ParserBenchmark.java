@@ -0,0 +1,61 @@
+package net.arctics.clonk.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.arctics.clonk.ProblemException;
+import net.arctics.clonk.c4script.ScriptParser;
+
+/**
+ * {@link ScriptParser#parse()} over all scripts of a fixture.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ParserBenchmark {
+
+	@Param(Fixture.DEFAULT)
+	public String fixture;
+
+	private Fixture setup;
+	private List<ScriptParser> parsers;
+
+	@Setup(Level.Trial)
+	public void load() throws IOException {
+		Fixture.initialize();
+		setup = new Fixture(Fixture.folder(fixture), null);
+	}
+
+	// parsers hold per-parse state so every invocation gets fresh ones
+	@Setup(Level.Invocation)
+	public void createParsers() {
+		parsers = setup.parsers();
+	}
+
+	@Benchmark
+	public void parse(final Blackhole hole) throws ProblemException {
+		for (final ScriptParser parser : parsers) {
+			parser.parse();
+			hole.consume(parser.script());
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+package net.arctics.clonk.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.arctics.clonk.parser.BufferedScanner;
+import net.arctics.clonk.util.SelfcontainedStorage;
+
+/**
+ * The character level methods of {@link BufferedScanner} over the sources of all scripts of a fixture:
+ * identifiers and whitespace, lines via {@link BufferedScanner#eatUntil(char...)} and {@link BufferedScanner#readStringUntil(char...)},
+ * and figuring out the indentation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ScannerBenchmark {
+
+	@Param(Fixture.DEFAULT)
+	public String fixture;
+
+	private Scanner[] scanners;
+
+	private static final class Scanner extends BufferedScanner {
+		Scanner(final String source) { super(source); }
+		byte indentation() { return figureOutIndentation(); }
+	}
+
+	@Setup(Level.Trial)
+	public void load() throws IOException {
+		Fixture.initialize();
+		final Fixture setup = new Fixture(Fixture.folder(fixture), null);
+		scanners = setup.scripts.stream()
+			.map(script -> new Scanner(((SelfcontainedStorage)script.source()).contentsAsString()))
+			.toArray(Scanner[]::new);
+	}
+
+	@Benchmark
+	public void identifiersAndWhitespace(final Blackhole hole) {
+		for (final Scanner s : scanners) {
+			s.seek(0);
+			while (!s.reachedEOF()) {
+				final String ident = s.readIdent();
+				if (ident.length() > 0) {
+					hole.consume(ident);
+				} else if (s.eat(BufferedScanner.WHITESPACE_CHARS) == 0) {
+					s.read();
+				}
+			}
+		}
+	}
+
+	@Benchmark
+	public void eatLines(final Blackhole hole) {
+		for (final Scanner s : scanners) {
+			s.seek(0);
+			int lines = 0;
+			while (s.eatUntil(BufferedScanner.NEWLINE_CHARS) > 0) {
+				s.eat(BufferedScanner.NEWLINE_CHARS);
+				lines++;
+			}
+			hole.consume(lines);
+		}
+	}
+
+	@Benchmark
+	public void readLines(final Blackhole hole) {
+		for (final Scanner s : scanners) {
+			s.seek(0);
+			while (!s.reachedEOF()) {
+				hole.consume(s.readStringUntil(BufferedScanner.NEWLINE_CHARS));
+				s.eat(BufferedScanner.NEWLINE_CHARS);
+			}
+		}
+	}
+
+	@Benchmark
+	public void indentation(final Blackhole hole) {
+		for (final Scanner s : scanners) {
+			hole.consume(s.indentation());
+		}
+	}
+
+}
@@ -0,0 +1,113 @@
+package net.arctics.clonk.c4script.typing.dabble;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.arctics.clonk.ast.ASTNode;
+import net.arctics.clonk.ast.TraversalContinuation;
+import net.arctics.clonk.benchmarks.Fixture;
+import net.arctics.clonk.c4script.Script;
+import net.arctics.clonk.c4script.ScriptParser;
+import net.arctics.clonk.c4script.typing.dabble.DabbleInference.Input.Visit;
+import net.arctics.clonk.index.ID;
+import net.arctics.clonk.index.Index;
+import net.arctics.clonk.parser.Markers;
+import net.arctics.clonk.util.SelfcontainedStorage;
+
+/**
+ * Resolving the {@link DabbleInference} expert for each node of generated functions made of various kinds of nodes:
+ * By walking up the class hierarchy ({@link DabbleInference#consultCommittee(Class)}), which is what preparing a visit used to do for each node,
+ * and from the dispatch cache ({@link DabbleInference#findExpert(ASTNode)}), plus preparing all visits.<br>
+ * Lives in the package of {@link DabbleInference} since none of this is public.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ExpertDispatchBenchmark {
+
+	private static final int DEFINITIONS = 50;
+
+	private DabbleInference inference;
+	private List<Visit> visits;
+	private ASTNode[] nodes;
+
+	@Setup(Level.Trial)
+	public void load() {
+		Fixture.initialize();
+		final Index index = new Fixture.FixtureIndex(null);
+		final List<Script> scripts = new ArrayList<Script>();
+		for (int d = 0; d < DEFINITIONS; d++) {
+			final StringBuilder source = new StringBuilder();
+			for (int f = 0; f < 20; f++) {
+				source.append(String.format("func F%d(par) {\n", f));
+				for (int i = 0; i < 10; i++) {
+					source.append(String.format("\tvar a%d = [par, \"%d\", nil];\n", i, i));
+					source.append(String.format("\tif (a%d[0] > %d) a%d[1] = Format(\"%%d\", a%d[0] + %d); else return this->F%d(!par);\n", i, i, i, i, i, (f + 1) % 20));
+				}
+				source.append("}\n");
+			}
+			final String name = String.format("D%03d", d);
+			scripts.add(new Fixture.FixtureDefinition(index, ID.get(name), source.toString()));
+		}
+		scripts.forEach(index::addScript);
+		for (final Script script : scripts) {
+			new ScriptParser(((SelfcontainedStorage)script.source()).contentsAsString(), script, null).run();
+		}
+		index.refresh();
+		scripts.forEach(Script::deriveInformation);
+		inference = new DabbleInference(index, "");
+		inference.initialize(new Markers(), new NullProgressMonitor(), scripts.toArray(new Script[scripts.size()]));
+		visits = inference.input.values().stream()
+			.flatMap(i -> i.visits.values().stream())
+			.collect(Collectors.toList());
+		final List<ASTNode> nodes = new ArrayList<ASTNode>();
+		for (final Visit v : visits) {
+			v.function.body().traverse((node, nothing) -> {
+				nodes.add(node);
+				return TraversalContinuation.Continue;
+			}, null);
+		}
+		this.nodes = nodes.toArray(new ASTNode[nodes.size()]);
+	}
+
+	@Benchmark
+	public void walkClassHierarchy(final Blackhole hole) {
+		for (final ASTNode node : nodes) {
+			hole.consume(inference.consultCommittee(node.getClass()));
+		}
+	}
+
+	@Benchmark
+	public void dispatchCache(final Blackhole hole) {
+		for (final ASTNode node : nodes) {
+			hole.consume(inference.findExpert(node));
+		}
+	}
+
+	@Benchmark
+	public void prepareVisits() {
+		for (final Visit v : visits) {
+			v.prepare();
+		}
+	}
+
+}
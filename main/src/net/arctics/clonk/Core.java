@@ -35,6 +35,8 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.Version;
 
 import net.arctics.clonk.builder.ClonkProjectNature;
+import net.arctics.clonk.c4group.C4GroupCheckpoints;
+import net.arctics.clonk.c4group.C4GroupEntryCache;
 import net.arctics.clonk.c4script.SystemScript;
 import net.arctics.clonk.index.Engine;
 import net.arctics.clonk.index.ProjectIndex;
@@ -117,6 +119,8 @@ public class Core extends AbstractUIPlugin implements ISaveParticipant, IResourc
 
 		instance = this;
 
+		C4GroupCheckpoints.persistIn(new File(getStateLocation().toFile(), "c4groups")); //$NON-NLS-1$
+		C4GroupEntryCache.setBudget(ClonkPreferences.integer(ClonkPreferences.C4GROUP_CACHE_SIZE)*1024L*1024L);
 		loadActiveEngine();
 
 		try {
@@ -461,6 +465,7 @@ public class Core extends AbstractUIPlugin implements ISaveParticipant, IResourc
 				// delete old index - could be renamed i guess but renaming a project is not exactly a common activity
 				if (event.getResource() instanceof IProject && ((IProject)event.getResource()).hasNature(NATURE_ID)) {
 					final ClonkProjectNature proj = ClonkProjectNature.get(event.getResource());
+					proj.releaseIndex();
 					Core.instance().getStateLocation().append(proj.getProject().getName()+ProjectIndex.INDEXFILE_SUFFIX).toFile().delete();
 				}
 			}
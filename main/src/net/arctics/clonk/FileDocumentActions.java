@@ -6,6 +6,10 @@ import static net.arctics.clonk.util.Utilities.synchronizing;
 
 import java.util.function.Function;
 
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.LocationKind;
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IStorage;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.jface.text.IDocument;
@@ -16,6 +20,17 @@ public final class FileDocumentActions {
 	/** Provider used by the plug-in to provide text of documents */
 	static final TextFileDocumentProvider provider = new TextFileDocumentProvider();
 
+	/**
+	 * Return the document of a file if some text file buffer for it is connected, for example because it is open in an editor.
+	 * Unlike {@link #performActionOnFileDocument(IStorage, Function, boolean)} this does not create a document for the file otherwise.
+	 * @param file The file
+	 * @return The document or null
+	 */
+	public static IDocument openDocument(final IFile file) {
+		final ITextFileBuffer buffer = FileBuffers.getTextFileBufferManager().getTextFileBuffer(file.getFullPath(), LocationKind.IFILE);
+		return buffer != null ? buffer.getDocument() : null;
+	}
+
 	/**
 	 * Perform action on a document obtained from a file.
 	 * @param file The file/storage object to obtain the document from
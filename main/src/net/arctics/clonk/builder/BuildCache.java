@@ -0,0 +1,260 @@
+package net.arctics.clonk.builder;
+
+import static net.arctics.clonk.Flags.DEBUG;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import net.arctics.clonk.Core;
+import net.arctics.clonk.ast.Declaration;
+import net.arctics.clonk.c4script.Directive;
+import net.arctics.clonk.c4script.Function;
+import net.arctics.clonk.c4script.ProplistDeclaration;
+import net.arctics.clonk.c4script.Script;
+import net.arctics.clonk.c4script.Script.Typings;
+import net.arctics.clonk.c4script.ScriptParser;
+import net.arctics.clonk.c4script.Variable;
+import net.arctics.clonk.c4script.typing.TypeAnnotation;
+import net.arctics.clonk.index.Definition;
+import net.arctics.clonk.index.ID;
+import net.arctics.clonk.index.Index;
+import net.arctics.clonk.index.serialization.IndexEntityInputStream;
+import net.arctics.clonk.index.serialization.IndexEntityOutputStream;
+import net.arctics.clonk.index.serialization.IndexFormat;
+import net.arctics.clonk.parser.Markers;
+import net.arctics.clonk.util.StreamUtil;
+
+/**
+ * Persistent cache of declaration parsing results, keyed by the path and a content hash of the script source and a fingerprint of the engine and {@link ProjectSettings}.
+ * Scripts whose source did not change since they were last parsed are rehydrated from the cache instead of being parsed again.
+ * Only parsing results that did not produce any markers are stored, so rehydrating a script never loses a problem the parser would have reported.
+ * Entries also record the definitions the parser resolved IDs in type annotations to ({@link ScriptParser#resolvedDefinitions()}) and are
+ * not used if those IDs resolve to different definitions now.
+ */
+public class BuildCache {
+
+	private static final String ENTRY_SUFFIX = ".decl";
+	/** Suffix of the files {@link StreamUtil#writeAtomically(File, StreamUtil.StreamWriteRunnable)} writes before moving them into place */
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	/**
+	 * Result of parsing the declarations of one script.
+	 */
+	static final class Entry implements Serializable {
+		private static final long serialVersionUID = Core.SERIAL_VERSION_UID;
+		List<Directive> directives;
+		List<Function> functions;
+		List<Variable> variables;
+		Map<String, ProplistDeclaration> proplistDeclarations;
+		List<TypeAnnotation> typeAnnotations;
+		String sourceComment;
+		/** {@link ScriptParser#resolvedDefinitions()} as IDs mapping to {@link BuildCache#definitionPath(Definition)} */
+		Map<String, String> resolvedDefinitions;
+	}
+
+	private final File folder;
+	private final String fingerprint;
+	private final Set<String> touched = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Create a cache for the given project.
+	 * @param folder Folder storing the cache entries
+	 * @param settings Settings of the project. Scripts are reparsed when they change in ways affecting parsing.
+	 */
+	public BuildCache(final File folder, final ProjectSettings settings) {
+		this.folder = folder;
+		this.fingerprint = String.format("%d/%d/%s/%s/%s/%s",
+			Core.SERIAL_VERSION_UID,
+			IndexFormat.VERSION,
+			Core.instance().getBundle() != null ? Core.instance().getBundle().getVersion() : null,
+			settings.engine() != null ? settings.engine().name() : null,
+			settings.typing,
+			settings.migrationTyping
+		);
+		folder.mkdirs();
+	}
+
+	private String key(final Script script, final ScriptParser parser) {
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			digest.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+			digest.update(script.getClass().getName().getBytes(StandardCharsets.UTF_8));
+			digest.update(script.qualifiedName().getBytes(StandardCharsets.UTF_8));
+			digest.update(StandardCharsets.UTF_8.encode(CharBuffer.wrap(parser.bufferSequence(0))));
+			final StringBuilder builder = new StringBuilder(40);
+			for (final byte b : digest.digest()) {
+				builder.append(String.format("%02x", b & 0xFF));
+			}
+			return builder.toString();
+		} catch (final NoSuchAlgorithmException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private File entryFile(final String key) {
+		return new File(folder, key + ENTRY_SUFFIX);
+	}
+
+	private static String definitionPath(final Definition definition) {
+		if (definition == null) {
+			return null;
+		}
+		return definition.resource() != null
+			? definition.resource().getFullPath().toPortableString()
+			: definition.index().name() + "/" + definition.qualifiedName();
+	}
+
+	private static boolean definitionsUnchanged(final Script script, final Map<String, String> resolvedDefinitions) {
+		if (resolvedDefinitions == null) {
+			return true;
+		}
+		for (final Map.Entry<String, String> e : resolvedDefinitions.entrySet()) {
+			final Definition current = script.index().definitionNearestTo(script.file(), ID.get(e.getKey()));
+			if (!Objects.equals(definitionPath(current), e.getValue())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Replace the declarations of a script with the ones cached for the source the parser was created with.
+	 * @param script The script
+	 * @param parser The parser that would otherwise be used to parse the script
+	 * @return True if the script was rehydrated from the cache, false if it needs to be parsed.
+	 */
+	public boolean rehydrate(final Script script, final ScriptParser parser) {
+		final String key = key(script, parser);
+		if (key == null) {
+			return false;
+		}
+		final File file = entryFile(key);
+		if (!file.isFile()) {
+			return false;
+		}
+		final Index index = script.index();
+		final Entry entry;
+		try (final ObjectInputStream stream = new IndexEntityInputStream(index, script, new GZIPInputStream(new FileInputStream(file)))) {
+			entry = (Entry) stream.readObject();
+		} catch (final Exception e) {
+			if (DEBUG) {
+				System.out.println(String.format("Discarding build cache entry for '%s': %s", script.qualifiedName(), e.getMessage()));
+			}
+			file.delete();
+			return false;
+		}
+		if (!definitionsUnchanged(script, entry.resolvedDefinitions)) {
+			// parsing will store a new entry under the same key
+			return false;
+		}
+		touched.add(key);
+		Markers.clearMarkers(script.file());
+		script.setTypings(new Typings(new HashMap<>(), new HashMap<>()));
+		script.clearDeclarations();
+		final List<Declaration> declarations = new ArrayList<Declaration>();
+		if (entry.directives != null) {
+			declarations.addAll(entry.directives);
+		}
+		if (entry.variables != null) {
+			declarations.addAll(entry.variables);
+		}
+		if (entry.functions != null) {
+			declarations.addAll(entry.functions);
+		}
+		if (entry.proplistDeclarations != null) {
+			declarations.addAll(entry.proplistDeclarations.values());
+		}
+		for (final Declaration d : declarations) {
+			if (d != null) {
+				script.addDeclaration(d);
+				d.postLoad(script, index);
+			}
+		}
+		script.setSourceComment(entry.sourceComment);
+		script.setTypeAnnotations(entry.typeAnnotations);
+		try {
+			// directives still need to be checked against the current state of the index
+			parser.validate();
+		} catch (final Exception e) {
+			e.printStackTrace();
+		}
+		return true;
+	}
+
+	/**
+	 * Store the declarations the parser produced for the script.
+	 * @param script The freshly parsed script
+	 * @param parser The parser
+	 */
+	public void store(final Script script, final ScriptParser parser) {
+		final String key = key(script, parser);
+		if (key == null) {
+			return;
+		}
+		final Entry entry = new Entry();
+		entry.directives = new ArrayList<Directive>(script.directives());
+		entry.functions = new ArrayList<Function>(script.functions());
+		entry.variables = new ArrayList<Variable>(script.variables());
+		entry.proplistDeclarations = new HashMap<String, ProplistDeclaration>(script.proplistDeclarations());
+		entry.typeAnnotations = script.typeAnnotations() != null ? new ArrayList<TypeAnnotation>(script.typeAnnotations()) : null;
+		entry.sourceComment = script.sourceComment();
+		entry.resolvedDefinitions = new HashMap<String, String>();
+		for (final Map.Entry<ID, Definition> d : parser.resolvedDefinitions().entrySet()) {
+			entry.resolvedDefinitions.put(d.getKey().stringValue(), definitionPath(d.getValue()));
+		}
+		if (!folder.isDirectory()) {
+			// folder gone - nothing to cache into
+			return;
+		}
+		final File file = entryFile(key);
+		try {
+			// builds running concurrently or crashing halfway must not leave truncated entries behind
+			StreamUtil.writeAtomically(file, (f, stream, writer) -> {
+				final GZIPOutputStream gzip = new GZIPOutputStream(stream);
+				final ObjectOutputStream out = new IndexEntityOutputStream(script.index(), script, gzip);
+				out.writeObject(entry);
+				out.flush();
+				gzip.finish();
+			});
+			touched.add(key);
+		} catch (final IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Delete entries that have neither been read nor written since this cache object was created, along with temporary files left over by interrupted writes.
+	 * Should only be called after a build that visited all scripts of the project.
+	 */
+	public void purgeUntouched() {
+		final File[] files = folder.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (final File f : files) {
+			final String name = f.getName();
+			if (name.endsWith(ENTRY_SUFFIX) ? !touched.contains(name.substring(0, name.length() - ENTRY_SUFFIX.length())) : name.endsWith(TEMP_SUFFIX)) {
+				f.delete();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,313 @@
+package net.arctics.clonk.builder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import net.arctics.clonk.c4script.Directive;
+import net.arctics.clonk.c4script.Directive.DirectiveType;
+import net.arctics.clonk.c4script.Script;
+import net.arctics.clonk.index.Definition;
+import net.arctics.clonk.index.ID;
+import net.arctics.clonk.index.Index;
+import net.arctics.clonk.index.IndexEntity;
+import net.arctics.clonk.util.Sink;
+import net.arctics.clonk.util.TaskExecution;
+
+/**
+ * Schedules per-script build work along the #include/#appendto graph of the scripts being built.
+ * Work for a script is started as soon as the work for all the scripts it includes or appends to has finished,
+ * instead of waiting for every other script of the build to reach the same point.<br>
+ * Scripts including each other, directly or through other scripts, form an include cycle. The work for the scripts of a cycle is run
+ * one script after the other on the same thread, and only after the work for everything the cycle includes has finished.
+ * Work for two scripts therefore never runs concurrently if one of them includes the other.
+ */
+public class BuildScheduler {
+
+	private final Index index;
+	private final IProgressMonitor monitor;
+	private Map<ID, List<Script>> includers;
+
+	public BuildScheduler(final Index index, final IProgressMonitor monitor) {
+		this.index = index;
+		this.monitor = monitor;
+	}
+
+	/** A script or the scripts of an include cycle */
+	private static final class Node {
+		final List<Script> scripts = new ArrayList<Script>(1);
+		final Set<Node> dependents = new LinkedHashSet<Node>(3);
+		final AtomicInteger pending = new AtomicInteger();
+	}
+
+	private static boolean isIncludeDirective(final Directive d) {
+		if (d == null) {
+			return false;
+		}
+		switch (d.type()) {
+		case INCLUDE: case APPENDTO:
+			return d.contentAsID() != null;
+		default:
+			return false;
+		}
+	}
+
+	private static List<? extends Directive> directivesOf(final Script script) {
+		final List<? extends Directive> directives = script.directives();
+		synchronized (directives) {
+			return new ArrayList<Directive>(directives);
+		}
+	}
+
+	/**
+	 * Return the scripts from the index including or appending to some {@link Definition}, keyed by the id of the definition.
+	 * Built once per scheduler from the directives of all loaded scripts.
+	 */
+	private Map<ID, List<Script>> includers() {
+		if (includers == null) {
+			final Map<ID, List<Script>> map = new HashMap<ID, List<Script>>();
+			index.allScripts(new IndexEntity.LoadedEntitiesSink<Script>() {
+				@Override
+				public void receive(final Script item) {
+					for (final Directive d : directivesOf(item)) {
+						if (isIncludeDirective(d)) {
+							map.computeIfAbsent(d.contentAsID(), id -> new LinkedList<Script>()).add(item);
+						}
+					}
+				}
+			});
+			includers = map;
+		}
+		return includers;
+	}
+
+	/**
+	 * Return all scripts that directly or indirectly include or append to one of the passed scripts and thus need to be rebuilt along with them.
+	 * The passed scripts themselves are not part of the result.
+	 * @param scripts The scripts whose dependents to collect
+	 * @return The dependents
+	 */
+	public Set<Script> dependentsOf(final Collection<? extends Script> scripts) {
+		final Set<Script> result = new LinkedHashSet<Script>();
+		final Queue<Script> queue = new LinkedList<Script>(scripts);
+		for (Script s; (s = queue.poll()) != null;) {
+			if (!(s instanceof Definition) || monitor.isCanceled()) {
+				continue;
+			}
+			final List<Script> direct = includers().get(((Definition)s).id());
+			if (direct != null) {
+				for (final Script dependent : direct) {
+					if (!scripts.contains(dependent) && result.add(dependent)) {
+						queue.add(dependent);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Return the scripts whose derived information might be outdated because the passed scripts were parsed after them:
+	 * the definitions the passed scripts append to and all scripts directly or indirectly including or appending to those or the passed scripts.
+	 * @param added The scripts parsed later
+	 * @return The affected scripts, not including the passed ones
+	 */
+	public Set<Script> affectedBy(final Collection<? extends Script> added) {
+		// collected before the added scripts were parsed
+		includers = null;
+		final Set<Script> targets = new LinkedHashSet<Script>(added);
+		for (final Script s : added) {
+			for (final Directive d : directivesOf(s)) {
+				if (isIncludeDirective(d) && d.type() == DirectiveType.APPENDTO) {
+					final Definition[] defs = index.definitionsWithID(d.contentAsID());
+					if (defs != null) {
+						targets.addAll(Arrays.asList(defs));
+					}
+				}
+			}
+		}
+		final Set<Script> result = dependentsOf(targets);
+		for (final Script t : targets) {
+			if (!added.contains(t)) {
+				result.add(t);
+			}
+		}
+		return result;
+	}
+
+	private Set<Script> includes(final Script script, final Collection<? extends Script> scripts) {
+		final Set<Script> result = new LinkedHashSet<Script>();
+		for (final Directive d : directivesOf(script)) {
+			if (!isIncludeDirective(d)) {
+				continue;
+			}
+			final Definition[] defs = index.definitionsWithID(d.contentAsID());
+			if (defs != null) {
+				for (final Definition def : defs) {
+					if (def != script && scripts.contains(def)) {
+						result.add(def);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Groups the scripts into include cycles, the strongly connected components of the include graph (Tarjan's algorithm).
+	 * Scripts not part of any cycle get a node of their own.
+	 */
+	private static final class Cycles {
+		final Map<Script, Set<Script>> includes;
+		final Map<Script, Node> nodes = new HashMap<Script, Node>();
+		final Map<Script, Integer> order = new HashMap<Script, Integer>();
+		final Map<Script, Integer> lowest = new HashMap<Script, Integer>();
+		final Deque<Script> stack = new ArrayDeque<Script>();
+		Cycles(final Map<Script, Set<Script>> includes) {
+			this.includes = includes;
+			for (final Script s : includes.keySet()) {
+				if (!order.containsKey(s)) {
+					visit(s);
+				}
+			}
+		}
+		private void visit(final Script script) {
+			final int o = order.size();
+			order.put(script, o);
+			lowest.put(script, o);
+			stack.push(script);
+			for (final Script included : includes.get(script)) {
+				if (!order.containsKey(included)) {
+					visit(included);
+					lowest.put(script, Math.min(lowest.get(script), lowest.get(included)));
+				} else if (!nodes.containsKey(included)) {
+					// on the stack, so part of the cycle being visited
+					lowest.put(script, Math.min(lowest.get(script), order.get(included)));
+				}
+			}
+			if (lowest.get(script) == o) {
+				final Node node = new Node();
+				Script member;
+				do {
+					member = stack.pop();
+					node.scripts.add(member);
+					nodes.put(member, node);
+				} while (member != script);
+			}
+		}
+	}
+
+	private Map<Script, Node> graph(final Collection<? extends Script> scripts) {
+		final Map<Script, Set<Script>> includes = new HashMap<Script, Set<Script>>();
+		for (final Script s : scripts) {
+			includes.put(s, includes(s, scripts));
+		}
+		final Map<Script, Node> nodes = new Cycles(includes).nodes;
+		includes.forEach((script, included) -> {
+			final Node node = nodes.get(script);
+			for (final Script i : included) {
+				final Node dependency = nodes.get(i);
+				if (dependency != node && dependency.dependents.add(node)) {
+					node.pending.incrementAndGet();
+				}
+			}
+		});
+		return nodes;
+	}
+
+	/**
+	 * Run some per-script stage for all the passed scripts, running it for a script only after it has been run for all the scripts the script includes or appends to.
+	 * Returns when the stage has been run for all scripts or the build has been canceled.
+	 * @param scripts The scripts to run the stage for
+	 * @param stage The stage
+	 */
+	public void run(final Collection<? extends Script> scripts, final Sink<Script> stage) {
+		final Map<Script, Node> nodes = graph(scripts);
+		if (nodes.isEmpty()) {
+			return;
+		}
+		new Execution(nodes, stage).run();
+	}
+
+	private final class Execution {
+		final Collection<Node> nodes;
+		final Sink<Script> stage;
+		final ExecutorService pool;
+		int remaining;
+
+		Execution(final Map<Script, Node> nodes, final Sink<Script> stage) {
+			this.nodes = new LinkedHashSet<Node>(nodes.values());
+			this.stage = stage;
+			this.remaining = this.nodes.size();
+			this.pool = TaskExecution.newPool(this.nodes.size());
+		}
+
+		void run() {
+			try {
+				for (final Node node : nodes) {
+					if (node.pending.get() == 0) {
+						submit(node);
+					}
+				}
+				synchronized (this) {
+					while (remaining > 0) {
+						try {
+							wait();
+						} catch (final InterruptedException e) {
+							Thread.currentThread().interrupt();
+							return;
+						}
+					}
+				}
+			} finally {
+				pool.shutdown();
+			}
+		}
+
+		private void submit(final Node node) {
+			pool.execute(() -> {
+				try {
+					for (final Script script : node.scripts) {
+						if (monitor.isCanceled()) {
+							break;
+						}
+						try {
+							stage.receive(script);
+						} catch (final Exception e) {
+							e.printStackTrace();
+						}
+					}
+				} finally {
+					finished(node);
+				}
+			});
+		}
+
+		private void finished(final Node node) {
+			for (final Node dependent : node.dependents) {
+				if (dependent.pending.decrementAndGet() == 0) {
+					submit(dependent);
+				}
+			}
+			synchronized (this) {
+				if (--remaining == 0) {
+					notifyAll();
+				}
+			}
+		}
+	}
+
+}
@@ -3,6 +3,7 @@ package net.arctics.clonk.builder;
 import static net.arctics.clonk.Flags.DEBUG;
 import static net.arctics.clonk.util.Utilities.as;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -37,9 +38,9 @@ import net.arctics.clonk.debug.EngineLaunch;
 import net.arctics.clonk.index.Definition;
 import net.arctics.clonk.index.Index;
 import net.arctics.clonk.index.Index.Built;
-import net.arctics.clonk.index.IndexEntity;
 import net.arctics.clonk.index.ProjectIndex;
 import net.arctics.clonk.parser.Markers;
+import net.arctics.clonk.preferences.ClonkPreferences;
 import net.arctics.clonk.ui.editors.StructureTextEditor;
 import net.arctics.clonk.util.TaskExecution;
 import net.arctics.clonk.util.UI;
@@ -65,6 +66,7 @@ public class ClonkBuilder extends IncrementalProjectBuilder {
 	private final Markers markers = new Markers();
 	private int buildKind;
 	private Index index;
+	private BuildCache buildCache;
 
 	public void addGatheredStructure(final Structure structure) { gatheredStructures.add(structure); }
 	public Markers markers() { return markers; }
@@ -112,6 +114,10 @@ public class ClonkBuilder extends IncrementalProjectBuilder {
 		this.markers.applyProjectSettings(index);
 		this.buildKind = kind;
 		this.monitor = monitor;
+		// parsers are needed for their type annotations when migrating so don't skip parsing then
+		this.buildCache = ClonkPreferences.toggle(ClonkPreferences.BUILD_CACHE, true) && nature.settings().migrationTyping == null
+			? new BuildCache(nature.buildCacheFolder(), nature.settings())
+			: null;
 
 		switch (index.built()) {
 		case No:
@@ -187,10 +193,11 @@ public class ClonkBuilder extends IncrementalProjectBuilder {
 			clearScripts(index);
 			index.populateResourceToScriptMap();
 			parseDeclarations(index);
+			markers.parsed();
 			markers.deploy();
-
-			findTODOs();
-			markers.deploy();
+			if (buildCache != null && (buildKind == CLEAN_BUILD || buildKind == FULL_BUILD) && !monitor.isCanceled()) {
+				buildCache.purgeUntouched();
+			}
 
 			final Script[] scripts = parserMap.keySet().toArray(new Script[parserMap.keySet().size()]);
 			final ScriptParser[] parsers = parserMap.values().toArray(new ScriptParser[parserMap.values().size()]);
@@ -214,12 +221,6 @@ public class ClonkBuilder extends IncrementalProjectBuilder {
 		}
 	}
 
-	private void findTODOs() {
-		for (final Script s : scripts()) {
-			s.traverse(Comment.TODO_EXTRACTOR, markers);
-		}
-	}
-
 	private void gatherScripts(final IProject proj, final IResourceDelta delta) throws CoreException {
 		parserMap.clear();
 		monitor.subTask(buildTask(Messages.ClonkBuilder_GatheringScripts));
@@ -279,32 +280,60 @@ public class ClonkBuilder extends IncrementalProjectBuilder {
 	private void parseDeclarations(final Index index) {
 		// parse declarations
 		monitor.subTask(buildTask(Messages.ClonkBuilder_ParseDeclarations));
-		int parserMapSize;
-		Map<Script, ScriptParser>
-			newEnqueued = new HashMap<Script, ScriptParser>(),
-			lastEnqueued = new HashMap<Script, ScriptParser>();
-		newEnqueued.putAll(parserMap);
+		final BuildScheduler scheduler = new BuildScheduler(index, monitor);
+		// don't queue dependent scripts during a clean build - if everything works right all scripts will have been added anyway
+		final boolean queueDependents = buildKind != CLEAN_BUILD && buildKind != FULL_BUILD;
+		if (queueDependents) {
+			for (final Script dependent : scheduler.dependentsOf(scriptsWithParsers(parserMap))) {
+				queueScript(dependent);
+			}
+		}
+		Map<Script, ScriptParser> newEnqueued = new HashMap<Script, ScriptParser>(parserMap);
+		final Set<Script> parsedLater = new HashSet<Script>();
+		Set<Script> lastRound;
 		do {
-			parserMapSize = parserMap.size();
 			for (final Script s : newEnqueued.keySet()) {
 				nature.index().addScript(s);
 			}
+			// parsing stays a barrier: the #include/#appendto graph the scheduler orders scripts by is only known once they are parsed
 			innerParseDeclarations(newEnqueued);
 			if (monitor.isCanceled()) {
 				return;
 			}
-			// don't queue dependent scripts during a clean build - if everything works right all scripts will have been added anyway
-			if (buildKind == CLEAN_BUILD || buildKind == FULL_BUILD) {
-				break;
-			}
-			lastEnqueued = newEnqueued;
-			newEnqueued = new HashMap<Script, ScriptParser>();
-			indexRefresh(index);
-			queueDependentScripts(lastEnqueued, newEnqueued);
+			// refresh now so gathered structures will be validated with an index that has valid appendages maps and such.
+			// without refreshing the index here, error markers would be created for TimerCall=... etc. assignments in ActMaps for example
+			// if the function being referenced is defined in an #appendto from this index
+			index.refresh(false);
+			scheduler.run(newEnqueued.keySet(), this::deriveInformation);
+			lastRound = newEnqueued.keySet();
+			newEnqueued = queueDependents ? queueScriptsOfGatheredStructures(scheduler) : Collections.<Script, ScriptParser>emptyMap();
+			parsedLater.addAll(newEnqueued.keySet());
+		}
+		while (!newEnqueued.isEmpty() && !monitor.isCanceled());
+		if (!parsedLater.isEmpty() && !monitor.isCanceled()) {
+			// scripts parsed in later rounds might be included by or append to ones derived earlier
+			index.refresh(false);
+			final Set<Script> affected = scheduler.affectedBy(parsedLater);
+			affected.retainAll(parserMap.keySet());
+			affected.removeAll(lastRound);
+			scheduler.run(affected, Script::deriveInformation);
 		}
-		while (parserMapSize != parserMap.size());
-		refreshUI(newEnqueued);
-		indexRefresh(index);
+		refreshUI(parserMap);
+	}
+
+	private static Collection<Script> scriptsWithParsers(final Map<Script, ScriptParser> parsers) {
+		final List<Script> result = new ArrayList<Script>(parsers.size());
+		parsers.forEach((script, parser) -> {
+			if (parser != null) {
+				result.add(script);
+			}
+		});
+		return result;
+	}
+
+	private void deriveInformation(final Script script) {
+		script.deriveInformation();
+		script.traverse(Comment.TODO_EXTRACTOR, markers);
 	}
 
 	private void innerParseDeclarations(final Map<Script, ScriptParser> newEnqueued) {
@@ -321,16 +350,6 @@ public class ClonkBuilder extends IncrementalProjectBuilder {
 		}, 20, newEnqueued.size());
 	}
 
-	private void indexRefresh(final Index index) {
-		// refresh now so gathered structures will be validated with an index that has valid appendages maps and such.
-		// without refreshing the index here, error markers would be created for TimerCall=... etc. assignments in ActMaps for example
-		// if the function being referenced is defined in an #appendto from this index
-		index.refresh(false);
-		for (final Script script : parserMap.keySet()) {
-			script.deriveInformation();
-		}
-	}
-
 	private void refreshUI(final Map<Script, ScriptParser> newEnqueued) {
 		if (Core.instance().runsHeadless()) {
 			return;
@@ -381,39 +400,29 @@ public class ClonkBuilder extends IncrementalProjectBuilder {
 		parserMap.clear();
 	}
 
-	private void queueDependentScripts(final Map<Script, ScriptParser> scriptsToQueueDependenciesFrom, final Map<Script, ScriptParser> newlyAddedParsers) {
-		for (final ScriptParser parser : scriptsToQueueDependenciesFrom.values()) {
+	private Map<Script, ScriptParser> queueScriptsOfGatheredStructures(final BuildScheduler scheduler) {
+		final Map<Script, ScriptParser> newlyAddedParsers = new HashMap<Script, ScriptParser>();
+		for (final Structure s : gatheredStructures) {
 			if (monitor.isCanceled()) {
 				break;
 			}
-			if (parser == null) {
-				continue;
-			}
-			final Definition def = as(parser.script(), Definition.class);
-			if (def != null) {
-				index().allScripts(new IndexEntity.LoadedEntitiesSink<Script>() {
-					@Override
-					public void receive(final Script item) {
-						if (!parserMap.containsKey(item) && item.directlyIncludes(def)) {
-							newlyAddedParsers.put(item, queueScript(item));
-						}
-					}
-				});
-			}
-		}
-		for (final Structure s : gatheredStructures) {
 			try {
 				s.validate(markers);
 			} catch (final ProblemException e) {}
 			if (s.requiresScriptReparse()) {
 				final Script script = Script.get(s.resource(), false);
-				if (script != null) {
-					final ScriptParser p = queueScript(script);
-					newlyAddedParsers.put(script, p);
+				if (script != null && !parserMap.containsKey(script)) {
+					newlyAddedParsers.put(script, queueScript(script));
 				}
 			}
 		}
 		gatheredStructures.clear();
+		for (final Script dependent : scheduler.dependentsOf(scriptsWithParsers(newlyAddedParsers))) {
+			if (!parserMap.containsKey(dependent)) {
+				newlyAddedParsers.put(dependent, queueScript(dependent));
+			}
+		}
+		return newlyAddedParsers;
 	}
 
 	private void validateRelatedFiles(final Script script) throws CoreException {
@@ -461,10 +470,23 @@ public class ClonkBuilder extends IncrementalProjectBuilder {
 			parser = parserMap.get(script);
 		}
 		if (parser != null) {
+			if (buildCache != null && buildCache.rehydrate(script, parser)) {
+				return;
+			}
+			// collect markers separately to tell whether the result is fit for caching
+			final Markers parserMarkers = new Markers();
+			parser.setMarkers(parserMarkers);
 			try {
 				parser.parse();
 			} catch (final ProblemException e) {
 				e.printStackTrace();
+			} finally {
+				parser.setMarkers(markers);
+			}
+			final boolean cacheable = parserMarkers.first() == null;
+			markers.take(parserMarkers);
+			if (buildCache != null && cacheable) {
+				buildCache.store(script, parser);
 			}
 		}
 	}
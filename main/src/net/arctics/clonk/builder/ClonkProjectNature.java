@@ -36,6 +36,12 @@ import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.IEditorReference;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.IWorkbenchWindow;
+import org.eclipse.ui.PartInitException;
+import org.eclipse.ui.PlatformUI;
+import org.eclipse.ui.part.FileEditorInput;
 
 import net.arctics.clonk.Core;
 import net.arctics.clonk.Milestones;
@@ -49,6 +55,8 @@ import net.arctics.clonk.index.Definition;
 import net.arctics.clonk.index.Engine;
 import net.arctics.clonk.index.EngineSettings;
 import net.arctics.clonk.index.Index;
+import net.arctics.clonk.index.IndexEntity;
+import net.arctics.clonk.index.IndexWarmUp;
 import net.arctics.clonk.index.ProjectIndex;
 import net.arctics.clonk.ini.CustomIniUnit;
 import net.arctics.clonk.ini.IniUnit;
@@ -67,6 +75,7 @@ public class ClonkProjectNature implements IProjectNature {
 	public static final Function<ClonkProjectNature, Index> SELECT_INDEX = nature -> nature.index();
 	public static final Function<IProject, ClonkProjectNature> SELECT_NATURE = project -> get(project);
 	public static final String ENGINE_SETTINGS_SUFFIX = "engine";
+	public static final String BUILD_CACHE_SUFFIX = ".buildcache";
 
 	public static ClonkProjectNature[] allInWorkspace() {
 		return map(clonkProjectsInWorkspace(), ClonkProjectNature.class, SELECT_NATURE);
@@ -180,7 +189,7 @@ public class ClonkProjectNature implements IProjectNature {
 	 */
 	public ProjectIndex forceIndexRecreation() {
 		synchronized (lock) {
-			index = null;
+			releaseIndex();
 			loadSettings();
 			final File indexFolder = indexFolder();
 			// legacy index file - delete
@@ -264,12 +273,50 @@ public class ClonkProjectNature implements IProjectNature {
 				}
 			}
 			index = loadedIndex != null ? loadedIndex : new ProjectIndex(getProject(), indexFolder());
+			if (loadedIndex != null) {
+				new IndexWarmUp(ClonkBuilder.buildTask(Messages.ClonkProjectNature_LoadingIndex, project), loadedIndex, this::scriptsInOpenEditors).schedule();
+			}
 		} catch (final Exception e) {
 			System.out.println(String.format("Loading index for %s failed - performing clean build", this.getProject().getName()));
 			performCleanBuild();
 		}
 	}
 
+	/**
+	 * Return the scripts edited in open editors so {@link IndexWarmUp} can load them and the scripts they include.
+	 * @return The scripts
+	 */
+	private Collection<? extends IndexEntity> scriptsInOpenEditors() {
+		if (!PlatformUI.isWorkbenchRunning()) {
+			return Collections.emptyList();
+		}
+		final List<IFile> files = new ArrayList<IFile>();
+		Display.getDefault().syncExec(() -> {
+			for (final IWorkbenchWindow window : PlatformUI.getWorkbench().getWorkbenchWindows()) {
+				for (final IWorkbenchPage page : window.getPages()) {
+					for (final IEditorReference ref : page.getEditorReferences()) {
+						try {
+							final FileEditorInput input = as(ref.getEditorInput(), FileEditorInput.class);
+							if (input != null && project.equals(input.getFile().getProject())) {
+								files.add(input.getFile());
+							}
+						} catch (final PartInitException e) {
+							continue;
+						}
+					}
+				}
+			}
+		});
+		final List<Script> scripts = new ArrayList<Script>(files.size());
+		for (final IFile f : files) {
+			final Script script = Script.get(f, false);
+			if (script != null) {
+				scripts.add(script);
+			}
+		}
+		return scripts;
+	}
+
 	private void performCleanBuild() {
 		Display.getDefault().asyncExec(() -> {
 			final IProgressMonitor monitor = new NullProgressMonitor();
@@ -288,6 +335,14 @@ public class ClonkProjectNature implements IProjectNature {
 		return Core.instance().getStateLocation().append(getProject().getName()+ProjectIndex.INDEXFILE_SUFFIX).toFile();
 	}
 
+	/**
+	 * Return the folder the {@link BuildCache} of this project is stored in.
+	 * @return The folder
+	 */
+	public File buildCacheFolder() {
+		return Core.instance().getStateLocation().append(getProject().getName()+BUILD_CACHE_SUFFIX).toFile();
+	}
+
 	/**
 	 * Returns the clonk project nature associated with the project of res
 	 * @param res the resource
@@ -401,10 +456,22 @@ public class ClonkProjectNature implements IProjectNature {
 	}
 
 	public void reloadIndex() {
-		index = null;
+		releaseIndex();
 		index();
 	}
 
+	/**
+	 * Forget the current {@link #index}, closing the files it keeps open.
+	 */
+	public void releaseIndex() {
+		synchronized (lock) {
+			if (index != null) {
+				index.closeStore();
+				index = null;
+			}
+		}
+	}
+
 	public static Engine engineFromResource(final IResource res) {
 		final ClonkProjectNature nat = get(res);
 		return nat != null ? nat.settings().engine() : null;
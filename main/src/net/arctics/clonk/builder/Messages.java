@@ -15,6 +15,7 @@ public class Messages extends NLS {
 	public static String ClonkBuilder_ReportingProblems;
 	public static String ClonkBuilder_SaveIndexFilesForParsedScripts;
 	public static String ClonkBuilder_SavingScriptIndexFiles;
+	public static String ClonkProjectNature_LoadingIndex;
 	public static String BuildProject;
 	public static String ParsingLibraries;
 	public static String SavingLibraries;
@@ -13,6 +13,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.security.InvalidParameterException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedList;
@@ -59,6 +60,18 @@ public class C4Group extends C4GroupItem implements Serializable, ITreeNode {
 		parentGroup().readFromStream(whoWantsThat, pos, callback);
 	}
 
+	/**
+	 * Return a file in the local file system holding the contents of an entry of this group.
+	 * @param whoWantsThat The entry
+	 * @param pos Offset of the entry in the stream as passed to {@link #readFromStream(C4GroupItem, long, StreamReadCallback)}
+	 * @param size Size of the entry
+	 * @return The file or null if there is none
+	 * @throws IOException
+	 */
+	public File localFile(final C4GroupItem whoWantsThat, final long pos, final int size) throws IOException {
+		return parentGroup().localFile(whoWantsThat, pos, size);
+	}
+
 	/**
 	 * Causes the group to create its stream. If it already has been created it gets recreated
 	 * @return the stream
@@ -89,6 +102,10 @@ public class C4Group extends C4GroupItem implements Serializable, ITreeNode {
 	private long originModifiedAtLoadTime;
 	private File origin;
 
+	/** Directory the structure of this group is taken from, if it was loaded via {@link #readDirectory()} */
+	private transient C4GroupDirectory directory;
+	private transient int directoryIndex;
+
 	public int baseOffset() {
 		final C4Group pg = parentGroup();
 		return
@@ -263,6 +280,52 @@ public class C4Group extends C4GroupItem implements Serializable, ITreeNode {
 
 	}
 
+	/**
+	 * Load the structure of this group from its {@link C4GroupDirectory} instead of reading it from the stream.
+	 * The directory of an unchanged group file is picked up from where it was persisted, otherwise the file is scanned for its headers once.
+	 * Child items are only created when first asked for and file contents are read when the files are opened.
+	 * @return Whether a directory could be obtained. If not, the group needs to be read via {@link #readIntoMemory(boolean, C4GroupHeaderFilterBase)}.
+	 */
+	public boolean readDirectory() {
+		if (origin == null || !origin.isFile()) {
+			return false;
+		}
+		final C4GroupDirectory directory = C4GroupDirectory.of(this);
+		if (directory == null) {
+			return false;
+		}
+		originModifiedAtLoadTime = origin.lastModified();
+		adoptDirectory(directory, C4GroupDirectory.ROOT);
+		return true;
+	}
+
+	private void adoptDirectory(final C4GroupDirectory directory, final int index) {
+		this.directory = directory;
+		this.directoryIndex = index;
+		this.header = directory.groupHeader(index);
+		this.childEntries = null;
+		this.loaded = false;
+	}
+
+	private List<C4GroupItem> childrenFromDirectory() {
+		final int first = directory.firstChild(directoryIndex);
+		final int count = directory.childCount(directoryIndex);
+		final List<C4GroupItem> items = new ArrayList<C4GroupItem>(count);
+		for (int i = first; i < first + count; i++) {
+			final C4GroupEntryHeader entryHeader = directory.entryHeader(i);
+			if (directory.isGroup(i)) {
+				final C4Group group = new C4Group(this, entryHeader.entryName(), null);
+				group.offset = entryHeader.offset();
+				group.entryHeader = entryHeader;
+				group.adoptDirectory(directory, i);
+				items.add(group);
+			} else {
+				items.add(new C4GroupFile(this, entryHeader));
+			}
+		}
+		return items;
+	}
+
 	/**
 	 * Like {@link #readIntoMemory(boolean, C4GroupHeaderFilterBase, InputStream)}, but with the stream parameter set to {@link #stream()}.
 	 * @throws C4GroupInvalidDataException
@@ -333,6 +396,10 @@ public class C4Group extends C4GroupItem implements Serializable, ITreeNode {
 	 * @return the childEntries
 	 */
 	public List<C4GroupItem> children() {
+		if (childEntries == null && directory != null) {
+			childEntries = childrenFromDirectory();
+			loaded = true;
+		}
 		if (childEntries == null) {
 			try {
 				if (origin != null) {
@@ -387,6 +454,7 @@ public class C4Group extends C4GroupItem implements Serializable, ITreeNode {
 	 * @throws IOException
 	 */
 	public void close() throws IOException {
+		C4GroupEntryCache.removeAll(this);
 		if (childEntries != null) {
 			childEntries.clear();
 			childEntries = null;
@@ -465,6 +533,9 @@ public class C4Group extends C4GroupItem implements Serializable, ITreeNode {
 		if (outdated()) {
 			childEntries = null; // force refresh
 			loaded = false;
+			if (directory != null && !(parentGroup == null && readDirectory())) {
+				directory = null;
+			}
 		}
 		final List<C4GroupItem> childEntries = this.children();
 		final String[] result = new String[childEntries.size()];
@@ -0,0 +1,538 @@
+package net.arctics.clonk.c4group;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import net.arctics.clonk.util.StreamUtil;
+
+/**
+ * Random access index into the decompressed contents of a compressed {@link C4Group} file.<br>
+ * While the group is decompressed front to back the decompressed output is cut into chunks of {@link #CHUNK_SIZE} bytes which are deflated
+ * independently of each other into a data file. Reaching an offset that has been decompressed before then only requires inflating
+ * the chunk containing it instead of inflating the whole group from the start.<br>
+ * If a folder has been set via {@link #persistIn(File)} the checkpoints of completely decompressed groups are kept there, keyed by path, size and modification time
+ * of the group file, so they can be reused the next time the group is opened. Files kept for other versions of the same group file are deleted when it is opened,
+ * and the least recently used files are deleted when all of them together take up more than {@link #PERSISTED_LIMIT} bytes.<br>
+ * Persisted checkpoints are shared by everything opening the same group file in this process and {@link #close()}d when the last one closes them.
+ * Their data file is locked while they are open; if another process holds the lock, checkpoints are kept in a temporary file instead.
+ */
+public final class C4GroupCheckpoints implements Closeable {
+
+	static final int CHUNK_SIZE = 256*1024;
+
+	private static final int MAGIC = 0xC4C8EC4B;
+	private static final int VERSION = 1;
+	/** Maximum number of bytes persisted files may take up together */
+	static final long PERSISTED_LIMIT = 512L*1024*1024;
+
+	private static volatile File persistenceFolder;
+	/** Open persisted checkpoints by data file */
+	private static final Map<File, C4GroupCheckpoints> shared = new HashMap<File, C4GroupCheckpoints>();
+
+	/**
+	 * Set the folder to persist checkpoints of completely decompressed groups in. {@link C4GroupDirectory}s are kept there as well.
+	 * @param folder The folder or null to not persist anything
+	 */
+	public static void persistIn(final File folder) {
+		persistenceFolder = folder;
+	}
+
+	private final File source;
+	private final long sourceModified;
+	/** Length of the decompressed contents according to the gzip trailer of the group file */
+	private final long expectedLength;
+	private final File dataFile;
+	private final File tableFile;
+	private final FileChannel data;
+	private FileLock lock;
+	/** Number of {@link #open(File)} calls that returned these checkpoints and have not been followed by {@link #close()} yet. Guarded by {@link #shared}. */
+	private int references = 1;
+	private long dataLength;
+	private long[] chunkOffsets = new long[16];
+	private int[] chunkLengths = new int[16];
+	private int chunks;
+	private final byte[] pending = new byte[CHUNK_SIZE];
+	private int pendingLength;
+	private boolean complete;
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+	private final byte[] deflated = new byte[CHUNK_SIZE/4];
+
+	private C4GroupCheckpoints(final File source, final File dataFile, final File tableFile) throws IOException {
+		this.source = source;
+		this.sourceModified = source.lastModified();
+		this.expectedLength = trailerLength(source);
+		this.dataFile = dataFile;
+		this.tableFile = tableFile;
+		this.data = new RandomAccessFile(dataFile, "rw").getChannel();
+	}
+
+	/**
+	 * Return the length of the decompressed contents of a group file according to its gzip trailer.
+	 * @param source The group file
+	 * @return The length or -1 if the file is too short or could not be read
+	 */
+	static long trailerLength(final File source) {
+		try (RandomAccessFile file = new RandomAccessFile(source, "r")) {
+			if (file.length() < 4) {
+				return -1;
+			}
+			file.seek(file.length()-4);
+			final byte[] b = new byte[4];
+			file.readFully(b);
+			return (b[0] & 0xFFL) | (b[1] & 0xFFL) << 8 | (b[2] & 0xFFL) << 16 | (b[3] & 0xFFL) << 24;
+		} catch (final IOException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Return the file to persist information about a group file in, keyed by a hash of the path, size and modification time of the group file.
+	 * @param source The group file
+	 * @param extension Extension telling apart the kinds of information
+	 * @return The file or null if nothing is to be persisted
+	 */
+	static File persistedFile(final File source, final String extension) {
+		final File folder = persistenceFolder;
+		if (folder != null && (folder.isDirectory() || folder.mkdirs())) {
+			final String key = String.format("%s-%x-%x", pathHash(source), source.length(), source.lastModified());
+			return new File(folder, key + extension);
+		} else {
+			return null;
+		}
+	}
+
+	/** Key of a persisted file: the file name without extension */
+	private static String key(final File persisted) {
+		final String name = persisted.getName();
+		final int dot = name.lastIndexOf('.');
+		return dot != -1 ? name.substring(0, dot) : name;
+	}
+
+	/**
+	 * Delete persisted files of other versions of a group file, then delete the least recently used persisted files until the remaining ones
+	 * take up at most {@link #PERSISTED_LIMIT} bytes. Files of checkpoints currently open are kept.
+	 * @param source The group file whose current version is kept
+	 */
+	static void purge(final File source) {
+		final File folder = persistenceFolder;
+		final File[] files = folder != null ? folder.listFiles((dir, name) -> name.endsWith(".ckd") || name.endsWith(".ckt") || name.endsWith(".ckg")) : null;
+		if (files == null) {
+			return;
+		}
+		final Set<String> inUse = new HashSet<String>();
+		synchronized (shared) {
+			for (final File f : shared.keySet()) {
+				inUse.add(key(f));
+			}
+		}
+		final File currentFile = persistedFile(source, "");
+		if (currentFile == null) {
+			return;
+		}
+		final String current = key(currentFile);
+		final String sourcePrefix = pathHash(source) + "-";
+		final Map<String, List<File>> byKey = new HashMap<String, List<File>>();
+		final Map<String, Long> lastUsed = new HashMap<String, Long>();
+		long total = 0;
+		for (final File f : files) {
+			final String key = key(f);
+			if (inUse.contains(key) || key.equals(current)) {
+				total += f.length();
+			} else if (key.startsWith(sourcePrefix)) {
+				f.delete();
+			} else {
+				total += f.length();
+				byKey.computeIfAbsent(key, k -> new ArrayList<File>(3)).add(f);
+				lastUsed.merge(key, f.lastModified(), Math::max);
+			}
+		}
+		if (total <= PERSISTED_LIMIT) {
+			return;
+		}
+		final List<String> keys = new ArrayList<String>(byKey.keySet());
+		keys.sort((a, b) -> Long.compare(lastUsed.get(a), lastUsed.get(b)));
+		for (final String key : keys) {
+			if (total <= PERSISTED_LIMIT) {
+				break;
+			}
+			for (final File f : byKey.get(key)) {
+				final long length = f.length();
+				if (f.delete()) {
+					total -= length;
+				}
+			}
+		}
+	}
+
+	private static String pathHash(final File source) {
+		try {
+			final byte[] digest = MessageDigest.getInstance("SHA-256").digest(source.getAbsolutePath().getBytes(StandardCharsets.UTF_8)); //$NON-NLS-1$
+			final StringBuilder builder = new StringBuilder(32);
+			for (int i = 0; i < 16; i++) {
+				builder.append(String.format("%02x", digest[i] & 0xFF)); //$NON-NLS-1$
+			}
+			return builder.toString();
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Open the checkpoints for a group file, picking up persisted ones if there are any.
+	 * @param source The group file
+	 * @return The checkpoints or null if no file to store them in could be created
+	 */
+	static C4GroupCheckpoints open(final File source) {
+		try {
+			final File dataFile = persistedFile(source, ".ckd");
+			if (dataFile != null) {
+				purge(source);
+				synchronized (shared) {
+					final C4GroupCheckpoints existing = shared.get(dataFile);
+					if (existing != null) {
+						existing.references++;
+						return existing;
+					}
+					final C4GroupCheckpoints result = new C4GroupCheckpoints(source,
+						dataFile, persistedFile(source, ".ckt"));
+					if (result.lock()) {
+						result.loadTable();
+						if (!result.complete) {
+							result.data.truncate(0);
+						} else {
+							// the modification time tells which checkpoints were used least recently
+							dataFile.setLastModified(System.currentTimeMillis());
+						}
+						shared.put(dataFile, result);
+						return result;
+					}
+					// in use by another process
+					result.data.close();
+				}
+			}
+			final File tempFile = File.createTempFile("c4group", ".ckd");
+			tempFile.deleteOnExit();
+			return new C4GroupCheckpoints(source, tempFile, null);
+		} catch (final IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private boolean lock() throws IOException {
+		try {
+			lock = data.tryLock();
+		} catch (final OverlappingFileLockException e) {
+			lock = null;
+		}
+		return lock != null;
+	}
+
+	private void loadTable() {
+		if (!tableFile.isFile()) {
+			return;
+		}
+		try (DataInputStream in = new DataInputStream(new FileInputStream(tableFile))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != CHUNK_SIZE) {
+				return;
+			}
+			final int count = in.readInt();
+			final long[] offsets = new long[Math.max(16, count)];
+			final int[] lengths = new int[offsets.length];
+			for (int i = 0; i < count; i++) {
+				offsets[i] = in.readLong();
+				lengths[i] = in.readInt();
+			}
+			final int last = in.readInt();
+			final byte[] tail = new byte[last];
+			in.readFully(tail);
+			final long size = count > 0 ? offsets[count-1] + lengths[count-1] : 0;
+			if (data.size() < size) {
+				return;
+			}
+			chunkOffsets = offsets;
+			chunkLengths = lengths;
+			chunks = count;
+			dataLength = size;
+			System.arraycopy(tail, 0, pending, 0, last);
+			pendingLength = last;
+			complete = true;
+		} catch (final IOException e) {
+			System.out.println(String.format("Ignoring checkpoints of '%s': %s", source, e.getMessage()));
+		}
+	}
+
+	private void saveTable() {
+		if (tableFile == null) {
+			return;
+		}
+		try {
+			data.force(false);
+			StreamUtil.writeAtomically(tableFile, (file, stream, writer) -> {
+				final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(CHUNK_SIZE);
+				out.writeInt(chunks);
+				for (int i = 0; i < chunks; i++) {
+					out.writeLong(chunkOffsets[i]);
+					out.writeInt(chunkLengths[i]);
+				}
+				// the last, partial chunk is kept verbatim
+				out.writeInt(pendingLength);
+				out.write(pending, 0, pendingLength);
+				out.flush();
+			});
+		} catch (final IOException e) {
+			e.printStackTrace();
+			tableFile.delete();
+		}
+	}
+
+	/**
+	 * Whether the group file has not been modified since the checkpoints were opened.
+	 * @return True if the checkpoints can still be used
+	 */
+	boolean current() {
+		return source.lastModified() == sourceModified;
+	}
+
+	/**
+	 * Number of bytes at the start of the decompressed contents that can be read via {@link #open(long)}.
+	 * @return The number of bytes
+	 */
+	synchronized long covered() {
+		return (long)chunks*CHUNK_SIZE + pendingLength;
+	}
+
+	/**
+	 * Whether the whole contents are covered.
+	 * @return True if the end of the decompressed contents has been reached
+	 */
+	synchronized boolean complete() {
+		return complete;
+	}
+
+	/**
+	 * Pass decompressed bytes read at some position. Only the part extending the covered range is taken, everything else is ignored.
+	 * @param pos Offset of the bytes in the decompressed contents
+	 * @param b Buffer containing the bytes
+	 * @param off Start of the bytes in the buffer
+	 * @param len Number of bytes
+	 * @throws IOException
+	 */
+	synchronized void append(final long pos, final byte[] b, int off, int len) throws IOException {
+		final long covered = covered();
+		if (complete || pos > covered || pos + len <= covered) {
+			return;
+		}
+		final int overlap = (int)(covered - pos);
+		off += overlap;
+		len -= overlap;
+		while (len > 0) {
+			final int n = Math.min(len, CHUNK_SIZE - pendingLength);
+			System.arraycopy(b, off, pending, pendingLength, n);
+			pendingLength += n;
+			off += n;
+			len -= n;
+			if (pendingLength == CHUNK_SIZE) {
+				writeChunk();
+			}
+		}
+		// readers usually stop after the last entry without waiting for the end of the stream
+		if (covered() == expectedLength) {
+			finish(expectedLength);
+		}
+	}
+
+	/**
+	 * Note that the end of the decompressed contents has been reached.
+	 * @param length Length of the decompressed contents
+	 */
+	synchronized void finish(final long length) {
+		if (!complete && length == covered()) {
+			complete = true;
+			saveTable();
+		}
+	}
+
+	private void writeChunk() throws IOException {
+		deflater.reset();
+		deflater.setInput(pending, 0, pendingLength);
+		deflater.finish();
+		final long start = dataLength;
+		while (!deflater.finished()) {
+			final int n = deflater.deflate(deflated);
+			final ByteBuffer buf = ByteBuffer.wrap(deflated, 0, n);
+			while (buf.hasRemaining()) {
+				dataLength += data.write(buf, dataLength);
+			}
+		}
+		if (chunks == chunkOffsets.length) {
+			chunkOffsets = Arrays.copyOf(chunkOffsets, chunks*2);
+			chunkLengths = Arrays.copyOf(chunkLengths, chunks*2);
+		}
+		chunkOffsets[chunks] = start;
+		chunkLengths[chunks] = (int)(dataLength - start);
+		chunks++;
+		pendingLength = 0;
+	}
+
+	private synchronized byte[] compressedChunk(final int index) throws IOException {
+		final ByteBuffer compressed = ByteBuffer.allocate(chunkLengths[index]);
+		while (compressed.hasRemaining()) {
+			if (data.read(compressed, chunkOffsets[index] + compressed.position()) == -1) {
+				throw new IOException(String.format("Checkpoint data of '%s' truncated", source));
+			}
+		}
+		return compressed.array();
+	}
+
+	private synchronized int chunkCount() {
+		return chunks;
+	}
+
+	private synchronized int copyPending(final byte[] into) {
+		System.arraycopy(pending, 0, into, 0, pendingLength);
+		return pendingLength;
+	}
+
+	/**
+	 * Return a stream reading the decompressed contents starting at some covered offset. The stream ends where the covered range ended when it was opened.
+	 * Chunks are only inflated as far as they are read.
+	 * @param pos The offset
+	 * @return The stream
+	 */
+	InputStream open(final long pos) {
+		final long end = covered();
+		return new InputStream() {
+			private long position = pos;
+			private int chunkIndex = -1;
+			private final byte[] buffer = new byte[CHUNK_SIZE];
+			/** Number of bytes of the current chunk available in the buffer */
+			private int available;
+			private Inflater inflater;
+			private void select(final int index) throws IOException {
+				endInflater();
+				chunkIndex = index;
+				if (index < chunkCount()) {
+					available = 0;
+					inflater = new Inflater(true);
+					inflater.setInput(compressedChunk(index));
+				} else {
+					// the partial chunk still being collected
+					available = copyPending(buffer);
+				}
+			}
+			private void inflateUpTo(final int upTo) throws IOException {
+				try {
+					while (available < upTo && inflater != null && !inflater.finished()) {
+						final int n = inflater.inflate(buffer, available, Math.min(CHUNK_SIZE - available, Math.max(upTo - available, 16*1024)));
+						if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+							break;
+						}
+						available += n;
+					}
+				} catch (final DataFormatException e) {
+					throw new IOException(e);
+				}
+			}
+			private void endInflater() {
+				if (inflater != null) {
+					inflater.end();
+					inflater = null;
+				}
+			}
+			@Override
+			public int read() throws IOException {
+				final byte[] b = new byte[1];
+				return read(b, 0, 1) == 1 ? b[0] & 0xFF : -1;
+			}
+			@Override
+			public int read(final byte[] b, final int off, final int len) throws IOException {
+				if (position >= end) {
+					return -1;
+				}
+				final int index = (int)(position / CHUNK_SIZE);
+				if (index != chunkIndex) {
+					select(index);
+				}
+				final int inChunk = (int)(position - (long)index*CHUNK_SIZE);
+				inflateUpTo(inChunk + (int)Math.min(Math.min(len, CHUNK_SIZE - inChunk), end - position));
+				final int n = (int)Math.min(Math.min(len, available - inChunk), end - position);
+				if (n <= 0) {
+					throw new IOException(String.format("Checkpoint %d of '%s' is corrupt", index, source));
+				}
+				System.arraycopy(buffer, inChunk, b, off, n);
+				position += n;
+				return n;
+			}
+			@Override
+			public long skip(final long n) {
+				final long skipped = Math.max(0, Math.min(n, end - position));
+				position += skipped;
+				return skipped;
+			}
+			@Override
+			public void close() {
+				endInflater();
+			}
+		};
+	}
+
+	/**
+	 * Release these checkpoints. Persisted ones are only closed once everyone who {@link #open(File)}ed them closed them.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (tableFile != null) {
+			synchronized (shared) {
+				if (references == 0 || --references > 0) {
+					return;
+				}
+				shared.remove(dataFile);
+			}
+		}
+		closeFiles();
+	}
+
+	private synchronized void closeFiles() throws IOException {
+		deflater.end();
+		if (lock != null) {
+			lock.release();
+			lock = null;
+		}
+		data.close();
+		if (tableFile == null || !complete) {
+			dataFile.delete();
+			if (tableFile != null) {
+				tableFile.delete();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,238 @@
+package net.arctics.clonk.c4group;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+import net.arctics.clonk.Core;
+import net.arctics.clonk.util.StreamUtil;
+
+/**
+ * Flat table of all entries of a compressed {@link C4Group} file and its sub groups, made up only of the headers found in the file.
+ * Scanning a group for its directory skips the contents of all files so nothing except the table is kept in memory.<br>
+ * Entries are stored depth-first with the entries of each group next to each other in header order.
+ * {@link C4Group}s loaded from a directory only create their child items when first asked for them and {@link C4GroupFile}s
+ * read their contents when they are opened.<br>
+ * Directories are persisted along with the group's {@link C4GroupCheckpoints} so opening an unchanged group does not require scanning it again.
+ */
+public final class C4GroupDirectory implements Serializable {
+
+	private static final long serialVersionUID = Core.SERIAL_VERSION_UID;
+
+	private static final byte PACKED = 1;
+	private static final byte GROUP = 2;
+	private static final byte HASCRC = 4;
+
+	/** Index used for the group the directory was scanned from */
+	static final int ROOT = -1;
+
+	private final long sourceLength;
+	private final long sourceModified;
+
+	private int count;
+	private String[] names = new String[64];
+	private byte[] flags = new byte[64];
+	private int[] sizes = new int[64];
+	private int[] entrySizes = new int[64];
+	private int[] offsets = new int[64];
+	private int[] times = new int[64];
+	private int[] crcs = new int[64];
+	/** For groups: Index of the first child entry, number of entries and the maker stored in the group header */
+	private int[] firstChildren = new int[64];
+	private int[] childCounts = new int[64];
+	private String[] makers = new String[64];
+	private int rootFirstChild, rootChildCount;
+	private String rootMaker;
+
+	private C4GroupDirectory(final File source) {
+		this.sourceLength = source.length();
+		this.sourceModified = source.lastModified();
+	}
+
+	/**
+	 * Return the directory of a group file, either loading the persisted one or scanning the file.
+	 * @param group The top-level group
+	 * @return The directory or null if scanning failed
+	 */
+	static C4GroupDirectory of(final C4Group group) {
+		final File source = group.origin();
+		final File persisted = C4GroupCheckpoints.persistedFile(source, ".ckg");
+		if (persisted != null) {
+			C4GroupCheckpoints.purge(source);
+		}
+		if (persisted != null && persisted.isFile()) {
+			try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(persisted)))) {
+				final C4GroupDirectory directory = (C4GroupDirectory) in.readObject();
+				if (directory.sourceLength == source.length() && directory.sourceModified == source.lastModified()) {
+					persisted.setLastModified(System.currentTimeMillis());
+					return directory;
+				}
+			} catch (final IOException | ClassNotFoundException | ClassCastException e) {
+				System.out.println(String.format("Ignoring directory of '%s': %s", source, e.getMessage()));
+			}
+		}
+		final C4GroupDirectory directory = new C4GroupDirectory(source);
+		final boolean[] scanned = new boolean[1];
+		try {
+			group.readFromStream(group, 0, stream -> {
+				try {
+					directory.scanGroup(stream, ROOT);
+					scanned[0] = true;
+				} catch (final IOException | C4GroupInvalidDataException e) {
+					e.printStackTrace();
+				}
+			});
+		} catch (final IOException e) {
+			e.printStackTrace();
+		}
+		if (!scanned[0]) {
+			return null;
+		}
+		directory.trim();
+		if (persisted != null) {
+			try {
+				StreamUtil.writeAtomically(persisted, (file, stream, writer) -> {
+					final ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(stream));
+					out.writeObject(directory);
+					out.flush();
+				});
+			} catch (final IOException e) {
+				e.printStackTrace();
+				persisted.delete();
+			}
+		}
+		return directory;
+	}
+
+	/**
+	 * Read a group header and its entry headers, descending into sub groups and skipping the contents of files.
+	 * @param stream Stream positioned at the group header
+	 * @param group Index of the group or {@link #ROOT}
+	 * @return Number of bytes the group takes up
+	 */
+	private long scanGroup(final InputStream stream, final int group) throws IOException, C4GroupInvalidDataException {
+		final C4GroupHeader header = C4GroupHeader.createFromStream(stream);
+		final int first = count;
+		final int entries = header.getEntries();
+		for (int i = 0; i < entries; i++) {
+			add(C4GroupEntryHeader.createFromStream(stream));
+		}
+		if (group == ROOT) {
+			rootFirstChild = first;
+			rootChildCount = entries;
+			rootMaker = header.getMaker();
+		} else {
+			firstChildren[group] = first;
+			childCounts[group] = entries;
+			makers[group] = header.getMaker();
+		}
+		// visit the contents in the order they are stored in, which is not necessarily the order of the headers
+		final Integer[] byOffset = new Integer[entries];
+		for (int i = 0; i < entries; i++) {
+			byOffset[i] = first + i;
+		}
+		Arrays.sort(byOffset, (a, b) -> Integer.compare(offsets[a], offsets[b]));
+		long pos = 0;
+		for (final int entry : byOffset) {
+			skipFully(stream, offsets[entry] - pos);
+			pos = offsets[entry];
+			if ((flags[entry] & GROUP) != 0) {
+				final long read = scanGroup(stream, entry);
+				skipFully(stream, sizes[entry] - read);
+				pos += Math.max(read, sizes[entry]);
+			} else {
+				skipFully(stream, sizes[entry]);
+				pos += sizes[entry];
+			}
+		}
+		return C4GroupHeader.STORED_SIZE + (long)C4GroupEntryHeader.STORED_SIZE*entries + pos;
+	}
+
+	private static void skipFully(final InputStream stream, long n) throws IOException {
+		final byte[] scratch = n > 0 ? new byte[(int)Math.min(n, 8192)] : null;
+		while (n > 0) {
+			final long skipped = stream.skip(n);
+			if (skipped > 0) {
+				n -= skipped;
+			} else if (stream.read(scratch, 0, (int)Math.min(n, scratch.length)) == -1) {
+				throw new EOFException();
+			} else {
+				n -= Math.min(n, scratch.length);
+			}
+		}
+	}
+
+	private void add(final C4GroupEntryHeader header) {
+		if (count == names.length) {
+			final int capacity = count*2;
+			names = Arrays.copyOf(names, capacity);
+			flags = Arrays.copyOf(flags, capacity);
+			sizes = Arrays.copyOf(sizes, capacity);
+			entrySizes = Arrays.copyOf(entrySizes, capacity);
+			offsets = Arrays.copyOf(offsets, capacity);
+			times = Arrays.copyOf(times, capacity);
+			crcs = Arrays.copyOf(crcs, capacity);
+			firstChildren = Arrays.copyOf(firstChildren, capacity);
+			childCounts = Arrays.copyOf(childCounts, capacity);
+			makers = Arrays.copyOf(makers, capacity);
+		}
+		names[count] = header.entryName();
+		flags[count] = (byte)((header.isPacked() ? PACKED : 0) | (header.isGroup() ? GROUP : 0) | (header.hasCRC() ? HASCRC : 0));
+		sizes[count] = header.size();
+		entrySizes[count] = header.entrySize();
+		offsets[count] = header.offset();
+		times[count] = header.time();
+		crcs[count] = header.crc();
+		count++;
+	}
+
+	private void trim() {
+		names = Arrays.copyOf(names, count);
+		flags = Arrays.copyOf(flags, count);
+		sizes = Arrays.copyOf(sizes, count);
+		entrySizes = Arrays.copyOf(entrySizes, count);
+		offsets = Arrays.copyOf(offsets, count);
+		times = Arrays.copyOf(times, count);
+		crcs = Arrays.copyOf(crcs, count);
+		firstChildren = Arrays.copyOf(firstChildren, count);
+		childCounts = Arrays.copyOf(childCounts, count);
+		makers = Arrays.copyOf(makers, count);
+	}
+
+	/**
+	 * Number of entries in all groups.
+	 * @return The number
+	 */
+	public int size() { return count; }
+
+	int firstChild(final int group) { return group == ROOT ? rootFirstChild : firstChildren[group]; }
+	int childCount(final int group) { return group == ROOT ? rootChildCount : childCounts[group]; }
+	boolean isGroup(final int entry) { return (flags[entry] & GROUP) != 0; }
+
+	C4GroupHeader groupHeader(final int group) {
+		return C4GroupHeader.createHeader(childCount(group), group == ROOT ? rootMaker : makers[group]);
+	}
+
+	C4GroupEntryHeader entryHeader(final int entry) {
+		return new C4GroupEntryHeader(
+			names[entry],
+			(flags[entry] & PACKED) != 0,
+			(flags[entry] & GROUP) != 0,
+			sizes[entry],
+			entrySizes[entry],
+			offsets[entry],
+			times[entry],
+			(flags[entry] & HASCRC) != 0,
+			crcs[entry]
+		);
+	}
+
+}
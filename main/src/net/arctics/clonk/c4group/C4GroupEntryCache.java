@@ -0,0 +1,139 @@
+package net.arctics.clonk.c4group;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache for the decompressed contents of {@link C4GroupFile}s, bounded by the number of bytes it holds.
+ * When the budget is exceeded the least recently used contents are dropped, except for those of pinned entries (for example entries open in editors),
+ * so browsing packed groups does not let the heap grow with every file looked at.
+ */
+public final class C4GroupEntryCache {
+
+	/** Budget used until one is set via {@link #setBudget(long)} */
+	public static final long DEFAULT_BUDGET = 64L*1024*1024;
+
+	private static final Map<C4GroupFile, byte[]> contents = new LinkedHashMap<C4GroupFile, byte[]>(64, 0.75f, true);
+	private static final Map<C4GroupFile, Integer> pins = new HashMap<C4GroupFile, Integer>();
+	private static long budget = DEFAULT_BUDGET;
+	private static long size;
+	private static long hits, misses, evictions;
+
+	private C4GroupEntryCache() {}
+
+	/**
+	 * Set the number of bytes the cache may hold, evicting contents right away if the new budget is smaller than what is held.
+	 * @param bytes The budget
+	 */
+	public static synchronized void setBudget(final long bytes) {
+		budget = Math.max(0, bytes);
+		evict();
+	}
+
+	/**
+	 * Return cached contents of an entry.
+	 * @param entry The entry
+	 * @return The contents or null if they are not cached
+	 */
+	static synchronized byte[] get(final C4GroupFile entry) {
+		final byte[] result = contents.get(entry);
+		if (result != null) {
+			hits++;
+		} else {
+			misses++;
+		}
+		return result;
+	}
+
+	/**
+	 * Store contents of an entry. Contents exceeding the whole budget are not stored unless the entry is pinned.
+	 * @param entry The entry
+	 * @param bytes The contents
+	 */
+	static synchronized void put(final C4GroupFile entry, final byte[] bytes) {
+		if (bytes.length > budget && !pins.containsKey(entry)) {
+			return;
+		}
+		final byte[] previous = contents.put(entry, bytes);
+		if (previous != null) {
+			size -= previous.length;
+		}
+		size += bytes.length;
+		evict();
+	}
+
+	/**
+	 * Drop the contents of an entry.
+	 * @param entry The entry
+	 */
+	static synchronized void remove(final C4GroupFile entry) {
+		final byte[] previous = contents.remove(entry);
+		if (previous != null) {
+			size -= previous.length;
+		}
+	}
+
+	/**
+	 * Drop the contents of all entries of a group and its sub groups, for example because the group was closed.
+	 * @param group The group
+	 */
+	static synchronized void removeAll(final C4Group group) {
+		for (final Iterator<Map.Entry<C4GroupFile, byte[]>> it = contents.entrySet().iterator(); it.hasNext();) {
+			final Map.Entry<C4GroupFile, byte[]> e = it.next();
+			for (C4Group g = e.getKey().parentGroup(); g != null; g = g.parentGroup()) {
+				if (g == group) {
+					size -= e.getValue().length;
+					it.remove();
+					break;
+				}
+			}
+		}
+	}
+
+	private static void evict() {
+		for (final Iterator<Map.Entry<C4GroupFile, byte[]>> it = contents.entrySet().iterator(); size > budget && it.hasNext();) {
+			final Map.Entry<C4GroupFile, byte[]> e = it.next();
+			if (!pins.containsKey(e.getKey())) {
+				size -= e.getValue().length;
+				it.remove();
+				evictions++;
+			}
+		}
+	}
+
+	/**
+	 * Keep the contents of an entry cached until it is unpinned as often as it was pinned. The contents are read if they are not cached yet.
+	 * @param entry The entry
+	 */
+	public static void pin(final C4GroupFile entry) {
+		synchronized (C4GroupEntryCache.class) {
+			pins.merge(entry, 1, Integer::sum);
+		}
+		entry.getContents();
+	}
+
+	/**
+	 * Undo one {@link #pin(C4GroupFile)}.
+	 * @param entry The entry
+	 */
+	public static synchronized void unpin(final C4GroupFile entry) {
+		if (pins.computeIfPresent(entry, (e, n) -> n > 1 ? n - 1 : null) == null) {
+			evict();
+		}
+	}
+
+	public static synchronized long budget() { return budget; }
+	/** Number of bytes currently held */
+	public static synchronized long size() { return size; }
+	public static synchronized long hits() { return hits; }
+	public static synchronized long misses() { return misses; }
+	public static synchronized long evictions() { return evictions; }
+
+	public static synchronized String statistics() {
+		return String.format("%d/%d bytes in %d entries (%d pinned), %d hits, %d misses, %d evictions", //$NON-NLS-1$
+			size, budget, contents.size(), pins.size(), hits, misses, evictions);
+	}
+
+}
@@ -86,7 +86,7 @@ public class C4GroupEntryHeader implements Serializable {
 				C4GroupHeader.byteToInt32(buffer, 272), // size that is always 0
 				C4GroupHeader.byteToInt32(buffer, 276),
 				C4GroupHeader.byteToInt32(buffer, 280),
-				C4GroupHeader.byteToBoolean(buffer, 284),
+				buffer[284] != 0, // 1 for CRCs of the contents only, 2 for CRCs including the file name
 				C4GroupHeader.byteToInt32(buffer, 285)
 			);
 		} catch (final IOException e) {
@@ -119,6 +119,7 @@ public class C4GroupEntryHeader implements Serializable {
 	public int offset() { return offset; }
 	public int time() { return time; }
 	public boolean hasCRC() { return hasCRC; }
+	public int crc() { return crc; }
 	public boolean isGroup() { return group; }
 
 	private static void arrayCopyTo(final byte[] source, final byte[] target, final int dstOffset) {
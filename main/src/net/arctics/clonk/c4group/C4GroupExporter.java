@@ -13,6 +13,7 @@ import java.util.Map.Entry;
 import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
@@ -21,7 +22,6 @@ import org.eclipse.jface.operation.IRunnableWithProgress;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.ui.PlatformUI;
-import org.eclipse.ui.console.MessageConsole;
 import org.eclipse.ui.console.MessageConsoleStream;
 
 import net.arctics.clonk.Core;
@@ -29,7 +29,6 @@ import net.arctics.clonk.builder.ClonkProjectNature;
 import net.arctics.clonk.index.Engine;
 import net.arctics.clonk.preferences.ClonkPreferences;
 import net.arctics.clonk.util.Console;
-import net.arctics.clonk.util.FileOperations;
 import net.arctics.clonk.util.Pair;
 
 public class C4GroupExporter implements IRunnableWithProgress {
@@ -83,7 +82,6 @@ public class C4GroupExporter implements IRunnableWithProgress {
 		final IPreferencesService service = Platform.getPreferencesService();
 		final boolean showExportLog = service.getBoolean(Core.PLUGIN_ID, ClonkPreferences.SHOW_EXPORT_LOG, false, null);
 		for (final Entry<Engine, List<Pair<IContainer, String>>> byEngine : packsDividedInEngines.entrySet()) {
-			final String c4groupPath = byEngine.getKey().settings().c4GroupPath;
 			for(final Pair<IContainer, String> toExport : byEngine.getValue()) {
 				if (monitor != null) {
 					monitor.subTask(toExport.first().getName());
@@ -98,48 +96,24 @@ public class C4GroupExporter implements IRunnableWithProgress {
 					@Override
 					protected IStatus run(final IProgressMonitor monitor) {
 						try {
-							// copy directory to destination and pack it in-place
-							FileOperations.copyDirectory(new File(toExport.first().getRawLocation().toOSString()), oldFile);
-							
-							// create c4group command line
-							final String[] cmdArray = new String[] { c4groupPath, packPath, "-p" }; //$NON-NLS-1$
-
-							MessageConsoleStream out = null;
+							// pack straight from the workspace folder
+							final File folder = new File(toExport.first().getRawLocation().toOSString());
+							monitor.beginTask(getName(), IProgressMonitor.UNKNOWN);
+							final long start = System.currentTimeMillis();
+							final long size = new C4GroupPacker(folder, oldFile).pack(monitor);
 							if (showExportLog) {
-								// get console
-								final MessageConsole myConsole = Console.clonkConsole();
-								out = myConsole.newMessageStream();
+								final MessageConsoleStream out = Console.clonkConsole().newMessageStream();
 								Console.display();
-								// show command line in console
-								final StringBuilder cmdLine = new StringBuilder();
-								cmdLine.append(Messages.ExporterCommandlineTitle);
-								for (final String cmdE : cmdArray) {
-									cmdLine.append(" " + cmdE); //$NON-NLS-1$
-								}
-								out.println(cmdLine.toString());
-							}
-
-							// run c4group
-							final Process c4group = Runtime.getRuntime().exec(cmdArray, null, oldFile.getParentFile());
-							if (showExportLog) {
-								// pipe output to console
-								final java.io.InputStream stream = c4group.getInputStream();
-								int read = 0;
-								final byte[] buffer = new byte[256];
-								c4group.waitFor();
-
-								while((read = stream.read(buffer, 0, 256)) > 0) {
-									out.write(buffer, 0, read);
-								}
+								out.println(String.format(Messages.ExporterPacked, packPath, size, oldFile.length(), System.currentTimeMillis() - start));
 							}
-							c4group.waitFor();
 							return Status.OK_STATUS;
-						} catch (final IOException e) {
-							e.printStackTrace();
+						} catch (final OperationCanceledException e) {
 							return Status.CANCEL_STATUS;
-						} catch (final InterruptedException e) {
+						} catch (final IOException e) {
 							e.printStackTrace();
 							return Status.CANCEL_STATUS;
+						} finally {
+							monitor.done();
 						}
 					}
 				}.schedule();
@@ -2,14 +2,16 @@ package net.arctics.clonk.c4group;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
-import java.util.Map;
-import java.util.WeakHashMap;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
 
+import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileInfo;
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.filesystem.provider.FileInfo;
@@ -22,6 +24,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 
 import net.arctics.clonk.Core;
+import net.arctics.clonk.util.StreamUtil;
 
 /**
  * Represents one file in a {@link C4Group} file.
@@ -30,38 +33,8 @@ import net.arctics.clonk.Core;
  */
 public class C4GroupFile extends C4GroupItem implements Serializable {
 
-	private static class EntryCache {
-		private static class CachedEntry {
-			public File file;
-			public long creationTime;
-			public CachedEntry(final File file, final long creationTime) {
-				super();
-				this.file = file;
-				this.creationTime = creationTime;
-			}
-			public boolean modified() {
-				return file.lastModified() != creationTime;
-			}
-		}
-		private final Map<C4GroupFile, CachedEntry> files = new WeakHashMap<C4GroupFile, CachedEntry>();
-		public File getCachedFile(final C4GroupFile groupEntry) throws IOException, CoreException {
-			synchronized (files) {
-				CachedEntry e = files.get(groupEntry);
-				if (e == null || e.modified()) {
-					final File f = File.createTempFile("c4dt", "c4groupcache"); //$NON-NLS-1$ //$NON-NLS-2$
-					try (final FileOutputStream fileStream = new FileOutputStream(f)) {
-						final byte[] contents = groupEntry.getContents();
-						fileStream.write(contents);
-					}
-					f.deleteOnExit();
-					e = new CachedEntry(f, f.lastModified());
-					files.put(groupEntry, e);
-				}
-				return e.file;
-			}
-		}
-	}
-	private static final EntryCache CACHE = new EntryCache();
+	/** Entries smaller than this are read into the heap instead of being mapped */
+	private static final int MAP_THRESHOLD = 16*1024;
 	private static final long serialVersionUID = Core.SERIAL_VERSION_UID;
 	private static final String[] NO_CHILDNAMES = new String[0];
 	public static final int STORED_SIZE = 316;
@@ -90,35 +63,81 @@ public class C4GroupFile extends C4GroupItem implements Serializable {
 	}
 
 	private void fetchContents(final InputStream stream) {
-		contents = new byte[getSize()];
+		contents = readContents(stream);
+	}
+
+	private byte[] readContents(final InputStream stream) {
+		final byte[] result = new byte[getSize()];
 		try {
 			for (
 				int readCount = 0;
-				readCount != contents.length;
-				readCount += stream.read(contents, readCount, contents.length - readCount)
+				readCount != result.length;
+				readCount += stream.read(result, readCount, result.length - readCount)
 			) {
 				;
 			}
 		} catch (final IOException e) {
 			e.printStackTrace();
 		}
+		return result;
 	}
 
+	/**
+	 * Return the contents of this file. Unless they were read into memory along with the group they are taken from the {@link C4GroupEntryCache}
+	 * or read from the group and put there.
+	 * @return The contents or null if they could not be read
+	 */
 	public byte[] getContents() {
-		if (contents == null) {
-			try {
-				parentGroup().readFromStream(this, parentGroup().baseOffset() + header.offset(), this::fetchContents);
-				try {
-					return contents;
-				} finally {
-					contents = null; // don't store
-				}
-			} catch (final IOException e) {
-				e.printStackTrace();
+		final byte[] inMemory = contents;
+		if (inMemory != null) {
+			return inMemory;
+		}
+		final byte[] cached = C4GroupEntryCache.get(this);
+		if (cached != null) {
+			return cached;
+		}
+		try {
+			final byte[][] read = new byte[1][];
+			parentGroup().readFromStream(this, parentGroup().baseOffset() + header.offset(), stream -> read[0] = readContents(stream));
+			if (read[0] != null) {
+				C4GroupEntryCache.put(this, read[0]);
+			}
+			return read[0];
+		} catch (final IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Return a read-only view of the contents of this file without copying them onto the heap.
+	 * Unless the contents are held in memory anyway, larger entries are mapped from the group file itself for uncompressed groups
+	 * and from the file the entry has been decompressed to for compressed ones.
+	 * @return The view or null if the contents could not be read
+	 */
+	public ByteBuffer contentsBuffer() {
+		final byte[] inMemory = contents;
+		if (inMemory != null || getSize() < MAP_THRESHOLD) {
+			final byte[] c = inMemory != null ? inMemory : getContents();
+			return c != null ? ByteBuffer.wrap(c).asReadOnlyBuffer() : null;
+		}
+		try {
+			final File file = localFile();
+			if (file == null) {
 				return null;
 			}
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				// the mapping stays valid after the channel has been closed
+				return channel.map(MapMode.READ_ONLY, 0, Math.min(channel.size(), getSize()));
+			}
+		} catch (final IOException e) {
+			e.printStackTrace();
+			return null;
 		}
-		return contents;
+	}
+
+	private File localFile() throws IOException {
+		return parentGroup().localFile(this, parentGroup().baseOffset() + header.offset(), getSize());
 	}
 
 	@Override
@@ -149,7 +168,10 @@ public class C4GroupFile extends C4GroupItem implements Serializable {
 	 * Release the contents of this item to preserve memory
 	 */
 	@Override
-	public void releaseData() { contents = null; }
+	public void releaseData() {
+		contents = null;
+		C4GroupEntryCache.remove(this);
+	}
 	@Override
 	public void extractToFileSystem(final IContainer parent) throws CoreException {
 		extractToFileSystem(parent, null);
@@ -177,7 +199,7 @@ public class C4GroupFile extends C4GroupItem implements Serializable {
 		}
 		if (me != null) {
 			try {
-				me.create(new ByteArrayInputStream(getContents()), IResource.NONE, monitor);
+				me.create(openInputStream(EFS.NONE, monitor), IResource.NONE, monitor);
 			} catch (final CoreException e) {
 				e.printStackTrace();
 			}
@@ -218,13 +240,14 @@ public class C4GroupFile extends C4GroupItem implements Serializable {
 
 	@Override
 	public InputStream openInputStream(final int options, final IProgressMonitor monitor) throws CoreException {
-		return new ByteArrayInputStream(getContents());
+		final ByteBuffer buffer = contentsBuffer();
+		return buffer != null ? StreamUtil.inputStreamFromBuffer(buffer) : new ByteArrayInputStream(new byte[0]);
 	}
 
 	@Override
 	public File toLocalFile(final int options, final IProgressMonitor monitor) throws CoreException {
 		try {
-			return CACHE.getCachedFile(this);
+			return localFile();
 		} catch (final IOException e) {
 			e.printStackTrace();
 			return null;
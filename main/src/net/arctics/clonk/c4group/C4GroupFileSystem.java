@@ -30,6 +30,7 @@ public class C4GroupFileSystem extends FileSystem {
 
 	/**
 	 * Extensions for files to always load into memory so that subsequent seeking in the group file is not necessary.
+	 * Only used for groups that could not be loaded from their {@link C4GroupDirectory}.
 	 */
 	private static final List<String> EXTENSIONS_TO_ALWAYS_LOAD = Arrays.asList(
 		".c", //$NON-NLS-1$
@@ -38,6 +39,7 @@ public class C4GroupFileSystem extends FileSystem {
 
 	/**
 	 * Names of files to always load into memory so that subsequent seeking in the group file is not necessary.
+	 * Only used for groups that could not be loaded from their {@link C4GroupDirectory}.
 	 */
 	private static final List<String> FILES_TO_ALWAYS_LOAD = Arrays.asList(
 		"DefCore.txt", //$NON-NLS-1$
@@ -124,6 +126,10 @@ public class C4GroupFileSystem extends FileSystem {
 		try {
 			final C4Group group = C4Group.openFile(physical);
 			try {
+				if (group.readDirectory()) {
+					rootGroups.put(physical, new WeakReference<C4Group>(group));
+					return group;
+				}
 				group.readIntoMemory(true, new C4GroupHeaderFilterBase() {
 					@Override
 					public boolean accepts(final C4GroupEntryHeader header, final C4Group context) {
@@ -1,22 +1,25 @@
 package net.arctics.clonk.c4group;
 
 import static java.util.Arrays.stream;
-import static net.arctics.clonk.util.Utilities.attempt;
+import static net.arctics.clonk.util.StringUtil.blockString;
 import static net.arctics.clonk.util.Utilities.printingException;
 import static net.arctics.clonk.util.Utilities.runWithoutAutoBuild;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
-import java.util.LinkedList;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import org.eclipse.core.resources.IContainer;
-import org.eclipse.core.resources.IFile;
-import org.eclipse.core.resources.IFolder;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -25,6 +28,8 @@ import org.eclipse.ui.actions.WorkspaceModifyOperation;
 
 import net.arctics.clonk.Core;
 import net.arctics.clonk.ui.wizards.Messages;
+import net.arctics.clonk.util.Console;
+import net.arctics.clonk.util.TaskExecution;
 import net.arctics.clonk.util.Utilities;
 
 /**
@@ -67,88 +72,155 @@ public class C4GroupImporter extends WorkspaceModifyOperation {
 		}
 	}
 
+	/**
+	 * Filter extracting a group while it is being read. The reading thread creates folders and hands the contents of files
+	 * to a pool of writers which write them to the file system. The number of bytes waiting to be written is bounded so reading does not race ahead of writing.
+	 * Folders and files that could not be created are collected in {@link #failures} and reported once the group has been read.
+	 */
+	private static final class Extraction implements C4GroupHeaderFilterBase {
+		private static final int MAX_BYTES_IN_FLIGHT = 64*1024*1024;
+		/** Number of {@link #failures} listed in the error message */
+		private static final int MAX_REPORTED_FAILURES = 10;
+		private final ExecutorService writers;
+		private final IProgressMonitor monitor;
+		private final Semaphore inFlight = new Semaphore(MAX_BYTES_IN_FLIGHT);
+		private final AtomicLong bytes = new AtomicLong();
+		private final AtomicInteger entries = new AtomicInteger();
+		private final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+		private File currentFolder;
+		private C4Group currentGroup;
+		public Extraction(final ExecutorService writers, final File folder, final IProgressMonitor monitor) {
+			this.writers = writers;
+			this.currentFolder = folder;
+			this.monitor = monitor;
+		}
+		@Override
+		public boolean accepts(final C4GroupEntryHeader header, final C4Group context) {
+			return true; // import whole group
+		}
+		@Override
+		public int flagsForEntry(final C4GroupFile entry) {
+			return READINTOMEMORY;
+		}
+		@Override
+		public void processGroupItem(final C4GroupItem item) {
+			if (monitor.isCanceled()) {
+				return;
+			}
+			for (; currentGroup != item.parentGroup(); currentGroup = currentGroup.parentGroup(), currentFolder = currentFolder.getParentFile()) {
+				;
+			}
+			if (item instanceof C4Group) {
+				final File newFolder = new File(currentFolder, item.getName());
+				if (!newFolder.isDirectory() && !newFolder.mkdirs()) {
+					failures.add(newFolder.toString());
+				}
+				currentFolder = newFolder;
+				currentGroup = (C4Group)item;
+				entries.incrementAndGet();
+			} else {
+				final C4GroupFile entry = (C4GroupFile)item;
+				final byte[] contents = entry.getContents();
+				entry.releaseData();
+				if (contents == null) {
+					return;
+				}
+				final File newFile = new File(currentFolder, entry.getName());
+				final int permits = Math.max(1, Math.min(contents.length, MAX_BYTES_IN_FLIGHT));
+				inFlight.acquireUninterruptibly(permits);
+				writers.execute(() -> {
+					try {
+						Files.write(newFile.toPath(), contents);
+						bytes.addAndGet(contents.length);
+						entries.incrementAndGet();
+					} catch (final IOException e) {
+						failures.add(String.format("%s (%s)", newFile, e.getLocalizedMessage()));
+					} finally {
+						inFlight.release(permits);
+					}
+				});
+			}
+		}
+		/**
+		 * Wait for all files handed to the writers to be written.
+		 */
+		public void finish() {
+			inFlight.acquireUninterruptibly(MAX_BYTES_IN_FLIGHT);
+			inFlight.release(MAX_BYTES_IN_FLIGHT);
+		}
+		/**
+		 * Show the folders and files that could not be created, if any. Call after {@link #finish()}.
+		 * @param group The group that was extracted
+		 */
+		public void reportFailures(final C4Group group) {
+			final List<String> failed;
+			synchronized (failures) {
+				failed = new ArrayList<String>(failures);
+			}
+			if (failed.isEmpty()) {
+				return;
+			}
+			final List<String> listed = new ArrayList<String>(failed.subList(0, Math.min(failed.size(), MAX_REPORTED_FAILURES)));
+			if (failed.size() > listed.size()) {
+				listed.add("...");
+			}
+			Utilities.errorMessage(
+				String.format(Messages.C4GroupImporter_NotWritten, failed.size(), group.getName(), blockString("", "", "\n", listed)),
+				String.format(Messages.C4GroupImporter_ErrorImporting, group.getName())
+			);
+		}
+	}
+
 	@Override
 	protected void execute(final IProgressMonitor monitor) throws CoreException, InvocationTargetException, InterruptedException {
 		monitor.beginTask(Messages.C4GroupImporter_ImportingFiles, groupFiles.length);
-		runWithoutAutoBuild(()-> {
-			final List<C4Group> groups = stream(groupFiles).map(groupFile -> {
-				if (monitor.isCanceled()) {
-					return null;
-				}
-				try {
-					final C4Group group = C4Group.openFile(groupFile);
-					monitor.subTask(String.format(Messages.C4GroupImporter_Importing, group.getName()));
-					new LinkedList<String>();
-					group.readIntoMemory(true, new C4GroupHeaderFilterBase() {
-						private IContainer currentContainer = destination;
-						private C4Group currentGroup;
-						@Override
-						public boolean accepts(final C4GroupEntryHeader header, final C4Group context) {
-							return true; // import whole group
-						}
-						@Override
-						public int flagsForEntry(C4GroupFile entry) {
-							return READINTOMEMORY;
-						}
-						@Override
-						public void processGroupItem(final C4GroupItem item) {
-							for (; currentGroup != item.parentGroup(); currentGroup = currentGroup.parentGroup(), currentContainer = currentContainer.getParent()) {
-								;
-							}
-							if (item instanceof C4Group) {
-								final C4Group group = (C4Group)item;
-								final IFolder newFolder = currentContainer.getFolder(new Path(group.getName()));
-								if (!newFolder.exists()) {
-									try {
-										newFolder.create(IResource.NONE, true, null);
-									} catch (final CoreException e) {
-										e.printStackTrace();
-									}
-								}
-								currentContainer = newFolder;
-								currentGroup = group;
-							}
-							else {
-								final C4GroupFile entry = (C4GroupFile)item;
-								final IFile newFile = currentContainer.getFile(new Path(entry.getName()));
-								final InputStream newContents = attempt(() -> new ByteArrayInputStream(entry.getContents()), CoreException.class, e -> {});
-								if (newContents == null) {
-									return;
-								}
-								try {
-									try {
-										if (newFile.exists()) {
-											newFile.setContents(newContents, 0, null);
-										} else {
-											newFile.create(newContents, IResource.NONE, null);
-										}
-									} catch (final CoreException e) {
-										e.printStackTrace();
-									}
-								} finally {
-									try {
-										newContents.close();
-									} catch (final IOException e) {
-										e.printStackTrace();
-									}
-									entry.releaseData(); // release data to prevent heap overflow :S
-								}
-							}
+		final ExecutorService writers = Executors.newFixedThreadPool(TaskExecution.threadPoolSize());
+		final File destinationFolder = new File(destination.getLocation().toOSString());
+		try {
+			runWithoutAutoBuild(()-> {
+				final List<C4Group> groups = stream(groupFiles).map(groupFile -> {
+					if (monitor.isCanceled()) {
+						return null;
+					}
+					try {
+						final C4Group group = C4Group.openFile(groupFile);
+						monitor.subTask(String.format(Messages.C4GroupImporter_Importing, group.getName()));
+						final long start = System.currentTimeMillis();
+						final Extraction extraction = new Extraction(writers, destinationFolder, monitor);
+						try {
+							group.readIntoMemory(true, extraction);
+						} finally {
+							extraction.finish();
 						}
-					});
-					return group;
-				} catch (final Exception e) {
-					Utilities.errorMessage(e, String.format(Messages.C4GroupImporter_ErrorImporting, groupFile.toString()));
-					//monitor.setCanceled(true);
-					e.printStackTrace();
-					return null;
-				} finally {
-					monitor.worked(1);
-				}
-			}).filter(g -> g != null).collect(Collectors.toList());
-			groups.stream().forEach(printingException(C4Group::close, IOException.class));
-			monitor.done();
-		});
+						// let the workspace pick up everything written in one go instead of creating resources one by one
+						destination.getFolder(new Path(group.getName())).refreshLocal(IResource.DEPTH_INFINITE, null);
+						report(group, extraction, System.currentTimeMillis() - start);
+						extraction.reportFailures(group);
+						return group;
+					} catch (final Exception e) {
+						Utilities.errorMessage(e, String.format(Messages.C4GroupImporter_ErrorImporting, groupFile.toString()));
+						//monitor.setCanceled(true);
+						e.printStackTrace();
+						return null;
+					} finally {
+						monitor.worked(1);
+					}
+				}).filter(g -> g != null).collect(Collectors.toList());
+				groups.stream().forEach(printingException(C4Group::close, IOException.class));
+				monitor.done();
+			});
+		} finally {
+			writers.shutdown();
+		}
+	}
+
+	private static void report(final C4Group group, final Extraction extraction, final long millis) {
+		final double megabytes = extraction.bytes.get() / (1024.0*1024.0);
+		final double seconds = Math.max(millis, 1) / 1000.0;
+		final String message = String.format(Messages.C4GroupImporter_Imported,
+			group.getName(), extraction.entries.get(), megabytes, millis,
+			megabytes / seconds, extraction.entries.get() / seconds);
+		Console.clonkConsole().newMessageStream().println(message);
 	}
 
 }
@@ -0,0 +1,397 @@
+package net.arctics.clonk.c4group;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import net.arctics.clonk.util.TaskExecution;
+
+/**
+ * Packs a folder into a compressed C4Group file without going through the c4group tool.<br>
+ * The uncompressed group is produced in a single pass over the folder: Each sub folder becomes an uncompressed child group,
+ * and entry CRCs are computed while file contents are read. Contents are cut into blocks which are deflated in parallel, each block
+ * independently and ending in a sync flush so the compressed blocks can be concatenated into one valid gzip stream.
+ * The CRC of the whole stream is combined from the CRCs of the blocks.<br>
+ * The entry table of a group precedes its contents but contains their CRCs, so space for it is reserved in the output and it is
+ * filled in once the group is complete. Entry tables are stored uncompressed since their compressed size would not be known in advance.
+ */
+public class C4GroupPacker {
+
+	private static final int BLOCK_SIZE = 256*1024;
+	private static final int MAX_STORED_BLOCK = 0xFFFF;
+	private static final String MAKER = "C4DT"; //$NON-NLS-1$
+
+	/** Part of the uncompressed stream: either a block of compressed contents or an entry table stored uncompressed */
+	private static abstract class Segment {
+		int crc;
+		int length;
+		long outputPosition = -1;
+	}
+
+	private static final class Compressed {
+		final byte[] data;
+		final int crc;
+		Compressed(final byte[] data, final int crc) {
+			this.data = data;
+			this.crc = crc;
+		}
+	}
+
+	private final class DataSegment extends Segment {
+		Future<Compressed> compressed;
+		DataSegment(final byte[] input, final int length) {
+			this.length = length;
+			this.compressed = pool.submit(() -> compress(input, length));
+		}
+		Compressed get() throws IOException {
+			try {
+				return compressed.get();
+			} catch (final InterruptedException | ExecutionException e) {
+				throw new IOException(e);
+			}
+		}
+	}
+
+	private static final class TableSegment extends Segment {
+		/** Stored table waiting for its position to be known */
+		ByteBuffer stored;
+		TableSegment(final int length) { this.length = length; }
+	}
+
+	private static final class Packed {
+		final int size;
+		final int crc;
+		Packed(final int size, final int crc) {
+			this.size = size;
+			this.crc = crc;
+		}
+	}
+
+	private final File folder;
+	private final File destination;
+	private final int level;
+	private ExecutorService pool;
+	private FileChannel output;
+	private long outputPosition;
+	private final List<Segment> segments = new ArrayList<Segment>();
+	/** Segments not placed in the output yet, in stream order */
+	private final Deque<Segment> unplaced = new ArrayDeque<Segment>();
+	private int maxUnplaced;
+	private byte[] block;
+	private int blockLength;
+	private IProgressMonitor monitor;
+
+	/**
+	 * Create a packer.
+	 * @param folder The folder to pack
+	 * @param destination The group file to create. Overwritten if it exists.
+	 * @param level Deflate compression level
+	 */
+	public C4GroupPacker(final File folder, final File destination, final int level) {
+		this.folder = folder;
+		this.destination = destination;
+		this.level = level;
+	}
+
+	public C4GroupPacker(final File folder, final File destination) {
+		this(folder, destination, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Pack the folder.
+	 * @param monitor Monitor for reporting progress per file and checking for cancellation. May be null.
+	 * @return Size of the uncompressed group
+	 * @throws IOException
+	 */
+	public long pack(final IProgressMonitor monitor) throws IOException {
+		this.monitor = monitor;
+		final int threads = Math.max(1, TaskExecution.threadPoolSize());
+		pool = Executors.newFixedThreadPool(threads);
+		maxUnplaced = threads*4;
+		block = new byte[BLOCK_SIZE];
+		blockLength = 0;
+		try (final RandomAccessFile file = new RandomAccessFile(destination, "rw")) { //$NON-NLS-1$
+			file.setLength(0);
+			output = file.getChannel();
+			write(gzipHeader());
+			final Packed group = packGroup(folder);
+			flushBlock();
+			while (!unplaced.isEmpty()) {
+				placeOldest();
+			}
+			// final empty block with fixed codes followed by the gzip trailer
+			write(new byte[] { 0x03, 0x00 });
+			final ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+			trailer.putInt(streamCRC());
+			trailer.putInt(group.size);
+			trailer.flip();
+			write(trailer.array());
+			return group.size & 0xFFFFFFFFL;
+		} catch (final IOException | RuntimeException e) {
+			destination.delete();
+			throw e;
+		} finally {
+			pool.shutdownNow();
+			output = null;
+			block = null;
+			segments.clear();
+			unplaced.clear();
+		}
+	}
+
+	private static byte[] gzipHeader() {
+		final int mtime = (int)(System.currentTimeMillis()/1000);
+		return new byte[] {
+			0x1E, (byte)0x8C, // defaced 0x1F 0x8B
+			0x08, 0x00,
+			(byte)mtime, (byte)(mtime >>> 8), (byte)(mtime >>> 16), (byte)(mtime >>> 24),
+			0x00, (byte)0xFF
+		};
+	}
+
+	private File[] children(final File dir) {
+		final File[] children = dir.listFiles();
+		if (children == null) {
+			return new File[0];
+		}
+		Arrays.sort(children, (a, b) -> a.getName().compareToIgnoreCase(b.getName()));
+		return children;
+	}
+
+	private Packed packGroup(final File dir) throws IOException {
+		final File[] children = children(dir);
+		flushBlock();
+		final TableSegment table = new TableSegment(C4GroupHeader.STORED_SIZE + C4GroupEntryHeader.STORED_SIZE*children.length);
+		add(table);
+		final C4GroupEntryHeader[] entries = new C4GroupEntryHeader[children.length];
+		int offset = 0;
+		int groupCRC = 0;
+		for (int i = 0; i < children.length; i++) {
+			if (monitor != null && monitor.isCanceled()) {
+				throw new OperationCanceledException();
+			}
+			final File child = children[i];
+			final Packed packed = child.isDirectory() ? packGroup(child) : packFile(child);
+			entries[i] = new C4GroupEntryHeader(
+				child.getName(), false, child.isDirectory(), packed.size, 0, offset,
+				(int)(child.lastModified()/1000), true, packed.crc
+			);
+			offset += packed.size;
+			groupCRC ^= packed.crc;
+		}
+		flushBlock();
+		final ByteArrayOutputStream tableBytes = new ByteArrayOutputStream(table.length);
+		C4GroupHeader.createHeader(children.length, MAKER).writeTo(tableBytes);
+		for (final C4GroupEntryHeader e : entries) {
+			e.writeTo(tableBytes);
+		}
+		writeTable(table, tableBytes.toByteArray());
+		return new Packed(table.length + offset, groupCRC);
+	}
+
+	private Packed packFile(final File file) throws IOException {
+		if (monitor != null) {
+			monitor.subTask(file.getName());
+		}
+		final CRC32 crc = new CRC32();
+		long size = 0;
+		try (final InputStream in = new FileInputStream(file)) {
+			for (int read; (read = in.read(block, blockLength, BLOCK_SIZE - blockLength)) != -1;) {
+				crc.update(block, blockLength, read);
+				blockLength += read;
+				size += read;
+				if (blockLength == BLOCK_SIZE) {
+					flushBlock();
+				}
+			}
+		}
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException(String.format("'%s' is too large for a group", file));
+		}
+		if (monitor != null) {
+			monitor.worked(1);
+		}
+		if (size == 0) {
+			return new Packed(0, 0);
+		}
+		// the CRC of file entries includes the file name
+		crc.update(C4GroupHeader.stringToByte(file.getName()));
+		return new Packed((int)size, (int)crc.getValue());
+	}
+
+	private void flushBlock() throws IOException {
+		if (blockLength == 0) {
+			return;
+		}
+		add(new DataSegment(block, blockLength));
+		block = new byte[BLOCK_SIZE];
+		blockLength = 0;
+	}
+
+	private void add(final Segment segment) throws IOException {
+		segments.add(segment);
+		unplaced.add(segment);
+		while (unplaced.size() > maxUnplaced) {
+			placeOldest();
+		}
+	}
+
+	/**
+	 * Assign the oldest unplaced segment its position in the output, which requires the compressed size of a data segment to be known.
+	 * Data segments are written right away, tables as soon as they are filled.
+	 */
+	private void placeOldest() throws IOException {
+		final Segment segment = unplaced.remove();
+		segment.outputPosition = outputPosition;
+		if (segment instanceof DataSegment) {
+			final Compressed c = ((DataSegment)segment).get();
+			segment.crc = c.crc;
+			outputPosition += c.data.length;
+			write(ByteBuffer.wrap(c.data), segment.outputPosition);
+			// only the CRC and length are needed from here on
+			((DataSegment)segment).compressed = null;
+		} else {
+			final TableSegment table = (TableSegment)segment;
+			outputPosition += storedSize(table.length);
+			if (table.stored != null) {
+				write(table.stored, table.outputPosition);
+				table.stored = null;
+			}
+		}
+	}
+
+	private Compressed compress(final byte[] input, final int length) {
+		final CRC32 crc = new CRC32();
+		crc.update(input, 0, length);
+		final Deflater deflater = new Deflater(level, true);
+		try {
+			deflater.setInput(input, 0, length);
+			final ByteArrayOutputStream out = new ByteArrayOutputStream(length/2 + 64);
+			final byte[] buf = new byte[64*1024];
+			int n;
+			do {
+				n = deflater.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+				out.write(buf, 0, n);
+			} while (n == buf.length || !deflater.needsInput());
+			return new Compressed(out.toByteArray(), (int)crc.getValue());
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static int storedSize(final int length) {
+		return length + 5*((length + MAX_STORED_BLOCK - 1)/MAX_STORED_BLOCK);
+	}
+
+	private void writeTable(final TableSegment table, final byte[] bytes) throws IOException {
+		final CRC32 crc = new CRC32();
+		crc.update(bytes);
+		table.crc = (int)crc.getValue();
+		final ByteBuffer stored = ByteBuffer.allocate(storedSize(bytes.length));
+		for (int off = 0; off < bytes.length; off += MAX_STORED_BLOCK) {
+			final int len = Math.min(MAX_STORED_BLOCK, bytes.length - off);
+			// non-final stored block header; starts byte aligned since the previous block ended with a sync flush
+			stored.put((byte)0x00);
+			stored.put((byte)len).put((byte)(len >>> 8));
+			stored.put((byte)~len).put((byte)(~len >>> 8));
+			stored.put(bytes, off, len);
+		}
+		stored.flip();
+		if (table.outputPosition != -1) {
+			write(stored, table.outputPosition);
+		} else {
+			table.stored = stored;
+		}
+	}
+
+	private void write(final byte[] bytes) throws IOException {
+		write(ByteBuffer.wrap(bytes), outputPosition);
+		outputPosition += bytes.length;
+	}
+
+	private void write(final ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += output.write(buffer, position);
+		}
+	}
+
+	private int streamCRC() {
+		long crc = 0;
+		for (final Segment s : segments) {
+			crc = crc32Combine(crc, s.crc & 0xFFFFFFFFL, s.length);
+		}
+		return (int)crc;
+	}
+
+	private static long gf2MatrixTimes(final long[] mat, long vec) {
+		long sum = 0;
+		for (int i = 0; vec != 0; i++, vec >>>= 1) {
+			if ((vec & 1) != 0) {
+				sum ^= mat[i];
+			}
+		}
+		return sum;
+	}
+
+	private static void gf2MatrixSquare(final long[] square, final long[] mat) {
+		for (int n = 0; n < 32; n++) {
+			square[n] = gf2MatrixTimes(mat, mat[n]);
+		}
+	}
+
+	/**
+	 * CRC-32 of the concatenation of two sequences given their CRCs and the length of the second one (zlib's crc32_combine).
+	 */
+	static long crc32Combine(long crc1, final long crc2, long len2) {
+		if (len2 <= 0) {
+			return crc1;
+		}
+		final long[] even = new long[32];
+		final long[] odd = new long[32];
+		odd[0] = 0xEDB88320L;
+		long row = 1;
+		for (int n = 1; n < 32; n++) {
+			odd[n] = row;
+			row <<= 1;
+		}
+		gf2MatrixSquare(even, odd);
+		gf2MatrixSquare(odd, even);
+		do {
+			gf2MatrixSquare(even, odd);
+			if ((len2 & 1) != 0) {
+				crc1 = gf2MatrixTimes(even, crc1);
+			}
+			len2 >>= 1;
+			if (len2 == 0) {
+				break;
+			}
+			gf2MatrixSquare(odd, even);
+			if ((len2 & 1) != 0) {
+				crc1 = gf2MatrixTimes(odd, crc1);
+			}
+			len2 >>= 1;
+		} while (len2 != 0);
+		return crc1 ^ crc2;
+	}
+
+}
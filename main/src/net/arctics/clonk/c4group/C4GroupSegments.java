@@ -0,0 +1,103 @@
+package net.arctics.clonk.c4group;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decompressed entries of a compressed {@link C4Group}, each one kept in its own file in a temporary folder.
+ * An entry is decompressed once and from then on handed out as local file or mapped into memory from there.
+ */
+final class C4GroupSegments implements Closeable {
+
+	private final File folder;
+	/** Files by offset of the entry in the decompressed group, along with the modification time they were written at */
+	private final Map<Long, File> files = new HashMap<Long, File>();
+	private final Map<Long, Long> stamps = new HashMap<Long, Long>();
+
+	private C4GroupSegments(final File folder) {
+		this.folder = folder;
+	}
+
+	static C4GroupSegments create() throws IOException {
+		final File folder = Files.createTempDirectory("c4group").toFile(); //$NON-NLS-1$
+		folder.deleteOnExit();
+		return new C4GroupSegments(folder);
+	}
+
+	/**
+	 * Return the file for the entry at some offset if it has been decompressed before and was not modified since.
+	 * @param pos Offset of the entry
+	 * @return The file or null
+	 */
+	synchronized File get(final long pos) {
+		final File file = files.get(pos);
+		return file != null && file.isFile() && file.lastModified() == stamps.get(pos) ? file : null;
+	}
+
+	/**
+	 * Write an entry to its file.
+	 * @param pos Offset of the entry
+	 * @param name Name of the entry. The file is named like the entry so programs opening it recognize the type.
+	 * @param stream Stream positioned at the start of the entry
+	 * @param size Size of the entry
+	 * @return The file or null if writing it failed
+	 */
+	synchronized File put(final long pos, final String name, final InputStream stream, final int size) {
+		final File dir = new File(folder, Long.toHexString(pos));
+		final File file = new File(dir, name);
+		try {
+			if (!dir.isDirectory() && !dir.mkdir()) {
+				throw new IOException(String.format("Could not create '%s'", dir)); //$NON-NLS-1$
+			}
+			dir.deleteOnExit();
+			file.deleteOnExit();
+			Files.copy(new InputStream() {
+				private int remaining = size;
+				@Override
+				public int read() throws IOException {
+					if (remaining <= 0) {
+						return -1;
+					}
+					remaining--;
+					return stream.read();
+				}
+				@Override
+				public int read(final byte[] b, final int off, final int len) throws IOException {
+					if (remaining <= 0) {
+						return -1;
+					}
+					final int read = stream.read(b, off, Math.min(len, remaining));
+					if (read > 0) {
+						remaining -= read;
+					}
+					return read;
+				}
+			}, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			files.put(pos, file);
+			stamps.put(pos, file.lastModified());
+			return file;
+		} catch (final IOException e) {
+			e.printStackTrace();
+			file.delete();
+			return null;
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		for (final File file : files.values()) {
+			file.delete();
+			file.getParentFile().delete();
+		}
+		files.clear();
+		stamps.clear();
+		folder.delete();
+	}
+
+}
@@ -20,7 +20,13 @@ import net.arctics.clonk.Core;
  */
 public class C4GroupTopLevelCompressed extends C4Group {
 
-	private static final class SeekableStream extends FilterInputStream {
+	/**
+	 * Stream over the decompressed contents of the group which can be positioned anywhere via {@link #seek(long)}.
+	 * Offsets covered by the group's {@link C4GroupCheckpoints} are served from those instead of inflating the group file from the start again.
+	 * Once the group file has to be inflated from the start to reach some later offset, everything decompressed is passed on to the checkpoints.
+	 * Reading the group front to back in one go does not build checkpoints.
+	 */
+	private static final class SeekableStream extends InputStream {
 		private static GZIPInputStream makeGZIPStream(File file) {
 			return attempt(() -> new GZIPInputStream(new FilterInputStream(new FileInputStream(file)) {
 				private int timesRead = 0;
@@ -41,53 +47,142 @@ public class C4GroupTopLevelCompressed extends C4Group {
 				}
 			}), IOException.class, Exception::printStackTrace);
 		}
-		private long streamPos;
 		private final File file;
-		private SeekableStream(File file) {
-			super(makeGZIPStream(file));
+		private final C4GroupCheckpoints checkpoints;
+		/** Length of the decompressed contents or -1 if unknown */
+		private final long length;
+		/** Whether decompressed contents are passed on to the checkpoints */
+		private boolean recording;
+		/** Stream inflating the group file, opened when first needed */
+		private InputStream gzip;
+		private long gzipPos;
+		/** Stream reading from checkpoints, used while the position is covered by them */
+		private InputStream fromCheckpoints;
+		private long streamPos;
+		private final byte[] scratch = new byte[8192];
+		private SeekableStream(final File file, final C4GroupCheckpoints checkpoints) {
 			this.file = file;
+			this.checkpoints = checkpoints;
+			this.length = C4GroupCheckpoints.trailerLength(file);
 			this.streamPos = 0;
 		}
 		@Override
 		public synchronized void reset() throws IOException {
-			in.close();
-			in = makeGZIPStream(file);
+			closeGZIP();
+			gzip = makeGZIPStream(file);
+			gzipPos = 0;
+		}
+		private void closeGZIP() throws IOException {
+			if (gzip != null) {
+				gzip.close();
+				gzip = null;
+			}
+		}
+		private void closeCheckpoints() throws IOException {
+			if (fromCheckpoints != null) {
+				fromCheckpoints.close();
+				fromCheckpoints = null;
+			}
+		}
+		private int readGZIP(final byte[] b, final int off, final int len) throws IOException {
+			final int read = gzip.read(b, off, len);
+			if (read > 0) {
+				if (recording) {
+					checkpoints.append(gzipPos, b, off, read);
+				}
+				gzipPos += read;
+			} else if (read == -1 && recording) {
+				checkpoints.finish(gzipPos);
+			}
+			return read;
+		}
+		private void positionGZIP() throws IOException {
+			if (gzip == null || streamPos < gzipPos) {
+				reset();
+				if (gzip == null) {
+					throw new IOException(String.format("Failed to open '%s'", file));
+				}
+				// inflating everything before the position is what checkpoints spare the next time
+				recording |= checkpoints != null && streamPos > 0;
+			}
+			while (gzipPos < streamPos) {
+				if (readGZIP(scratch, 0, (int)Math.min(scratch.length, streamPos - gzipPos)) == -1) {
+					break;
+				}
+			}
 		}
 		@Override
 		public int read() throws IOException {
-			final int result = super.read();
-			if (result != -1) {
-				streamPos++;
-			}
-			return result;
+			final byte[] b = new byte[1];
+			return read(b, 0, 1) == 1 ? b[0] & 0xFF : -1;
 		}
 		@Override
 		public int read(final byte[] b) throws IOException {
-			final int read = super.read(b);
-			streamPos += read;
-			return read;
+			return read(b, 0, b.length);
 		}
 		@Override
-		public int read(final byte[] b, final int off, final int len) throws IOException {
-			final int read = super.read(b, off, len);
-			streamPos += read;
+		public synchronized int read(final byte[] b, final int off, final int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (fromCheckpoints == null && checkpoints != null && (gzip == null || streamPos != gzipPos) && streamPos < checkpoints.covered()) {
+				fromCheckpoints = checkpoints.open(streamPos);
+			}
+			if (fromCheckpoints != null) {
+				final int read = fromCheckpoints.read(b, off, len);
+				if (read > 0) {
+					streamPos += read;
+					return read;
+				}
+				// end of covered range; continue with inflating the group file
+				closeCheckpoints();
+				if (checkpoints.complete()) {
+					return -1;
+				}
+			}
+			positionGZIP();
+			final int read = gzipPos == streamPos ? readGZIP(b, off, len) : -1;
+			if (read > 0) {
+				streamPos += read;
+			}
 			return read;
 		}
-		public void seek(long pos) throws IOException {
-			if (pos > streamPos) {
-				in.skip(pos-streamPos);
-				streamPos = pos;
+		@Override
+		public synchronized long skip(final long n) throws IOException {
+			if (n <= 0) {
+				return 0;
+			}
+			final long from = streamPos;
+			final long to = length != -1 ? Math.max(from, Math.min(from + n, length)) : from + n;
+			seek(to);
+			return to - from;
+		}
+		public synchronized void seek(final long pos) throws IOException {
+			if (pos == streamPos) {
+				return;
 			}
-			else if (pos < streamPos) {
-				reset();
-				in.skip(streamPos = pos);
+			// going forward a short distance on the stream currently used is cheaper than a new one
+			final boolean nearby = pos > streamPos && pos - streamPos < C4GroupCheckpoints.CHUNK_SIZE;
+			if (!nearby || fromCheckpoints == null) {
+				closeCheckpoints();
 			}
+			if (fromCheckpoints != null && fromCheckpoints.skip(pos - streamPos) != pos - streamPos) {
+				closeCheckpoints();
+			}
+			streamPos = pos;
+		}
+		@Override
+		public synchronized void close() throws IOException {
+			closeCheckpoints();
+			closeGZIP();
 		}
 	}
 
 	private static final long serialVersionUID = Core.SERIAL_VERSION_UID;
 
 	private transient SeekableStream stream;
+	private transient C4GroupCheckpoints checkpoints;
+	private transient C4GroupSegments segments;
 
 	public C4GroupTopLevelCompressed(final String name, final File file) {
 		super(null, name, file);
@@ -112,7 +207,14 @@ public class C4GroupTopLevelCompressed extends C4Group {
 		if (stream != null) {
 			releaseStream();
 		}
-		stream = new SeekableStream(origin());
+		if (checkpoints != null && !checkpoints.current()) {
+			checkpoints.close();
+			checkpoints = null;
+		}
+		if (checkpoints == null) {
+			checkpoints = C4GroupCheckpoints.open(origin());
+		}
+		stream = new SeekableStream(origin(), checkpoints);
 		if (stream == null) {
 			System.out.println("Failed to create stream for " + origin());
 			return null;
@@ -147,6 +249,20 @@ public class C4GroupTopLevelCompressed extends C4Group {
 		}
 	}
 
+	@Override
+	public synchronized File localFile(final C4GroupItem whoWantsThat, final long pos, final int size) throws IOException {
+		if (segments == null) {
+			segments = C4GroupSegments.create();
+		}
+		final File existing = segments.get(pos);
+		if (existing != null) {
+			return existing;
+		}
+		final File[] written = new File[1];
+		readFromStream(whoWantsThat, pos, stream -> written[0] = segments.put(pos, whoWantsThat.getName(), stream, size));
+		return written[0];
+	}
+
 	@Override
 	public void releaseStream() throws IOException {
 		if (stream == null) {
@@ -166,9 +282,28 @@ public class C4GroupTopLevelCompressed extends C4Group {
 		C4GroupFileSystem.instance().removeGroupFromRegistry(this);
 	}
 
+	@Override
+	public synchronized void close() throws IOException {
+		super.close();
+		if (checkpoints != null) {
+			checkpoints.close();
+			checkpoints = null;
+		}
+		if (segments != null) {
+			segments.close();
+			segments = null;
+		}
+	}
+
 	@Override
 	protected void finalize() throws Throwable {
 		releaseStream();
+		if (checkpoints != null) {
+			checkpoints.close();
+		}
+		if (segments != null) {
+			segments.close();
+		}
 		super.finalize();
 	}
 
@@ -33,12 +33,18 @@ public class C4GroupUncompressed extends C4Group {
 		return null;
 	}
 	
+	@Override
+	public File localFile(final C4GroupItem whoWantsThat, final long pos, final int size) {
+		final IPath path = new Path(origin().toString()).append(whoWantsThat.relativePath(this));
+		final File file = path.toFile();
+		return file.isFile() ? file : null;
+	}
+
 	@Override
 	public synchronized void readFromStream(final C4GroupItem whoWantsThat, final long pos, final StreamReadCallback callback) throws IOException {
 		// create stream from uncompressed file
-		final IPath path = new Path(origin().toString()).append(whoWantsThat.relativePath(this));
-		final File fileToReadFrom = path.toFile();
-		if (fileToReadFrom.isFile()) {
+		final File fileToReadFrom = localFile(whoWantsThat, pos, 0);
+		if (fileToReadFrom != null) {
 			final FileInputStream stream = new FileInputStream(fileToReadFrom);
 			try {
 				callback.readStream(stream);
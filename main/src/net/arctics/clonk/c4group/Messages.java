@@ -8,7 +8,7 @@ public class Messages extends NLS {
 	public static String WhereToSave;
 	public static String ExportC4GroupJobTitle;
 	public static String Exporting;
-	public static String ExporterCommandlineTitle;
+	public static String ExporterPacked;
 	public static String C4Group_Copying;
 	public static String C4GroupHeaderInvalid_1;
 	public static String C4GroupHeaderInvalid_2;
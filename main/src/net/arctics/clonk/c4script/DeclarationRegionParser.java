@@ -0,0 +1,141 @@
+package net.arctics.clonk.c4script;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import net.arctics.clonk.ProblemException;
+import net.arctics.clonk.ast.DeclMask;
+import net.arctics.clonk.ast.Declaration;
+import net.arctics.clonk.parser.Markers;
+
+/**
+ * Parser replacing only the declarations of a script an edit was made to, keeping all the others along with their parsed code.
+ * The declarations damaged by the edit are removed and the region between the intact declarations in front of and behind them
+ * is parsed again. Locations of intact declarations are expected to be adjusted to the edited source already.<br>
+ * The region is widened so that whatever it contains can be parsed on its own:
+ * <ul>
+ * <li>Top-level variables next to the region are included since one <tt>local a, b;</tt> statement declares several of them.</li>
+ * <li>An old-style function right in front of the damage is included since its code ends at the next function header and might now reach into the region.</li>
+ * </ul>
+ */
+public class DeclarationRegionParser extends ScriptParser {
+
+	private static final int TOP_LEVEL = DeclMask.DIRECTIVES|DeclMask.VARIABLES|DeclMask.STATIC_VARIABLES|DeclMask.FUNCTIONS;
+
+	private int regionStart, regionEnd;
+
+	public DeclarationRegionParser(final String source, final Script script, final Markers markers) {
+		super(source, script, null);
+		setMarkers(markers);
+	}
+
+	private static boolean intersects(final Declaration declaration, final int start, final int end) {
+		return declaration.start() <= end && declaration.end() >= start;
+	}
+
+	private static boolean variableLike(final Declaration declaration) {
+		return declaration instanceof Variable || declaration instanceof InitializationFunction;
+	}
+
+	private static boolean oldStyleFunction(final Declaration declaration) {
+		return declaration instanceof Function && !(declaration instanceof InitializationFunction) && ((Function)declaration).isOldStyle();
+	}
+
+	/**
+	 * Reparse the damaged region of the script.
+	 * @param damaged Declarations known to be damaged, for example because text they were made of was removed
+	 * @param damageStart Start of the edited range in the current source
+	 * @param damageEnd End of the edited range in the current source
+	 * @return True if the region was reparsed. If false is returned the script has to be parsed completely since its declarations might be incomplete.
+	 */
+	public boolean reparse(final Collection<? extends Declaration> damaged, final int damageStart, final int damageEnd) {
+		final Script script = script();
+		if (script.typeAnnotations() != null) {
+			// annotations are collected for the whole script
+			return false;
+		}
+		final List<Declaration> declarations = script.subDeclarations(script.index(), TOP_LEVEL);
+		declarations.sort(Comparator.comparingInt(Declaration::start));
+		final int count = declarations.size();
+		final boolean[] hit = new boolean[count];
+		int lo = damageStart, hi = damageEnd;
+		for (boolean changed = true; changed;) {
+			changed = false;
+			for (int i = 0; i < count; i++) {
+				final Declaration d = declarations.get(i);
+				if (!hit[i] && (damaged.contains(d) || intersects(d, lo, hi))) {
+					hit[i] = changed = true;
+					lo = Math.min(lo, d.start());
+					hi = Math.max(hi, d.end());
+				}
+			}
+			// only functions and directives delimit the region: variables are located at their names, not at the keyword declaring them
+			int before = -1, after = -1;
+			for (int i = 0; i < count; i++) {
+				if (!hit[i]) {
+					if (declarations.get(i).end() < lo) {
+						before = i;
+					} else if (after == -1) {
+						after = i;
+					}
+				}
+			}
+			if (before != -1 && (variableLike(declarations.get(before)) || oldStyleFunction(declarations.get(before)))) {
+				hit[before] = changed = true;
+				lo = declarations.get(before).start();
+			}
+			if (after != -1 && variableLike(declarations.get(after))) {
+				hit[after] = changed = true;
+				hi = Math.max(hi, declarations.get(after).end());
+			}
+		}
+		regionStart = 0;
+		regionEnd = size;
+		for (int i = 0; i < count; i++) {
+			final Declaration d = declarations.get(i);
+			if (hit[i]) {
+				script.removeDeclaration(d);
+			} else if (d.end() < lo) {
+				regionStart = Math.max(regionStart, d.end());
+			} else {
+				regionEnd = Math.min(regionEnd, d.start());
+			}
+		}
+
+		seek(regionStart);
+		try {
+			if (regionStart == 0) {
+				parseInitialSourceComment();
+			}
+			eatWhitespace();
+			while (!reachedEOF() && this.offset < regionEnd) {
+				if (parseDeclaration() == null) {
+					readUnexpectedBlock();
+				}
+				eatWhitespace();
+			}
+		} catch (final ProblemException e) {
+			return false;
+		}
+		if (this.offset > regionEnd && regionEnd < size) {
+			// parsed declarations reach into intact ones, probably some brace was removed or added
+			return false;
+		}
+
+		script.sortDeclarationsByLocation();
+		script.deriveInformation();
+		try {
+			validate();
+		} catch (final ProblemException e) {
+			return false;
+		}
+		return true;
+	}
+
+	/** Start of the region parsed by the last {@link #reparse(Collection, int, int)} */
+	public int regionStart() { return regionStart; }
+	/** End of the region parsed by the last {@link #reparse(Collection, int, int)} */
+	public int regionEnd() { return regionEnd; }
+
+}
@@ -8,7 +8,11 @@ import static net.arctics.clonk.util.Utilities.as;
 import static net.arctics.clonk.util.Utilities.defaulting;
 import static net.arctics.clonk.util.Utilities.eq;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Array;
 import java.text.MessageFormat;
 import java.util.ArrayList;
@@ -55,6 +59,8 @@ import net.arctics.clonk.index.Definition;
 import net.arctics.clonk.index.Engine;
 import net.arctics.clonk.index.IIndexEntity;
 import net.arctics.clonk.index.Index;
+import net.arctics.clonk.index.serialization.ASTNodeCodec;
+import net.arctics.clonk.index.serialization.IndexEntityOutputStream;
 import net.arctics.clonk.util.ArrayUtil;
 import net.arctics.clonk.util.IHasUserDescription;
 import net.arctics.clonk.util.StringUtil;
@@ -78,11 +84,27 @@ public class Function extends Structure implements Serializable, ITypeable, IHas
 		public final IType returnType;
 		public final IType[] nodeTypes;
 
+		/**
+		 * Fingerprints of the body ({@link Function#blockSourceHash()}), of the typing the inference consumed when computing this typing
+		 * and of the typing it produced, or 0 if this typing was not inferred. Inference reuses a typing whose input fingerprint still matches.
+		 */
+		public final int bodyFingerprint, inputFingerprint, outputFingerprint;
+
 		public Typing(final IType[] parameterTypes, final IType returnType, final IType[] nodeTypes) {
+			this(parameterTypes, returnType, nodeTypes, 0, 0, 0);
+		}
+
+		public Typing(
+			final IType[] parameterTypes, final IType returnType, final IType[] nodeTypes,
+			final int bodyFingerprint, final int inputFingerprint, final int outputFingerprint
+		) {
 			super();
 			this.parameterTypes = parameterTypes;
 			this.returnType = returnType;
 			this.nodeTypes = nodeTypes;
+			this.bodyFingerprint = bodyFingerprint;
+			this.inputFingerprint = inputFingerprint;
+			this.outputFingerprint = outputFingerprint;
 		}
 
 
@@ -119,14 +141,26 @@ public class Function extends Structure implements Serializable, ITypeable, IHas
 	private SourceLocation bodyLocation, header;
 	private int nameStart;
 
-	/** Code block kept in memory for speed optimization */
-	private FunctionBody body;
+	/** Code block kept in memory for speed optimization. Written by {@link #writeObject(ObjectOutputStream)} */
+	private transient volatile FunctionBody body;
+
+	/**
+	 * Index record the body was stored in separately from the rest of the function, or {@link IndexEntityOutputStream#NO_RECORD}.
+	 * If set, {@link #body()} loads the body from the index on first access.
+	 */
+	private transient volatile long bodyRecord = IndexEntityOutputStream.NO_RECORD;
+
+	/** Body released by {@link #dropBody()}, kept until the garbage collector needs the memory. */
+	private transient SoftReference<FunctionBody> droppedBody;
 
 	/** Hash code of the string the block was parsed from. */
 	private int blockSourceHash;
 
 	private int totalNumASTNodes;
 
+	/** Hash code of the string the body was parsed from. Bodies parsed from the same code have the same hash code. */
+	public int blockSourceHash() { return blockSourceHash; }
+
 	/** Number of {@link ASTNode}s in this function's {@link #body()}. */
 	public int totalNumASTNodes() { return totalNumASTNodes; }
 
@@ -863,6 +897,7 @@ public class Function extends Structure implements Serializable, ITypeable, IHas
 	 */
 	public Object invoke(final IEvaluationContext context) {
 		try {
+			final FunctionBody body = body();
 			return body != null ? body.evaluate(context) : null;
 		} catch (final ReturnException result) {
 			return result.result();
@@ -894,6 +929,8 @@ public class Function extends Structure implements Serializable, ITypeable, IHas
 	};
 
 	public void storeBody(final ASTNode block, final String source) {
+		bodyRecord = IndexEntityOutputStream.NO_RECORD;
+		droppedBody = null;
 		body = FunctionBody.fromBlock((Block)block);
 		blockSourceHash = source.hashCode();
 		if (bodyLocation != null) {
@@ -912,8 +949,102 @@ public class Function extends Structure implements Serializable, ITypeable, IHas
 
 	@Override
 	public void postLoad(final ASTNode parent) {
-		super.postLoad(parent);
-		assignLocalIdentifiers();
+		if (body == null && bodyRecord != IndexEntityOutputStream.NO_RECORD) {
+			// leave the body in the index until someone asks for it
+			this.parent = parent;
+			final TypeAnnotation typeAnnotation = typeAnnotation();
+			if (typeAnnotation != null) {
+				typeAnnotation.postLoad(this);
+			}
+			for (final ASTNode e : super.subElements()) {
+				if (e != null) {
+					e.postLoad(this);
+				}
+			}
+		} else {
+			super.postLoad(parent);
+			assignLocalIdentifiers();
+		}
+	}
+
+	private void writeObject(final ObjectOutputStream stream) throws IOException {
+		stream.defaultWriteObject();
+		final IndexEntityOutputStream indexStream = stream instanceof IndexEntityOutputStream ? (IndexEntityOutputStream)stream : null;
+		// a body that has not been loaded since the last save is still in the index
+		final long stored = bodyRecord;
+		long record = indexStream != null && body == null && stored != IndexEntityOutputStream.NO_RECORD
+			? indexStream.keepSeparately(stored)
+			: IndexEntityOutputStream.NO_RECORD;
+		FunctionBody body = null;
+		if (record == IndexEntityOutputStream.NO_RECORD) {
+			body = body();
+			if (body != null && indexStream != null) {
+				record = indexStream.writeSeparately(body);
+			}
+		}
+		stream.writeLong(record);
+		if (record == IndexEntityOutputStream.NO_RECORD) {
+			ASTNodeCodec.write(stream, body);
+		} else {
+			bodyRecord = record;
+		}
+	}
+
+	private void readObject(final ObjectInputStream stream) throws IOException, ClassNotFoundException {
+		stream.defaultReadObject();
+		bodyRecord = stream.readLong();
+		body = bodyRecord == IndexEntityOutputStream.NO_RECORD ? (FunctionBody)ASTNodeCodec.read(stream) : null;
+	}
+
+	/**
+	 * Return the body, loading it from the index if it has not been loaded yet or was dropped and collected since.
+	 * @return The body or null if there is none.
+	 */
+	private FunctionBody materializedBody() {
+		FunctionBody b = body;
+		if (b == null && bodyRecord != IndexEntityOutputStream.NO_RECORD) {
+			synchronized (this) {
+				b = body;
+				if (b == null && bodyRecord != IndexEntityOutputStream.NO_RECORD) {
+					final SoftReference<FunctionBody> dropped = droppedBody;
+					b = dropped != null ? dropped.get() : null;
+					if (b == null) {
+						final Script script = script();
+						final Index index = script != null ? script.index() : null;
+						b = index != null ? index.loadFunctionBody(script, bodyRecord) : null;
+						if (b != null) {
+							b.postLoad(this);
+						}
+					}
+					droppedBody = null;
+					body = b;
+					assignLocalIdentifiers();
+				}
+			}
+		}
+		return b;
+	}
+
+	/**
+	 * Release the body if it can be loaded from the index again. It stays reachable until the garbage collector needs the memory.
+	 * @return Whether the body was released
+	 */
+	public synchronized boolean dropBody() {
+		final FunctionBody b = body;
+		if (b != null && bodyRecord != IndexEntityOutputStream.NO_RECORD) {
+			droppedBody = new SoftReference<FunctionBody>(b);
+			body = null;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Return whether the body is held in memory, as opposed to only being stored in the index.
+	 * @return True if {@link #body()} won't need to load the body
+	 */
+	public boolean bodyLoaded() {
+		return body != null || bodyRecord == IndexEntityOutputStream.NO_RECORD;
 	}
 
 	/**
@@ -925,8 +1056,10 @@ public class Function extends Structure implements Serializable, ITypeable, IHas
 		if (source == null || (blockSourceHash != -1 && blockSourceHash == source.hashCode())) {
 			//if (body != null)
 			//	body.postLoad(this, TypeUtil.problemReportingContext(this));
-			return body;
+			return materializedBody();
 		} else {
+			bodyRecord = IndexEntityOutputStream.NO_RECORD;
+			droppedBody = null;
 			return body = null;
 		}
 	}
@@ -1025,6 +1158,7 @@ public class Function extends Structure implements Serializable, ITypeable, IHas
 	public void doPrint(final ASTNodePrinter output, final int depth) {
 		Comment.printUserDescription(output, depth, userDescription(), true);
 		printHeader(output);
+		final FunctionBody body = body();
 		if (body != null) {
 			Conf.blockPrelude(output, depth);
 			body.print(output, depth);
@@ -38,6 +38,26 @@ public class Marker {
 		this.container = positionProvider.container();
 	}
 	
+	/**
+	 * Create a copy of a marker moved by some amount, for reporting it again without repeating the analysis that created it.
+	 * @param original The marker to copy
+	 * @param reporter Node reporting the copy
+	 * @param delta Amount to move the marker by
+	 */
+	public Marker(final Marker original, final ASTNode reporter, final int delta) {
+		super();
+		this.code = original.code;
+		this.start = original.start+delta;
+		this.end = original.end+delta;
+		this.severity = original.severity;
+		this.arguments = original.arguments;
+
+		this.contextDeclaration = reporter != null ? reporter.parent(Declaration.class) : original.contextDeclaration;
+		this.reporter = reporter;
+		this.scriptFile = original.scriptFile;
+		this.container = original.container;
+	}
+
 	@Override
 	public String toString() {
 		return String.format("%s @(%s)", code.toString(), reporter.toString()); //$NON-NLS-1$
@@ -20,6 +20,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -62,6 +63,7 @@ import net.arctics.clonk.c4script.typing.IRefinedPrimitiveType;
 import net.arctics.clonk.c4script.typing.IType;
 import net.arctics.clonk.c4script.typing.PrimitiveType;
 import net.arctics.clonk.c4script.typing.TypeAnnotation;
+import net.arctics.clonk.index.CallSiteIndex;
 import net.arctics.clonk.index.Definition;
 import net.arctics.clonk.index.Engine;
 import net.arctics.clonk.index.ID;
@@ -174,6 +176,11 @@ public abstract class Script extends IndexEntity implements ITreeNode, IRefinedP
 	private transient Scenario scenario;
 	private transient Map<String, CallDeclaration[]> callMap = new HashMap<>();
 	private transient Map<String, List<AccessVar>> varReferencesMap = new HashMap<>();
+	/** Summary of {@link #callMap()} stored in the index to register the script's call sites without loading function bodies. */
+	private transient Map<String, CallSiteIndex.Call[]> callSummary;
+	/** Set by {@link #postLoad(Declaration, Index)} so {@link #deriveInformation()} leaves generating the node maps to the first request for them. */
+	private transient boolean deferNodeMaps;
+	private transient volatile boolean nodeMapsPending;
 
 	private Set<String> dictionary;
 	private List<TypeAnnotation> typeAnnotations;
@@ -204,13 +211,39 @@ public abstract class Script extends IndexEntity implements ITreeNode, IRefinedP
 	}
 
 	public Map<String, CallDeclaration[]> callMap() {
+		requireNodeMaps();
 		return defaulting(callMap, Collections.<String, CallDeclaration[]> emptyMap());
 	}
 
 	public Map<String, List<AccessVar>> varReferences() {
+		requireNodeMaps();
 		return defaulting(varReferencesMap, Collections.<String, List<AccessVar>> emptyMap());
 	}
 
+	private void requireNodeMaps() {
+		if (nodeMapsPending) {
+			synchronized (this) {
+				if (nodeMapsPending) {
+					generateNodeMaps();
+					nodeMapsPending = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Release {@link #callMap()} and {@link #varReferences()} so the function bodies they point into can be dropped.
+	 * They are generated again when next asked for.
+	 */
+	public synchronized void dropNodeMaps() {
+		if (index() == null) {
+			return;
+		}
+		nodeMapsPending = true;
+		callMap = null;
+		varReferencesMap = null;
+	}
+
 	/**
 	 * The script's dictionary contains names of variables and functions defined
 	 * in it. It can be queried before {@link #requireLoaded()} was called,
@@ -248,14 +281,16 @@ public abstract class Script extends IndexEntity implements ITreeNode, IRefinedP
 		public Set<Script> used;
 		public Typings typings;
 		public Map<String, ProplistDeclaration> proplistDeclarations;
+		public Map<String, CallSiteIndex.Call[]> callSummary;
 
-		public void initialize(final Map<String, Effect> effects, final List<Function> functions, final List<Variable> variables, final Set<Script> used, final Typings typings, final Map<String, ProplistDeclaration> proplistDeclarations) {
+		public void initialize(final Map<String, Effect> effects, final List<Function> functions, final List<Variable> variables, final Set<Script> used, final Typings typings, final Map<String, ProplistDeclaration> proplistDeclarations, final Map<String, CallSiteIndex.Call[]> callSummary) {
 			this.effects = effects;
 			this.functions = functions;
 			this.variables = variables;
 			this.used = used;
 			this.typings = typings;
 			this.proplistDeclarations = proplistDeclarations;
+			this.callSummary = callSummary;
 		}
 	}
 
@@ -263,7 +298,7 @@ public abstract class Script extends IndexEntity implements ITreeNode, IRefinedP
 	public void save(final ObjectOutputStream stream) throws IOException {
 		super.save(stream);
 		final SaveState state = makeSaveState();
-		state.initialize(effects, functions, variables, usedScripts, typings, proplistDeclarations);
+		state.initialize(effects, functions, variables, usedScripts, typings, proplistDeclarations, callSummary);
 		try {
 			stream.writeObject(state);
 		} catch (final IllegalStateException e) {
@@ -292,6 +327,7 @@ public abstract class Script extends IndexEntity implements ITreeNode, IRefinedP
 		usedScripts = state.used;
 		typings = state.typings;
 		proplistDeclarations = state.proplistDeclarations;
+		callSummary = state.callSummary;
 
 		purgeNullEntries(functions, variables, usedScripts);
 	}
@@ -320,7 +356,12 @@ public abstract class Script extends IndexEntity implements ITreeNode, IRefinedP
 		loadIncludes();
 		loadUsedScripts();
 		super.postLoad(parent, root);
-		deriveInformation();
+		deferNodeMaps = true;
+		try {
+			deriveInformation();
+		} finally {
+			deferNodeMaps = false;
+		}
 		for (final Function f : functions()) {
 			f.findInherited();
 		}
@@ -893,6 +934,25 @@ public abstract class Script extends IndexEntity implements ITreeNode, IRefinedP
 		}
 	}
 
+	/**
+	 * Sort directives, variables and functions by their location so they are in the order parsing the whole script would have added them in.
+	 * Used after declarations in a region of the script were replaced by reparsing only that region.
+	 */
+	synchronized void sortDeclarationsByLocation() {
+		final Comparator<Declaration> byStart = Comparator.comparingInt(Declaration::start);
+		if (directives != null) {
+			directives.sort(byStart);
+		}
+		if (variables != null) {
+			variables.sort(byStart);
+		}
+		if (functions != null) {
+			synchronized (functions) {
+				functions.sort(byStart);
+			}
+		}
+	}
+
 	public synchronized void clearDeclarations() {
 		loaded = Loaded.Yes;
 		usedScripts = null;
@@ -1116,6 +1176,14 @@ public abstract class Script extends IndexEntity implements ITreeNode, IRefinedP
 		return directives != null ? directives : Collections.<Directive> emptyList();
 	}
 
+	/**
+	 * Return the directives without requiring the script to be loaded. Directives are part of the shallow index.
+	 * @return The directives
+	 */
+	public List<? extends Directive> shallowDirectives() {
+		return directives != null ? directives : Collections.<Directive> emptyList();
+	}
+
 	/**
 	 * Return a map mapping effect name to {@link Effect} object
 	 * 
@@ -1386,7 +1454,8 @@ public abstract class Script extends IndexEntity implements ITreeNode, IRefinedP
 	 * lookup.</li>
 	 * <li>{@link #varReferences()} and {@link #callMap()} are populated with
 	 * references to respective AST nodes ({@link AccessVar} and
-	 * {@link CallDeclaration}).</li>
+	 * {@link CallDeclaration}) and the call sites are registered with the
+	 * {@link Index#callSites()} of the index.</li>
 	 * <li>{@link Effect} objects are created by applying some camel-case
 	 * finding strategy on functions named Fx.* ({@link #effects()})
 	 * </ol>
@@ -1401,12 +1470,25 @@ public abstract class Script extends IndexEntity implements ITreeNode, IRefinedP
 		Collections.reverse(conglo);
 		populateDictionary(conglo);
 		generateFindDeclarationCache(conglo);
-		generateNodeMaps();
+		if (deferNodeMaps && index() != null) {
+			// traversing the functions would load all their bodies
+			nodeMapsPending = true;
+			if (callSummary != null) {
+				index().callSites().update(this, callSummary);
+			} else {
+				index().callSites().defer(this);
+			}
+		} else {
+			nodeMapsPending = false;
+			generateNodeMaps();
+		}
 	}
 
 	static class NodeMapsPopulator implements IASTVisitor<Script> {
 		final Map<String, List<CallDeclaration>> callMap = new HashMap<>();
+		final Map<String, List<CallSiteIndex.Call>> callSummary = new HashMap<>();
 		final Map<String, List<AccessVar>> varReferencesMap = new HashMap<>();
+		Function function;
 
 		@Override
 		public TraversalContinuation visitNode(final ASTNode node, final Script script) {
@@ -1417,6 +1499,11 @@ public abstract class Script extends IndexEntity implements ITreeNode, IRefinedP
 					callMap.put(call.name(), list = new ArrayList<>(3));
 				}
 				list.add(call);
+				List<CallSiteIndex.Call> summary = callSummary.get(call.name());
+				if (summary == null) {
+					callSummary.put(call.name(), summary = new ArrayList<>(3));
+				}
+				summary.add(new CallSiteIndex.Call(function.name(), call.params().length));
 			} else if (node instanceof AccessVar) {
 				final AccessVar var = (AccessVar) node;
 				List<AccessVar> list = varReferencesMap.get(var.name());
@@ -1433,11 +1520,16 @@ public abstract class Script extends IndexEntity implements ITreeNode, IRefinedP
 		final NodeMapsPopulator populator = new NodeMapsPopulator();
 		if (functions != null && index() != null) {
 			for (final Function f : functions()) {
+				populator.function = f;
 				f.traverse(populator, this);
 			}
 		}
 		this.callMap = Collections.unmodifiableMap(populator.callMap.entrySet().stream().collect(Collectors.toMap(kv -> kv.getKey(), kv -> kv.getValue().toArray(new CallDeclaration[kv.getValue().size()]))));
+		this.callSummary = Collections.unmodifiableMap(populator.callSummary.entrySet().stream().collect(Collectors.toMap(kv -> kv.getKey(), kv -> kv.getValue().toArray(new CallSiteIndex.Call[kv.getValue().size()]))));
 		this.varReferencesMap = Collections.unmodifiableMap(populator.varReferencesMap);
+		if (index() != null) {
+			index().callSites().update(this, this.callSummary);
+		}
 	}
 
 	private void generateFindDeclarationCache(final List<Script> conglo) {
@@ -12,6 +12,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
 import org.eclipse.core.resources.IFile;
@@ -153,6 +154,9 @@ public class ScriptParser extends CStyleScanner implements IASTPositionProvider,
 
 	private Engine engine;
 
+	/** Definitions looked up by ID while parsing type annotations. IDs no definition was found for map to null. */
+	private final Map<ID, Definition> resolvedDefinitions = new HashMap<>();
+
 	/** Return the special rules the parser is operating with */
 	public final SpecialEngineRules specialEngineRules() { return specialEngineRules; }
 
@@ -225,6 +229,9 @@ public class ScriptParser extends CStyleScanner implements IASTPositionProvider,
 	 */
 	protected void initialize() {
 		if (script != null) {
+			if (script.index() != null) {
+				symbols = script.index().symbolTable();
+			}
 			engine = script.engine();
 			specialEngineRules = engine != null ? script.engine().specialRules() : null;
 			typing = script.typing();
@@ -332,7 +339,7 @@ public class ScriptParser extends CStyleScanner implements IASTPositionProvider,
 		}
 	}
 
-	private void readUnexpectedBlock() throws ProblemException {
+	void readUnexpectedBlock() throws ProblemException {
 		eatWhitespace();
 		if (!reachedEOF()) {
 			final int start = this.offset;
@@ -357,7 +364,7 @@ public class ScriptParser extends CStyleScanner implements IASTPositionProvider,
 		}
 	}
 
-	private void parseInitialSourceComment() {
+	void parseInitialSourceComment() {
 		eat(WHITESPACE_CHARS);
 		Comment sourceComment = null;
 		for (Comment c; (c = parseComment()) != null;) {
@@ -947,7 +954,9 @@ public class ScriptParser extends CStyleScanner implements IASTPositionProvider,
 				result = typeAnnotation(start, offset, primitiveType.unified());
 			} else if (typing.allowsNonParameterAnnotations()) {
 				if (script.index() != null && engine.acceptsID(identifier)) {
-					final Definition definition = script.index().definitionNearestTo(script.file(), ID.get(identifier));
+					final ID definitionID = ID.get(identifier);
+					final Definition definition = script.index().definitionNearestTo(script.file(), definitionID);
+					resolvedDefinitions.put(definitionID, definition);
 					if (definition != null) {
 						result = typeAnnotation(start, offset, definition);
 					}
@@ -970,7 +979,7 @@ public class ScriptParser extends CStyleScanner implements IASTPositionProvider,
 					if (elementType != null) {
 						subAnnotations.add(elementType);
 						if (eq(result.type(), PrimitiveType.ARRAY)) {
-							result.setType(new ArrayType(elementType.type()));
+							result.setType(ArrayType.make(elementType.type()));
 						} else if (eq(result.type(), PrimitiveType.ID)) {
 							if (elementType.type() instanceof Definition) {
 								result.setType(((Definition)elementType.type()).metaDefinition());
@@ -2786,8 +2795,16 @@ public class ScriptParser extends CStyleScanner implements IASTPositionProvider,
 	public void clear() {
 		Markers.clearMarkers(scriptFile);
 		script.clearDeclarations();
+		resolvedDefinitions.clear();
 	}
 
+	/**
+	 * Return the definitions type annotations were resolved to by the last {@link #parse()}, by ID.
+	 * The result of parsing depends on those lookups turning out the same.
+	 * @return The definitions. IDs no definition was found for map to null.
+	 */
+	public Map<ID, Definition> resolvedDefinitions() { return resolvedDefinitions; }
+
 	/**
 	 * Set by derived parsers that operate on just a substring of the whole script.
 	 * Used for setting the right location for variables that are created while parsing the body of a function
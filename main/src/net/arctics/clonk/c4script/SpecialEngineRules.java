@@ -492,7 +492,7 @@ public abstract class SpecialEngineRules {
 			if (t != null) {
 				final Function f = (Function) callFunc.declaration();
 				if (f != null && eq(f.returnType(), PrimitiveType.ARRAY)) {
-					return new ArrayType(t);
+					return ArrayType.make(t);
 				}
 			}
 			return t;
@@ -31,6 +31,7 @@ public class MemberOperator extends ASTNode implements ITidyable {
 	public ID id() { return id; }
 	public boolean dotNotation() { return dotNotation; }
 	public boolean hasTilde() { return hasTilde; }
+	public int idOffset() { return idOffset; }
 
 	@Override
 	protected void offsetExprRegion(final int amount, final boolean start, final boolean end) {
@@ -23,6 +23,12 @@ public class ArrayType implements IRefinedPrimitiveType {
 	 * @param knownTypesForSpecificElements Specific types for elements. The index of the type in this array corresponds to the index in the array instances of this type.
 	 */
 	public ArrayType(final IType elementType) { this.elementType = elementType; }
+	/**
+	 * Return the interned array type with the given element type ({@link TypeInterner}).
+	 * @param elementType The element type
+	 * @return The array type
+	 */
+	public static ArrayType make(final IType elementType) { return TypeInterner.intern(new ArrayType(elementType)); }
 	/**
 	 * Get the general element type. If the general element type is not set a type set consisting of the specific element types will be returned.
 	 * @return
@@ -48,10 +54,15 @@ public class ArrayType implements IRefinedPrimitiveType {
 	}
 	@Override
 	public boolean equals(final Object obj) {
+		if (obj == this)
+			return true;
 		if (obj instanceof ArrayType) {
 			final ArrayType otherArrType = (ArrayType) obj;
 			return Utilities.eq(this.elementType, otherArrType.elementType);
 		} else
 			return false;
 	}
+	@Override
+	public int hashCode() { return 31 * PrimitiveType.ARRAY.hashCode() + (elementType != null ? elementType.hashCode() : 0); }
+	protected Object readResolve() { return TypeInterner.intern(this); }
 }
@@ -15,6 +15,6 @@ public class Maybe extends TypeChoice {
 			return PrimitiveType.ANY;
 		if (type instanceof Maybe)
 			return type;
-		return new Maybe(type);
+		return TypeInterner.intern(new Maybe(type));
 	}
 }
@@ -5,8 +5,8 @@ import static net.arctics.clonk.util.Utilities.eq;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.function.Predicate;
@@ -27,19 +27,24 @@ public class TypeChoice implements IType {
 
 	protected final IType left, right;
 
+	/** Results computed once per instance, which is shared by all users of an interned type ({@link TypeInterner}) */
+	private transient volatile List<IType> flattened;
+	private transient volatile IType deduplicated;
+	private transient int hash;
+
 	public IType left() { return left; }
 	public IType right() { return right; }
 
 	private static final TypeChoice[] HARD_CHOICES = {
-		new TypeChoice(PrimitiveType.OBJECT, PrimitiveType.ID),
-		new TypeChoice(PrimitiveType.BOOL, PrimitiveType.INT),
-		new TypeChoice(PrimitiveType.OBJECT, PrimitiveType.PROPLIST),
-		new TypeChoice(PrimitiveType.ID, PrimitiveType.INT),
-		new TypeChoice(PrimitiveType.STRING, PrimitiveType.INT)
+		TypeInterner.intern(new TypeChoice(PrimitiveType.OBJECT, PrimitiveType.ID)),
+		TypeInterner.intern(new TypeChoice(PrimitiveType.BOOL, PrimitiveType.INT)),
+		TypeInterner.intern(new TypeChoice(PrimitiveType.OBJECT, PrimitiveType.PROPLIST)),
+		TypeInterner.intern(new TypeChoice(PrimitiveType.ID, PrimitiveType.INT)),
+		TypeInterner.intern(new TypeChoice(PrimitiveType.STRING, PrimitiveType.INT))
 	};
 
 	/**
-	 * Factory function to make type choices. The result might not actually be a {@link TypeChoice}.
+	 * Factory function to make type choices. The result might not actually be a {@link TypeChoice}. Choices are interned ({@link TypeInterner}).
 	 * Reasons for such outcome include:
 	 * <ul>
 	 * 	<li>left or right null in which case the non-null type is returned verbatim.</li>
@@ -66,7 +71,15 @@ public class TypeChoice implements IType {
 			return Maybe.make(right);
 		else if (right == PrimitiveType.ANY)
 			return Maybe.make(left);
-		return new TypeChoice(left, right).removeDuplicates();
+		return TypeInterner.intern(new TypeChoice(left, right)).deduplicated();
+	}
+
+	private IType deduplicated() {
+		IType result = deduplicated;
+		if (result == null) {
+			deduplicated = result = removeDuplicates();
+		}
+		return result;
 	}
 
 	protected IType removeDuplicates() {
@@ -101,12 +114,12 @@ public class TypeChoice implements IType {
 	private static <T extends IType> IType combine(final Collection<T> types) {
 		IType result = null;
 		for (final IType t : types)
-			result = result == null ? t : new TypeChoice(result, t);
+			result = result == null ? t : TypeInterner.intern(new TypeChoice(result, t));
 		return result;
 	}
 
 	static <T extends IType> IType combine(T a, T b) {
-		return new TypeChoice(a, b);
+		return TypeInterner.intern(new TypeChoice(a, b));
 	}
 
 	protected TypeChoice(final IType left, final IType right) {
@@ -119,8 +132,7 @@ public class TypeChoice implements IType {
 
 	@Override
 	public String typeName(final boolean special) {
-		final List<IType> types = new ArrayList<>(10);
-		collect(types);
+		final List<IType> types = flatten();
 		if (special) {
 			final List<IType> t = new ArrayList<>(types);
 			if (t.remove(PrimitiveType.ANY.unified()) || t.remove(CallTargetType.INSTANCE)) {
@@ -178,10 +190,18 @@ public class TypeChoice implements IType {
 			return type;
 	}
 
+	/**
+	 * Return the types this choice is between, with nested choices flattened and duplicates removed.
+	 * @return The unmodifiable list of types
+	 */
 	public List<IType> flatten() {
-		final LinkedList<IType> types = new LinkedList<IType>();
-		collect(types);
-		return types;
+		List<IType> result = flattened;
+		if (result == null) {
+			final List<IType> types = new ArrayList<IType>(4);
+			collect(types);
+			flattened = result = Collections.unmodifiableList(types);
+		}
+		return result;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -207,6 +227,8 @@ public class TypeChoice implements IType {
 
 	@Override
 	public boolean equals(final Object obj) {
+		if (obj == this)
+			return true;
 		if (obj instanceof TypeChoice) {
 			final TypeChoice other = (TypeChoice)obj;
 			return
@@ -216,6 +238,19 @@ public class TypeChoice implements IType {
 			return false;
 	}
 
+	@Override
+	public int hashCode() {
+		int h = hash;
+		if (h == 0)
+			// symmetric like equals
+			hash = h = left.hashCode() + right.hashCode();
+		return h;
+	}
+
+	protected Object readResolve() {
+		return TypeInterner.intern(this);
+	}
+
 	public IType assumed() {
 		return left == PrimitiveType.ANY ? right : right == PrimitiveType.ANY ? left : null;
 	}
@@ -0,0 +1,75 @@
+package net.arctics.clonk.c4script.typing;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide table of composite types ({@link TypeChoice}, {@link Maybe}, {@link ArrayType}) so that structurally equal types share one instance.
+ * Comparing interned types mostly boils down to comparing references and results computed for a type, like the flattened list of a {@link TypeChoice},
+ * are computed once for all the places it is used in. Types are only weakly referenced by the table and vanish once nothing else refers to them.
+ * The table is split into stripes so inference threads interning at the same time rarely wait for each other.
+ */
+public final class TypeInterner {
+
+	private static final int STRIPES = 32;
+
+	@SuppressWarnings("unchecked")
+	private static final Map<IType, WeakReference<IType>>[] stripes = new Map[STRIPES];
+	static {
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new WeakHashMap<IType, WeakReference<IType>>();
+		}
+	}
+
+	private static final LongAdder interned = new LongAdder(), reused = new LongAdder();
+
+	private TypeInterner() {}
+
+	/**
+	 * Return the instance structurally equal to the passed type, making the passed type that instance if there is none yet.
+	 * @param type The type to intern. If an equal instance exists the passed one can be discarded.
+	 * @return The interned instance
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends IType> T intern(final T type) {
+		final int hash = type.hashCode();
+		final Map<IType, WeakReference<IType>> stripe = stripes[(hash ^ (hash >>> 16)) & (STRIPES-1)];
+		synchronized (stripe) {
+			final WeakReference<IType> ref = stripe.get(type);
+			final IType existing = ref != null ? ref.get() : null;
+			if (existing != null) {
+				if (existing.getClass() != type.getClass()) {
+					// equal to a type of another kind, e.g. a Maybe to a plain choice with any
+					return type;
+				}
+				reused.increment();
+				return (T) existing;
+			}
+			stripe.put(type, new WeakReference<IType>(type));
+		}
+		interned.increment();
+		return type;
+	}
+
+	/** Number of types that became interned instances, each one an allocation that is kept */
+	public static long interned() { return interned.sum(); }
+	/** Number of times an equal instance was returned instead of the type passed to {@link #intern(IType)} */
+	public static long reused() { return reused.sum(); }
+
+	public static int size() {
+		int size = 0;
+		for (final Map<IType, WeakReference<IType>> stripe : stripes) {
+			synchronized (stripe) {
+				size += stripe.size();
+			}
+		}
+		return size;
+	}
+
+	public static String statistics() {
+		return String.format("%d types interned, %d reused, %d alive", interned(), reused(), size()); //$NON-NLS-1$
+	}
+
+}
@@ -71,7 +71,7 @@ public enum Typing {
 		if (type2 == null) {
 			return type1;
 		}
-		if (type1.equals(type2)) {
+		if (type1 == type2 || type1.equals(type2)) {
 			return type1;
 		}
 
@@ -120,14 +120,14 @@ public enum Typing {
 		}
 
 		if (type1 instanceof Maybe && type2 instanceof Maybe) {
-			return new Maybe(unify(((Maybe)type1).maybe(), ((Maybe)type2).maybe()));
+			return TypeInterner.intern(new Maybe(unify(((Maybe)type1).maybe(), ((Maybe)type2).maybe())));
 		}
 
 		if (type1 instanceof TypeChoice && type2 instanceof TypeChoice) {
 			final TypeChoice tca = (TypeChoice)type1;
 			final TypeChoice tcb = (TypeChoice)type2;
-			final IType firstTry = unifyTypeChoices(tca, tcb);
-			return firstTry != null ? firstTry : unifyTypeChoices(tca, new TypeChoice(tcb.right(), tcb.left()));
+			final IType firstTry = unifyTypeChoices(tca, tcb.left(), tcb.right());
+			return firstTry != null ? firstTry : unifyTypeChoices(tca, tcb.right(), tcb.left());
 		}
 
 		if (type1 instanceof TypeChoice) {
@@ -149,7 +149,7 @@ public enum Typing {
 		if (type1 instanceof ArrayType && type2 instanceof ArrayType) {
 			final ArrayType ata = (ArrayType)type1;
 			final ArrayType atb = (ArrayType)type2;
-			return new ArrayType(unify(ata.elementType(), atb.elementType()));
+			return ArrayType.make(unify(ata.elementType(), atb.elementType()));
 		}
 
 		if (type1 instanceof ProplistDeclaration && type2 instanceof ProplistDeclaration) {
@@ -222,13 +222,13 @@ public enum Typing {
 		);
 	}
 
-	private IType unifyTypeChoices(final TypeChoice tca, final TypeChoice tcb) {
-		final IType unifiedLeft = unifyNoChoice(tca.left(), tcb.left());
-		final IType unifiedRight = unifyNoChoice(tca.right(), tcb.right());
+	private IType unifyTypeChoices(final TypeChoice tca, final IType bLeft, final IType bRight) {
+		final IType unifiedLeft = unifyNoChoice(tca.left(), bLeft);
+		final IType unifiedRight = unifyNoChoice(tca.right(), bRight);
 		return (
 			unifiedLeft != null && unifiedRight != null ? TypeChoice.make(unifiedLeft, unifiedRight) :
-			unifiedLeft == null && unifiedRight != null ? TypeChoice.make(TypeChoice.make(tca.left(), tcb.left()), unifiedRight) :
-			unifiedLeft != null && unifiedRight == null ? TypeChoice.make(unifiedLeft, TypeChoice.make(tca.right(), tcb.right())) :
+			unifiedLeft == null && unifiedRight != null ? TypeChoice.make(TypeChoice.make(tca.left(), bLeft), unifiedRight) :
+			unifiedLeft != null && unifiedRight == null ? TypeChoice.make(unifiedLeft, TypeChoice.make(tca.right(), bRight)) :
 			null
 		);
 	}
@@ -0,0 +1,49 @@
+package net.arctics.clonk.c4script.typing.dabble;
+
+import static java.lang.String.format;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts of the per-node arrays and {@link TypeEnvironment}s one run of {@link DabbleInference} allocated or reused.
+ */
+final class Allocations {
+
+	private final LongAdder
+		nodeArrays = new LongAdder(),
+		pooledNodeArrays = new LongAdder(),
+		nodeSlots = new LongAdder(),
+		environments = new LongAdder(),
+		recycledEnvironments = new LongAdder();
+
+	void nodeArray(final int length, final boolean pooled) {
+		if (pooled) {
+			pooledNodeArrays.increment();
+		} else {
+			nodeArrays.increment();
+			nodeSlots.add(length);
+		}
+	}
+
+	void environment(final boolean recycled) {
+		(recycled ? recycledEnvironments : environments).increment();
+	}
+
+	/** Number of per-node arrays allocated */
+	long nodeArrays() { return nodeArrays.sum(); }
+	/** Number of per-node arrays taken from a {@link NodeArrayPool} instead of being allocated */
+	long pooledNodeArrays() { return pooledNodeArrays.sum(); }
+	/** Number of slots of all the per-node arrays allocated */
+	long nodeSlots() { return nodeSlots.sum(); }
+	/** Number of type environments allocated */
+	long environments() { return environments.sum(); }
+	/** Number of type environments handed out again after a visitor was done with them */
+	long recycledEnvironments() { return recycledEnvironments.sum(); }
+
+	@Override
+	public String toString() {
+		return format("%d node arrays allocated (%d slots), %d taken from pool, %d type environments allocated, %d recycled", //$NON-NLS-1$
+			nodeArrays(), nodeSlots(), pooledNodeArrays(), environments(), recycledEnvironments());
+	}
+
+}
@@ -22,9 +22,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.stream.Collectors;
 
@@ -47,6 +45,7 @@ import net.arctics.clonk.ast.EntityRegion;
 import net.arctics.clonk.ast.IASTPositionProvider;
 import net.arctics.clonk.ast.IASTVisitor;
 import net.arctics.clonk.ast.IEvaluationContext;
+import net.arctics.clonk.ast.ILatestDeclarationVersionProvider;
 import net.arctics.clonk.ast.Placeholder;
 import net.arctics.clonk.ast.Sequence;
 import net.arctics.clonk.ast.SourceLocation;
@@ -59,6 +58,7 @@ import net.arctics.clonk.c4script.IProplistDeclaration;
 import net.arctics.clonk.c4script.InitializationFunction;
 import net.arctics.clonk.c4script.InitializationFunction.VarInitializationAccess;
 import net.arctics.clonk.c4script.Keywords;
+import net.arctics.clonk.c4script.Marker;
 import net.arctics.clonk.c4script.Operator;
 import net.arctics.clonk.c4script.ProblemReporter;
 import net.arctics.clonk.c4script.ProblemReportingStrategy;
@@ -124,6 +124,7 @@ import net.arctics.clonk.c4script.typing.IType;
 import net.arctics.clonk.c4script.typing.ITypeable;
 import net.arctics.clonk.c4script.typing.PrimitiveType;
 import net.arctics.clonk.c4script.typing.TypeChoice;
+import net.arctics.clonk.c4script.typing.TypeInterner;
 import net.arctics.clonk.c4script.typing.TypeVariable;
 import net.arctics.clonk.c4script.typing.Typing;
 import net.arctics.clonk.c4script.typing.TypingJudgementMode;
@@ -141,6 +142,7 @@ import net.arctics.clonk.index.MetaDefinition;
 import net.arctics.clonk.index.Scenario;
 import net.arctics.clonk.parser.Markers;
 import net.arctics.clonk.stringtbl.StringTbl;
+import net.arctics.clonk.util.Hasher;
 import net.arctics.clonk.util.Pair;
 import net.arctics.clonk.util.PerClass;
 import net.arctics.clonk.util.TaskExecution;
@@ -190,6 +192,43 @@ public class DabbleInference extends ProblemReportingStrategy {
 
 	private boolean noticeParameterCountMismatch;
 
+	/** Versions of declarations current in this inference, see {@link #currentVersion(Declaration)} */
+	private Map<Declaration, Declaration> currentVersions = new ConcurrentHashMap<>();
+
+	/** Counts of per-node arrays and type environments allocated in the current run */
+	private Allocations allocations = new Allocations();
+
+	/** Whether all visits of the current run finished in time. Visits that did not might still be using their arrays, see {@link #releaseVisits()} */
+	private volatile boolean visitsFinished;
+
+	/**
+	 * Return the version of a declaration current in this inference. Scripts taking part in it might have been parsed again since the declaration was obtained.
+	 * @param declaration The declaration
+	 * @return The current version or null if the declaration does not exist anymore
+	 */
+	Declaration currentVersion(final Declaration declaration) {
+		final Declaration known = currentVersions.get(declaration);
+		if (known != null) {
+			return known;
+		}
+		final Declaration parent = declaration.parentDeclaration();
+		final Declaration result;
+		if (parent == null || !input.containsKey(declaration.script())) {
+			result = declaration;
+		} else {
+			final Declaration currentParent = parent instanceof Script ? parent : currentVersion(parent);
+			result =
+				currentParent == null ? null :
+				currentParent == parent && !(parent instanceof Script) ? declaration :
+				currentParent instanceof ILatestDeclarationVersionProvider ? ((ILatestDeclarationVersionProvider)currentParent).latestVersionOf(declaration) :
+				null;
+		}
+		if (result != null) {
+			currentVersions.put(declaration, result);
+		}
+		return result;
+	}
+
 	public DabbleInference(final Index index, final String args) {
 		super(index, args);
 		for (final String a : args.split("\\|")) {
@@ -207,6 +246,8 @@ public class DabbleInference extends ProblemReportingStrategy {
 		synchronized (projectName) {
 			typing = defaulting(index != null ? index.typing() : null, Typing.INFERRED);
 			super.initialize(markers, progressMonitor, scripts);
+			currentVersions = new ConcurrentHashMap<>();
+			allocations = new Allocations();
 			gatherInput(scripts);
 			return this;
 		}
@@ -217,6 +258,8 @@ public class DabbleInference extends ProblemReportingStrategy {
 		synchronized (projectName) {
 			typing = defaulting(index != null ? index.typing() : null, Typing.INFERRED);
 			super.initialize(markers, progressMonitor, functions);
+			currentVersions = new ConcurrentHashMap<>();
+			allocations = new Allocations();
 			gatherInputFromRestrictedFunctionSet(functions);
 			return this;
 		}
@@ -228,35 +271,45 @@ public class DabbleInference extends ProblemReportingStrategy {
 		final Plan plan = new Plan(this);
 		// prepare
 		TaskExecution.threadPool(plan.visits.values(), 3);
+		visitsFinished = true;
 		if (plan.total > 0) {
 			subTask(Messages.RunInference);
-			threadPool = TaskExecution.newPool(plan.total);
-			try {
-				remainingRuns = new AtomicInteger(plan.total);
-				for (final Visit r : plan.roots) {
-					runVisit(r);
-				}
-				try {
-					threadPool.awaitTermination(3, TimeUnit.MINUTES);
-				} catch (final InterruptedException e) {
-					e.printStackTrace();
-				}
-			} finally {
-				threadPool = null;
-			}
+			visitsFinished = new VisitScheduler(plan).run(projectName);
 		}
 		// double takes
 		for (final Visit v : plan.doubleTakes) {
 			v.doubleTake = false;
 		}
 		TaskExecution.threadPool(plan.doubleTakes, 3);
+		if (DEBUG) {
+			System.out.println(format("%s: %s", projectName, TypeInterner.statistics())); //$NON-NLS-1$
+			System.out.println(format("%s: %s", projectName, allocations)); //$NON-NLS-1$
+		}
 	}
 
 	@Override
 	public void run2() {
 		validateParameters();
+		releaseVisits();
+	}
+
+	/**
+	 * Return the arrays of all visits to their pools, see {@link Visit#release()}.
+	 * If the run timed out the arrays are left to the garbage collector instead, since visits still running would share them with the next run.
+	 */
+	private void releaseVisits() {
+		if (input != null && visitsFinished) {
+			for (final Input i : input.values()) {
+				synchronized (i.visits) {
+					i.visits.values().forEach(Visit::release);
+				}
+			}
+		}
 	}
 
+	/** Counts of what the current run allocated */
+	Allocations allocations() { return allocations; }
+
 	static class ParameterValidation {
 
 		final Function called;
@@ -390,38 +443,6 @@ public class DabbleInference extends ProblemReportingStrategy {
 		this.input = input;
 	}
 
-	ExecutorService threadPool;
-	AtomicInteger remainingRuns;
-
-	void runVisit(final Visit visit) {
-		if (threadPool != null) {
-			threadPool.execute(visit);
-			if (remainingRuns.decrementAndGet() == 0) {
-				threadPool.shutdown();
-			}
-		} else {
-			visit.run();
-		}
-	}
-
-	void runPlan(final Plan plan) {
-		if (plan.total > 0) {
-			subTask(Messages.RunInference);
-			threadPool = TaskExecution.newPool(plan.total);
-			try {
-				remainingRuns = new AtomicInteger(plan.total);
-				for (final Visit r : plan.roots) {
-					runVisit(r);
-				}
-				try {
-					threadPool.awaitTermination(3, TimeUnit.MINUTES);
-				} catch (final InterruptedException e) {
-					e.printStackTrace();
-				}
-			} finally { threadPool = null; }
-		}
-	}
-
 	/**
 	 * One script and associated information.
 	 * @author madeen
@@ -443,9 +464,24 @@ public class DabbleInference extends ProblemReportingStrategy {
 			Declaration[] declarations;
 			boolean doubleTake;
 
+			/** Edges of the {@link Plan}. Only modified while making the plan, {@link VisitScheduler} counts finished dependencies separately. */
 			final Set<Visit> dependents = new HashSet<>();
 			final Set<Visit> dependencies = new HashSet<>();
 			final int hash;
+			/** Position in {@link Plan#linear} and whether the visit ran, maintained by {@link VisitScheduler} */
+			int planIndex;
+			volatile boolean finished;
+
+			/** Fingerprints stored in the resulting {@link Function.Typing}, see {@link #reuse()} */
+			int baseFingerprint, inputFingerprint, outputFingerprint;
+			/** What the visit did besides typing nodes, collected for the {@link VisitRecord} */
+			TypeVariable[] contributed;
+			Marker[] reported;
+			final List<ParameterValidation> validations = new ArrayList<>();
+			final Set<Script> usedScripts = new HashSet<>();
+			VisitRecord record;
+			/** Whether the last run replayed the {@link VisitRecord} instead of visiting the function */
+			volatile boolean replayed;
 
 			@Override
 			public int hashCode() { return hash; }
@@ -458,15 +494,6 @@ public class DabbleInference extends ProblemReportingStrategy {
 			@Override
 			public void run() {
 				visitor.visit();
-				for (final Visit d : dependents) {
-					boolean doRun;
-					synchronized (d.dependencies) {
-						doRun = d.dependencies.remove(this) && d.dependencies.size() == 0;
-					}
-					if (doRun) {
-						runVisit(d);
-					}
-				}
 			}
 
 			public Visit(final Function function) {
@@ -478,10 +505,14 @@ public class DabbleInference extends ProblemReportingStrategy {
 			}
 
 			void prepare() {
+				release();
+				final int nodes = function.totalNumASTNodes();
 				visitor = new Visitor(this);
-				inferredTypes = new IType[function.totalNumASTNodes()];
-				experts = new Expert<?>[function.totalNumASTNodes()];
-				declarations = new Declaration[function.totalNumASTNodes()];
+				// kept in the resulting typing, so not pooled
+				inferredTypes = new IType[nodes];
+				allocations.nodeArray(nodes, false);
+				experts = NodeArrayPool.EXPERTS.acquire(nodes, allocations);
+				declarations = NodeArrayPool.DECLARATIONS.acquire(nodes, allocations);
 				final boolean owns = function.containedIn(script);
 				function.body().traverse((node, nothing) -> {
 					if (owns && node instanceof AccessDeclaration) {
@@ -499,9 +530,209 @@ public class DabbleInference extends ProblemReportingStrategy {
 				}, null);
 			}
 
+			/** Return {@link #experts} and {@link #declarations} to their {@link NodeArrayPool}s once the inference does not need them anymore */
+			void release() {
+				if (experts != null) {
+					NodeArrayPool.EXPERTS.release(experts);
+					experts = null;
+				}
+				if (declarations != null) {
+					NodeArrayPool.DECLARATIONS.release(declarations);
+					declarations = null;
+				}
+			}
+
 			public boolean matches(final Function function, final Script script) {
 				return this.function == function && input().script == script;
 			}
+
+			/** Whether the result of this visit may be recorded and replayed by later inferences */
+			boolean recordable() {
+				return typing == Typing.INFERRED && !partial && !doubleTake && function.script() == script;
+			}
+
+			/**
+			 * Replay the {@link VisitRecord} of the previous typing of the function instead of visiting it if nothing the previous visit depended on changed since.
+			 * That is the case if the body was parsed from the same code, the declarations visible in the script have the same names,
+			 * the visits this one depends on produced the same output and declarations outside the scripts being inferred have the same types.
+			 * Visits leaving accesses unbound are not recorded, see {@link #resolved()}.
+			 * Since the output of the dependencies is compared instead of their code, changes stop propagating along the {@link Plan}
+			 * at visits whose types turn out the same.
+			 * @return True if the previous visit was replayed, false if the function has to be visited.
+			 */
+			boolean reuse() {
+				if (!recordable()) {
+					return false;
+				}
+				baseFingerprint = baseFingerprint();
+				final Function.Typing previous = script.typings().get(function);
+				final VisitRecord r = VisitRecord.of(function, previous);
+				if (
+					r == null || previous.bodyFingerprint != function.blockSourceHash() ||
+					previous.nodeTypes == null || previous.nodeTypes.length != inferredTypes.length ||
+					r.declarations.length != inferredTypes.length || currentVersion(r.function) != function
+				) {
+					return false;
+				}
+				final Declaration[] bindings = new Declaration[inferredTypes.length];
+				for (int x = 0; x < bindings.length; x++) {
+					if (r.declarations[x] != null && (bindings[x] = currentVersion(r.declarations[x])) == null) {
+						return false;
+					}
+				}
+				if (inputFingerprint(bindings) != previous.inputFingerprint) {
+					return false;
+				}
+				final TypeVariable[] environment = new TypeVariable[r.environment.length];
+				for (int i = 0; i < environment.length; i++) {
+					if ((environment[i] = VisitRecord.copy(r.environment[i], DabbleInference.this::currentVersion)) == null) {
+						return false;
+					}
+				}
+				final ASTNode[] nodes = new ASTNode[inferredTypes.length];
+				function.body().traverse((node, nothing) -> {
+					final int nodeID = node.localIdentifier();
+					if (nodeID >= 0 && nodeID < nodes.length) {
+						nodes[nodeID] = node;
+					}
+					return TraversalContinuation.Continue;
+				}, null);
+				final Function[] callees = new Function[r.callees.length];
+				for (int i = 0; i < callees.length; i++) {
+					final int nodeID = r.validatedCalls[i];
+					if (
+						nodeID < 0 || nodeID >= nodes.length || !(nodes[nodeID] instanceof CallDeclaration) ||
+						(callees[i] = as(currentVersion(r.callees[i]), Function.class)) == null
+					) {
+						return false;
+					}
+				}
+
+				for (int x = 0; x < bindings.length; x++) {
+					declarations[x] = bindings[x];
+					if (bindings[x] != null && nodes[x] instanceof AccessDeclaration) {
+						((AccessDeclaration)nodes[x]).setDeclaration(bindings[x]);
+					}
+				}
+				System.arraycopy(previous.nodeTypes, 0, inferredTypes, 0, inferredTypes.length);
+
+				final TypeEnvironment env = new TypeEnvironment(typing, typeEnvironment);
+				for (final TypeVariable tv : environment) {
+					if (tv.key() == function) {
+						set(tv.get());
+						env.add(this);
+					} else {
+						// the recorded copies must not be unified with by other visits
+						env.add(VisitRecord.copy(tv, d -> d));
+					}
+				}
+				typeEnvironment.inject(env);
+				contributed = environment;
+
+				final int delta = function.bodyLocation().start() - r.bodyStart;
+				reported = new Marker[r.markers.length];
+				for (int i = 0; i < reported.length; i++) {
+					final Marker m = r.markers[i];
+					ASTNode reporter = m.reporter;
+					if (reporter != null && reporter.parent(Function.class) == r.function) {
+						final int nodeID = reporter.localIdentifier();
+						reporter = nodeID >= 0 && nodeID < nodes.length ? nodes[nodeID] : null;
+					}
+					reported[i] = new Marker(m, reporter, delta);
+					erroneous |= m.severity >= IMarker.SEVERITY_ERROR;
+					DabbleInference.this.markers().add(reported[i]);
+				}
+				for (final Script s : r.usedScripts) {
+					visitor.addUsedScript(s);
+				}
+				for (int i = 0; i < callees.length; i++) {
+					final ParameterValidation pv = new ParameterValidation(visitor, (CallDeclaration) nodes[r.validatedCalls[i]], callees[i]);
+					validations.add(pv);
+					if (callees[i].baseFunction() instanceof EngineFunction) {
+						pv.validateTypes();
+					} else {
+						parameterValidations.add(pv);
+					}
+				}
+				return true;
+			}
+
+			/**
+			 * Compute the output fingerprint of this visit, which ran or was replayed, and record it if {@link #recordable()}.
+			 */
+			void conclude() {
+				if (contributed == null) {
+					// the visit failed, so whatever depends on it gets visited again
+					outputFingerprint = System.identityHashCode(this);
+					return;
+				}
+				int environmentHash = 0;
+				for (final TypeVariable tv : contributed) {
+					environmentHash += new Hasher().in(tv.key().name()).in(tv.get().typeName(false)).finish();
+				}
+				final Hasher output = new Hasher().in(environmentHash);
+				for (final IType t : inferredTypes) {
+					output.in(t != null ? t.typeName(false) : null);
+				}
+				outputFingerprint = output.finish();
+				if (recordable() && resolved()) {
+					inputFingerprint = inputFingerprint(declarations);
+					final int[] validatedCalls = new int[validations.size()];
+					final Function[] callees = new Function[validations.size()];
+					for (int i = 0; i < validatedCalls.length; i++) {
+						validatedCalls[i] = validations.get(i).node.localIdentifier();
+						callees[i] = validations.get(i).called;
+					}
+					record = new VisitRecord(
+						function, Arrays.copyOf(declarations, inferredTypes.length), contributed, reported,
+						validatedCalls, callees, usedScripts.toArray(new Script[usedScripts.size()])
+					);
+				}
+			}
+
+			/**
+			 * Whether all accesses in the function were bound to a declaration.
+			 * The {@link #declarationsFingerprint} only covers names declared in the {@link #conglomerate},
+			 * so an access left unbound might bind to a global or definition declared anywhere in the index since, and the visit is not recorded.
+			 */
+			private boolean resolved() {
+				return function.body().traverse((node, nothing) -> {
+					final int nodeID = node.localIdentifier();
+					return node instanceof AccessDeclaration && nodeID >= 0 && nodeID < declarations.length && declarations[nodeID] == null
+						? TraversalContinuation.Cancel : TraversalContinuation.Continue;
+				}, null) != TraversalContinuation.Cancel;
+			}
+
+			/** Fingerprint of the code of the function and of the output of the visits it depends on */
+			private int baseFingerprint() {
+				final Hasher hasher = new Hasher()
+					.in(function.blockSourceHash())
+					.in(function.name())
+					.in(function.visibility())
+					.in(function.isOldStyle())
+					.in(function.bodyLocation().start()-function.start())
+					.in(declarationsFingerprint);
+				for (final Variable p : function.parameters()) {
+					hasher.in(p.name()).in(p.staticallyTyped() ? p.type().typeName(false) : null);
+				}
+				int dependencyOutput = 0;
+				for (final Visit d : dependencies) {
+					dependencyOutput += d.outputFingerprint;
+				}
+				return hasher.in(dependencyOutput).finish();
+			}
+
+			/** {@link #baseFingerprint} combined with the types of bound declarations that are not being inferred along with this visit */
+			private int inputFingerprint(final Declaration[] bindings) {
+				final Hasher hasher = new Hasher().in(baseFingerprint);
+				for (int x = 0; x < bindings.length; x++) {
+					final Declaration d = bindings[x];
+					if (d instanceof ITypeable && !DabbleInference.this.input.containsKey(d.script())) {
+						hasher.in(x).in(defaulting(((ITypeable)d).type(), PrimitiveType.UNKNOWN).typeName(false));
+					}
+				}
+				return hasher.finish();
+			}
 		}
 
 		final class Visitor extends Markers implements ProblemReporter, IEvaluationContext {
@@ -634,7 +865,7 @@ public class DabbleInference extends ProblemReportingStrategy {
 						if (!function.parameter(pa).staticallyTyped()) {
 							final ASTNode concretePar = call.params()[pa];
 							if (concretePar != null) {
-								script().addUsedScript(other);
+								addUsedScript(other);
 								types[pa][callIndex] = nodeType(f, other, v, vtor, concretePar);
 							}
 						}
@@ -713,10 +944,16 @@ public class DabbleInference extends ProblemReportingStrategy {
 							}
 							actualVisit(ownedFunction, statements, parTypes);
 							warnAboutUnusedLocals(function, statements);
+							final List<Marker> reported = new ArrayList<>();
+							for (final Marker m : this) {
+								reported.add(m);
+							}
+							visit.reported = reported.toArray(new Marker[reported.size()]);
 							DabbleInference.this.markers().take(this);
 						}
 						env = endTypeEnvironment();
 						typeUntypedParametersByUsage(parTypes);
+						visit.contributed = copyEnvironment(env);
 					}
 					endTypeEnvironment();
 				}
@@ -728,6 +965,24 @@ public class DabbleInference extends ProblemReportingStrategy {
 				}
 			}
 
+			/** Copy what the visit is about to contribute to the type environment of the script, or return null if some of it can't be copied */
+			private TypeVariable[] copyEnvironment(final TypeEnvironment env) {
+				final TypeVariable[] result = new TypeVariable[env.size()];
+				int i = 0;
+				for (final TypeVariable tv : env) {
+					if ((result[i++] = VisitRecord.copy(tv, d -> d)) == null) {
+						return null;
+					}
+				}
+				return result;
+			}
+
+			/** Note that the script uses another script, remembering it for replaying the visit */
+			void addUsedScript(final Script other) {
+				script().addUsedScript(other);
+				visit.usedScripts.add(other);
+			}
+
 			private void typeUntypedParametersByUsage(final TypeVariable[] parTypes) {
 				class CallsIntersectionAssigner implements IASTVisitor<Void> {
 					final Declaration parameter;
@@ -851,7 +1106,7 @@ public class DabbleInference extends ProblemReportingStrategy {
 					controlFlow = old;
 				}
 				endRoaming();
-				visit.declarations = new Declaration[visit.declarations.length];
+				Arrays.fill(visit.declarations, null);
 				preliminary = false;
 			}
 
@@ -907,12 +1162,15 @@ public class DabbleInference extends ProblemReportingStrategy {
 			}
 
 			public TypeEnvironment newTypeEnvironment() {
-				return this.environment = new TypeEnvironment(typing, defaulting(environment, input().typeEnvironment));
+				return this.environment = TypeEnvironment.obtain(typing, defaulting(environment, input().typeEnvironment), allocations);
 			}
 
 			public TypeEnvironment endTypeEnvironment() {
-				environment.up.inject(environment);
-				return environment = environment.up == input().typeEnvironment ? null : environment.up;
+				final TypeEnvironment ended = environment;
+				ended.up.inject(ended);
+				environment = ended.up == input().typeEnvironment ? null : ended.up;
+				ended.recycle();
+				return environment;
 			}
 
 			private void createWarningAtDeclarationOfVariable(
@@ -1091,6 +1349,8 @@ public class DabbleInference extends ProblemReportingStrategy {
 		final int fragmentOffset;
 		final TypeEnvironment typeEnvironment;
 		final boolean partial;
+		/** Fingerprint of the names of the declarations of the scripts in {@link #conglomerate}, see {@link Visit#reuse()} */
+		final int declarationsFingerprint;
 		boolean erroneous = false;
 
 		public Script script() { return script; }
@@ -1245,6 +1505,21 @@ public class DabbleInference extends ProblemReportingStrategy {
 			this.typeEnvironment = TypeEnvironment.newSynchronized(typing);
 			this.visits = Collections.synchronizedMap(makeVisits(restrict));
 			this.partial = restrict != null && restrict.length > 0;
+			this.declarationsFingerprint = typing == Typing.INFERRED && !partial ? declarationsFingerprint() : 0;
+		}
+
+		private int declarationsFingerprint() {
+			final Hasher hasher = new Hasher();
+			for (final Script s : conglomerate) {
+				hasher.in(s);
+				for (final Function f : s.functions()) {
+					hasher.in(f.name()).in(f.visibility());
+				}
+				for (final Variable v : s.variables()) {
+					hasher.in(v.name()).in(v.scope());
+				}
+			}
+			return hasher.finish();
 		}
 
 		public void apply() {
@@ -1256,7 +1531,7 @@ public class DabbleInference extends ProblemReportingStrategy {
 			} else {
 				script.setTypings(new Script.Typings(variableTypes, functionTypings));
 			}
-			for (final TypeVariable tv : typeEnvironment.values()) {
+			for (final TypeVariable tv : typeEnvironment) {
 				if (tv.declaration().containedIn(script)) {
 					tv.apply(false);
 				}
@@ -1298,13 +1573,18 @@ public class DabbleInference extends ProblemReportingStrategy {
 					parameterTypes[i] = parTy != null ? parTy.get() : p.type();
 				}
 			}
-			functionTypings.put(fun.name(),
-				new Function.Typing(
-					parameterTypes,
-					retTy != null ? retTy.get() : fun.returnType(),
-					visit.inferredTypes
-				)
+			final Function.Typing result = new Function.Typing(
+				parameterTypes,
+				retTy != null ? retTy.get() : fun.returnType(),
+				visit.inferredTypes,
+				fun.blockSourceHash(),
+				visit.inputFingerprint,
+				visit.outputFingerprint
 			);
+			if (visit.record != null) {
+				VisitRecord.keep(result, visit.record);
+			}
+			functionTypings.put(fun.name(), result);
 		}
 
 		@Override
@@ -1494,11 +1774,20 @@ public class DabbleInference extends ProblemReportingStrategy {
 		public IType type(final ASTNode node, final Visitor visitor) { return PrimitiveType.UNKNOWN; }
 	};
 
-	private final <T extends ASTNode> Expert<? super T> findExpert(final T node) {
-		for (Class<?> cls = node.getClass(); cls != null; cls = cls.getSuperclass()) {
-			@SuppressWarnings("unchecked")
-			final
-			Expert<? super T> expert = (Expert<? super T>)committee.get(cls);
+	@SuppressWarnings("unchecked")
+	final <T extends ASTNode> Expert<? super T> findExpert(final T node) {
+		return (Expert<? super T>) dispatch.get(node.getClass());
+	}
+
+	/**
+	 * Find the expert for a class of nodes by walking up its class hierarchy until the committee has an expert for one of the classes.
+	 * Only consulted once per class, {@link #findExpert(ASTNode)} takes the result from {@link #dispatch} from then on.
+	 * @param nodeClass The class of nodes
+	 * @return The expert, {@link #MASTER_OF_NONE} if there is none.
+	 */
+	final Expert<?> consultCommittee(final Class<?> nodeClass) {
+		for (Class<?> cls = nodeClass; cls != null; cls = cls.getSuperclass()) {
+			final Expert<?> expert = committee.get(cls);
 			if (expert != null) {
 				return expert;
 			}
@@ -1508,6 +1797,12 @@ public class DabbleInference extends ProblemReportingStrategy {
 
 	private final Map<Class<? extends ASTNode>, Expert<? extends ASTNode>> committee;
 
+	/** Expert for each concrete node class, resolved by {@link #consultCommittee(Class)} the first time a node of that class is encountered */
+	private final ClassValue<Expert<?>> dispatch = new ClassValue<Expert<?>>() {
+		@Override
+		protected Expert<?> computeValue(final Class<?> nodeClass) { return consultCommittee(nodeClass); }
+	};
+
 	class AccessDeclarationExpert<T extends AccessDeclaration> extends Expert<T> {
 		public AccessDeclarationExpert(final Class<T> cls) { super(cls); }
 		protected Declaration obtainDeclaration(final T node, final Visitor visitor) { return null; }
@@ -1688,7 +1983,7 @@ public class DabbleInference extends ProblemReportingStrategy {
 				}
 			}
 			private void handleStatic(final Visitor visitor, final Variable var) {
-				visitor.script().addUsedScript(var.script());
+				visitor.addUsedScript(var.script());
 			}
 			private void handleField(final T node, final Visitor visitor, final ASTNode pred) throws ProblemException {
 				final Declaration d = node.parent(Declaration.class);
@@ -1908,7 +2203,7 @@ public class DabbleInference extends ProblemReportingStrategy {
 							elmType = typing.unify(elmType, visitor.ty(e));
 						}
 					}
-					return new ArrayType(elmType);
+					return ArrayType.make(elmType);
 				}
 				@Override
 				public boolean isModifiable(final ArrayExpression node, final Visitor visitor) { return false; }
@@ -1953,7 +2248,7 @@ public class DabbleInference extends ProblemReportingStrategy {
 								}
 							}
 						}
-						return visitor.judgement(pred, new ArrayType(rightSideType), TypingJudgementMode.UNIFY);
+						return visitor.judgement(pred, ArrayType.make(rightSideType), TypingJudgementMode.UNIFY);
 					}
 					return true;
 				}
@@ -2529,7 +2824,7 @@ public class DabbleInference extends ProblemReportingStrategy {
 					final Function f = (Function)declaration;
 
 					if (f.visibility() == FunctionScope.GLOBAL || predecessor != null) {
-						visitor.script().addUsedScript(f.script());
+						visitor.addUsedScript(f.script());
 					}
 
 					// not a special case... check regular parameter types
@@ -2537,6 +2832,7 @@ public class DabbleInference extends ProblemReportingStrategy {
 						if (!applyRuleBasedValidation(node, visitor, params)) {
 							if (node.params().length > 0 && visitor.visit.function.script() == visitor.script()) {
 								final ParameterValidation pv = new ParameterValidation(visitor, node, f);
+								visitor.visit.validations.add(pv);
 								if (f.baseFunction() instanceof EngineFunction) {
 									pv.validateTypes();
 								} else {
@@ -6,6 +6,7 @@ public class Messages extends NLS {
 	private static final String BUNDLE_NAME = Messages.class.getPackage().getName()+".messages"; //$NON-NLS-1$
 	public static String Apply;
 	public static String ComputingGraph;
+	public static String InferenceTimedOut;
 	public static String RunInference;
 	public static String UnknownProject;
 	public static String ValidateParameters;
@@ -0,0 +1,84 @@
+package net.arctics.clonk.c4script.typing.dabble;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+import net.arctics.clonk.ast.Declaration;
+import net.arctics.clonk.c4script.typing.dabble.DabbleInference.Expert;
+import net.arctics.clonk.c4script.typing.dabble.DabbleInference.Input.Visit;
+
+/**
+ * Pool of arrays with a slot per node of a function which a {@link Visit} only needs while the inference it is part of runs.
+ * Arrays come in power-of-two size classes, so the array handed out for a function is usually longer than the function has nodes.
+ * Released arrays are cleared and kept up to a limit per class. Functions with more nodes than the largest class fits get arrays of their own.<br>
+ * Visits are prepared on pool threads while the visits of an inference are released together by the thread finishing it,
+ * so instead of each thread keeping its own arrays all threads share one pool.
+ */
+final class NodeArrayPool<T> {
+
+	static final NodeArrayPool<Expert<?>> EXPERTS = new NodeArrayPool<>(Expert[]::new);
+	static final NodeArrayPool<Declaration> DECLARATIONS = new NodeArrayPool<>(Declaration[]::new);
+
+	private static final int SMALLEST_CLASS_BITS = 4;
+	private static final int CLASSES = 12;
+	private static final int KEPT_PER_CLASS = 128;
+
+	private final IntFunction<T[]> allocator;
+	private final ArrayDeque<T[]>[] free;
+
+	@SuppressWarnings("unchecked")
+	private NodeArrayPool(final IntFunction<T[]> allocator) {
+		this.allocator = allocator;
+		this.free = new ArrayDeque[CLASSES];
+		for (int i = 0; i < CLASSES; i++) {
+			free[i] = new ArrayDeque<>();
+		}
+	}
+
+	private static int sizeClass(final int length) {
+		final int bits = length <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(length - 1);
+		return Math.max(bits, SMALLEST_CLASS_BITS) - SMALLEST_CLASS_BITS;
+	}
+
+	/**
+	 * Hand out a cleared array of at least the specified length.
+	 * @param length Number of nodes
+	 * @param allocations Counters to note whether the array was allocated or taken from the pool in
+	 * @return The array
+	 */
+	T[] acquire(final int length, final Allocations allocations) {
+		final int c = sizeClass(length);
+		if (c < CLASSES) {
+			final T[] pooled;
+			synchronized (free[c]) {
+				pooled = free[c].poll();
+			}
+			if (pooled != null) {
+				allocations.nodeArray(pooled.length, true);
+				return pooled;
+			}
+		}
+		final T[] array = allocator.apply(c < CLASSES ? 1 << (c + SMALLEST_CLASS_BITS) : length);
+		allocations.nodeArray(array.length, false);
+		return array;
+	}
+
+	/**
+	 * Return an array obtained from {@link #acquire(int, Allocations)}. It must not be used anymore afterwards.
+	 * @param array The array
+	 */
+	void release(final T[] array) {
+		final int c = sizeClass(array.length);
+		if (c >= CLASSES || array.length != 1 << (c + SMALLEST_CLASS_BITS)) {
+			return;
+		}
+		Arrays.fill(array, null);
+		synchronized (free[c]) {
+			if (free[c].size() < KEPT_PER_CLASS) {
+				free[c].push(array);
+			}
+		}
+	}
+
+}
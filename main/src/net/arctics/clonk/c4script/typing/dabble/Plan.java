@@ -65,12 +65,9 @@ class Plan {
 						}
 						final int numParameters = fn.numParameters();
 						if (i.shouldTypeFromCalls(fn)) {
-							final CallDeclaration[] calls = inference.index().callsTo(fn.name());
+							final CallDeclaration[] calls = inference.index().callsTo(fn.name(), numParameters);
 							if (calls != null) {
 								for (final CallDeclaration call : calls) {
-									if (call.params().length != numParameters) {
-										continue;
-									}
 									final Function caller = call.parent(Function.class);
 									final List<Visit> callerVisits = visits.get(caller.name());
 									if (callerVisits != null) {
@@ -1,39 +1,206 @@
 package net.arctics.clonk.c4script.typing.dabble;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import net.arctics.clonk.ast.Declaration;
 import net.arctics.clonk.c4script.typing.TypeVariable;
 import net.arctics.clonk.c4script.typing.Typing;
 
-@SuppressWarnings("serial")
-public class TypeEnvironment extends HashMap<Declaration, TypeVariable> {
-	final Typing typing;
-	public final TypeEnvironment up;
+/**
+ * Type variables of a block keyed by their declarations, layered on top of the environment of the enclosing block ({@link #up}).
+ * Declarations are compared by identity and entries are stored in open-addressed arrays which are only allocated once a variable is added,
+ * since most blocks never get one. Environments visitors are done with are recycled per thread ({@link #obtain(Typing, TypeEnvironment, Allocations)}).
+ */
+public class TypeEnvironment implements Iterable<TypeVariable> {
+
+	private static final int INITIAL_CAPACITY = 8;
+	/** Capacity up to which the arrays of a recycled environment are kept */
+	private static final int RECYCLED_CAPACITY = 64;
+	private static final int SPARE_PER_THREAD = 64;
+
+	private static final ThreadLocal<ArrayDeque<TypeEnvironment>> spare = ThreadLocal.withInitial(ArrayDeque::new);
+
+	Typing typing;
+	TypeEnvironment up;
+	private Declaration[] keys;
+	private TypeVariable[] variables;
+	private int size;
+
 	public TypeEnvironment(final Typing typing, final TypeEnvironment up) {
-		super(5);
 		this.typing = typing;
 		this.up = up;
 	}
 	public TypeEnvironment(final Typing typing) {
 		this(typing, null);
 	}
+
+	/**
+	 * Return an environment the calling thread {@link #recycle()}d or a new one.
+	 * @param typing Typing to unify types with
+	 * @param up Environment of the enclosing block
+	 * @param allocations Counters to note whether the environment was allocated or recycled in
+	 * @return The empty environment
+	 */
+	static TypeEnvironment obtain(final Typing typing, final TypeEnvironment up, final Allocations allocations) {
+		final TypeEnvironment env = spare.get().poll();
+		allocations.environment(env != null);
+		if (env == null) {
+			return new TypeEnvironment(typing, up);
+		}
+		env.typing = typing;
+		env.up = up;
+		return env;
+	}
+
+	/**
+	 * Clear this environment and keep it for {@link #obtain(Typing, TypeEnvironment, Allocations)} on the calling thread. It must not be used anymore afterwards.
+	 */
+	void recycle() {
+		if (keys != null && keys.length > RECYCLED_CAPACITY) {
+			keys = null;
+			variables = null;
+			size = 0;
+		} else {
+			clear();
+		}
+		up = null;
+		final ArrayDeque<TypeEnvironment> s = spare.get();
+		if (s.size() < SPARE_PER_THREAD) {
+			s.push(this);
+		}
+	}
+
+	private static int slot(final Declaration key, final int mask) {
+		final int h = System.identityHashCode(key) * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	public TypeVariable get(final Declaration key) {
+		if (key == null || size == 0) {
+			return null;
+		}
+		final int mask = keys.length - 1;
+		for (int i = slot(key, mask);; i = (i + 1) & mask) {
+			final Declaration k = keys[i];
+			if (k == key) {
+				return variables[i];
+			} else if (k == null) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Put a variable for a declaration into this environment.
+	 * @param key The declaration. Variables without one are not kept.
+	 * @param variable The variable
+	 * @return The variable previously put for the declaration or null
+	 */
+	public TypeVariable put(final Declaration key, final TypeVariable variable) {
+		if (key == null) {
+			return null;
+		}
+		if (keys == null) {
+			keys = new Declaration[INITIAL_CAPACITY];
+			variables = new TypeVariable[INITIAL_CAPACITY];
+		} else if ((size + 1) * 4 > keys.length * 3) {
+			grow();
+		}
+		final int mask = keys.length - 1;
+		int i = slot(key, mask);
+		for (; keys[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				final TypeVariable previous = variables[i];
+				variables[i] = variable;
+				return previous;
+			}
+		}
+		keys[i] = key;
+		variables[i] = variable;
+		size++;
+		return null;
+	}
+
+	private void grow() {
+		final Declaration[] oldKeys = keys;
+		final TypeVariable[] oldVariables = variables;
+		keys = new Declaration[oldKeys.length * 2];
+		variables = new TypeVariable[oldKeys.length * 2];
+		final int mask = keys.length - 1;
+		for (int o = 0; o < oldKeys.length; o++) {
+			if (oldKeys[o] != null) {
+				int i = slot(oldKeys[o], mask);
+				while (keys[i] != null) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[o];
+				variables[i] = oldVariables[o];
+			}
+		}
+	}
+
+	public void add(final TypeVariable var) { put(var.key(), var); }
+	public int size() { return size; }
+	public boolean isEmpty() { return size == 0; }
+
+	public void clear() {
+		if (size > 0) {
+			Arrays.fill(keys, null);
+			Arrays.fill(variables, null);
+			size = 0;
+		}
+	}
+
+	/** Iterate over the variables of this environment, not including the ones of {@link #up} */
+	@Override
+	public Iterator<TypeVariable> iterator() {
+		return new Iterator<TypeVariable>() {
+			int i = advance(0);
+			private int advance(final int from) {
+				int next = from;
+				while (variables != null && next < variables.length && keys[next] == null) {
+					next++;
+				}
+				return next;
+			}
+			@Override
+			public boolean hasNext() { return variables != null && i < variables.length; }
+			@Override
+			public TypeVariable next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				final TypeVariable result = variables[i];
+				i = advance(i + 1);
+				return result;
+			}
+		};
+	}
+
 	public TypeEnvironment inject(final TypeEnvironment other) {
-		for (final Map.Entry<Declaration, TypeVariable> otherInfo : other.entrySet()) {
-			final TypeVariable myVar = this.get(otherInfo.getKey());
+		if (other.size == 0) {
+			return this;
+		}
+		for (int i = 0; i < other.keys.length; i++) {
+			final Declaration key = other.keys[i];
+			if (key == null) {
+				continue;
+			}
+			final TypeVariable myVar = this.get(key);
 			if (myVar != null)
-				myVar.set(typing.unify(myVar.get(), otherInfo.getValue().get()));
+				myVar.set(typing.unify(myVar.get(), other.variables[i].get()));
 			else
-				this.put(otherInfo.getKey(), otherInfo.getValue());
+				this.put(key, other.variables[i]);
 		}
 		return this;
 	}
 	public void apply(final boolean soft) {
-		for (final TypeVariable info : this.values())
+		for (final TypeVariable info : this)
 			info.apply(soft);
 	}
-	public void add(final TypeVariable var) { this.put(var.key(), var); }
 	public static TypeEnvironment newSynchronized(final Typing typing) {
 		return new TypeEnvironment(typing) {
 			@Override
@@ -41,7 +208,7 @@ public class TypeEnvironment extends HashMap<Declaration, TypeVariable> {
 				return super.inject(other);
 			}
 			@Override
-			public synchronized TypeVariable get(final Object key) { return super.get(key); }
+			public synchronized TypeVariable get(final Declaration key) { return super.get(key); }
 		};
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,106 @@
+package net.arctics.clonk.c4script.typing.dabble;
+
+import java.util.function.UnaryOperator;
+
+import net.arctics.clonk.ast.Declaration;
+import net.arctics.clonk.c4script.Function;
+import net.arctics.clonk.c4script.Marker;
+import net.arctics.clonk.c4script.Script;
+import net.arctics.clonk.c4script.Variable;
+import net.arctics.clonk.c4script.typing.TypeVariable;
+import net.arctics.clonk.c4script.typing.dabble.DabbleInference.Input.Visit;
+import net.arctics.clonk.index.Index;
+
+/**
+ * Everything a {@link Visit} did besides typing the nodes of its function, kept along with the {@link Function.Typing} it resulted in.
+ * As long as the fingerprints of the typing match, the next inference replays the record instead of visiting the function again.
+ * Records are only kept in memory, so after typings were loaded from the index each function is visited once before it can be replayed.
+ * They are kept in the {@link Index#visitRecords(Script)} of the script of the function, one per function name,
+ * so a record is replaced along with the typing of its function and dropped along with its script or index.
+ */
+final class VisitRecord {
+
+	private static VisitRecords records(final Script script) {
+		final Index index = script.index();
+		return index != null ? index.visitRecords(script) : null;
+	}
+
+	/**
+	 * Return the record kept for a typing of a function.
+	 * @param function The function
+	 * @param typing The typing of the function
+	 * @return The record or null if none was kept for that typing
+	 */
+	static VisitRecord of(final Function function, final Function.Typing typing) {
+		final VisitRecords records = typing != null ? records(function.script()) : null;
+		final VisitRecord r = records != null ? records.get(function.name()) : null;
+		return r != null && r.typing == typing ? r : null;
+	}
+
+	/**
+	 * Keep a record, replacing the one kept for the previous typing of its function.
+	 * @param typing The typing the visit resulted in
+	 * @param record The record
+	 */
+	static void keep(final Function.Typing typing, final VisitRecord record) {
+		final VisitRecords records = records(record.function.script());
+		if (records != null) {
+			record.typing = typing;
+			records.put(record.function.name(), record);
+		}
+	}
+
+	/** The typing this record was kept for */
+	private Function.Typing typing;
+	/** The function that was visited */
+	final Function function;
+	/** Start of the body of the function, for moving markers along with the function */
+	final int bodyStart;
+	/** Declarations nodes were bound to, by local identifier of the node */
+	final Declaration[] declarations;
+	/** Type variables the visit contributed to the type environment of its script */
+	final TypeVariable[] environment;
+	final Marker[] markers;
+	/** Local identifiers of calls whose arguments were validated against the parameters of the function at the same index in {@link #callees} */
+	final int[] validatedCalls;
+	final Function[] callees;
+	final Script[] usedScripts;
+
+	VisitRecord(
+		final Function function,
+		final Declaration[] declarations,
+		final TypeVariable[] environment,
+		final Marker[] markers,
+		final int[] validatedCalls,
+		final Function[] callees,
+		final Script[] usedScripts
+	) {
+		this.function = function;
+		this.bodyStart = function.bodyLocation().start();
+		this.declarations = declarations;
+		this.environment = environment;
+		this.markers = markers;
+		this.validatedCalls = validatedCalls;
+		this.callees = callees;
+		this.usedScripts = usedScripts;
+	}
+
+	/**
+	 * Copy a type variable, keying the copy to another declaration.
+	 * @param variable The variable to copy
+	 * @param rekey Function returning the declaration to key the copy to. May return null if there is none.
+	 * @return The copy or null if there is no declaration for it or type variables of its kind are not copied.
+	 */
+	static TypeVariable copy(final TypeVariable variable, final UnaryOperator<Declaration> rekey) {
+		final Declaration key = rekey.apply(variable.key());
+		final TypeVariable result =
+			variable instanceof VariableTypeVariable && key instanceof Variable ? new VariableTypeVariable((Variable) key) :
+			variable instanceof FunctionReturnTypeVariable && key instanceof Function ? new FunctionReturnTypeVariable((Function) key) :
+			null;
+		if (result != null) {
+			result.set(variable.get());
+		}
+		return result;
+	}
+
+}
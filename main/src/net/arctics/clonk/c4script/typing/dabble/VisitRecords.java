@@ -0,0 +1,25 @@
+package net.arctics.clonk.c4script.typing.dabble;
+
+import java.util.Map;
+
+import net.arctics.clonk.c4script.Script;
+import net.arctics.clonk.index.Index;
+import net.arctics.clonk.util.TaskExecution;
+
+/**
+ * The {@link VisitRecord}s kept for the functions of one script, by function name.
+ * Held by the index of the script ({@link Index#visitRecords(Script)}) but only read and written by {@link DabbleInference}.
+ */
+public final class VisitRecords {
+
+	private final Map<String, VisitRecord> records = TaskExecution.newConcurrentMap();
+
+	VisitRecord get(final String functionName) {
+		return records.get(functionName);
+	}
+
+	void put(final String functionName, final VisitRecord record) {
+		records.put(functionName, record);
+	}
+
+}
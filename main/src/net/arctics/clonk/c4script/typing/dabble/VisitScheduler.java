@@ -0,0 +1,108 @@
+package net.arctics.clonk.c4script.typing.dabble;
+
+import static java.lang.String.format;
+import static net.arctics.clonk.util.StringUtil.blockString;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.arctics.clonk.c4script.typing.dabble.DabbleInference.Input.Visit;
+import net.arctics.clonk.preferences.ClonkPreferences;
+import net.arctics.clonk.util.TaskExecution;
+
+/**
+ * Runs the {@link Visit}s of a {@link Plan} in dependency order on a work-stealing pool.
+ * Each visit counts the dependencies it still waits for. The visit finishing last decrements that count to zero and forks the dependent visit,
+ * so ready visits are picked up by whichever worker is idle and dependencies are never locked.
+ * Running is complete when every visit has finished, regardless of how long the pool takes to wind down.
+ * Visits whose inputs did not change since the last inference are replayed instead of run ({@link Visit#reuse()}).
+ */
+final class VisitScheduler {
+
+	private final Plan plan;
+	private final CountDownLatch finished;
+	private final AtomicInteger[] pending;
+
+	private final class VisitTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Visit visit;
+		VisitTask(final Visit visit) { this.visit = visit; }
+		@Override
+		protected void compute() {
+			try {
+				visit.replayed = visit.reuse();
+				if (!visit.replayed) {
+					visit.visitor.visit();
+				}
+				visit.conclude();
+			} catch (final Exception e) {
+				// dependents still get to run so the plan completes
+				e.printStackTrace();
+			} finally {
+				visit.finished = true;
+				finished.countDown();
+			}
+			for (final Visit d : visit.dependents) {
+				if (pending[d.planIndex].decrementAndGet() == 0) {
+					// not joined, completion is tracked by the latch
+					new VisitTask(d).fork();
+				}
+			}
+		}
+	}
+
+	VisitScheduler(final Plan plan) {
+		this.plan = plan;
+		this.finished = new CountDownLatch(plan.total);
+		this.pending = new AtomicInteger[plan.total];
+		for (int i = 0; i < plan.total; i++) {
+			plan.linear[i].planIndex = i;
+			plan.linear[i].finished = false;
+			pending[i] = new AtomicInteger(plan.linear[i].dependencies.size());
+		}
+	}
+
+	/**
+	 * Run all visits of the plan, waiting at most as long as the {@link ClonkPreferences#INFERENCE_TIMEOUT} preference allows.
+	 * @param projectName Name used when reporting visits that did not finish in time
+	 * @return True if all visits finished
+	 */
+	boolean run(final String projectName) {
+		final ForkJoinPool pool = new ForkJoinPool(plan.total >= TaskExecution.THRESHOLD ? TaskExecution.threadPoolSize() : 1);
+		try {
+			for (final Visit root : plan.roots) {
+				pool.execute(new VisitTask(root));
+			}
+			final int preferredTimeout = ClonkPreferences.integer(ClonkPreferences.INFERENCE_TIMEOUT);
+			final int timeout = preferredTimeout > 0 ? preferredTimeout : ClonkPreferences.INFERENCE_TIMEOUT_DEFAULT;
+			if (!finished.await(timeout, TimeUnit.MINUTES)) {
+				reportStuck(projectName, timeout);
+				return false;
+			}
+			return true;
+		} catch (final InterruptedException e) {
+			e.printStackTrace();
+			return false;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private void reportStuck(final String projectName, final int timeout) {
+		final List<String> stuck = new ArrayList<>();
+		for (final Visit v : plan.linear) {
+			if (!v.finished) {
+				final int p = pending[v.planIndex].get();
+				stuck.add(p > 0 ? format("%s (waiting for %d)", v, p) : v.toString()); //$NON-NLS-1$
+			}
+		}
+		System.out.println(format(Messages.InferenceTimedOut, projectName, timeout, stuck.size(), plan.total,
+			blockString("", "", ", ", stuck))); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+}
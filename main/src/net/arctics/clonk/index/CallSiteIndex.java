@@ -0,0 +1,189 @@
+package net.arctics.clonk.index;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.arctics.clonk.Core;
+import net.arctics.clonk.ast.TraversalContinuation;
+import net.arctics.clonk.c4script.Function;
+import net.arctics.clonk.c4script.Script;
+import net.arctics.clonk.c4script.ast.CallDeclaration;
+import net.arctics.clonk.util.TaskExecution;
+
+/**
+ * Reverse call graph of an {@link Index}: Maps function names and numbers of arguments to the functions calling functions of that name.
+ * Kept up to date by {@link Script}s whenever they regenerate their {@link Script#callMap()} so finding callers does not require visiting every script of the index.<br>
+ * Only {@link Call} summaries are kept, which {@link Script}s store in the index along with their functions. Registering a script loaded from the index
+ * does therefore not load its function bodies; a lookup only loads the bodies of the functions containing matching calls.
+ * Scripts that don't have a summary yet are registered as pending and asked for their call map before a lookup.
+ */
+public class CallSiteIndex {
+
+	/**
+	 * Summary of a {@link CallDeclaration}: The function the call is made in and the number of arguments passed.
+	 */
+	public static final class Call implements Serializable {
+		private static final long serialVersionUID = Core.SERIAL_VERSION_UID;
+		/** Name of the function of the script containing the call */
+		public final String caller;
+		/** Number of arguments passed */
+		public final int arity;
+		public Call(final String caller, final int arity) {
+			this.caller = caller;
+			this.arity = arity;
+		}
+	}
+
+	/** Lookup key: A function name plus a number of arguments or -1 for calls regardless of the number of arguments. */
+	private static final class Key {
+		final String name;
+		final int arity;
+		Key(final String name, final int arity) {
+			this.name = name;
+			this.arity = arity;
+		}
+		@Override
+		public int hashCode() { return name.hashCode() * 31 + arity; }
+		@Override
+		public boolean equals(final Object obj) {
+			return obj instanceof Key && ((Key)obj).arity == arity && ((Key)obj).name.equals(name);
+		}
+	}
+
+	private final ConcurrentMap<Key, ConcurrentMap<Script, String[]>> sites = TaskExecution.newConcurrentMap();
+	private final ConcurrentMap<Script, Set<Key>> keysByScript = TaskExecution.newConcurrentMap();
+	private final Set<Script> pending = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Replace the call sites registered for a script.
+	 * @param script The script
+	 * @param calls Summary of the calls made by the script, by name of the called function
+	 */
+	public void update(final Script script, final Map<String, Call[]> calls) {
+		pending.remove(script);
+		final Map<Key, Set<String>> callers = new HashMap<Key, Set<String>>();
+		for (final Map.Entry<String, Call[]> e : calls.entrySet()) {
+			for (final Call call : e.getValue()) {
+				callers.computeIfAbsent(new Key(e.getKey(), -1), k -> new HashSet<String>()).add(call.caller);
+				callers.computeIfAbsent(new Key(e.getKey(), call.arity), k -> new HashSet<String>()).add(call.caller);
+			}
+		}
+		final Set<Key> previous = keysByScript.put(script, Collections.unmodifiableSet(callers.keySet()));
+		if (previous != null) {
+			for (final Key key : previous) {
+				if (!callers.containsKey(key)) {
+					removeSites(key, script);
+				}
+			}
+		}
+		for (final Map.Entry<Key, Set<String>> e : callers.entrySet()) {
+			sites.computeIfAbsent(e.getKey(), k -> TaskExecution.newConcurrentMap())
+				.put(script, e.getValue().toArray(new String[e.getValue().size()]));
+		}
+	}
+
+	/**
+	 * Note that a script will provide its call sites when asked for its call map. Call sites registered for it so far are forgotten.
+	 * @param script The script
+	 */
+	public void defer(final Script script) {
+		remove(script);
+		pending.add(script);
+	}
+
+	/**
+	 * Remove all call sites of a script, for example when it was removed from the index.
+	 * @param script The script
+	 */
+	public void remove(final Script script) {
+		pending.remove(script);
+		final Set<Key> keys = keysByScript.remove(script);
+		if (keys != null) {
+			for (final Key key : keys) {
+				removeSites(key, script);
+			}
+		}
+	}
+
+	private void removeSites(final Key key, final Script script) {
+		final ConcurrentMap<Script, String[]> m = sites.get(key);
+		if (m != null) {
+			m.remove(script);
+		}
+	}
+
+	/**
+	 * Remove everything.
+	 */
+	public void clear() {
+		pending.clear();
+		keysByScript.clear();
+		sites.clear();
+	}
+
+	private void flushPending() {
+		if (pending.isEmpty()) {
+			return;
+		}
+		for (final Script s : new ArrayList<Script>(pending)) {
+			// generates the call map and calls update
+			s.callMap();
+			pending.remove(s);
+		}
+	}
+
+	/**
+	 * Return all calls to functions with the given name.
+	 * @param functionName The function name
+	 * @return The calls or null if there are none
+	 */
+	public CallDeclaration[] callsTo(final String functionName) {
+		return callsTo(functionName, -1);
+	}
+
+	/**
+	 * Return all calls to functions with the given name passing the given number of arguments.
+	 * @param functionName The function name
+	 * @param arity The number of arguments or -1 to return calls regardless of the number of arguments
+	 * @return The calls or null if there are none
+	 */
+	public CallDeclaration[] callsTo(final String functionName, final int arity) {
+		flushPending();
+		final ConcurrentMap<Script, String[]> m = sites.get(new Key(functionName, arity));
+		if (m == null || m.isEmpty()) {
+			return null;
+		}
+		final List<CallDeclaration> result = new ArrayList<CallDeclaration>();
+		for (final Map.Entry<Script, String[]> e : m.entrySet()) {
+			for (final String caller : e.getValue()) {
+				for (final Function f : e.getKey().functions()) {
+					if (f.name().equals(caller)) {
+						collectCalls(f, functionName, arity, result);
+					}
+				}
+			}
+		}
+		return result.isEmpty() ? null : result.toArray(new CallDeclaration[result.size()]);
+	}
+
+	private static void collectCalls(final Function function, final String functionName, final int arity, final List<CallDeclaration> result) {
+		function.traverse((node, r) -> {
+			if (node instanceof CallDeclaration) {
+				final CallDeclaration call = (CallDeclaration) node;
+				if (call.name().equals(functionName) && (arity == -1 || call.params().length == arity)) {
+					r.add(call);
+				}
+			}
+			return TraversalContinuation.Continue;
+		}, result);
+	}
+
+}
@@ -1,18 +1,19 @@
 package net.arctics.clonk.index;
 
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import net.arctics.clonk.Core;
 
 /**
- * Represents a C4ID. This class manages a global pool of unique {@link ID} objects and restricts construction of new instances to calling {@link #get(String)}..
+ * Represents a C4ID. This class manages a global pool of unique {@link ID} objects and restricts construction of new instances to calling {@link #get(String)}.
+ * Looking up IDs already in the pool does not lock, so parsers running in parallel do not contend for it.
  * @author madeen
  *
  */
 public final class ID implements Serializable, IDeserializationResolvable {
-	private static final Map<String, ID> idPool = new HashMap<String, ID>();
+	private static final ConcurrentMap<String, ID> idPool = new ConcurrentHashMap<String, ID>(1024, 0.75f, Runtime.getRuntime().availableProcessors());
 	private static final long serialVersionUID = Core.SERIAL_VERSION_UID;
 	public static final ID NULL = get("NULL"); //$NON-NLS-1$
 
@@ -20,7 +21,6 @@ public final class ID implements Serializable, IDeserializationResolvable {
 
 	private ID(final String id) {
 		name = id;
-		idPool.put(id, this);
 	}
 
 	/**
@@ -28,14 +28,12 @@ public final class ID implements Serializable, IDeserializationResolvable {
 	 */
 	@Override
 	public ID resolve(final Index index, final IndexEntity deserializee) {
-		synchronized (idPool) {
-			final ID special = idPool.get(name);
-			if (special == null) {
-				idPool.put(name, this);
-				return this;
-			}
-			return special;
+		final ID existing = idPool.get(name);
+		if (existing != null) {
+			return existing;
 		}
+		final ID raced = idPool.putIfAbsent(name, this);
+		return raced != null ? raced : this;
 	}
 
 	/**
@@ -44,10 +42,13 @@ public final class ID implements Serializable, IDeserializationResolvable {
 	 * @return A newly created {@link ID} added to the global pool or an already existing one.
 	 */
 	public static ID get(final String stringValue) {
-		synchronized (idPool) {
-			final ID existing = idPool.get(stringValue);
-			return existing != null ? existing : new ID(stringValue);
+		final ID existing = idPool.get(stringValue);
+		if (existing != null) {
+			return existing;
 		}
+		final ID created = new ID(stringValue);
+		final ID raced = idPool.putIfAbsent(stringValue, created);
+		return raced != null ? raced : created;
 	}
 
 	/* (non-Javadoc)
@@ -13,10 +13,9 @@ import static net.arctics.clonk.util.Utilities.block;
 import static net.arctics.clonk.util.Utilities.defaulting;
 import static net.arctics.clonk.util.Utilities.pickNearest;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
@@ -41,8 +40,6 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFile;
@@ -67,14 +64,19 @@ import net.arctics.clonk.c4script.SystemScript;
 import net.arctics.clonk.c4script.Variable;
 import net.arctics.clonk.c4script.Variable.Scope;
 import net.arctics.clonk.c4script.ast.CallDeclaration;
+import net.arctics.clonk.c4script.ast.FunctionBody;
 import net.arctics.clonk.c4script.typing.Typing;
+import net.arctics.clonk.c4script.typing.dabble.VisitRecords;
 import net.arctics.clonk.index.IndexEntity.Loaded;
+import net.arctics.clonk.index.serialization.ASTNodeCodec;
 import net.arctics.clonk.index.serialization.IndexEntityInputStream;
 import net.arctics.clonk.index.serialization.IndexEntityOutputStream;
+import net.arctics.clonk.index.serialization.IndexStore;
 import net.arctics.clonk.index.serialization.replacements.EngineRef;
 import net.arctics.clonk.index.serialization.replacements.EntityDeclaration;
 import net.arctics.clonk.index.serialization.replacements.EntityId;
 import net.arctics.clonk.index.serialization.replacements.EntityReference;
+import net.arctics.clonk.parser.SymbolTable;
 import net.arctics.clonk.util.ArrayUtil;
 import net.arctics.clonk.util.Sink;
 import net.arctics.clonk.util.Sink.Decision;
@@ -168,6 +170,7 @@ public class Index extends Declaration implements Serializable, ILatestDeclarati
 		pendingScriptAdds = defaulting(pendingScriptAdds, LinkedList::new);
 		saveSynchronizer = defaulting(saveSynchronizer, Object::new);
 		loadSynchronizer = defaulting(loadSynchronizer, Object::new);
+		visitRecords = defaulting(visitRecords, TaskExecution::newConcurrentMap);
 		// make sure all the things are actually in the entity map...
 		ofType(stream(subElements()), IndexEntity.class).forEach(e -> {
 			if (entities.put(e.entityId(), e) == null) {
@@ -522,6 +525,8 @@ public class Index extends Declaration implements Serializable, ILatestDeclarati
 
 	private void scriptRemoved(final Script script) {
 		entities.remove(script.entityId());
+		callSites().remove(script);
+		visitRecords.remove(script);
 		allScripts(new IndexEntity.LoadedEntitiesSink<Script>() {
 			@Override
 			public void receive(final Script item) {
@@ -669,14 +674,20 @@ public class Index extends Declaration implements Serializable, ILatestDeclarati
 		scenarios.clear();
 		clearEntityFiles();
 		entities.clear();
+		callSites().clear();
+		visitRecords.clear();
 		entityIdCounter = 0;
 		refresh(false);
 		built(Built.No);
 	}
 
 	private void clearEntityFiles() {
-		for (final IndexEntity e : entities()) {
-			entityFile(e).delete();
+		if (folder != null) {
+			try {
+				store().clear();
+			} catch (final IOException e) {
+				e.printStackTrace();
+			}
 		}
 	}
 
@@ -723,8 +734,28 @@ public class Index extends Declaration implements Serializable, ILatestDeclarati
 		if (!indexFolder.isDirectory()) {
 			return null;
 		}
+		final IndexStore store;
+		try {
+			store = IndexStore.open(indexFolder);
+		} catch (final IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+		final InputStream record;
+		try {
+			record = store.recordInputStream(IndexStore.INDEX_RECORD);
+		} catch (final IOException e) {
+			e.printStackTrace();
+			close(store);
+			return null;
+		}
+		if (record == null) {
+			discardLegacyFiles(indexFolder);
+			close(store);
+			return null;
+		}
 		try (
-			final InputStream in = new GZIPInputStream(new FileInputStream(new File(indexFolder, "index")));
+			final InputStream in = record;
 			final ObjectInputStream objStream = new IndexEntityInputStream(new Index() {
 				private static final long serialVersionUID = 1L;
 				@Override
@@ -737,14 +768,45 @@ public class Index extends Declaration implements Serializable, ILatestDeclarati
 				e.index = index;
 			}
 			index.folder = indexFolder;
+			((Index)index).store = store;
 			return index;
 		} catch (final Exception e) {
 			e.printStackTrace();
 			// somehow failed - ignore
+			close(store);
 			return null;
 		}
 	}
 
+	private static void close(final IndexStore store) {
+		try {
+			store.close();
+		} catch (final IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Delete the files indexes were saved to before the introduction of {@link IndexStore}: the gzipped 'index' file and one file per entity named after its id.
+	 * Those were written without the header {@link IndexEntityInputStream} requires, so they cannot be read anymore and the index is built again instead.
+	 */
+	private static void discardLegacyFiles(final File indexFolder) {
+		final File legacyIndex = new File(indexFolder, "index");
+		if (!legacyIndex.isFile()) {
+			return;
+		}
+		System.out.println(String.format("Discarding index in %s saved in an outdated format", indexFolder));
+		legacyIndex.delete();
+		final File[] files = indexFolder.listFiles();
+		if (files != null) {
+			for (final File f : files) {
+				if (f.isFile() && f.getName().matches("\\d+")) {
+					f.delete();
+				}
+			}
+		}
+	}
+
 	/**
 	 * Finds a script by its path. This may be a path to an actual file or some other kind of path understood by the kind of index. But since the only relevant subclass of Index is {@link ProjectIndex}, that's moot!
 	 * @param path the path
@@ -866,11 +928,54 @@ public class Index extends Declaration implements Serializable, ILatestDeclarati
 	}
 
 	public void saveEntity(final IndexEntity entity) throws IOException {
-		try (final ObjectOutputStream s = newEntityOutputStream(entity)) {
+		final Set<Long> separateRecords;
+		try (final IndexEntityOutputStream s = newEntityOutputStream(entity)) {
 			entity.save(s);
+			separateRecords = s.separateRecords();
+		}
+		// drop separate records left over from previous versions of the entity
+		store().retainSeparateRecords(entity.entityId(), separateRecords::contains);
+	}
+
+	/**
+	 * Load a function body stored separately from its entity by {@link IndexEntityOutputStream#writeSeparately(ASTNode)}.
+	 * @param owner The entity the function belongs to
+	 * @param record The record the body was stored in
+	 * @return The body or null if loading failed.
+	 */
+	public FunctionBody loadFunctionBody(final IndexEntity owner, final long record) {
+		try (final InputStream in = store().recordInputStream(record)) {
+			if (in == null) {
+				return null;
+			}
+			try (final ObjectInputStream stream = new IndexEntityInputStream(this, owner, in)) {
+				return (FunctionBody) ASTNodeCodec.read(stream);
+			}
+		} catch (final Exception e) {
+			System.out.println(String.format("Failed to load function body from '%s': %s", owner.qualifiedName(), e.getMessage()));
+			return null;
 		}
 	}
 
+	/**
+	 * Release the bodies of functions in loaded scripts that can be loaded from the index again when needed.
+	 * They are kept until the garbage collector needs the memory. The node maps of those scripts are released as well since they point into the bodies.
+	 */
+	public void dropFunctionBodies() {
+		allScripts(new IndexEntity.LoadedEntitiesSink<Script>() {
+			@Override
+			public void receive(final Script item) {
+				boolean dropped = false;
+				for (final Function f : item.functions()) {
+					dropped |= f.dropBody();
+				}
+				if (dropped) {
+					item.dropNodeMaps();
+				}
+			}
+		});
+	}
+
 	private long entityIdCounter = 0;
 
 	/**
@@ -889,16 +994,88 @@ public class Index extends Declaration implements Serializable, ILatestDeclarati
 		}
 	}
 
-	private File entityFile(final IndexEntity entity) {
-		return new File(folder, Long.toString(entity.entityId()));
+	private transient volatile IndexStore store;
+
+	private transient volatile SymbolTable symbolTable;
+
+	/**
+	 * Return the table parsers of scripts in this index intern identifiers in.
+	 * @return The symbol table
+	 */
+	public SymbolTable symbolTable() {
+		SymbolTable table = symbolTable;
+		if (table == null) {
+			synchronized (this) {
+				if (symbolTable == null) {
+					symbolTable = new SymbolTable();
+				}
+				table = symbolTable;
+			}
+		}
+		return table;
 	}
 
-	public ObjectOutputStream newEntityOutputStream(final IndexEntity entity) throws FileNotFoundException, IOException {
-		return new IndexEntityOutputStream(this, entity, new GZIPOutputStream(new FileOutputStream(entityFile(entity))));
+	/** Warm-up job currently loading the entities of this index, if any. */
+	transient volatile IndexWarmUp warmUp;
+
+	/**
+	 * Return the {@link IndexStore} entities are saved into.
+	 * @return The store for {@link #folder}
+	 * @throws IOException
+	 */
+	protected IndexStore store() throws IOException {
+		IndexStore result = store;
+		if (result == null) {
+			synchronized (this) {
+				if (store == null) {
+					if (folder == null) {
+						throw new FileNotFoundException("Index without folder");
+					}
+					store = IndexStore.open(folder);
+				}
+				result = store;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Release the {@link IndexStore} of this index, flushing it if this index was the last one using it.
+	 * The store is opened again if the index is used afterwards.
+	 */
+	public void closeStore() {
+		final IndexStore s;
+		synchronized (this) {
+			s = store;
+			store = null;
+		}
+		if (s != null) {
+			try {
+				s.close();
+			} catch (final IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	public IndexEntityOutputStream newEntityOutputStream(final IndexEntity entity) throws FileNotFoundException, IOException {
+		final IndexStore store = store();
+		final IndexEntityOutputStream stream = new IndexEntityOutputStream(this, entity, store.recordOutputStream(entity.entityId()));
+		stream.writeSeparatelyInto(store);
+		return stream;
 	}
 
 	public ObjectInputStream newEntityInputStream(final IndexEntity entity) throws FileNotFoundException, IOException {
-		return new IndexEntityInputStream(this, entity, new GZIPInputStream(new FileInputStream(entityFile(entity))));
+		final IndexWarmUp warmUp = this.warmUp;
+		final byte[] prefetched = warmUp != null ? warmUp.takePrefetched(entity.entityId()) : null;
+		if (prefetched != null) {
+			return new IndexEntityInputStream(this, entity, new ByteArrayInputStream(prefetched));
+		}
+		final InputStream in = store().recordInputStream(entity.entityId());
+		if (in == null) {
+			throw new FileNotFoundException(String.format("No record for entity %d in %s", entity.entityId(), folder));
+		}
+		return new IndexEntityInputStream(this, entity, in);
 	}
 
 	public IndexEntity entityWithId(final long entityId) {
@@ -923,16 +1100,16 @@ public class Index extends Declaration implements Serializable, ILatestDeclarati
 	 * Save the file storing what entities exist in this index but don't write entity-specific files.
 	 */
 	public void saveShallow() {
-		final File indexFile = new File(folder, "index");
 		folder.mkdirs();
+		final IndexStore store;
 		try {
-			indexFile.createNewFile();
+			store = store();
 		} catch (final IOException e1) {
 			e1.printStackTrace();
 			return;
 		}
 		try (
-			final OutputStream out = new GZIPOutputStream(new FileOutputStream(indexFile));
+			final OutputStream out = store.recordOutputStream(IndexStore.INDEX_RECORD);
 			final IndexEntityOutputStream objStream = new IndexEntityOutputStream(this, null, out) {
 				@Override
 				protected Object replaceObject(Object obj) throws IOException {
@@ -950,9 +1127,15 @@ public class Index extends Declaration implements Serializable, ILatestDeclarati
 		) {
 			removeNullsInScriptLists();
 			objStream.writeObject(index());
-			purgeUnusedIndexFiles(indexFile);
 		} catch (final Exception e) {
-			System.out.println(String.format("Error saving index for '%s'", this.nature().getProject().getName()));
+			System.out.println(String.format("Error saving index for '%s'", this));
+			e.printStackTrace();
+			return;
+		}
+		try {
+			purgeUnusedIndexFiles(store);
+		} catch (final Exception e) {
+			System.out.println(String.format("Error saving index for '%s'", this));
 			e.printStackTrace();
 		}
 	}
@@ -966,18 +1149,22 @@ public class Index extends Declaration implements Serializable, ILatestDeclarati
 		}
 	}
 
-	protected void purgeUnusedIndexFiles(final File indexFile) {
+	/**
+	 * Drop records of entities no longer part of this index from the store, compacting it if that left too much garbage, and remove files left over from the per-entity file layout.
+	 * @param store The store to purge
+	 * @throws IOException
+	 */
+	protected void purgeUnusedIndexFiles(final IndexStore store) throws IOException {
 		synchronized (this) {
+			store.retain(record -> record == IndexStore.INDEX_RECORD || entities.containsKey(IndexStore.owningEntity(record)));
+			store.compact();
+			store.flush();
 			final File[] files = folder.listFiles();
-			final List<File> filesToBePurged = new ArrayList<File>(files.length);
-			filesToBePurged.addAll(Arrays.asList(files));
-			filesToBePurged.remove(indexFile);
-			for (final IndexEntity e : entities()) {
-				filesToBePurged.remove(entityFile(e));
-			}
-			for (final File f : filesToBePurged) {
-				if (!f.getName().startsWith(".")) {
-					f.delete();
+			if (files != null) {
+				for (final File f : files) {
+					if (!f.getName().startsWith(".") && !IndexStore.isStoreFile(f)) {
+						f.delete();
+					}
 				}
 			}
 		}
@@ -1020,6 +1207,15 @@ public class Index extends Declaration implements Serializable, ILatestDeclarati
 	public synchronized void endModification() {
 		resourceToScript = null;
 		saveNewEntities();
+		dropFunctionBodies();
+		final IndexStore store = this.store;
+		if (store != null) {
+			try {
+				store.flush();
+			} catch (final IOException e) {
+				e.printStackTrace();
+			}
+		}
 	}
 
 	private void saveNewEntities() {
@@ -1076,15 +1272,48 @@ public class Index extends Declaration implements Serializable, ILatestDeclarati
 	}
 
 	public CallDeclaration[] callsTo(final String functionName) {
-		final LinkedList<CallDeclaration[]> chain = new LinkedList<>();
-		allScripts(item -> {
-			final Map<String, CallDeclaration[]> calls = item.callMap();
-			final CallDeclaration[] list = calls != null ? calls.get(functionName) : null;
-			if (list != null) {
-				chain.add(list);
+		return callSites().callsTo(functionName);
+	}
+
+	/**
+	 * Return calls to functions with the given name passing the given number of arguments.
+	 * @param functionName The function name
+	 * @param arity The number of arguments
+	 * @return The calls or null if there are none
+	 */
+	public CallDeclaration[] callsTo(final String functionName, final int arity) {
+		return callSites().callsTo(functionName, arity);
+	}
+
+	private transient volatile CallSiteIndex callSites;
+
+	/**
+	 * Return the reverse call graph of the scripts in this index.
+	 * @return The call sites
+	 */
+	public CallSiteIndex callSites() {
+		CallSiteIndex result = callSites;
+		if (result == null) {
+			synchronized (this) {
+				if (callSites == null) {
+					callSites = new CallSiteIndex();
+				}
+				result = callSites;
 			}
-		});
-		return chain.size() > 0 ? concat(CallDeclaration.class, chain) : null;
+		}
+		return result;
+	}
+
+	private transient ConcurrentMap<Script, VisitRecords> visitRecords = TaskExecution.newConcurrentMap();
+
+	/**
+	 * Return what type inference kept about the functions of a script of this index besides their typings.
+	 * Forgotten when the script is removed from the index or the index is cleared.
+	 * @param script The script
+	 * @return The records
+	 */
+	public VisitRecords visitRecords(final Script script) {
+		return visitRecords.computeIfAbsent(script, s -> new VisitRecords());
 	}
 
 	@Override
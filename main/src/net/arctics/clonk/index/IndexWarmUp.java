@@ -0,0 +1,189 @@
+package net.arctics.clonk.index;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import net.arctics.clonk.c4script.Directive;
+import net.arctics.clonk.c4script.Script;
+import net.arctics.clonk.index.IndexEntity.Loaded;
+import net.arctics.clonk.util.TaskExecution;
+
+/**
+ * Background job loading the entities the user is about to work with, along with the scripts they include or append to, after a shallow
+ * {@link Index} was loaded, so the first action touching them does not have to. Other entities stay unloaded until they are needed.<br>
+ * Included scripts are loaded before their includers, so postLoad runs in dependency order. Reading and decompressing entity records happens in parallel on a thread pool some entities ahead of
+ * the loading itself, which stays serialized by {@link Index#loadSynchronizer()} since deserializing one entity may require others.<br>
+ * {@link IndexEntity#requireLoaded()} does not wait for the job: If the record of the entity is still waiting to be prefetched,
+ * the requesting thread reads it directly.
+ */
+public class IndexWarmUp extends Job {
+
+	private static final int PREFETCH_AHEAD_PER_THREAD = 4;
+
+	private final class Prefetch implements Runnable {
+		final long entityId;
+		final AtomicBoolean claimed = new AtomicBoolean();
+		final CountDownLatch done = new CountDownLatch(1);
+		volatile byte[] data;
+		Prefetch(final long entityId) { this.entityId = entityId; }
+		@Override
+		public void run() {
+			if (!claimed.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				data = index.store().read(entityId);
+			} catch (final Exception e) {
+				data = null;
+			} finally {
+				done.countDown();
+			}
+		}
+	}
+
+	private final Index index;
+	private final Supplier<Collection<? extends IndexEntity>> targets;
+	private final ConcurrentMap<Long, Prefetch> prefetches = TaskExecution.newConcurrentMap();
+
+	/**
+	 * Create the job.
+	 * @param name Name of the job
+	 * @param index The index whose entities to load
+	 * @param targets Supplies the entities to load. Called when the job starts running.
+	 */
+	public IndexWarmUp(final String name, final Index index, final Supplier<Collection<? extends IndexEntity>> targets) {
+		super(name);
+		this.index = index;
+		this.targets = targets;
+		setPriority(Job.LONG);
+		setSystem(false);
+	}
+
+	/**
+	 * Hand out the prefetched record of an entity. Called when the entity is about to be deserialized.
+	 * If the record has not been read yet, prefetching it is abandoned and null is returned so the caller reads it directly instead of waiting.
+	 * @param entityId Id of the entity
+	 * @return The record contents or null if the caller needs to read it itself
+	 */
+	byte[] takePrefetched(final long entityId) {
+		final Prefetch prefetch = prefetches.remove(entityId);
+		if (prefetch == null || prefetch.claimed.compareAndSet(false, true)) {
+			return null;
+		}
+		try {
+			prefetch.done.await();
+		} catch (final InterruptedException e) {
+			return null;
+		}
+		return prefetch.data;
+	}
+
+	private static boolean loaded(final IndexEntity e) {
+		return e.loaded == Loaded.Yes;
+	}
+
+	private void visit(final IndexEntity entity, final Set<IndexEntity> order, final Set<IndexEntity> visited) {
+		if (entity == null || loaded(entity) || !visited.add(entity)) {
+			return;
+		}
+		if (entity instanceof Script) {
+			final List<? extends Directive> directives = ((Script)entity).shallowDirectives();
+			final List<Directive> copy;
+			synchronized (directives) {
+				copy = new ArrayList<Directive>(directives);
+			}
+			for (final Directive d : copy) {
+				switch (d.type()) {
+				case INCLUDE: case APPENDTO:
+					final ID id = d.contentAsID();
+					final Definition[] defs = id != null ? index.definitionsWithID(id) : null;
+					if (defs != null) {
+						for (final Definition def : defs) {
+							visit(def, order, visited);
+						}
+					}
+					break;
+				default:
+					break;
+				}
+			}
+		}
+		order.add(entity);
+	}
+
+	private Deque<IndexEntity> plan(final Collection<? extends IndexEntity> entities) {
+		final Set<IndexEntity> order = new LinkedHashSet<IndexEntity>();
+		final Set<IndexEntity> visited = new HashSet<IndexEntity>();
+		if (entities != null) {
+			for (final IndexEntity e : entities) {
+				visit(e, order, visited);
+			}
+		}
+		return new ArrayDeque<IndexEntity>(order);
+	}
+
+	@Override
+	protected IStatus run(final IProgressMonitor monitor) {
+		final Deque<IndexEntity> order;
+		try {
+			order = plan(targets != null ? targets.get() : null);
+		} catch (final Exception e) {
+			e.printStackTrace();
+			return Status.CANCEL_STATUS;
+		}
+		monitor.beginTask(getName(), order.size());
+		final ExecutorService pool = TaskExecution.newPool(order.size());
+		final int ahead = TaskExecution.threadPoolSize() * PREFETCH_AHEAD_PER_THREAD;
+		final List<IndexEntity> pending = new ArrayList<IndexEntity>(order);
+		int prefetched = 0;
+		index.warmUp = this;
+		try {
+			for (int i = 0; i < pending.size(); i++) {
+				if (monitor.isCanceled()) {
+					return Status.CANCEL_STATUS;
+				}
+				for (; prefetched < pending.size() && prefetched < i + ahead; prefetched++) {
+					final IndexEntity e = pending.get(prefetched);
+					if (!loaded(e)) {
+						final Prefetch p = new Prefetch(e.entityId());
+						prefetches.put(p.entityId, p);
+						pool.execute(p);
+					}
+				}
+				final IndexEntity e = pending.get(i);
+				if (!loaded(e)) {
+					monitor.subTask(e.qualifiedName());
+					e.requireLoaded();
+				}
+				final Prefetch unused = prefetches.remove(e.entityId());
+				if (unused != null) {
+					unused.claimed.set(true);
+				}
+				monitor.worked(1);
+			}
+			return Status.OK_STATUS;
+		} finally {
+			index.warmUp = null;
+			prefetches.clear();
+			pool.shutdownNow();
+			monitor.done();
+		}
+	}
+
+}
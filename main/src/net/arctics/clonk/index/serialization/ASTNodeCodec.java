@@ -0,0 +1,357 @@
+package net.arctics.clonk.index.serialization;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.arctics.clonk.ast.ASTNode;
+import net.arctics.clonk.ast.Declaration;
+import net.arctics.clonk.ast.Sequence;
+import net.arctics.clonk.c4script.Operator;
+import net.arctics.clonk.c4script.ast.AccessVar;
+import net.arctics.clonk.c4script.ast.BinaryOp;
+import net.arctics.clonk.c4script.ast.Block;
+import net.arctics.clonk.c4script.ast.CallDeclaration;
+import net.arctics.clonk.c4script.ast.False;
+import net.arctics.clonk.c4script.ast.FunctionBody;
+import net.arctics.clonk.c4script.ast.IfStatement;
+import net.arctics.clonk.c4script.ast.IntegerLiteral;
+import net.arctics.clonk.c4script.ast.MemberOperator;
+import net.arctics.clonk.c4script.ast.Nil;
+import net.arctics.clonk.c4script.ast.Parenthesized;
+import net.arctics.clonk.c4script.ast.ReturnStatement;
+import net.arctics.clonk.c4script.ast.SimpleStatement;
+import net.arctics.clonk.c4script.ast.Statement;
+import net.arctics.clonk.c4script.ast.Statement.Attachment;
+import net.arctics.clonk.c4script.ast.StringLiteral;
+import net.arctics.clonk.c4script.ast.This;
+import net.arctics.clonk.c4script.ast.True;
+import net.arctics.clonk.c4script.ast.UnaryOp;
+import net.arctics.clonk.index.ID;
+
+/**
+ * Explicit encoding of the node classes making up most of a function body.<br>
+ * Default serialization writes a class descriptor reference, a handle and the fields of every class in the hierarchy for each node and
+ * finds them by reflection when reading. Here a node of one of the classes listed in {@link #CODECS} is written as a one byte tag followed
+ * by its location and its own fields, and read back by calling its constructor. Nodes of other classes and everything that is not a node,
+ * like referenced declarations, ids and attachments, go through {@link ObjectOutputStream#writeObject(Object)} of the stream as before,
+ * so they are still replaced by {@link IndexEntityOutputStream#replaceObject(Object)} and resolved by {@link IndexEntityInputStream}.<br>
+ * The order of {@link #CODECS} is part of the {@link IndexFormat#VERSION}.
+ */
+public final class ASTNodeCodec {
+
+	private static final int NULL_TAG = 0;
+	private static final int DEFAULT_TAG = 1;
+	private static final int FIRST_CODEC_TAG = 2;
+
+	private static final Operator[] OPERATORS = Operator.values();
+	private static final UnaryOp.Placement[] PLACEMENTS = UnaryOp.Placement.values();
+
+	private static abstract class Codec<T extends ASTNode> {
+		final Class<T> nodeClass;
+		Codec(final Class<T> nodeClass) { this.nodeClass = nodeClass; }
+		/** Whether the node can be rebuilt by {@link #read(ObjectInputStream)}. Nodes that can't are written by default serialization instead. */
+		boolean handles(final T node) { return true; }
+		abstract void write(ObjectOutputStream out, T node) throws IOException;
+		abstract T read(ObjectInputStream in) throws IOException, ClassNotFoundException;
+	}
+
+	private static final Codec<?>[] CODECS = {
+		new Codec<IntegerLiteral>(IntegerLiteral.class) {
+			@Override
+			void write(final ObjectOutputStream out, final IntegerLiteral node) throws IOException {
+				out.writeLong(node.literal());
+				out.writeBoolean(node.isHex());
+			}
+			@Override
+			IntegerLiteral read(final ObjectInputStream in) throws IOException {
+				return new IntegerLiteral(in.readLong(), in.readBoolean());
+			}
+		},
+		new Codec<StringLiteral>(StringLiteral.class) {
+			@Override
+			void write(final ObjectOutputStream out, final StringLiteral node) throws IOException {
+				out.writeObject(node.literal());
+			}
+			@Override
+			StringLiteral read(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+				return new StringLiteral((String)in.readObject());
+			}
+		},
+		new Codec<True>(True.class) {
+			@Override
+			void write(final ObjectOutputStream out, final True node) {}
+			@Override
+			True read(final ObjectInputStream in) { return new True(); }
+		},
+		new Codec<False>(False.class) {
+			@Override
+			void write(final ObjectOutputStream out, final False node) {}
+			@Override
+			False read(final ObjectInputStream in) { return new False(); }
+		},
+		new Codec<Nil>(Nil.class) {
+			@Override
+			void write(final ObjectOutputStream out, final Nil node) {}
+			@Override
+			Nil read(final ObjectInputStream in) { return new Nil(); }
+		},
+		new Codec<This>(This.class) {
+			@Override
+			void write(final ObjectOutputStream out, final This node) {}
+			@Override
+			This read(final ObjectInputStream in) { return new This(); }
+		},
+		new Codec<AccessVar>(AccessVar.class) {
+			@Override
+			void write(final ObjectOutputStream out, final AccessVar node) throws IOException {
+				out.writeObject(node.name());
+				out.writeObject(node.declaration());
+			}
+			@Override
+			AccessVar read(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+				final AccessVar node = new AccessVar((String)in.readObject());
+				node.setDeclaration((Declaration)in.readObject());
+				return node;
+			}
+		},
+		new Codec<CallDeclaration>(CallDeclaration.class) {
+			@Override
+			void write(final ObjectOutputStream out, final CallDeclaration node) throws IOException {
+				out.writeObject(node.name());
+				out.writeObject(node.declaration());
+				writeNodes(out, node.params());
+				out.writeInt(node.parmsStart());
+				out.writeInt(node.parmsEnd());
+			}
+			@Override
+			CallDeclaration read(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+				final String name = (String)in.readObject();
+				final Declaration declaration = (Declaration)in.readObject();
+				final CallDeclaration node = new CallDeclaration(name, readNodes(in));
+				node.setDeclaration(declaration);
+				node.setParmsRegion(in.readInt(), in.readInt());
+				return node;
+			}
+		},
+		new Codec<Sequence>(Sequence.class) {
+			@Override
+			void write(final ObjectOutputStream out, final Sequence node) throws IOException {
+				writeNodes(out, node.subElements());
+			}
+			@Override
+			Sequence read(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+				return new Sequence(readNodes(in));
+			}
+		},
+		new Codec<MemberOperator>(MemberOperator.class) {
+			@Override
+			void write(final ObjectOutputStream out, final MemberOperator node) throws IOException {
+				out.writeBoolean(node.dotNotation());
+				out.writeBoolean(node.hasTilde());
+				out.writeObject(node.id());
+				out.writeInt(node.idOffset());
+			}
+			@Override
+			MemberOperator read(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+				final boolean dotNotation = in.readBoolean();
+				final boolean hasTilde = in.readBoolean();
+				final ID id = (ID)in.readObject();
+				return new MemberOperator(dotNotation, hasTilde, id, in.readInt());
+			}
+		},
+		new Codec<BinaryOp>(BinaryOp.class) {
+			@Override
+			boolean handles(final BinaryOp node) { return node.leftSide() != null && node.rightSide() != null; }
+			@Override
+			void write(final ObjectOutputStream out, final BinaryOp node) throws IOException {
+				out.writeByte(node.operator().ordinal());
+				ASTNodeCodec.write(out, node.leftSide());
+				ASTNodeCodec.write(out, node.rightSide());
+			}
+			@Override
+			BinaryOp read(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+				final Operator operator = OPERATORS[in.readUnsignedByte()];
+				final ASTNode leftSide = ASTNodeCodec.read(in);
+				return new BinaryOp(operator, leftSide, ASTNodeCodec.read(in));
+			}
+		},
+		new Codec<UnaryOp>(UnaryOp.class) {
+			@Override
+			boolean handles(final UnaryOp node) { return node.argument() != null; }
+			@Override
+			void write(final ObjectOutputStream out, final UnaryOp node) throws IOException {
+				out.writeByte(node.operator().ordinal());
+				out.writeByte(node.placement().ordinal());
+				ASTNodeCodec.write(out, node.argument());
+			}
+			@Override
+			UnaryOp read(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+				final Operator operator = OPERATORS[in.readUnsignedByte()];
+				final UnaryOp.Placement placement = PLACEMENTS[in.readUnsignedByte()];
+				return new UnaryOp(operator, placement, ASTNodeCodec.read(in));
+			}
+		},
+		new Codec<Parenthesized>(Parenthesized.class) {
+			@Override
+			void write(final ObjectOutputStream out, final Parenthesized node) throws IOException {
+				ASTNodeCodec.write(out, node.innerExpression());
+			}
+			@Override
+			Parenthesized read(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+				return new Parenthesized(ASTNodeCodec.read(in));
+			}
+		},
+		new Codec<SimpleStatement>(SimpleStatement.class) {
+			@Override
+			void write(final ObjectOutputStream out, final SimpleStatement node) throws IOException {
+				ASTNodeCodec.write(out, node.expression());
+			}
+			@Override
+			SimpleStatement read(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+				return new SimpleStatement(ASTNodeCodec.read(in));
+			}
+		},
+		new Codec<ReturnStatement>(ReturnStatement.class) {
+			@Override
+			void write(final ObjectOutputStream out, final ReturnStatement node) throws IOException {
+				ASTNodeCodec.write(out, node.returnExpr());
+			}
+			@Override
+			ReturnStatement read(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+				return new ReturnStatement(ASTNodeCodec.read(in));
+			}
+		},
+		new Codec<IfStatement>(IfStatement.class) {
+			@Override
+			void write(final ObjectOutputStream out, final IfStatement node) throws IOException {
+				ASTNodeCodec.write(out, node.condition());
+				ASTNodeCodec.write(out, node.body());
+				ASTNodeCodec.write(out, node.elseExpression());
+			}
+			@Override
+			IfStatement read(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+				final ASTNode condition = ASTNodeCodec.read(in);
+				final ASTNode body = ASTNodeCodec.read(in);
+				return new IfStatement(condition, body, ASTNodeCodec.read(in));
+			}
+		},
+		new Codec<Block>(Block.class) {
+			@Override
+			void write(final ObjectOutputStream out, final Block node) throws IOException {
+				writeNodes(out, node.statements());
+			}
+			@Override
+			Block read(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+				return new Block(readNodes(in));
+			}
+		},
+		new Codec<FunctionBody>(FunctionBody.class) {
+			@Override
+			void write(final ObjectOutputStream out, final FunctionBody node) throws IOException {
+				writeNodes(out, node.statements());
+			}
+			@Override
+			FunctionBody read(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+				return new FunctionBody(null, readNodes(in));
+			}
+		}
+	};
+
+	private static final Map<Class<?>, Integer> TAGS = new IdentityHashMap<Class<?>, Integer>();
+	static {
+		for (int i = 0; i < CODECS.length; i++) {
+			TAGS.put(CODECS[i].nodeClass, FIRST_CODEC_TAG + i);
+		}
+	}
+
+	private ASTNodeCodec() {}
+
+	/**
+	 * Write a node tree.
+	 * @param out The stream to write to
+	 * @param node The root of the tree. May be null.
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	public static void write(final ObjectOutputStream out, final ASTNode node) throws IOException {
+		final Integer tag = node != null ? TAGS.get(node.getClass()) : null;
+		final Codec<ASTNode> codec = tag != null ? (Codec<ASTNode>)CODECS[tag - FIRST_CODEC_TAG] : null;
+		if (codec == null || !codec.handles(node)) {
+			if (node == null) {
+				out.writeByte(NULL_TAG);
+			} else {
+				out.writeByte(DEFAULT_TAG);
+				out.writeObject(node);
+			}
+			return;
+		}
+		out.writeByte(tag);
+		out.writeInt(node.start());
+		out.writeInt(node.end());
+		codec.write(out, node);
+		if (node instanceof Statement) {
+			out.writeObject(((Statement)node).attachments());
+		}
+	}
+
+	/**
+	 * Read a node tree written by {@link #write(ObjectOutputStream, ASTNode)}.
+	 * @param in The stream to read from
+	 * @return The root of the tree or null
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	@SuppressWarnings("unchecked")
+	public static ASTNode read(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+		final int tag = in.readUnsignedByte();
+		switch (tag) {
+		case NULL_TAG:
+			return null;
+		case DEFAULT_TAG:
+			return (ASTNode)in.readObject();
+		default:
+			if (tag - FIRST_CODEC_TAG >= CODECS.length) {
+				throw new IOException(String.format("Unknown node tag %d", tag));
+			}
+			final int start = in.readInt();
+			final int end = in.readInt();
+			final ASTNode node = CODECS[tag - FIRST_CODEC_TAG].read(in);
+			node.setLocation(start, end);
+			if (node instanceof Statement) {
+				final List<Attachment> attachments = (List<Attachment>)in.readObject();
+				if (attachments != null) {
+					((Statement)node).addAttachments(attachments);
+				}
+			}
+			return node;
+		}
+	}
+
+	private static void writeNodes(final ObjectOutputStream out, final ASTNode[] nodes) throws IOException {
+		if (nodes == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(nodes.length);
+			for (final ASTNode n : nodes) {
+				write(out, n);
+			}
+		}
+	}
+
+	private static ASTNode[] readNodes(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+		final int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		final ASTNode[] nodes = new ASTNode[length];
+		for (int i = 0; i < length; i++) {
+			nodes[i] = read(in);
+		}
+		return nodes;
+	}
+
+}
@@ -3,6 +3,7 @@ package net.arctics.clonk.index.serialization;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
 
 import net.arctics.clonk.index.IDeserializationResolvable;
 import net.arctics.clonk.index.Index;
@@ -18,6 +19,15 @@ public class IndexEntityInputStream extends ObjectInputStream {
 		enableResolveObject(true);
 	}
 	@Override
+	protected void readStreamHeader() throws IOException {
+		final short magic = readShort();
+		IndexFormat.checkHeader(magic, readInt());
+	}
+	@Override
+	protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+		return IndexFormat.decodeClass(readUTF());
+	}
+	@Override
 	protected Object resolveObject(final Object obj) throws IOException {
 		if (obj instanceof String) {
 			return ((String)obj).intern();
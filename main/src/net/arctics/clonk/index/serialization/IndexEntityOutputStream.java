@@ -4,24 +4,99 @@ import static java.lang.String.format;
 
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
 import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
 
 import net.arctics.clonk.ast.ASTNode;
 import net.arctics.clonk.ast.Declaration;
 import net.arctics.clonk.index.IReplacedWhenSaved;
 import net.arctics.clonk.index.Index;
 import net.arctics.clonk.index.IndexEntity;
+import net.arctics.clonk.index.serialization.replacements.EntityDeclaration;
 import net.arctics.clonk.index.serialization.replacements.IDeferredDeclaration;
 
 public class IndexEntityOutputStream extends ObjectOutputStream {
+	/** Returned by {@link #writeSeparately(ASTNode)} if the node has to be written inline. */
+	public static final long NO_RECORD = Long.MIN_VALUE;
 	private final Index index;
 	private final IndexEntity entity;
+	private IndexStore separateStore;
+	private final Set<Long> separateRecords = new HashSet<Long>();
+	private int nextOrdinal;
+	private ASTNode separateRoot;
 	public IndexEntityOutputStream(final Index index, final IndexEntity entity, final OutputStream output) throws IOException {
 		super(output);
 		this.index = index;
 		this.entity = entity;
 		enableReplaceObject(true);
 	}
+	/**
+	 * Allow {@link #writeSeparately(ASTNode)} to write nodes into their own records of the passed store.
+	 * @param store The store the entity is written to
+	 */
+	public void writeSeparatelyInto(final IndexStore store) {
+		this.separateStore = store;
+	}
+	/**
+	 * Records written by {@link #writeSeparately(ASTNode)} or kept by {@link #keepSeparately(long)}.
+	 * @return The record ids
+	 */
+	public Set<Long> separateRecords() { return separateRecords; }
+	/**
+	 * Reference a node tree written by a previous {@link #writeSeparately(ASTNode)} of the same entity without loading and writing it again.
+	 * @param record The record the tree was written to
+	 * @return The record or {@link #NO_RECORD} if it is not available to this stream and the tree needs to be written
+	 */
+	public long keepSeparately(final long record) {
+		if (separateStore == null || entity == null || IndexStore.owningEntity(record) != entity.entityId() || record == entity.entityId() || !separateStore.contains(record)) {
+			return NO_RECORD;
+		}
+		separateRecords.add(record);
+		return record;
+	}
+	/**
+	 * Write a node tree into a record of its own so it can be loaded independently of the entity, for example a function body.
+	 * The tree is written by {@link ASTNodeCodec}.
+ * References from the node tree to declarations of the entity outside the tree are written as {@link EntityDeclaration}s.
+	 * @param root The root of the node tree
+	 * @return The id of the record to be passed to {@link Index#loadFunctionBody(IndexEntity, long)} or {@link #NO_RECORD} if the tree needs to be written inline.
+	 * @throws IOException
+	 */
+	public long writeSeparately(final ASTNode root) throws IOException {
+		if (separateStore == null || entity == null) {
+			return NO_RECORD;
+		}
+		// records kept by keepSeparately() might come later in the stream so don't overwrite existing ones
+		long record;
+		do {
+			record = IndexStore.separateRecord(entity.entityId(), nextOrdinal++);
+		} while (separateStore.contains(record));
+		separateRecords.add(record);
+		try (final IndexEntityOutputStream stream = new IndexEntityOutputStream(index, entity, separateStore.recordOutputStream(record))) {
+			stream.separateRoot = root;
+			ASTNodeCodec.write(stream, root);
+		}
+		return record;
+	}
+	private boolean withinSeparateRoot(final ASTNode node) {
+		for (ASTNode n = node; n != null; n = n.parent()) {
+			if (n == separateRoot) {
+				return true;
+			}
+		}
+		return false;
+	}
+	@Override
+	protected void writeStreamHeader() throws IOException {
+		writeShort(IndexFormat.MAGIC);
+		writeInt(IndexFormat.VERSION);
+	}
+	@Override
+	protected void writeClassDescriptor(final ObjectStreamClass desc) throws IOException {
+		writeUTF(IndexFormat.encodeClassName(desc));
+	}
 	@Override
 	protected Object replaceObject(Object obj) throws IOException {
 		try {
@@ -35,6 +110,12 @@ public class IndexEntityOutputStream extends ObjectOutputStream {
 			if (obj instanceof IReplacedWhenSaved) {
 				return ((IReplacedWhenSaved)obj).saveReplacement(index);
 			}
+			if (separateRoot != null && obj instanceof Declaration && !(obj instanceof IndexEntity) && !withinSeparateRoot((Declaration)obj)) {
+				final IndexEntity owner = ((Declaration)obj).parent(IndexEntity.class);
+				if (owner == entity) {
+					return new EntityDeclaration((Declaration)obj, entity);
+				}
+			}
 			if (obj instanceof Declaration && !(obj instanceof Index)) {
 				return index.saveReplacementForEntityDeclaration((Declaration)obj, entity);
 			}
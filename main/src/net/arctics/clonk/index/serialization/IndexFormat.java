@@ -0,0 +1,55 @@
+package net.arctics.clonk.index.serialization;
+
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectStreamClass;
+import java.io.StreamCorruptedException;
+
+/**
+ * Layout shared by {@link IndexEntityOutputStream} and {@link IndexEntityInputStream}.<br>
+ * Streams start with {@link #MAGIC} and {@link #VERSION} instead of the standard serialization header.
+ * Class descriptors only consist of the (abbreviated) class name; field layouts are taken from the local classes when reading.
+ * This makes streams a lot smaller since every entity is written into its own stream and would otherwise repeat the full descriptors of all AST classes it contains.
+ * The price is that streams can only be read by code with the same serialized form of all involved classes, which is what {@link #VERSION} is for.
+ */
+public final class IndexFormat {
+
+	/**
+	 * Version of the serialized form of index contents.
+	 * Needs to be incremented whenever a serializable field is added to, removed from or changes type in any class written to an index.
+	 * Indexes written with a different version are discarded and rebuilt.
+	 */
+	public static final int VERSION = 4;
+
+	static final short MAGIC = (short) 0xC4DE;
+
+	private static final String PACKAGE_PREFIX = "net.arctics.clonk.";
+	private static final String PACKAGE_ABBREVIATION = "~";
+
+	private IndexFormat() {}
+
+	static void checkHeader(final short magic, final int version) throws IOException {
+		if (magic != MAGIC) {
+			throw new StreamCorruptedException(String.format("Not an index stream: magic %04x", magic));
+		}
+		if (version != VERSION) {
+			throw new InvalidClassException(String.format("Index format version %d, expected %d", version, VERSION));
+		}
+	}
+
+	static String encodeClassName(final ObjectStreamClass desc) {
+		final String name = desc.getName();
+		return name.startsWith(PACKAGE_PREFIX) ? PACKAGE_ABBREVIATION + name.substring(PACKAGE_PREFIX.length()) : name;
+	}
+
+	static ObjectStreamClass decodeClass(final String encoded) throws ClassNotFoundException, InvalidClassException {
+		final String name = encoded.startsWith(PACKAGE_ABBREVIATION) ? PACKAGE_PREFIX + encoded.substring(PACKAGE_ABBREVIATION.length()) : encoded;
+		final Class<?> cls = Class.forName(name, false, IndexFormat.class.getClassLoader());
+		final ObjectStreamClass desc = ObjectStreamClass.lookup(cls);
+		if (desc == null) {
+			throw new InvalidClassException(name, "Not serializable");
+		}
+		return desc;
+	}
+
+}
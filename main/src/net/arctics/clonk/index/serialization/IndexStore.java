@@ -0,0 +1,541 @@
+package net.arctics.clonk.index.serialization;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.LongPredicate;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import net.arctics.clonk.util.StreamUtil;
+
+/**
+ * Storage for the serialized records of an {@link net.arctics.clonk.index.Index} folder: One append-only segment file plus an offset table.
+ * Records are read through slices of a memory mapping of the segment so loading an entity does not require opening a file per entity.
+ * Records above {@link #compressionThreshold()} bytes are deflated; smaller ones are stored as is.<br>
+ * Writing a record appends it to the segment and makes the previous version of that record garbage. The table is only written by {@link #flush()};
+ * records appended after the last flush are recovered by scanning the segment tail when opening the store.
+ * When garbage makes up most of the segment, {@link #compact()} copies live records into a new segment generation.
+ * There is one store per folder, obtained using {@link #open(File)} and shared by everything opening it until the last one {@link #close()}s it.
+ */
+public final class IndexStore implements Closeable {
+
+	/** Record id the shallow index itself is stored under. */
+	public static final long INDEX_RECORD = -1;
+	/** Flag set in the ids of records created by {@link #separateRecord(long, int)}. */
+	private static final long SEPARATE_RECORD_FLAG = 1L << 62;
+	private static final int SEPARATE_RECORD_ORDINAL_BITS = 24;
+	/** Records at least this large are compressed by default. */
+	public static final int DEFAULT_COMPRESSION_THRESHOLD = 8*1024;
+
+	private static final String TABLE_FILE = "store.tbl";
+	private static final String SEGMENT_PREFIX = "store.";
+	private static final String SEGMENT_SUFFIX = ".seg";
+	private static final int TABLE_MAGIC = 0xC4D7AB1E;
+	private static final int TABLE_VERSION = 1;
+	private static final int RECORD_HEADER_SIZE = 8 + 4 + 4;
+	private static final int FLAG_COMPRESSED = 1;
+	private static final long MIN_COMPACTION_SIZE = 1024*1024;
+	/** Segments larger than this are mapped in windows of this size since a single mapping is limited to 2GB. */
+	private static final long MAP_WINDOW = 1L << 30;
+
+	/** Open stores by canonical folder */
+	private static final Map<File, IndexStore> stores = new HashMap<File, IndexStore>();
+
+	private static final class Slot {
+		final long offset;
+		final int length;
+		final int flags;
+		Slot(final long offset, final int length, final int flags) {
+			this.offset = offset;
+			this.length = length;
+			this.flags = flags;
+		}
+	}
+
+	private final File folder;
+	/** Sorted by id so the separate records of an entity are adjacent. */
+	private final NavigableMap<Long, Slot> slots = new TreeMap<Long, Slot>();
+	private int generation;
+	private FileChannel channel;
+	private MappedByteBuffer mapped;
+	/** Segment offset {@link #mapped} starts at */
+	private long mappedOffset;
+	/** Number of {@link #open(File)} calls that returned this store and have not been followed by {@link #close()} yet. Guarded by {@link #stores}. */
+	private int references = 1;
+	private long segmentLength;
+	private long garbage;
+	private boolean dirty;
+	private int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+
+	/**
+	 * Return the store for the given folder, opening it if necessary. Every call needs to be balanced by a call to {@link #close()}.
+	 * @param folder The index folder
+	 * @return The store
+	 * @throws IOException
+	 */
+	public static IndexStore open(final File folder) throws IOException {
+		final File key = folder.getCanonicalFile();
+		synchronized (stores) {
+			final IndexStore existing = stores.get(key);
+			if (existing != null) {
+				existing.references++;
+				return existing;
+			}
+			final IndexStore store = new IndexStore(key);
+			stores.put(key, store);
+			return store;
+		}
+	}
+
+	/**
+	 * Release this store. When the last user has released it, the table is flushed and the segment file closed.
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (stores) {
+			if (references == 0 || --references > 0) {
+				return;
+			}
+			stores.remove(folder);
+		}
+		synchronized (this) {
+			try {
+				flush();
+			} finally {
+				channel.close();
+				mapped = null;
+			}
+		}
+	}
+
+	private IndexStore(final File folder) throws IOException {
+		this.folder = folder;
+		folder.mkdirs();
+		if (!readTable()) {
+			// rebuild the table from the newest segment instead of dropping its records
+			slots.clear();
+			generation = newestGeneration();
+			segmentLength = 0;
+			garbage = 0;
+		}
+		openSegment();
+		recoverTail();
+		deleteStaleSegments();
+	}
+
+	private File segmentFile(final int generation) {
+		return new File(folder, SEGMENT_PREFIX + generation + SEGMENT_SUFFIX);
+	}
+
+	/**
+	 * Return whether the passed file is managed by some store.
+	 * @param file The file
+	 * @return True for table and segment files.
+	 */
+	public static boolean isStoreFile(final File file) {
+		final String name = file.getName();
+		return name.equals(TABLE_FILE) || (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+	}
+
+	/**
+	 * Return the highest generation a segment file exists for, or 0 if there is none.
+	 * Segments of lower generations are left behind if deleting them failed, so they do not hold the most recent records.
+	 */
+	private int newestGeneration() {
+		int result = 0;
+		final File[] files = folder.listFiles();
+		if (files != null) {
+			for (final File f : files) {
+				final String name = f.getName();
+				if (isStoreFile(f) && name.length() > SEGMENT_PREFIX.length() + SEGMENT_SUFFIX.length()) {
+					try {
+						result = Math.max(result, Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+					} catch (final NumberFormatException e) {
+						continue;
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	private boolean readTable() {
+		final File table = new File(folder, TABLE_FILE);
+		if (!table.isFile()) {
+			return false;
+		}
+		try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(table)))) {
+			if (in.readInt() != TABLE_MAGIC || in.readInt() != TABLE_VERSION) {
+				return false;
+			}
+			generation = in.readInt();
+			segmentLength = in.readLong();
+			garbage = in.readLong();
+			for (int i = in.readInt(); i > 0; i--) {
+				final long id = in.readLong();
+				slots.put(id, new Slot(in.readLong(), in.readInt(), in.readInt()));
+			}
+			return segmentFile(generation).length() >= segmentLength;
+		} catch (final IOException e) {
+			System.out.println(String.format("Index store table in '%s' unreadable: %s", folder, e.getMessage()));
+			return false;
+		}
+	}
+
+	private void openSegment() throws IOException {
+		channel = new RandomAccessFile(segmentFile(generation), "rw").getChannel();
+		mapped = null;
+		mappedOffset = 0;
+	}
+
+	/**
+	 * Pick up records appended after the table was last written (or all records of the segment if there was no usable table).
+	 */
+	private void recoverTail() throws IOException {
+		final long size = channel.size();
+		final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		long position = segmentLength;
+		while (position + RECORD_HEADER_SIZE <= size) {
+			header.clear();
+			channel.read(header, position);
+			header.flip();
+			final long id = header.getLong();
+			final int flags = header.getInt();
+			final int length = header.getInt();
+			if (length < 0 || position + RECORD_HEADER_SIZE + length > size) {
+				break;
+			}
+			put(id, new Slot(position + RECORD_HEADER_SIZE, length, flags));
+			position += RECORD_HEADER_SIZE + length;
+		}
+		if (position != segmentLength) {
+			segmentLength = position;
+			dirty = true;
+		}
+		// cut off a partially written record
+		if (size > segmentLength) {
+			channel.truncate(segmentLength);
+		}
+	}
+
+	private void deleteStaleSegments() {
+		final File current = segmentFile(generation);
+		final File[] files = folder.listFiles();
+		if (files != null) {
+			for (final File f : files) {
+				if (isStoreFile(f) && !f.getName().equals(TABLE_FILE) && !f.equals(current)) {
+					f.delete();
+				}
+			}
+		}
+	}
+
+	private void put(final long id, final Slot slot) {
+		final Slot previous = slots.put(id, slot);
+		if (previous != null) {
+			garbage += RECORD_HEADER_SIZE + previous.length;
+		}
+	}
+
+	/**
+	 * Return the id of a record belonging to some entity but stored separately from it.
+	 * @param entityId Id of the entity
+	 * @param ordinal Number of the record among the separate records of the entity
+	 * @return The record id
+	 */
+	public static long separateRecord(final long entityId, final int ordinal) {
+		return SEPARATE_RECORD_FLAG | (entityId << SEPARATE_RECORD_ORDINAL_BITS) | ordinal;
+	}
+
+	/**
+	 * Return the id of the entity a record belongs to.
+	 * @param record The record id
+	 * @return The entity id. For records not created by {@link #separateRecord(long, int)}, the record id itself.
+	 */
+	public static long owningEntity(final long record) {
+		return record >= 0 && (record & SEPARATE_RECORD_FLAG) != 0
+			? (record & ~SEPARATE_RECORD_FLAG) >>> SEPARATE_RECORD_ORDINAL_BITS
+			: record;
+	}
+
+	public int compressionThreshold() { return compressionThreshold; }
+	public void compressionThreshold(final int value) { compressionThreshold = value; }
+
+	/**
+	 * Return whether a record with the given id exists.
+	 * @param id The record id
+	 * @return True if it exists
+	 */
+	public synchronized boolean contains(final long id) {
+		return slots.containsKey(id);
+	}
+
+	/**
+	 * Append a new version of a record to the segment.
+	 * @param id Record id
+	 * @param data Buffer containing the record data
+	 * @param length Number of bytes of the buffer making up the record
+	 * @throws IOException
+	 */
+	public synchronized void write(final long id, byte[] data, int length) throws IOException {
+		int flags = 0;
+		if (compressionThreshold >= 0 && length >= compressionThreshold) {
+			final ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4);
+			try (final DeflaterOutputStream deflater = new DeflaterOutputStream(compressed, new Deflater(Deflater.BEST_SPEED))) {
+				deflater.write(data, 0, length);
+			}
+			data = compressed.toByteArray();
+			length = data.length;
+			flags |= FLAG_COMPRESSED;
+		}
+		final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		header.putLong(id).putInt(flags).putInt(length).flip();
+		final long position = segmentLength;
+		final ByteBuffer body = ByteBuffer.wrap(data, 0, length);
+		for (long p = position; header.hasRemaining();) {
+			p += channel.write(header, p);
+		}
+		for (long p = position + RECORD_HEADER_SIZE; body.hasRemaining();) {
+			p += channel.write(body, p);
+		}
+		segmentLength = position + RECORD_HEADER_SIZE + length;
+		put(id, new Slot(position + RECORD_HEADER_SIZE, length, flags));
+		dirty = true;
+	}
+
+	/**
+	 * Return a stream that will write a new version of the record with the given id when closed.
+	 * @param id The record id
+	 * @return The stream
+	 */
+	public OutputStream recordOutputStream(final long id) {
+		return new ByteArrayOutputStream(4096) {
+			private boolean closed;
+			@Override
+			public void close() throws IOException {
+				if (!closed) {
+					closed = true;
+					IndexStore.this.write(id, buf, count);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Return a stream reading the current version of some record.
+	 * @param id The record id
+	 * @return The stream or null if there is no record with that id
+	 * @throws IOException
+	 */
+	public synchronized InputStream recordInputStream(final long id) throws IOException {
+		final Slot slot = slots.get(id);
+		if (slot == null) {
+			return null;
+		}
+		final long end = slot.offset + slot.length;
+		if (mapped == null || slot.offset < mappedOffset || mappedOffset + mapped.capacity() < end) {
+			mappedOffset = segmentLength <= MAP_WINDOW ? 0 : slot.offset;
+			mapped = channel.map(MapMode.READ_ONLY, mappedOffset, Math.min(segmentLength - mappedOffset, Math.max(MAP_WINDOW, slot.length)));
+		}
+		final ByteBuffer slice = mapped.duplicate();
+		slice.limit((int) (end - mappedOffset));
+		slice.position((int) (slot.offset - mappedOffset));
+		final InputStream in = new ByteBufferInputStream(slice.slice());
+		return (slot.flags & FLAG_COMPRESSED) != 0 ? new InflaterInputStream(in) : in;
+	}
+
+	/**
+	 * Read the current version of some record into memory.
+	 * @param id The record id
+	 * @return The (decompressed) contents of the record or null if there is no record with that id
+	 * @throws IOException
+	 */
+	public byte[] read(final long id) throws IOException {
+		try (final InputStream in = recordInputStream(id)) {
+			if (in == null) {
+				return null;
+			}
+			final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(), 1024));
+			final byte[] buffer = new byte[8192];
+			for (int read; (read = in.read(buffer)) != -1;) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+	}
+
+	/**
+	 * Drop a record.
+	 * @param id The record id
+	 * @return Whether there was a record with that id
+	 */
+	public synchronized boolean remove(final long id) {
+		final Slot slot = slots.remove(id);
+		if (slot != null) {
+			garbage += RECORD_HEADER_SIZE + slot.length;
+			dirty = true;
+		}
+		return slot != null;
+	}
+
+	/**
+	 * Drop all records whose ids are not accepted by the passed predicate.
+	 * @param keep Predicate accepting ids of records to keep
+	 */
+	public synchronized void retain(final LongPredicate keep) {
+		retain(slots, keep);
+	}
+
+	/**
+	 * Drop the records created by {@link #separateRecord(long, int)} for some entity whose ids are not accepted by the passed predicate.
+	 * @param entityId Id of the entity
+	 * @param keep Predicate accepting ids of records to keep
+	 */
+	public synchronized void retainSeparateRecords(final long entityId, final LongPredicate keep) {
+		retain(slots.subMap(separateRecord(entityId, 0), true, separateRecord(entityId, (1 << SEPARATE_RECORD_ORDINAL_BITS) - 1), true), keep);
+	}
+
+	private void retain(final Map<Long, Slot> range, final LongPredicate keep) {
+		for (final Iterator<Map.Entry<Long, Slot>> it = range.entrySet().iterator(); it.hasNext();) {
+			final Map.Entry<Long, Slot> e = it.next();
+			if (!keep.test(e.getKey())) {
+				garbage += RECORD_HEADER_SIZE + e.getValue().length;
+				it.remove();
+				dirty = true;
+			}
+		}
+	}
+
+	/**
+	 * Remove all records.
+	 * @throws IOException
+	 */
+	public synchronized void clear() throws IOException {
+		slots.clear();
+		switchGeneration();
+		segmentLength = 0;
+		garbage = 0;
+		dirty = true;
+		flush();
+	}
+
+	private void switchGeneration() throws IOException {
+		final File old = segmentFile(generation);
+		channel.close();
+		mapped = null;
+		generation++;
+		openSegment();
+		channel.truncate(0);
+		// might fail while the old mapping has not been collected yet - will be cleaned up when the store is opened the next time
+		old.delete();
+	}
+
+	/**
+	 * Copy live records into a new segment if most of the current one is garbage.
+	 * @throws IOException
+	 */
+	public synchronized void compact() throws IOException {
+		if (segmentLength < MIN_COMPACTION_SIZE || garbage * 2 < segmentLength) {
+			return;
+		}
+		final FileChannel old = channel;
+		final File oldFile = segmentFile(generation);
+		generation++;
+		try (final FileChannel target = new RandomAccessFile(segmentFile(generation), "rw").getChannel()) {
+			target.truncate(0);
+			long position = 0;
+			for (final Map.Entry<Long, Slot> e : slots.entrySet()) {
+				final Slot slot = e.getValue();
+				final long size = RECORD_HEADER_SIZE + slot.length;
+				for (long transferred = 0; transferred < size;) {
+					transferred += old.transferTo(slot.offset - RECORD_HEADER_SIZE + transferred, size - transferred, target.position(position + transferred));
+				}
+				e.setValue(new Slot(position + RECORD_HEADER_SIZE, slot.length, slot.flags));
+				position += size;
+			}
+			segmentLength = position;
+			garbage = 0;
+		}
+		old.close();
+		openSegment();
+		dirty = true;
+		flush();
+		oldFile.delete();
+	}
+
+	/**
+	 * Write the offset table if records were written or dropped since the last flush.
+	 * @throws IOException
+	 */
+	public synchronized void flush() throws IOException {
+		if (!dirty) {
+			return;
+		}
+		channel.force(false);
+		StreamUtil.writeAtomically(new File(folder, TABLE_FILE), (file, stream, writer) -> {
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+			out.writeInt(TABLE_MAGIC);
+			out.writeInt(TABLE_VERSION);
+			out.writeInt(generation);
+			out.writeLong(segmentLength);
+			out.writeLong(garbage);
+			out.writeInt(slots.size());
+			for (final Map.Entry<Long, Slot> e : slots.entrySet()) {
+				out.writeLong(e.getKey());
+				out.writeLong(e.getValue().offset);
+				out.writeInt(e.getValue().length);
+				out.writeInt(e.getValue().flags);
+			}
+			out.flush();
+		});
+		dirty = false;
+	}
+
+	private static final class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+		ByteBufferInputStream(final ByteBuffer buffer) { this.buffer = buffer; }
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+		@Override
+		public int read(final byte[] b, final int off, final int len) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			final int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+			return n;
+		}
+		@Override
+		public int available() { return buffer.remaining(); }
+		@Override
+		public long skip(final long n) {
+			final int skipped = (int) Math.min(n, buffer.remaining());
+			buffer.position(buffer.position() + skipped);
+			return skipped;
+		}
+	}
+
+}
@@ -1,12 +1,17 @@
 package net.arctics.clonk.ini;
 
+import static net.arctics.clonk.util.Utilities.as;
 import static net.arctics.clonk.util.Utilities.defaulting;
+
+import java.nio.ByteBuffer;
+
 import net.arctics.clonk.Problem;
 import net.arctics.clonk.ProblemException;
 import net.arctics.clonk.ast.ASTNode;
 import net.arctics.clonk.ast.Declaration;
 import net.arctics.clonk.ast.IASTPositionProvider;
 import net.arctics.clonk.ast.SourceLocation;
+import net.arctics.clonk.c4group.C4GroupFile;
 import net.arctics.clonk.c4group.C4GroupItem;
 import net.arctics.clonk.parser.BufferedScanner;
 import net.arctics.clonk.parser.CStyleScanner;
@@ -24,17 +29,35 @@ public class IniUnitParser extends CStyleScanner implements IASTPositionProvider
 	private final Markers markers = new Markers();
 
 	public IniUnitParser(final IniUnit unit) {
-		super(unit.input);
+		super(defaulting(groupEntryContents(unit.file()), unit.input));
 		figureOutIndentation();
 		this.unit = unit;
 		file = unit.file();
 	}
 
+	/**
+	 * Return the contents of a file inside a linked C4Group so they can be scanned without being copied around first.
+	 * Such files can't be edited so there is no document whose contents might differ.
+	 * @param file The file
+	 * @return The contents or null if the file is not backed by a group entry
+	 */
+	private static ByteBuffer groupEntryContents(final IFile file) {
+		if (file == null || !file.isLinked(IResource.CHECK_ANCESTORS))
+			return null;
+		final C4GroupFile entry = as(C4GroupItem.groupItemBackingResource(file), C4GroupFile.class);
+		return entry != null ? entry.contentsBuffer() : null;
+	}
+
 	@Override
 	public void reset() {
 		super.reset();
-		if (file != null)
-			this.reset(StreamUtil.stringFromFile(file));
+		if (file != null) {
+			final ByteBuffer entryContents = groupEntryContents(file);
+			if (entryContents != null)
+				this.init(entryContents);
+			else
+				this.reset(StreamUtil.stringFromFile(file));
+		}
 	}
 
 	protected IniSection parseSection(final boolean modifyMarkers, final IniSection parentSection) throws ProblemException {
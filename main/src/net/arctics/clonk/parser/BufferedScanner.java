@@ -4,16 +4,13 @@ import static net.arctics.clonk.util.Utilities.attemptWithResource;
 import static net.arctics.clonk.util.Utilities.defaulting;
 import static net.arctics.clonk.util.Utilities.thro;
 
-import java.io.CharArrayReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
-import java.math.BigInteger;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
-import java.util.HashSet;
-import java.util.Set;
 import java.util.regex.Pattern;
 
 import org.eclipse.core.resources.IStorage;
@@ -23,10 +20,9 @@ import org.eclipse.jface.text.Region;
 import org.eclipse.jface.text.rules.ICharacterScanner;
 
 import net.arctics.clonk.util.StreamUtil;
-import net.arctics.clonk.util.StringUtil;
 
 /**
- * Scanner operating on a string stored in memory. Can be created from a file, an input stream or a raw string
+ * Scanner operating on a string stored in memory. Can be created from a file, an input stream, a buffer of UTF-8 encoded bytes or a raw string
  */
 public class BufferedScanner implements ICharacterScanner {
 
@@ -49,6 +45,65 @@ public class BufferedScanner implements ICharacterScanner {
 	 */
 	public static final char[] WHITESPACE_WITHOUT_NEWLINE_CHARS = new char[] { ' ', '\t' };
 
+	/**
+	 * Classes of ASCII characters as bits, so checking whether a character belongs to one of the arrays above or is part of an identifier
+	 * is a single lookup instead of a loop.
+	 */
+	private static final byte
+		WHITESPACE = 1,
+		NEWLINE = 2,
+		WHITESPACE_WITHOUT_NEWLINE = 4,
+		WORD_START = 8,
+		WORD_PART = 16;
+	private static final byte[] CHAR_CLASSES = new byte[128];
+	static {
+		for (final char c : WHITESPACE_CHARS) {
+			CHAR_CLASSES[c] |= WHITESPACE;
+		}
+		for (final char c : NEWLINE_CHARS) {
+			CHAR_CLASSES[c] |= NEWLINE;
+		}
+		for (final char c : WHITESPACE_WITHOUT_NEWLINE_CHARS) {
+			CHAR_CLASSES[c] |= WHITESPACE_WITHOUT_NEWLINE;
+		}
+		for (char c = 0; c < 128; c++) {
+			if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_') {
+				CHAR_CLASSES[c] |= WORD_START|WORD_PART;
+			} else if (c >= '0' && c <= '9') {
+				CHAR_CLASSES[c] |= WORD_PART;
+			}
+		}
+	}
+
+	private static boolean is(final int character, final byte charClass) {
+		return character >= 0 && character < 128 && (CHAR_CLASSES[character] & charClass) != 0;
+	}
+
+	/**
+	 * Return the class standing for one of the character arrays defined here.
+	 * @param chars The array
+	 * @return The class or 0 if the array is some other one
+	 */
+	private static byte classOf(final char[] chars) {
+		return
+			chars == WHITESPACE_CHARS ? WHITESPACE :
+			chars == NEWLINE_CHARS ? NEWLINE :
+			chars == WHITESPACE_WITHOUT_NEWLINE_CHARS ? WHITESPACE_WITHOUT_NEWLINE :
+			0;
+	}
+
+	private static boolean contains(final char[] chars, final byte charClass, final char c) {
+		if (charClass != 0) {
+			return is(c, charClass);
+		}
+		for (int i = 0; i < chars.length; i++) {
+			if (chars[i] == c) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * The buffer
 	 */
@@ -64,6 +119,11 @@ public class BufferedScanner implements ICharacterScanner {
 	 */
 	protected int offset;
 
+	/**
+	 * Table {@link #readIdent()} looks identifiers up in. If null, identifiers are allocated as new strings.
+	 */
+	protected SymbolTable symbols;
+
 	/**
 	 * Indentation mode: -1 for Tab, number for number of whitespace characters
 	 */
@@ -74,33 +134,36 @@ public class BufferedScanner implements ICharacterScanner {
 	 * @return The value assigned to {@link #indentationMode}
 	 */
 	protected byte figureOutIndentation() {
-		Set<BigInteger> leadingWhitespaceCounts = null;
-		for (final String line : StringUtil.lines(new CharArrayReader(buffer))) {
-			if (line.length() > 0 && line.charAt(0) == '\t') {
-				// one tab is enough to conclude that
-				return indentationMode = TABINDENTATIONMODE;
-			} else {
-				int numWhitespace;
-				for (numWhitespace = 0; numWhitespace < line.length() && line.charAt(numWhitespace) == ' '; numWhitespace++) {
-					;
+		// gcd of the numbers of spaces lines start with, unless some line starts with a tab
+		int gcd = 0;
+		boolean lineStart = true;
+		for (int i = 0; i < size; i++) {
+			final char c = buffer[i];
+			if (c == '\n' || c == '\r') {
+				lineStart = true;
+			} else if (lineStart) {
+				lineStart = false;
+				if (c == '\t') {
+					// one tab is enough to conclude that
+					return indentationMode = TABINDENTATIONMODE;
+				}
+				int numWhitespace = 0;
+				for (; i < size && buffer[i] == ' '; i++) {
+					numWhitespace++;
 				}
 				if (numWhitespace > 0) {
-					if (leadingWhitespaceCounts == null) {
-						leadingWhitespaceCounts = new HashSet<BigInteger>();
+					int a = numWhitespace, b = gcd;
+					while (b != 0) {
+						final int t = a % b;
+						a = b;
+						b = t;
 					}
-					leadingWhitespaceCounts.add(BigInteger.valueOf(numWhitespace));
+					gcd = a;
 				}
+				i--;
 			}
 		}
-		if (leadingWhitespaceCounts != null) {
-			BigInteger gcd = null;
-			for (final BigInteger wc : leadingWhitespaceCounts) {
-				gcd = gcd == null ? wc : wc.gcd(gcd);
-			}
-			return indentationMode = gcd.byteValue();
-		} else {
-			return indentationMode = TABINDENTATIONMODE;
-		}
+		return indentationMode = gcd != 0 ? (byte)gcd : TABINDENTATIONMODE;
 	}
 
 	/**
@@ -117,21 +180,53 @@ public class BufferedScanner implements ICharacterScanner {
 		size = buffer.length;
 	}
 
+	/**
+	 * Create a new scanner that scans UTF-8 encoded bytes, for example the mapped contents of a {@link net.arctics.clonk.c4group.C4GroupFile}.
+	 * The bytes are decoded straight into the scanner's buffer.
+	 * @param bytes The bytes. The position of the buffer is left alone.
+	 */
+	public BufferedScanner(final ByteBuffer bytes) {
+		init(bytes);
+	}
+
+	protected final void init(final ByteBuffer bytes) {
+		init(StreamUtil.charArrayFromBuffer(bytes));
+	}
+
+	/**
+	 * Scan an array of characters, taking ownership of it. Other parts rely on the buffer being exactly as long as the text.
+	 * @param chars The characters
+	 */
+	protected final void init(final char[] chars) {
+		offset = 0;
+		buffer = chars != null ? chars : new char[0];
+		size = buffer.length;
+	}
+
 	public BufferedScanner(final Object source) {
-		this(stringFromSource(source));
+		if (source instanceof ByteBuffer) {
+			init((ByteBuffer)source);
+		} else {
+			init(charsFromSource(source));
+		}
 	}
 
-	private static String stringFromSource(final Object source) {
+	/**
+	 * Decode a source straight into the array to be scanned, without building a String first where possible.
+	 * @param source The source
+	 * @return The characters
+	 */
+	private static char[] charsFromSource(final Object source) {
 		return
-			source instanceof IStorage ? StreamUtil.stringFromStorage((IStorage) source) :
-			source instanceof Reader ? StreamUtil.stringFromReader((Reader)source) :
-			source instanceof InputStream ? StreamUtil.stringFromInputStream((InputStream)source) :
-			source instanceof String ? (String)source :
-			source instanceof File ? StreamUtil.stringFromFile((File) source) :
-			source instanceof IDocument ? ((IDocument)source).get() :
+			source instanceof IStorage ? StreamUtil.charsFromStorage((IStorage) source) :
+			source instanceof Reader ? StreamUtil.stringFromReader((Reader)source).toCharArray() :
+			source instanceof InputStream ? StreamUtil.charsFromInputStream((InputStream)source) :
+			source instanceof String ? ((String)source).toCharArray() :
+			source instanceof File ? StreamUtil.charsFromFile((File) source) :
+			source instanceof IDocument ? ((IDocument)source).get().toCharArray() :
 			source instanceof URL ? attemptWithResource(
 				((URL)source)::openStream,
-				StreamUtil::stringFromInputStream,
+				StreamUtil::charsFromInputStream,
 				IOException.class,
 				Exception::printStackTrace
 			)
@@ -184,15 +279,11 @@ public class BufferedScanner implements ICharacterScanner {
 	 * @return
 	 */
 	public static boolean isWordPart(final int character) {
-		return
-			('A' <= character && character <= 'Z') ||
-			('a'<= character && character <= 'z') ||
-			(character == '_') ||
-			(/*length > 0 &&*/ '0' <= character && character <= '9');
+		return is(character, WORD_PART);
 	}
 
 	public static boolean isWordStart(final int character) {
-		return (character >= 'a' && character <= 'z') || (character >= 'A' && character <= 'Z') || character == '_';
+		return is(character, WORD_START);
 	}
 
 	/**
@@ -200,21 +291,28 @@ public class BufferedScanner implements ICharacterScanner {
 	 * @return the code-word
 	 */
 	public final String readIdent() {
-		final int start = offset;
-		int length = 0;
-		do {
-			final int readByte = read();
-			final boolean win = offset == start+1
-				? isWordStart(readByte)
-				: isWordPart(readByte);
-			if (win) {
-				length++;
-			} else {
-				seek(start);
-				return length == 0 ? "" : readString(length);
+		int end = offset;
+		if (end >= 0 && end < size && isWordStart(buffer[end])) {
+			for (end++; end < size && isWordPart(buffer[end]); end++) {
+				;
 			}
-		} while(!reachedEOF());
-		return readStringAt(start, start+length);
+		}
+		final int length = end - offset;
+		return length == 0 ? "" : readSymbol(length);
+	}
+
+	/**
+	 * Read a string of the supplied length from the buffer, taking it from {@link #symbols} if set.
+	 * @param length The length
+	 * @return The string
+	 */
+	private String readSymbol(final int length) {
+		if (symbols == null || offset+length > size) {
+			return readString(length);
+		}
+		final String result = symbols.intern(buffer, offset, length);
+		offset += length;
+		return result;
 	}
 
 	/**
@@ -223,36 +321,27 @@ public class BufferedScanner implements ICharacterScanner {
 	 * @return string sequence, without delimiter char
 	 */
 	public final String readStringUntil(final char ...delimiters) {
-		final int start = offset;
-		int subtract = 0;
-		Outer: do {
-			final int readByte = read();
-			for (int i = 0; i < delimiters.length; i++) {
-				if (readByte == delimiters[i]) {
-					subtract = 1;
-					break Outer;
-				}
-			}
-		} while(!reachedEOF());
-		final int stringLength = offset - start - subtract;
-		seek(start);
-		return readString(stringLength);
+		if (offset >= size) {
+			return null;
+		}
+		final byte delimiterClass = classOf(delimiters);
+		int end = offset;
+		while (end < size && !contains(delimiters, delimiterClass, buffer[end])) {
+			end++;
+		}
+		return readString(end - offset);
 	}
 
 	public final int skipUntil(final char... delimiters) {
-		int subtract = 0;
-		int len;
-		Outer: for (len = 0; !reachedEOF(); len++) {
-			final int readByte = read();
-			for(int i = 0; i < delimiters.length;i++) {
-				if (readByte == delimiters[i]) {
-					subtract = 1;
-					break Outer;
-				}
-			}
+		if (offset >= size) {
+			return 0;
 		}
-		seek(this.offset-subtract);
-		return len;
+		final byte delimiterClass = classOf(delimiters);
+		final int start = offset;
+		while (offset < size && !contains(delimiters, delimiterClass, buffer[offset])) {
+			offset++;
+		}
+		return offset - start;
 	}
 
 	public final boolean skipSingleLineEnding() {
@@ -316,51 +405,34 @@ public class BufferedScanner implements ICharacterScanner {
 	 * @param charsToEat
 	 */
 	public final int eat(final char[] charsToEat) {
-		if (reachedEOF())
-		 {
+		if (reachedEOF()) {
 			return 0; // no unreading() when already reached EOF
 		}
-		int result = 0;
-		do {
-			final int readByte = read();
-			boolean doEat = false;
-			for (int i = 0; i < charsToEat.length;i++) {
-				if (readByte == charsToEat[i]) {
-					doEat = true;
-					result++;
-					break;
-				}
-			}
-			if (!doEat) {
-				unread();
-				return result;
-			}
-		} while(!reachedEOF());
-		return result;
+		final byte eatClass = classOf(charsToEat);
+		final int start = offset;
+		while (offset < size && contains(charsToEat, eatClass, buffer[offset])) {
+			offset++;
+		}
+		return offset - start;
 	}
 
+	/**
+	 * Moves offset to the next char from <code>delimiters</code>
+	 * @param delimiters
+	 * @return 1 if a delimiter was found, 0 if the end was reached
+	 */
 	public final int eatUntil(final char ...delimiters) {
-		if (reachedEOF())
-		 {
+		if (reachedEOF()) {
 			return 0; // no unreading() when already reached EOF
 		}
-		int result = 0;
-		do {
-			final int readByte = read();
-			boolean isDelimiter = false;
-			for (int i = 0; i < delimiters.length;i++) {
-				if (readByte == delimiters[i]) {
-					isDelimiter = true;
-					result++;
-					break;
-				}
-			}
-			if (isDelimiter) {
-				unread();
-				return result;
+		final byte delimiterClass = classOf(delimiters);
+		while (offset < size) {
+			if (contains(delimiters, delimiterClass, buffer[offset])) {
+				return 1;
 			}
-		} while(!reachedEOF());
-		return result;
+			offset++;
+		}
+		return 0;
 	}
 
 	/**
@@ -41,6 +41,8 @@ public class Markers implements Iterable<Marker> {
 
 	public static final String MARKER_PROBLEM = "c4dtProblem"; //$NON-NLS-1$
 	public static final String MARKER_EXPECTEDTYPE = "c4dtExpectedType";
+	/** Attribute telling whether a marker was reported by parsing, see {@link #parsed()} */
+	public static final String MARKER_PARSED = "c4dtParsed";
 
 	public Markers() {}
 	public Markers(final IMarkerListener listener) { this(); this.listener = listener; }
@@ -52,13 +54,21 @@ public class Markers implements Iterable<Marker> {
 	private IMarkerListener listener;
 	private Marker first, last;
 	private Set<IMarker> captured;
+	private int capturedRegionStart = -1, capturedRegionEnd = -1;
+	private Marker parsedUntil;
 
 	public synchronized Marker clear() {
 		final Marker r = first;
-		first = last = null;
+		first = last = parsedUntil = null;
 		return r;
 	}
 
+	/**
+	 * Note that the markers reported so far were reported by parsing and the ones reported from now on by problem reporting.
+	 * Markers are deployed with the {@link #MARKER_PARSED} attribute telling which.
+	 */
+	public synchronized void parsed() { parsedUntil = last; }
+
 	public void setListener(final IMarkerListener listener) { this.listener = listener; }
 	public IMarkerListener listener() { return listener; }
 
@@ -69,18 +79,28 @@ public class Markers implements Iterable<Marker> {
 		if (Core.instance().runsHeadless()) {
 			return;
 		}
+		boolean parsed = parsedUntil != null;
 		for (Marker deploy = clear(); deploy != null; deploy = deploy.next) {
-			deploy(deploy);
+			deploy(deploy, parsed);
+			if (deploy == parsedUntil) {
+				parsed = false;
+			}
 		}
 		if (captured != null) {
 			try {
 				for (final IMarker m : captured) {
-					m.delete();
+					if (
+						capturedRegionStart == -1 || !m.getAttribute(MARKER_PARSED, false) ||
+						m.getAttribute(IMarker.CHAR_END, -1) >= capturedRegionStart && m.getAttribute(IMarker.CHAR_START, -1) <= capturedRegionEnd
+					) {
+						m.delete();
+					}
 				}
 			} catch (final CoreException e) {
 				e.printStackTrace();
 			} finally {
 				captured = null;
+				capturedRegionStart = capturedRegionEnd = -1;
 			}
 		}
 	}
@@ -99,7 +119,7 @@ public class Markers implements Iterable<Marker> {
 		return null;
 	}
 
-	private IMarker deploy(final Marker marker) {
+	private IMarker deploy(final Marker marker, final boolean parsed) {
 		if (handleProblemMapping(marker) == Handling.Hide) {
 			return null;
 		}
@@ -109,9 +129,9 @@ public class Markers implements Iterable<Marker> {
 			return null;
 		}
 		try {
-			String[] attributes = new String[] {IMarker.SEVERITY, IMarker.TRANSIENT, IMarker.MESSAGE, IMarker.LOCATION, MARKER_PROBLEM};
+			String[] attributes = new String[] {IMarker.SEVERITY, IMarker.TRANSIENT, IMarker.MESSAGE, IMarker.LOCATION, MARKER_PROBLEM, MARKER_PARSED};
 			Object[] attributeValues = new Object[] {marker.severity, false, marker.code.makeErrorString(marker.arguments),
-				declarationAssociatedWithFile != null ? declarationAssociatedWithFile.toString() : null, marker.code.ordinal()};
+				declarationAssociatedWithFile != null ? declarationAssociatedWithFile.toString() : null, marker.code.ordinal(), parsed};
 			IMarker deployedMarker = findCaptured(marker.start, marker.end);
 			if (deployedMarker == null) {
 				if (SAYERRORS && marker.severity == IMarker.SEVERITY_ERROR) {
@@ -415,6 +435,17 @@ public class Markers implements Iterable<Marker> {
 		}
 	}
 
+	/**
+	 * Confine deleting captured markers that were reported by parsing and not reported again to a region, for when only that region of a script was parsed again.
+	 * Captured markers reported by problem reporting, which runs over the whole script again, are deleted wherever they are if not reported again.
+	 * @param start Start of the region
+	 * @param end End of the region
+	 */
+	public synchronized void confineCapturedTo(final int start, final int end) {
+		capturedRegionStart = start;
+		capturedRegionEnd = end;
+	}
+
 	public void captureExistingMarkers(final IResource resource) {
 		if (resource == null) {
 			return;
@@ -0,0 +1,110 @@
+package net.arctics.clonk.parser;
+
+/**
+ * Table of identifier strings, looked up directly from ranges of a scanner's char buffer.
+ * Reading an identifier that is already in the table does not allocate anything, and all identifiers with the same characters
+ * read through the same table end up being the same {@link String} instance.
+ * New symbols are passed through {@link String#intern()} so they are also identical to names interned elsewhere, for example when loading declarations from the index.<br>
+ * Lookups of existing symbols do not lock. Adding a symbol locks the table.
+ */
+public final class SymbolTable {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/** Open-addressing table with a power-of-two length. Replaced as a whole when growing. */
+	private volatile String[] table = new String[INITIAL_CAPACITY];
+	private int count;
+
+	private static int hash(final char[] buffer, final int start, final int length) {
+		int h = 0;
+		for (int i = start, end = start+length; i < end; i++) {
+			h = 31*h + buffer[i];
+		}
+		return h;
+	}
+
+	private static int spread(final int h) {
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean matches(final String symbol, final char[] buffer, final int start, final int length) {
+		if (symbol.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (symbol.charAt(i) != buffer[start+i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String find(final String[] table, final int hash, final char[] buffer, final int start, final int length) {
+		final int mask = table.length-1;
+		for (int i = spread(hash) & mask;; i = (i+1) & mask) {
+			final String symbol = table[i];
+			if (symbol == null) {
+				return null;
+			}
+			if (symbol.hashCode() == hash && matches(symbol, buffer, start, length)) {
+				return symbol;
+			}
+		}
+	}
+
+	private static void insert(final String[] table, final String symbol) {
+		final int mask = table.length-1;
+		int i = spread(symbol.hashCode()) & mask;
+		while (table[i] != null) {
+			i = (i+1) & mask;
+		}
+		table[i] = symbol;
+	}
+
+	/**
+	 * Return the symbol for a range of characters.
+	 * @param buffer The buffer containing the characters
+	 * @param start Start of the range
+	 * @param length Length of the range
+	 * @return The canonical string consisting of those characters
+	 */
+	public String intern(final char[] buffer, final int start, final int length) {
+		// hash computed the same way String does so table entries can use their cached hash codes
+		final int hash = hash(buffer, start, length);
+		final String existing = find(table, hash, buffer, start, length);
+		return existing != null ? existing : add(hash, buffer, start, length);
+	}
+
+	private synchronized String add(final int hash, final char[] buffer, final int start, final int length) {
+		String[] t = table;
+		final String raced = find(t, hash, buffer, start, length);
+		if (raced != null) {
+			return raced;
+		}
+		final String symbol = new String(buffer, start, length).intern();
+		if ((count+1)*4 > t.length*3) {
+			final String[] grown = new String[t.length*2];
+			for (final String s : t) {
+				if (s != null) {
+					insert(grown, s);
+				}
+			}
+			t = grown;
+			insert(t, symbol);
+			table = t;
+		} else {
+			insert(t, symbol);
+		}
+		count++;
+		return symbol;
+	}
+
+	/**
+	 * Number of symbols in the table.
+	 * @return The number of symbols
+	 */
+	public synchronized int size() {
+		return count;
+	}
+
+}
@@ -25,11 +25,18 @@ public class ClonkPreferences extends AbstractPreferenceInitializer {
 	public static final String INSTANT_C4SCRIPT_COMPLETIONS = "instantC4ScriptCompletions";
 	public static final String LONG_PARAMETER_INFO = "longParameterInfo";
 	public static final String TASKEXECUTION_THREADS = "taskExecutionThreads";
+	public static final String BUILD_CACHE = "buildCache";
+	public static final String C4GROUP_CACHE_SIZE = "c4groupCacheSize";
+	public static final String INFERENCE_TIMEOUT = "inferenceTimeout";
 
 	// defaults
 	public static final String ACTIVE_ENGINE_DEFAULT = "ClonkRage"; //$NON-NLS-1$
 	public static final String PREFERRED_LANGID_DEFAULT = "DE"; //$NON-NLS-1$
 	public static final String AUTHOR_DEFAULT = "<Insert Author>";
+	/** In MiB */
+	public static final int C4GROUP_CACHE_SIZE_DEFAULT = 64;
+	/** In minutes */
+	public static final int INFERENCE_TIMEOUT_DEFAULT = 3;
 
 	public static String value(final String prefName) {
 		return Core.instance().getPreferenceStore().getString(prefName);
@@ -56,6 +63,9 @@ public class ClonkPreferences extends AbstractPreferenceInitializer {
 		store.setDefault(INSTANT_C4SCRIPT_COMPLETIONS, false);
 		store.setDefault(LONG_PARAMETER_INFO, true);
 		store.setDefault(TASKEXECUTION_THREADS, Runtime.getRuntime().availableProcessors());
+		store.setDefault(BUILD_CACHE, true);
+		store.setDefault(C4GROUP_CACHE_SIZE, C4GROUP_CACHE_SIZE_DEFAULT);
+		store.setDefault(INFERENCE_TIMEOUT, INFERENCE_TIMEOUT_DEFAULT);
 	}
 
 }
@@ -39,7 +39,10 @@ public class Messages extends NLS {
 	public static String USEnglish;
 	public static String DocURLTemplateDefault;
 	public static String TogglesPreferencePage_AnalyzeCode;
+	public static String TogglesPreferencePage_BuildCache;
+	public static String TogglesPreferencePage_C4GroupCacheSize;
 	public static String TogglesPreferencePage_IgnoreSimpleFunctionDupes;
+	public static String TogglesPreferencePage_InferenceTimeout;
 	public static String TogglesPreferencePage_InstantCompletions;
 	public static String TogglesPreferencePage_JavaStyleBlocks;
 	public static String TogglesPreferencePage_LongParameterInfo;
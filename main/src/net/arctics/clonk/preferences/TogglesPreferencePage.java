@@ -10,6 +10,7 @@ import org.eclipse.ui.navigator.CommonNavigator;
 
 import net.arctics.clonk.Core;
 import net.arctics.clonk.builder.ClonkProjectNature;
+import net.arctics.clonk.c4group.C4GroupEntryCache;
 import net.arctics.clonk.util.UI;
 
 public class TogglesPreferencePage extends FieldEditorPreferencePage implements IWorkbenchPreferencePage {
@@ -27,7 +28,8 @@ public class TogglesPreferencePage extends FieldEditorPreferencePage implements
 			ClonkPreferences.ANALYZE_CODE, Messages.TogglesPreferencePage_AnalyzeCode,
 			ClonkPreferences.JAVA_STYLE_BLOCKS, Messages.TogglesPreferencePage_JavaStyleBlocks,
 			ClonkPreferences.INSTANT_C4SCRIPT_COMPLETIONS, Messages.TogglesPreferencePage_InstantCompletions,
-			ClonkPreferences.LONG_PARAMETER_INFO, Messages.TogglesPreferencePage_LongParameterInfo
+			ClonkPreferences.LONG_PARAMETER_INFO, Messages.TogglesPreferencePage_LongParameterInfo,
+			ClonkPreferences.BUILD_CACHE, Messages.TogglesPreferencePage_BuildCache
 		};
 		for (int i = 0; i < toggles.length; i += 2) {
 			addField(new BooleanFieldEditor(toggles[i], toggles[i+1], getFieldEditorParent()));
@@ -35,6 +37,12 @@ public class TogglesPreferencePage extends FieldEditorPreferencePage implements
 		final IntegerFieldEditor cores = new IntegerFieldEditor(ClonkPreferences.TASKEXECUTION_THREADS, Messages.TogglesPreferencePage_TaskExecutionThreads, getFieldEditorParent());
 		cores.setValidRange(1, Runtime.getRuntime().availableProcessors());
 		addField(cores);
+		final IntegerFieldEditor groupCache = new IntegerFieldEditor(ClonkPreferences.C4GROUP_CACHE_SIZE, Messages.TogglesPreferencePage_C4GroupCacheSize, getFieldEditorParent());
+		groupCache.setValidRange(1, 4096);
+		addField(groupCache);
+		final IntegerFieldEditor inferenceTimeout = new IntegerFieldEditor(ClonkPreferences.INFERENCE_TIMEOUT, Messages.TogglesPreferencePage_InferenceTimeout, getFieldEditorParent());
+		inferenceTimeout.setValidRange(1, 600);
+		addField(inferenceTimeout);
 	}
 
 	@Override
@@ -46,6 +54,7 @@ public class TogglesPreferencePage extends FieldEditorPreferencePage implements
 	public boolean performOk() {
 		final boolean r = super.performOk();
 		if (r) {
+			C4GroupEntryCache.setBudget(ClonkPreferences.integer(ClonkPreferences.C4GROUP_CACHE_SIZE)*1024L*1024L);
 			for (final CommonNavigator nav : UI.projectExplorers()) {
 				for (final IProject proj : ClonkProjectNature.clonkProjectsInWorkspace()) {
 					nav.getCommonViewer().refresh(proj);
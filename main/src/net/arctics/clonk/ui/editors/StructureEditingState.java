@@ -1,6 +1,7 @@
 package net.arctics.clonk.ui.editors;
 
 import static java.util.Arrays.stream;
+import static net.arctics.clonk.util.Utilities.as;
 import static net.arctics.clonk.util.Utilities.defaulting;
 import static net.arctics.clonk.util.Utilities.eq;
 import static net.arctics.clonk.util.Utilities.synchronizing;
@@ -12,6 +13,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.TimerTask;
 
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
 import org.eclipse.jface.internal.text.html.HTMLTextPresenter;
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.text.DefaultInformationControl;
@@ -42,6 +45,9 @@ import net.arctics.clonk.ast.DeclMask;
 import net.arctics.clonk.ast.Declaration;
 import net.arctics.clonk.ast.SourceLocation;
 import net.arctics.clonk.ast.Structure;
+import net.arctics.clonk.c4group.C4GroupEntryCache;
+import net.arctics.clonk.c4group.C4GroupFile;
+import net.arctics.clonk.c4group.C4GroupItem;
 import net.arctics.clonk.c4script.Function;
 import net.arctics.clonk.index.IIndexEntity;
 import net.arctics.clonk.parser.Markers;
@@ -120,6 +126,19 @@ public abstract class StructureEditingState<EditorType extends StructureTextEdit
 	protected void initialize() {
 		assistant = createAssistant();
 		document.addDocumentListener(this);
+		pinnedEntry = groupEntry(structure);
+		if (pinnedEntry != null) {
+			C4GroupEntryCache.pin(pinnedEntry);
+		}
+	}
+
+	/** Entry of a linked C4Group the structure was read from. Its contents are kept in the {@link C4GroupEntryCache} while being edited. */
+	private C4GroupFile pinnedEntry;
+
+	private static C4GroupFile groupEntry(final Structure structure) {
+		final IFile file = structure != null ? structure.file() : null;
+		return file != null && file.isLinked(IResource.CHECK_ANCESTORS)
+			? as(C4GroupItem.groupItemBackingResource(file), C4GroupFile.class) : null;
 	}
 
 	static final Map<Class<? extends StructureEditingState<?, ?>>, List<? extends StructureEditingState<?, ?>>> lists = new HashMap<>();
@@ -217,6 +236,10 @@ public abstract class StructureEditingState<EditorType extends StructureTextEdit
 					cancelReparsingTimer();
 					list.remove(this);
 					document.removeDocumentListener(this);
+					if (pinnedEntry != null) {
+						C4GroupEntryCache.unpin(pinnedEntry);
+						pinnedEntry = null;
+					}
 					cleanupAfterRemoval();
 				}
 			}
@@ -0,0 +1,94 @@
+package net.arctics.clonk.ui.editors.c4script;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import net.arctics.clonk.ast.Declaration;
+import net.arctics.clonk.c4script.DeclarationRegionParser;
+
+/**
+ * Range of a script document edited since the last reparse plus the declarations text was removed from, to be passed to
+ * {@link DeclarationRegionParser#reparse(java.util.Collection, int, int)}.<br>
+ * The range is in terms of the current document: every edit shifts it, also the ones that don't need to be reparsed themselves
+ * like edits inside new-style functions.
+ */
+public final class ScriptDamage {
+
+	private Set<Declaration> declarations = new HashSet<>();
+	private int start = -1, end = -1;
+
+	/**
+	 * Note the declarations text is about to be removed from. Has to be called before the document changes since the adjusted locations
+	 * of those declarations might not overlap the edited range anymore.
+	 * @param candidates Top-level declarations of the script
+	 * @param offset Start of the removed text
+	 * @param length Length of the removed text
+	 */
+	public synchronized void removing(final Declaration[] candidates, final int offset, final int length) {
+		for (final Declaration d : candidates) {
+			if (d.start() <= offset + length && d.end() >= offset) {
+				declarations.add(d);
+			}
+		}
+	}
+
+	/**
+	 * Move the recorded range along with an edit that is not to be reparsed.
+	 * @param offset Offset of the edit
+	 * @param removed Number of characters removed
+	 * @param inserted Number of characters inserted
+	 */
+	public synchronized void shift(final int offset, final int removed, final int inserted) {
+		if (start == -1) {
+			return;
+		}
+		final int diff = inserted - removed;
+		// positions within removed text collapse to its start
+		if (start > offset) {
+			start = start >= offset + removed ? start + diff : offset;
+		}
+		if (end > offset) {
+			end = end >= offset + removed ? end + diff : offset;
+		}
+	}
+
+	/**
+	 * Move the recorded range along with an edit and extend it to cover the inserted text.
+	 * @param offset Offset of the edit
+	 * @param removed Number of characters removed
+	 * @param inserted Number of characters inserted
+	 */
+	public synchronized void extend(final int offset, final int removed, final int inserted) {
+		if (start == -1) {
+			start = offset;
+			end = offset + inserted;
+		} else {
+			shift(offset, removed, inserted);
+			start = Math.min(start, offset);
+			end = Math.max(end, offset + inserted);
+		}
+	}
+
+	/** @return Start of the damaged range or -1 if nothing has been damaged */
+	public synchronized int start() { return start; }
+	/** @return End of the damaged range or -1 if nothing has been damaged */
+	public synchronized int end() { return end; }
+	/** @return Declarations text has been removed from */
+	public synchronized Set<Declaration> declarations() { return Collections.unmodifiableSet(declarations); }
+
+	/**
+	 * Return the damage recorded so far and start over.
+	 * @return The damage recorded until now
+	 */
+	public synchronized ScriptDamage take() {
+		final ScriptDamage taken = new ScriptDamage();
+		taken.declarations = declarations;
+		taken.start = start;
+		taken.end = end;
+		declarations = new HashSet<>();
+		start = end = -1;
+		return taken;
+	}
+
+}
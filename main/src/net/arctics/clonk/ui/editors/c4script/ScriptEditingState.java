@@ -66,6 +66,7 @@ import net.arctics.clonk.ast.SourceLocation;
 import net.arctics.clonk.ast.TraversalContinuation;
 import net.arctics.clonk.builder.ClonkProjectNature;
 import net.arctics.clonk.c4group.C4GroupItem;
+import net.arctics.clonk.c4script.DeclarationRegionParser;
 import net.arctics.clonk.c4script.Function;
 import net.arctics.clonk.c4script.Function.FunctionScope;
 import net.arctics.clonk.c4script.FunctionFragmentParser;
@@ -286,20 +287,52 @@ public final class ScriptEditingState extends StructureEditingState<C4ScriptEdit
 	public ScriptAutoEditStrategy autoEditStrategy() { return autoEditStrategy; }
 
 
+	/** Range of the document edited since the last reparse, allowing {@link DeclarationRegionParser} to only reparse that part. */
+	private final ScriptDamage damage = new ScriptDamage();
+	/**
+	 * Top-level declarations of the script as of the last reparse or build, consulted on the UI thread before edits
+	 * instead of the script which might be reparsed concurrently.
+	 */
+	private volatile Declaration[] topLevelDeclarations;
+
+	private void snapshotTopLevelDeclarations() {
+		final Script script = structure();
+		if (script != null) {
+			final List<? extends Declaration> declarations = script.subDeclarations(script.index(), DeclMask.DIRECTIVES|DeclMask.VARIABLES|DeclMask.STATIC_VARIABLES|DeclMask.FUNCTIONS);
+			topLevelDeclarations = declarations.toArray(new Declaration[declarations.size()]);
+		}
+	}
+
 	@Override
-	public void documentAboutToBeChanged(final DocumentEvent event) {}
+	public void documentAboutToBeChanged(final DocumentEvent event) {
+		if (event.getLength() > 0) {
+			Declaration[] declarations = topLevelDeclarations;
+			if (declarations == null) {
+				synchronized (structureModificationLock) {
+					snapshotTopLevelDeclarations();
+				}
+				declarations = topLevelDeclarations;
+			}
+			if (declarations != null) {
+				damage.removing(declarations, event.getOffset(), event.getLength());
+			}
+		}
+	}
 
 
 	@Override
 	public void documentChanged(final DocumentEvent event) {
 		super.documentChanged(event);
 		final Function f = structure().funcAt(event.getOffset());
+		final int inserted = event.getText() != null ? event.getText().length() : 0;
 		if (f != null && !f.isOldStyle()) {
 			// editing inside new-style function: adjust locations of declarations without complete reparse
 			// only recheck the function and display problems after delay
+			damage.shift(event.getOffset(), event.getLength(), inserted);
 			scheduleProblemReport(f);
 		} else {
-			// only schedule reparsing when editing outside of existing function
+			// editing outside of new-style functions: reparse the declarations around the edit after delay
+			damage.extend(event.getOffset(), event.getLength(), inserted);
 			scheduleReparsing(false);
 		}
 	}
@@ -324,6 +357,9 @@ public final class ScriptEditingState extends StructureEditingState<C4ScriptEdit
 	@Override
 	public void refreshAfterBuild(final Markers markers) {
 		super.refreshAfterBuild(markers);
+		synchronized (structureModificationLock) {
+			snapshotTopLevelDeclarations();
+		}
 		reportProblemsOnFunctionsCalledByActiveFunction(markers);
 		oldFunctionBody = null;
 	}
@@ -350,20 +386,41 @@ public final class ScriptEditingState extends StructureEditingState<C4ScriptEdit
 	}
 
 	void reparseWithDocumentContents(final Runnable uiRefreshRunnable) throws ProblemException {
+		reparseWithDocumentContents(uiRefreshRunnable, false);
+	}
+
+	/**
+	 * Parse the document contents and report problems.
+	 * @param uiRefreshRunnable Runnable executed on the UI thread afterwards
+	 * @param incrementally Only reparse declarations damaged by edits since the last reparse if possible
+	 */
+	private void reparseWithDocumentContents(final Runnable uiRefreshRunnable, final boolean incrementally) throws ProblemException {
 		structure().requireLoaded();
 
-		final Markers markers = new StructureMarkers(false);
+		final ScriptDamage damaged = damage.take();
 		final String source = document.get();
+		Markers markers = new StructureMarkers(false);
 		synchronized (structureModificationLock) {
-			new ScriptParser(source, structure(), null) {{
-				setMarkers(markers);
-				script().clearDeclarations();
-				parseDeclarations();
-				script().deriveInformation();
-				validate();
-			}};
+			final DeclarationRegionParser regionParser = incrementally && damaged.start() != -1
+				? new DeclarationRegionParser(source, structure(), markers) : null;
+			if (regionParser != null && regionParser.reparse(damaged.declarations(), damaged.start(), damaged.end())) {
+				// problems found while parsing the intact declarations are not reported again
+				markers.confineCapturedTo(regionParser.regionStart(), regionParser.regionEnd());
+			} else {
+				final Markers m = markers = new StructureMarkers(false);
+				new ScriptParser(source, structure(), null) {{
+					setMarkers(m);
+					script().clearDeclarations();
+					parseDeclarations();
+					script().deriveInformation();
+					validate();
+				}};
+			}
 			structure().traverse(Comment.TODO_EXTRACTOR, markers);
+			// problem reporting runs over the whole script again, so its markers are replaced everywhere
+			markers.parsed();
 			reportProblems(markers);
+			snapshotTopLevelDeclarations();
 		}
 		markers.deploy();
 		if (uiRefreshRunnable != null) {
@@ -410,7 +467,7 @@ public final class ScriptEditingState extends StructureEditingState<C4ScriptEdit
 								ed.refreshOutline();
 								ed.handleCursorPositionChanged();
 							}
-						});
+						}, true);
 					} finally {
 						cancel();
 					}
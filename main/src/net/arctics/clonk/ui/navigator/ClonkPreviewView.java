@@ -8,6 +8,7 @@ import java.io.InputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
 
 import javax.swing.text.BadLocationException;
 import javax.swing.text.StyledDocument;
@@ -16,6 +17,8 @@ import javax.swing.text.rtf.RTFEditorKit;
 
 import net.arctics.clonk.Core;
 import net.arctics.clonk.builder.ClonkProjectNature;
+import net.arctics.clonk.c4group.C4GroupFile;
+import net.arctics.clonk.c4group.C4GroupItem;
 import net.arctics.clonk.c4group.FileExtension;
 import net.arctics.clonk.debug.ClonkLaunchConfigurationDelegate;
 import net.arctics.clonk.index.Definition;
@@ -225,7 +228,10 @@ public class ClonkPreviewView extends ViewPart implements ISelectionListener, Co
 				final IFile file = (IFile) sel;
 				final String fileName = file.getName().toLowerCase();
 				if (fileName.endsWith(".png") || fileName.endsWith(".bmp") || fileName.endsWith(".jpeg") || fileName.endsWith("jpg")) { //$NON-NLS-1$ //$NON-NLS-2$
-					final InputStream contents = file.getContents();
+					// read entries of linked groups from their mapped contents instead of copying them onto the heap first
+					final C4GroupFile entry = Utilities.as(C4GroupItem.groupItemBackingResource(file), C4GroupFile.class);
+					final ByteBuffer entryContents = entry != null ? entry.contentsBuffer() : null;
+					final InputStream contents = entryContents != null ? StreamUtil.inputStreamFromBuffer(entryContents) : file.getContents();
 					try {
 						newImage = new Image(canvas.getDisplay(), contents);
 					} finally {
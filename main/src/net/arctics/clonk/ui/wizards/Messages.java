@@ -8,6 +8,8 @@ public class Messages extends NLS {
 	public static String C4GroupImporter_Importing;
 	public static String C4GroupImporter_ImportTask;
 	public static String C4GroupImporter_ErrorImporting;
+	public static String C4GroupImporter_Imported;
+	public static String C4GroupImporter_NotWritten;
 	public static String ExportClonkFiles_ExportToClonkDir;
 	public static String ExportClonkFiles_ChooseFoldersToExport;
 	public static String ExportClonkFiles_Title;
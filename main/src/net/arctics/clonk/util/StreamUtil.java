@@ -2,6 +2,7 @@ package net.arctics.clonk.util;
 
 import static java.util.Arrays.stream;
 import static net.arctics.clonk.util.Utilities.as;
+import static net.arctics.clonk.util.Utilities.defaulting;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -18,12 +19,23 @@ import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IStorage;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jface.text.IDocument;
 
 import net.arctics.clonk.FileDocumentActions;
 
@@ -150,6 +162,31 @@ public class StreamUtil {
 		}
 	}
 
+	/**
+	 * Write a file by writing a temporary file next to it and moving that over the file, so readers see either the previous or the complete new contents.
+	 * @param file The file to write
+	 * @param runnable Writes the contents. Gets passed the temporary file.
+	 * @throws IOException
+	 */
+	public static void writeAtomically(final File file, final StreamWriteRunnable runnable) throws IOException {
+		final File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile()); //$NON-NLS-1$
+		try {
+			try (final FileOutputStream s = new FileOutputStream(temp)) {
+				final OutputStreamWriter writer = new OutputStreamWriter(s);
+				runnable.run(temp, s, writer);
+				writer.flush();
+				s.getFD().sync();
+			}
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (final AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			temp.delete();
+		}
+	}
+
 	public static void transfer(final InputStream source, final OutputStream dest) throws IOException {
 		final byte[] buffer = new byte[1024];
 		int read;
@@ -204,6 +241,166 @@ public class StreamUtil {
 		return stream(streams).reduce(Stream.empty(), Stream::concat);
 	}
 
+	/**
+	 * Return a stream reading the remaining bytes of a buffer without copying them. The position of the buffer itself is left alone.
+	 * @param buffer The buffer
+	 * @return The stream
+	 */
+	public static InputStream inputStreamFromBuffer(final ByteBuffer buffer) {
+		final ByteBuffer b = buffer.duplicate();
+		return new InputStream() {
+			@Override
+			public int read() {
+				return b.hasRemaining() ? b.get() & 0xFF : -1;
+			}
+			@Override
+			public int read(final byte[] bytes, final int off, final int len) {
+				if (len == 0) {
+					return 0;
+				}
+				if (!b.hasRemaining()) {
+					return -1;
+				}
+				final int n = Math.min(len, b.remaining());
+				b.get(bytes, off, n);
+				return n;
+			}
+			@Override
+			public long skip(final long n) {
+				final int skipped = (int)Math.max(0, Math.min(n, b.remaining()));
+				b.position(b.position() + skipped);
+				return skipped;
+			}
+			@Override
+			public int available() {
+				return b.remaining();
+			}
+		};
+	}
+
+	/**
+	 * Decode the remaining bytes of a buffer as UTF-8 without going through a stream. The position of the buffer itself is left alone.
+	 * @param buffer The buffer
+	 * @return The decoded characters
+	 */
+	public static CharBuffer charsFromBuffer(final ByteBuffer buffer) {
+		return StandardCharsets.UTF_8.decode(buffer.duplicate());
+	}
+
+	public static String stringFromBuffer(final ByteBuffer buffer) {
+		return charsFromBuffer(buffer).toString();
+	}
+
+	/** Largest scratch buffer kept around per thread by {@link #charsFromInputStream(InputStream, Charset)} and {@link #charArrayFromBuffer(ByteBuffer)} */
+	private static final int MAX_POOLED_SIZE = 4*1024*1024;
+	private static final ThreadLocal<byte[]> pooledBytes = ThreadLocal.withInitial(() -> new byte[64*1024]);
+	private static final ThreadLocal<char[]> pooledChars = ThreadLocal.withInitial(() -> new char[64*1024]);
+
+	private static char[] decode(final ByteBuffer bytes, final Charset charset) {
+		final CharsetDecoder decoder = charset.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		final int capacity = (int)Math.ceil(bytes.remaining()*(double)decoder.maxCharsPerByte());
+		char[] chars = pooledChars.get();
+		if (chars.length < capacity) {
+			chars = new char[capacity];
+			if (capacity <= MAX_POOLED_SIZE) {
+				pooledChars.set(chars);
+			}
+		}
+		final CharBuffer out = CharBuffer.wrap(chars);
+		decoder.decode(bytes, out, true);
+		decoder.flush(out);
+		return Arrays.copyOf(chars, out.position());
+	}
+
+	/**
+	 * Decode the remaining bytes of a buffer as UTF-8 into an array exactly as long as the text. The position of the buffer itself is left alone.
+	 * @param buffer The buffer
+	 * @return The decoded characters
+	 */
+	public static char[] charArrayFromBuffer(final ByteBuffer buffer) {
+		return decode(buffer.duplicate(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Decode the contents of a stream into an array exactly as long as the text.
+	 * Bytes are read and decoded using scratch buffers kept per thread so the resulting array is the only thing allocated for each stream.
+	 * @param stream The stream. It is not closed.
+	 * @param charset The charset the contents are encoded in
+	 * @return The decoded characters
+	 * @throws IOException
+	 */
+	public static char[] charsFromInputStream(final InputStream stream, final Charset charset) throws IOException {
+		byte[] bytes = pooledBytes.get();
+		int length = 0;
+		for (int read; (read = stream.read(bytes, length, bytes.length - length)) != -1;) {
+			length += read;
+			if (length == bytes.length) {
+				bytes = Arrays.copyOf(bytes, bytes.length*2);
+				if (bytes.length <= MAX_POOLED_SIZE) {
+					pooledBytes.set(bytes);
+				}
+			}
+		}
+		return decode(ByteBuffer.wrap(bytes, 0, length), charset);
+	}
+
+	/**
+	 * Decode the UTF-8 contents of a stream and close it.
+	 * @param stream The stream
+	 * @return The decoded characters or an empty array if reading failed
+	 */
+	public static char[] charsFromInputStream(final InputStream stream) {
+		try (InputStream s = stream) {
+			return charsFromInputStream(s, StandardCharsets.UTF_8);
+		} catch (final IOException e) {
+			e.printStackTrace();
+			return new char[0];
+		}
+	}
+
+	public static char[] charsFromFile(final File file) {
+		try {
+			return charsFromInputStream(new FileInputStream(file));
+		} catch (final FileNotFoundException e) {
+			return new char[0];
+		}
+	}
+
+	/**
+	 * Return the text of a storage as an array exactly as long as the text.
+	 * Workspace files open somewhere, for example in an editor, yield the text of their document.
+	 * Other files are decoded directly from their contents using their charset instead of connecting a document to them
+	 * just to copy its text once more.
+	 * @param storage The storage
+	 * @return The text
+	 */
+	public static char[] charsFromStorage(final IStorage storage) {
+		if (storage instanceof IFile) {
+			final IFile file = (IFile) storage;
+			final IDocument document = FileDocumentActions.openDocument(file);
+			if (document != null) {
+				return document.get().toCharArray();
+			}
+			try (InputStream s = file.getContents()) {
+				final char[] chars = charsFromInputStream(s, Charset.forName(file.getCharset()));
+				// documents leave out the byte order mark as well
+				return chars.length > 0 && chars[0] == '\uFEFF' ? Arrays.copyOfRange(chars, 1, chars.length) : chars;
+			} catch (IOException | CoreException | IllegalArgumentException e) {
+				// out of sync or unknown charset, let the document provider deal with it
+				return defaulting(stringFromStorage(storage), "").toCharArray();
+			}
+		} else {
+			try (InputStream s = storage.getContents()) {
+				return charsFromInputStream(s, StandardCharsets.UTF_8);
+			} catch (IOException | CoreException e) {
+				e.printStackTrace();
+				return new char[0];
+			}
+		}
+	}
+
 	public static ByteArrayInputStream inputStreamFromString(final String text_) throws UnsupportedEncodingException {
 		return new ByteArrayInputStream(text_.getBytes("UTF8"));
 	}
@@ -0,0 +1,84 @@
+package net.arctics.clonk.builder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import net.arctics.clonk.ProblemException;
+import net.arctics.clonk.TestBase;
+import net.arctics.clonk.c4script.Script;
+import net.arctics.clonk.c4script.ScriptParser;
+import net.arctics.clonk.c4script.ScriptParserTest;
+import net.arctics.clonk.util.StringUtil;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BuildCacheTest extends TestBase {
+
+	private static final String SOURCE = StringUtil.join("\n",
+		"local count;",
+		"func Test(x) {",
+		"	return x + count;",
+		"}"
+	);
+
+	private File folder;
+	private BuildCache cache;
+	private Script script;
+
+	@Before
+	public void store() throws IOException, ProblemException {
+		folder = Files.createTempDirectory("build-cache-test").toFile();
+		cache = new BuildCache(folder, new ProjectSettings());
+		final ScriptParserTest.Setup setup = new ScriptParserTest.Setup(SOURCE);
+		script = setup.script;
+		Assert.assertFalse(cache.rehydrate(script, setup.parser));
+		setup.parser.parse();
+		cache.store(script, setup.parser);
+		script.clearDeclarations();
+	}
+
+	@After
+	public void delete() throws IOException {
+		try (Stream<Path> files = Files.walk(folder.toPath())) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	private File[] entries() {
+		return folder.listFiles((dir, name) -> name.endsWith(".decl"));
+	}
+
+	@Test
+	public void testHit() {
+		Assert.assertEquals(1, entries().length);
+		Assert.assertTrue(cache.rehydrate(script, new ScriptParser(SOURCE, script, null)));
+		Assert.assertNotNull(script.findLocalFunction("Test", false));
+		Assert.assertNotNull(script.findLocalVariable("count", false));
+	}
+
+	@Test
+	public void testMissAfterEdit() {
+		final String edited = SOURCE.replace("local count;", "local count, other;");
+		Assert.assertFalse(cache.rehydrate(script, new ScriptParser(edited, script, null)));
+		// the entry for the unedited source is still there
+		Assert.assertEquals(1, entries().length);
+	}
+
+	@Test
+	public void testCorruptedEntry() throws IOException {
+		final File entry = entries()[0];
+		final byte[] contents = Files.readAllBytes(entry.toPath());
+		Files.write(entry.toPath(), Arrays.copyOf(contents, contents.length / 2));
+		Assert.assertFalse(cache.rehydrate(script, new ScriptParser(SOURCE, script, null)));
+		Assert.assertFalse(entry.exists());
+	}
+
+}
@@ -0,0 +1,65 @@
+package net.arctics.clonk.builder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.arctics.clonk.DefinitionInfo;
+import net.arctics.clonk.TestBase;
+import net.arctics.clonk.c4script.ScriptParserTest;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BuildSchedulerTest extends TestBase {
+
+	/** When the stage started and finished for some script, on a clock ticking once per event */
+	private static final class Interval {
+		int start, end;
+	}
+
+	/**
+	 * The stage for a script must not run before or while it runs for scripts the script includes, also when scripts include each other.
+	 */
+	@Test
+	public void testIncludedScriptsFinishFirst() {
+		final ScriptParserTest.Setup setup = new ScriptParserTest.Setup(
+			new DefinitionInfo("", "Base"),
+			new DefinitionInfo("#include Base", "Mid"),
+			new DefinitionInfo("#include Mid", "Top"),
+			new DefinitionInfo("#include CycleB\n#include Base", "CycleA"),
+			new DefinitionInfo("#include CycleA", "CycleB"),
+			new DefinitionInfo("#include CycleA", "User")
+		);
+		setup.parsers.forEach(Runnable::run);
+		setup.index.refresh();
+
+		final AtomicInteger clock = new AtomicInteger();
+		final Map<String, Interval> intervals = new ConcurrentHashMap<String, Interval>();
+		new BuildScheduler(setup.index, new NullProgressMonitor()).run(setup.scripts, script -> {
+			final Interval interval = new Interval();
+			interval.start = clock.incrementAndGet();
+			try {
+				Thread.sleep(20);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			interval.end = clock.incrementAndGet();
+			intervals.put(script.name(), interval);
+		});
+
+		Assert.assertEquals(setup.scripts.size(), intervals.size());
+		final String[][] order = {
+			{"Base", "Mid"}, {"Mid", "Top"},
+			{"Base", "CycleA"}, {"Base", "CycleB"},
+			{"CycleA", "User"}, {"CycleB", "User"}
+		};
+		for (final String[] o : order) {
+			Assert.assertTrue(o[0] + " before " + o[1], intervals.get(o[0]).end < intervals.get(o[1]).start);
+		}
+		final Interval a = intervals.get("CycleA"), b = intervals.get("CycleB");
+		Assert.assertTrue("CycleA and CycleB one after the other", a.end < b.start || b.end < a.start);
+	}
+
+}
@@ -0,0 +1,149 @@
+package net.arctics.clonk.c4group;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+
+import net.arctics.clonk.util.StreamUtil;
+
+import org.eclipse.core.runtime.CoreException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class C4GroupPackerTest {
+
+	private File folder;
+	private File source;
+	private File packed;
+	private long size;
+
+	private static void write(final File file, final byte[] data) throws IOException {
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(data);
+		}
+	}
+
+	private static byte[] random(final Random random, final int size) {
+		final byte[] data = new byte[size];
+		random.nextBytes(data);
+		return data;
+	}
+
+	private static int crc(final byte[]... parts) {
+		final CRC32 crc = new CRC32();
+		for (final byte[] p : parts) {
+			crc.update(p);
+		}
+		return (int)crc.getValue();
+	}
+
+	@Before
+	public void pack() throws IOException {
+		folder = Files.createTempDirectory("c4group-packer-test").toFile();
+		source = new File(folder, "Test.ocd");
+		final File sub = new File(source, "Sub.ocd");
+		sub.mkdirs();
+		final Random random = new Random(42);
+		// spans several of the blocks compressed in parallel
+		write(new File(source, "Big.bin"), random(random, 600*1024));
+		write(new File(source, "Empty.txt"), new byte[0]);
+		write(new File(source, "Script.c"), "func Initialize() {}".getBytes("UTF-8"));
+		write(new File(sub, "DefCore.txt"), "[DefCore]\nid=Sub\n".getBytes("UTF-8"));
+		write(new File(sub, "Inner.bin"), random(random, 300*1024));
+		packed = new File(folder, "Packed.ocd");
+		size = new C4GroupPacker(source, packed).pack(null);
+	}
+
+	@After
+	public void delete() throws IOException {
+		try (Stream<Path> files = Files.walk(folder.toPath())) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public void testCRC32Combine() {
+		final Random random = new Random(7);
+		final byte[] a = random(random, 1000), b = random(random, 300*1024);
+		Assert.assertEquals(crc(a, b), (int)C4GroupPacker.crc32Combine(crc(a) & 0xFFFFFFFFL, crc(b) & 0xFFFFFFFFL, b.length));
+		Assert.assertEquals(crc(a), (int)C4GroupPacker.crc32Combine(crc(a) & 0xFFFFFFFFL, 0, 0));
+	}
+
+	/**
+	 * The blocks compressed in parallel form one gzip stream whose trailer holds the CRC combined from the CRCs of the blocks.
+	 */
+	@Test
+	public void testGzipStream() throws IOException {
+		final byte[] file = Files.readAllBytes(packed.toPath());
+		Assert.assertEquals(0x1E, file[0]);
+		Assert.assertEquals((byte)0x8C, file[1]);
+		file[0] = 0x1F;
+		file[1] = (byte)0x8B;
+		final byte[] contents;
+		// GZIPInputStream checks the trailer against what it inflated
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(file))) {
+			contents = StreamUtil.bytesFromInputStream(in);
+		}
+		Assert.assertEquals(size, contents.length);
+		final ByteBuffer trailer = ByteBuffer.wrap(file, file.length - 8, 8).order(ByteOrder.LITTLE_ENDIAN);
+		Assert.assertEquals(crc(contents), trailer.getInt());
+		Assert.assertEquals(contents.length, trailer.getInt());
+	}
+
+	/**
+	 * Reading the packed group gives back the files and folders it was packed from, with entry CRCs the engine accepts:
+	 * the CRC of the contents followed by the file name for files, the CRCs of the entries xor-ed together for groups.
+	 */
+	@Test
+	public void testRoundTrip() throws IOException, CoreException {
+		final C4Group group = C4Group.openFile(packed);
+		try {
+			group.readIntoMemory(true, C4GroupItem.ACCEPT_EVERYTHING);
+			assertGroup(group, source);
+		} finally {
+			group.close();
+		}
+	}
+
+	private static int assertGroup(final C4Group group, final File dir) throws IOException {
+		final File[] files = dir.listFiles();
+		Arrays.sort(files, (a, b) -> a.getName().compareToIgnoreCase(b.getName()));
+		final List<C4GroupItem> items = group.children();
+		Assert.assertEquals(files.length, items.size());
+		int groupCRC = 0;
+		for (int i = 0; i < files.length; i++) {
+			final File file = files[i];
+			final C4GroupItem item = items.get(i);
+			Assert.assertEquals(file.getName(), item.getName());
+			final C4GroupEntryHeader header = item.entryHeader();
+			Assert.assertTrue(header.hasCRC());
+			Assert.assertEquals(file.isDirectory(), header.isGroup());
+			if (file.isDirectory()) {
+				Assert.assertEquals(assertGroup((C4Group)item, file), header.crc());
+			} else {
+				final byte[] data = Files.readAllBytes(file.toPath());
+				Assert.assertArrayEquals(data, ((C4GroupFile)item).getContents());
+				Assert.assertEquals(data.length, header.size());
+				Assert.assertEquals(data.length > 0 ? crc(data, C4GroupHeader.stringToByte(file.getName())) : 0, header.crc());
+			}
+			groupCRC ^= header.crc();
+		}
+		return groupCRC;
+	}
+
+}
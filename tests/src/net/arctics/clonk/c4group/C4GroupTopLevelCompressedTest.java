@@ -0,0 +1,123 @@
+package net.arctics.clonk.c4group;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import net.arctics.clonk.util.StreamUtil;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class C4GroupTopLevelCompressedTest {
+
+	/** Size of the chunks checkpoints are made of */
+	private static final int CHUNK = 256*1024;
+
+	private File folder;
+	private File checkpoints;
+	private File packed;
+	private byte[] contents;
+
+	@Before
+	public void pack() throws IOException {
+		folder = Files.createTempDirectory("c4group-test").toFile();
+		checkpoints = new File(folder, "checkpoints");
+		final File source = new File(folder, "Test.ocd");
+		source.mkdirs();
+		final Random random = new Random(42);
+		for (final int size : new int[] { 300*1024, 5, 700*1024 }) {
+			final byte[] data = new byte[size];
+			random.nextBytes(data);
+			try (FileOutputStream out = new FileOutputStream(new File(source, String.format("File%d.bin", size)))) {
+				out.write(data);
+			}
+		}
+		packed = new File(folder, "Packed.ocd");
+		new C4GroupPacker(source, packed).pack(null);
+		// reference contents, inflated front to back after restoring the gzip magic defaced in group files
+		final byte[] file = Files.readAllBytes(packed.toPath());
+		file[0] = 0x1F;
+		file[1] = (byte)0x8B;
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(file))) {
+			contents = StreamUtil.bytesFromInputStream(in);
+		}
+		Assert.assertTrue(contents.length > 3*CHUNK);
+		C4GroupCheckpoints.persistIn(checkpoints);
+	}
+
+	@After
+	public void delete() throws IOException {
+		C4GroupCheckpoints.persistIn(null);
+		try (Stream<Path> files = Files.walk(folder.toPath())) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	private void assertReads(final C4Group group, final long pos, final int length) throws IOException {
+		final byte[] read = new byte[length];
+		final int[] got = new int[1];
+		group.readFromStream(group, pos, stream -> {
+			try {
+				for (int n; got[0] < length && (n = stream.read(read, got[0], length - got[0])) > 0; got[0] += n);
+			} catch (final IOException e) {
+				e.printStackTrace();
+			}
+		});
+		Assert.assertEquals(length, got[0]);
+		Assert.assertArrayEquals(Arrays.copyOfRange(contents, (int)pos, (int)pos + length), read);
+	}
+
+	private void assertSeeks(final C4Group group) throws IOException {
+		// backwards, across chunk boundaries and into the partial last chunk
+		assertReads(group, contents.length - 1000, 1000);
+		assertReads(group, CHUNK - 10, 20);
+		assertReads(group, 2*CHUNK + 5, CHUNK);
+		assertReads(group, 0, 100);
+		assertReads(group, contents.length/2, 4000);
+		assertReads(group, 7, 3*CHUNK);
+	}
+
+	@Test
+	public void testSeek() throws IOException {
+		final C4Group group = new C4GroupTopLevelCompressed(packed.getName(), packed);
+		assertSeeks(group);
+		group.close();
+		final File[] tables = checkpoints.listFiles((dir, name) -> name.endsWith(".ckt"));
+		Assert.assertNotNull(tables);
+		Assert.assertEquals(1, tables.length);
+	}
+
+	@Test
+	public void testSeekPersisted() throws IOException {
+		final C4Group first = new C4GroupTopLevelCompressed(packed.getName(), packed);
+		assertReads(first, contents.length - 10, 10);
+		first.close();
+		final C4Group second = new C4GroupTopLevelCompressed(packed.getName(), packed);
+		assertSeeks(second);
+		second.close();
+	}
+
+	@Test
+	public void testSharedCheckpoints() throws IOException {
+		final C4Group first = new C4GroupTopLevelCompressed(packed.getName(), packed);
+		final C4Group second = new C4GroupTopLevelCompressed(packed.getName(), packed);
+		assertReads(first, 3*CHUNK, 100);
+		assertReads(second, CHUNK + 1, 100);
+		first.close();
+		assertSeeks(second);
+		second.close();
+	}
+
+}
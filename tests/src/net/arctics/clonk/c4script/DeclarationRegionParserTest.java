@@ -0,0 +1,57 @@
+package net.arctics.clonk.c4script;
+
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.arctics.clonk.DefinitionInfo;
+import net.arctics.clonk.ProblemException;
+import net.arctics.clonk.TestBase;
+import net.arctics.clonk.c4script.ScriptParserTest.Setup;
+import net.arctics.clonk.parser.Markers;
+
+public class DeclarationRegionParserTest extends TestBase {
+
+	private static Setup parse(final String source) {
+		final Setup setup = new Setup(new DefinitionInfo("Obj", source));
+		try {
+			setup.parser.parse();
+		} catch (final ProblemException e) {
+			e.printStackTrace();
+		}
+		setup.script.deriveInformation();
+		return setup;
+	}
+
+	@Test
+	public void testIntactFunctionsAreKept() {
+		final String before = "func A() { return 1; }\nlocal x;\nfunc B() { return 2; }";
+		final String after = "func A() { return 1; }\nlocal y;\nfunc B() { return 2; }";
+		final Setup setup = parse(before);
+		final Function a = setup.script.findLocalFunction("A", false);
+		final Function b = setup.script.findLocalFunction("B", false);
+		final int edit = after.indexOf('y');
+		Assert.assertTrue(new DeclarationRegionParser(after, setup.script, new Markers()).reparse(Collections.emptySet(), edit, edit+1));
+		Assert.assertSame(a, setup.script.findLocalFunction("A", false));
+		Assert.assertSame(b, setup.script.findLocalFunction("B", false));
+		Assert.assertNull(setup.script.findLocalVariable("x", false));
+		Assert.assertNotNull(setup.script.findLocalVariable("y", false));
+	}
+
+	@Test
+	public void testOldStyleFunctionGrowsIntoRegion() {
+		final String before = "protected A:\n  return(1);\n          \nfunc B() { return 2; }";
+		final String after = "protected A:\n  return(1);\n  Log(\"\");\nfunc B() { return 2; }";
+		Assert.assertEquals(before.length(), after.length());
+		final Setup setup = parse(before);
+		final Function b = setup.script.findLocalFunction("B", false);
+		final int edit = after.indexOf("Log");
+		Assert.assertTrue(new DeclarationRegionParser(after, setup.script, new Markers()).reparse(Collections.emptySet(), edit, edit+8));
+		final Function a = setup.script.findLocalFunction("A", false);
+		Assert.assertTrue(a.isOldStyle());
+		Assert.assertTrue(a.end() > edit);
+		Assert.assertSame(b, setup.script.findLocalFunction("B", false));
+	}
+
+}
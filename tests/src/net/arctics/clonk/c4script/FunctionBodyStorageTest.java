@@ -0,0 +1,115 @@
+package net.arctics.clonk.c4script;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import net.arctics.clonk.Core;
+import net.arctics.clonk.ProblemException;
+import net.arctics.clonk.TestBase;
+import net.arctics.clonk.c4script.ast.CallDeclaration;
+import net.arctics.clonk.index.Engine;
+import net.arctics.clonk.index.Index;
+import net.arctics.clonk.util.SelfcontainedStorage;
+import net.arctics.clonk.util.StringUtil;
+
+import org.eclipse.core.resources.IStorage;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FunctionBodyStorageTest extends TestBase {
+
+	private static final String SOURCE = StringUtil.join("\n",
+		"func Helper(x) { return x * 2; }",
+		"func Test() {",
+		"	var y = Helper(3);",
+		"	Log(\"%d\", y);",
+		"}"
+	);
+
+	private File folder;
+	private Index index;
+	private Script script;
+	private String printedBody;
+
+	@SuppressWarnings("serial")
+	@Before
+	public void save() throws IOException, ProblemException {
+		folder = Files.createTempDirectory("index-test").toFile();
+		index = new Index(folder) {
+			private static final long serialVersionUID = Core.SERIAL_VERSION_UID;
+			@Override
+			public Engine engine() { return Core.instance().loadEngine(TestBase.ENGINE); }
+		};
+		script = new Script(index) {
+			private static final long serialVersionUID = Core.SERIAL_VERSION_UID;
+			@Override
+			public IStorage source() { return new SelfcontainedStorage(name(), SOURCE); }
+		};
+		index.addScript(script);
+		new ScriptParser(SOURCE, script, null).parse();
+		script.deriveInformation();
+		printedBody = test().body().printed();
+		index.saveEntity(script);
+		// replace the parsed functions with ones read from the index
+		index.loadEntity(script);
+		script.deriveInformation();
+	}
+
+	@After
+	public void delete() throws IOException {
+		try (Stream<Path> files = Files.walk(folder.toPath())) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	private Function test() {
+		return script.findLocalFunction("Test", false);
+	}
+
+	@Test
+	public void testLazyLoad() {
+		Assert.assertFalse(test().bodyLoaded());
+		Assert.assertEquals(printedBody, test().body().printed());
+		Assert.assertTrue(test().bodyLoaded());
+	}
+
+	@Test
+	public void testSavingKeepsUnloadedBody() throws IOException {
+		index.saveEntity(script);
+		Assert.assertFalse(test().bodyLoaded());
+		index.loadEntity(script);
+		Assert.assertEquals(printedBody, test().body().printed());
+	}
+
+	@Test
+	public void testCallSitesFromSummary() {
+		final Function helper = script.findLocalFunction("Helper", false);
+		final CallDeclaration[] calls = index.callSites().callsTo("Helper", 1);
+		Assert.assertEquals(1, calls.length);
+		Assert.assertSame(test(), calls[0].parent(Function.class));
+		// only the body containing the call has been loaded
+		Assert.assertTrue(test().bodyLoaded());
+		Assert.assertFalse(helper.bodyLoaded());
+	}
+
+	@Test
+	public void testDropAndReload() {
+		final Function test = test();
+		Assert.assertNotNull(index.callSites().callsTo("Helper"));
+		Assert.assertTrue(test.bodyLoaded());
+		index.dropFunctionBodies();
+		Assert.assertFalse(test.bodyLoaded());
+		Assert.assertFalse(test.dropBody());
+		Assert.assertEquals(printedBody, test.body().printed());
+		Assert.assertTrue(test.bodyLoaded());
+		// the call sites outlive the bodies and load them again when asked for
+		Assert.assertEquals(1, index.callSites().callsTo("Helper").length);
+	}
+
+}
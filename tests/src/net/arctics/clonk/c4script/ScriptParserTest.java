@@ -98,4 +98,28 @@ public class ScriptParserTest extends TestBase {
 		Assert.assertTrue(setup.script.findFunction("Test").body().statements()[0].compare(body, new ASTComparisonDelegate(body)));
 	}
 
+	@Test
+	public void testFunctionDescriptionsFromPrecedingComments() {
+		final Setup setup = new Setup(String.join("\n",
+			"/** Creates the thing. */",
+			"func Make() { return 1; }",
+			"",
+			"// not a description",
+			"local x;",
+			"",
+			"/**",
+			" * Removes the thing.",
+			" */",
+			"public func Remove(a, b) { return a + b; }"
+		));
+		try {
+			setup.parser.parse();
+			setup.script.deriveInformation();
+		} catch (final ProblemException e) {
+			e.printStackTrace();
+		}
+		Assert.assertEquals("Creates the thing.", setup.script.findFunction("Make").userDescription().trim());
+		Assert.assertEquals("Removes the thing.", setup.script.findFunction("Remove").userDescription().trim());
+	}
+
 }
@@ -1,6 +1,7 @@
 package net.arctics.clonk.c4script.typing;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import net.arctics.clonk.TestBase;
 
@@ -22,4 +23,16 @@ public class TypingTest extends TestBase {
 		));
 	}
 
+	@Test
+	public void testStructurallyEqualTypesAreShared() {
+		final IType choice = TypeChoice.make(PrimitiveType.INT, PrimitiveType.STRING);
+		assertSame(choice, TypeChoice.make(PrimitiveType.STRING, PrimitiveType.INT));
+		assertSame(ArrayType.make(choice), ArrayType.make(TypeChoice.make(PrimitiveType.STRING, PrimitiveType.INT)));
+		assertSame(Maybe.make(PrimitiveType.OBJECT), Maybe.make(PrimitiveType.OBJECT));
+		final long reused = TypeInterner.reused();
+		Typing.INFERRED.unify(ArrayType.make(PrimitiveType.INT), ArrayType.make(PrimitiveType.STRING));
+		Typing.INFERRED.unify(ArrayType.make(PrimitiveType.INT), ArrayType.make(PrimitiveType.STRING));
+		assertTrue(TypeInterner.reused() > reused);
+	}
+
 }
@@ -5,6 +5,7 @@ import static net.arctics.clonk.util.StreamUtil.ofType;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -17,8 +18,13 @@ import org.paukov.combinatorics.ICombinatoricsVector;
 
 import net.arctics.clonk.DefinitionInfo;
 import net.arctics.clonk.Problem;
+import net.arctics.clonk.ProblemException;
 import net.arctics.clonk.TestBase;
+import net.arctics.clonk.ast.ASTNode;
+import net.arctics.clonk.ast.TraversalContinuation;
+import net.arctics.clonk.c4script.Function;
 import net.arctics.clonk.c4script.Script;
+import net.arctics.clonk.c4script.ScriptParser;
 import net.arctics.clonk.c4script.ScriptParserTest;
 import net.arctics.clonk.c4script.Variable;
 import net.arctics.clonk.c4script.typing.ArrayType;
@@ -529,4 +535,119 @@ public class DabbleInferenceTest extends TestBase {
 		final Setup setup = new Setup(definitions);
 		setup.performInference();
 	}
+
+	@Test
+	public void testUnchangedFunctionKeepsTypingAndMarkers() {
+		final Setup setup = new Setup(StringUtil.join("\n",
+			"func Test() {",
+			"	var obj = CreateObject(GetID());",
+			"	Log(obj->Unknown());",
+			"}"
+		));
+		setup.performInference();
+		final Function test = setup.script.findLocalFunction("Test", false);
+		final Function.Typing first = setup.script.typings().get(test);
+		Assert.assertNotNull(VisitRecord.of(test, first));
+
+		setup.inferenceMarkers.clear();
+		setup.inference.initialize(setup.inferenceMarkers, new NullProgressMonitor(), new Script[] {setup.script});
+		setup.performInference();
+		final Function.Typing second = setup.script.typings().get(test);
+		Assert.assertNotSame(first, second);
+		Assert.assertEquals(first.inputFingerprint, second.inputFingerprint);
+		Assert.assertArrayEquals(first.nodeTypes, second.nodeTypes);
+		Assert.assertTrue(
+			StreamSupport.stream(setup.inferenceMarkers.spliterator(), false)
+				.anyMatch(m -> m.code == Problem.TypingJudgment)
+		);
+	}
+
+	/**
+	 * Editing a function so that its types stay the same replays the functions depending on it instead of visiting them.
+	 */
+	@Test
+	public void testEditStopsPropagatingAtUnchangedOutput() throws ProblemException {
+		final String source = StringUtil.join("\n",
+			"func B() { return %d; }",
+			"func A() { return B(); }",
+			"func C() { return A(); }"
+		);
+		final Setup setup = new Setup(String.format(source, 1));
+		setup.performInference();
+
+		new ScriptParser(String.format(source, 2), setup.script, null).parse();
+		setup.script.deriveInformation();
+		setup.inference.initialize(setup.inferenceMarkers, new NullProgressMonitor(), new Script[] {setup.script});
+		setup.performInference();
+		final Map<String, Boolean> replayed = setup.inference.input.get(setup.script).visits.values().stream()
+			.collect(Collectors.toMap(v -> v.function.name(), v -> v.replayed));
+		Assert.assertFalse(replayed.get("B"));
+		Assert.assertTrue(replayed.get("A"));
+		Assert.assertTrue(replayed.get("C"));
+		Assert.assertEquals(PrimitiveType.INT, setup.script.typings().getFunctionTyping("C").returnType);
+	}
+
+	/**
+	 * An access left unbound might bind to a declaration added anywhere in the index later on, so its function must be visited again.
+	 */
+	@Test
+	public void testUnboundAccessIsNotReplayed() {
+		final Setup setup = new Setup(StringUtil.join("\n",
+			"func A() { return 1; }",
+			"func B() { return Undeclared(); }"
+		));
+		setup.performInference();
+		setup.inference.initialize(setup.inferenceMarkers, new NullProgressMonitor(), new Script[] {setup.script});
+		setup.performInference();
+		final Map<String, Boolean> replayed = setup.inference.input.get(setup.script).visits.values().stream()
+			.collect(Collectors.toMap(v -> v.function.name(), v -> v.replayed));
+		Assert.assertTrue(replayed.get("A"));
+		Assert.assertFalse(replayed.get("B"));
+	}
+
+	@Test
+	public void testNodeArraysAndEnvironmentsAreReused() {
+		final Setup setup = new Setup(StringUtil.join("\n",
+			"func Test(a) {",
+			"	if (a) { var x = 1; } else { var y = \"s\"; }",
+			"	for (var i = 0; i < 10; i++) { a += i; }",
+			"	return a;",
+			"}"
+		));
+		setup.performInference();
+		Assert.assertTrue(setup.inference.allocations().recycledEnvironments() > 0);
+
+		setup.inference.initialize(setup.inferenceMarkers, new NullProgressMonitor(), new Script[] {setup.script});
+		setup.performInference();
+		Assert.assertTrue(setup.inference.allocations().pooledNodeArrays() >= 2);
+	}
+
+	/**
+	 * Taking the experts for nodes from the dispatch cache needs to give the same result as walking up their class hierarchies.
+	 */
+	@Test
+	public void testFindExpertMatchesCommittee() {
+		final StringBuilder source = new StringBuilder();
+		for (int f = 0; f < 3; f++) {
+			source.append(String.format("func F%d(par) {\n", f));
+			source.append("\tvar a = [par, \"x\", nil];\n");
+			source.append(String.format("\tif (a[0] > %d) a[1] = Format(\"%%d\", a[0] + 1); else return this->F%d(!par);\n", f, (f + 1) % 3));
+			source.append("\tfor (var x in a) while (x) x--;\n");
+			source.append("\treturn { p = 1 };\n");
+			source.append("}\n");
+		}
+		final Setup setup = new Setup(new DefinitionInfo(source.toString(), "D000"));
+		final List<ASTNode> nodes = new ArrayList<>();
+		setup.inference.input.values().stream()
+			.flatMap(i -> i.visits.values().stream())
+			.forEach(v -> v.function.body().traverse((node, nothing) -> {
+				nodes.add(node);
+				return TraversalContinuation.Continue;
+			}, null));
+		Assert.assertTrue(nodes.size() > 50);
+		for (final ASTNode n : nodes) {
+			Assert.assertSame(n.getClass().getName(), setup.inference.consultCommittee(n.getClass()), setup.inference.findExpert(n));
+		}
+	}
+
 }
@@ -0,0 +1,77 @@
+package net.arctics.clonk.index;
+
+import net.arctics.clonk.ProblemException;
+import net.arctics.clonk.TestBase;
+import net.arctics.clonk.c4script.Script;
+import net.arctics.clonk.c4script.ScriptParser;
+import net.arctics.clonk.c4script.ScriptParserTest;
+import net.arctics.clonk.c4script.ast.CallDeclaration;
+import net.arctics.clonk.util.StringUtil;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CallSiteIndexTest extends TestBase {
+
+	private static final String CALLER = StringUtil.join("\n",
+		"func A() {",
+		"	B(1);",
+		"	B();",
+		"}"
+	);
+	private static final String CALLEE = StringUtil.join("\n",
+		"func B(x) { return x; }",
+		"func C() { B(2); }"
+	);
+
+	private static ScriptParserTest.Setup setup() throws ProblemException {
+		final ScriptParserTest.Setup setup = new ScriptParserTest.Setup(CALLER, CALLEE);
+		for (final ScriptParser parser : setup.parsers) {
+			parser.parse();
+		}
+		setup.scripts.forEach(Script::deriveInformation);
+		return setup;
+	}
+
+	private static int count(final CallDeclaration[] calls) {
+		return calls != null ? calls.length : 0;
+	}
+
+	@Test
+	public void testAdd() throws ProblemException {
+		final ScriptParserTest.Setup setup = setup();
+		final CallSiteIndex sites = setup.index.callSites();
+		Assert.assertEquals(3, count(sites.callsTo("B")));
+		Assert.assertEquals(2, count(sites.callsTo("B", 1)));
+		Assert.assertEquals(1, count(sites.callsTo("B", 0)));
+		Assert.assertEquals(0, count(sites.callsTo("B", 2)));
+		Assert.assertEquals(0, count(sites.callsTo("A")));
+		for (final CallDeclaration call : sites.callsTo("B", 1)) {
+			Assert.assertEquals(1, call.params().length);
+		}
+	}
+
+	@Test
+	public void testRemove() throws ProblemException {
+		final ScriptParserTest.Setup setup = setup();
+		setup.index.removeScript(setup.scripts.get(1));
+		Assert.assertEquals(2, count(setup.index.callSites().callsTo("B")));
+		Assert.assertEquals(1, count(setup.index.callSites().callsTo("B", 1)));
+		setup.index.removeScript(setup.scripts.get(0));
+		Assert.assertEquals(0, count(setup.index.callSites().callsTo("B")));
+	}
+
+	@Test
+	public void testRename() throws ProblemException {
+		final ScriptParserTest.Setup setup = setup();
+		final Script caller = setup.scripts.get(0);
+		new ScriptParser(CALLER.replace("B(1)", "D(1)"), caller, null).parse();
+		caller.deriveInformation();
+		final CallSiteIndex sites = setup.index.callSites();
+		Assert.assertEquals(2, count(sites.callsTo("B")));
+		Assert.assertEquals(1, count(sites.callsTo("B", 1)));
+		Assert.assertEquals(1, count(sites.callsTo("D", 1)));
+		Assert.assertEquals(0, count(sites.callsTo("D", 0)));
+	}
+
+}
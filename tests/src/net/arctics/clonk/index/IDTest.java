@@ -0,0 +1,57 @@
+package net.arctics.clonk.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.arctics.clonk.TestBase;
+
+import org.junit.Test;
+
+public class IDTest extends TestBase {
+
+	private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+	private static String idName(final int i) {
+		return String.format("T%03d", i % 1000);
+	}
+
+	@Test
+	public void testConcurrentInterningYieldsUniqueInstances() throws Exception {
+		final ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		try {
+			final List<Future<ID[]>> results = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				final int offset = t;
+				results.add(pool.submit(() -> {
+					final ID[] ids = new ID[1000];
+					for (int i = 0; i < ids.length; i++) {
+						ids[i] = ID.get(idName(i + offset));
+					}
+					return ids;
+				}));
+			}
+			final ID[] first = results.get(0).get();
+			for (int t = 1; t < THREADS; t++) {
+				final ID[] other = results.get(t).get();
+				for (int i = 0; i < other.length; i++) {
+					assertSame(first[(i + t) % first.length], other[i]);
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testInterningPreservesName() {
+		assertEquals(idName(5), ID.get(idName(5)).stringValue());
+		assertSame(ID.get(idName(5)), ID.get(new String(idName(5))));
+	}
+
+}
@@ -0,0 +1,112 @@
+package net.arctics.clonk.index.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+
+import net.arctics.clonk.ast.ASTComparisonDelegate;
+import net.arctics.clonk.ast.ASTNode;
+import net.arctics.clonk.ast.Sequence;
+import net.arctics.clonk.c4script.Operator;
+import net.arctics.clonk.c4script.ast.AccessVar;
+import net.arctics.clonk.c4script.ast.BinaryOp;
+import net.arctics.clonk.c4script.ast.Block;
+import net.arctics.clonk.c4script.ast.CallDeclaration;
+import net.arctics.clonk.c4script.ast.FunctionBody;
+import net.arctics.clonk.c4script.ast.IfStatement;
+import net.arctics.clonk.c4script.ast.IntegerLiteral;
+import net.arctics.clonk.c4script.ast.MemberOperator;
+import net.arctics.clonk.c4script.ast.Nil;
+import net.arctics.clonk.c4script.ast.ReturnStatement;
+import net.arctics.clonk.c4script.ast.SimpleStatement;
+import net.arctics.clonk.c4script.ast.StringLiteral;
+import net.arctics.clonk.c4script.ast.This;
+import net.arctics.clonk.c4script.ast.True;
+import net.arctics.clonk.c4script.ast.UnaryOp;
+import net.arctics.clonk.c4script.ast.UnaryOp.Placement;
+import net.arctics.clonk.c4script.ast.WhileStatement;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ASTNodeCodecTest {
+
+	private static FunctionBody body() {
+		final CallDeclaration call = new CallDeclaration("CreateObject",
+			new BinaryOp(Operator.Multiply, new AccessVar("x"), new IntegerLiteral(0x20, true)),
+			new StringLiteral("Test"));
+		call.setLocation(10, 40);
+		call.setParmsRegion(23, 39);
+		return new FunctionBody(null,
+			new SimpleStatement(call),
+			new WhileStatement(
+				new BinaryOp(Operator.Smaller, new AccessVar("x"), new IntegerLiteral(10)),
+				new Block(
+					new SimpleStatement(new Sequence(new This(), new MemberOperator(false, true, null, 0), new CallDeclaration("Log", new Nil()))),
+					new SimpleStatement(new UnaryOp(Operator.Increment, Placement.Postfix, new AccessVar("x")))
+				)
+			),
+			new IfStatement(new True(), new ReturnStatement(new AccessVar("x")), null)
+		);
+	}
+
+	private static byte[] write(final ASTNode node) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (final ObjectOutputStream out = new IndexEntityOutputStream(null, null, bytes)) {
+			ASTNodeCodec.write(out, node);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static ASTNode read(final byte[] bytes) throws IOException, ClassNotFoundException {
+		try (final ObjectInputStream in = new IndexEntityInputStream(null, null, new ByteArrayInputStream(bytes))) {
+			return ASTNodeCodec.read(in);
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		final FunctionBody original = body();
+		final ASTNode read = read(write(original));
+		Assert.assertTrue(read instanceof FunctionBody);
+		Assert.assertEquals(original.printed(), read.printed());
+		Assert.assertTrue(original.compare(read, new ASTComparisonDelegate(original)));
+		final CallDeclaration call = (CallDeclaration)((SimpleStatement)((FunctionBody)read).statements()[0]).expression();
+		Assert.assertEquals(10, call.start());
+		Assert.assertEquals(40, call.end());
+		Assert.assertEquals(23, call.parmsStart());
+		Assert.assertEquals(39, call.parmsEnd());
+		Assert.assertTrue(((IntegerLiteral)((BinaryOp)call.params()[0]).rightSide()).isHex());
+		// nodes without codec are written by default serialization and keep their class
+		Assert.assertTrue(((FunctionBody)read).statements()[1] instanceof WhileStatement);
+		Assert.assertSame(call.parent(), ((FunctionBody)read).statements()[0]);
+	}
+
+	@Test
+	public void testNull() throws Exception {
+		Assert.assertNull(read(write(null)));
+	}
+
+	@Test(expected = InvalidClassException.class)
+	public void testOtherVersionRejected() throws Exception {
+		final byte[] bytes = write(body());
+		// header: magic (short), version (int)
+		ByteBuffer.wrap(bytes).putInt(2, IndexFormat.VERSION - 1);
+		read(bytes);
+	}
+
+	@Test(expected = StreamCorruptedException.class)
+	public void testForeignStreamRejected() throws Exception {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(body());
+		}
+		read(bytes.toByteArray());
+	}
+
+}
@@ -0,0 +1,161 @@
+package net.arctics.clonk.index.serialization;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexStoreTest {
+
+	private File folder;
+
+	@Before
+	public void createFolder() throws IOException {
+		folder = Files.createTempDirectory("index-store-test").toFile();
+	}
+
+	@After
+	public void delete() throws IOException {
+		try (Stream<Path> files = Files.walk(folder.toPath())) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	private static byte[] data(final long seed, final int length) {
+		final byte[] data = new byte[length];
+		new Random(seed).nextBytes(data);
+		return data;
+	}
+
+	private static File segment(final File folder) {
+		final File[] segments = folder.listFiles((dir, name) -> name.endsWith(".seg"));
+		Assert.assertEquals(1, segments.length);
+		return segments[0];
+	}
+
+	private static void copy(final File from, final File to) throws IOException {
+		to.mkdirs();
+		for (final File f : from.listFiles()) {
+			Files.copy(f.toPath(), new File(to, f.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	@Test
+	public void testRecoverUnflushedRecords() throws IOException {
+		final File crashed = new File(folder, "crashed");
+		final IndexStore store = IndexStore.open(new File(folder, "store"));
+		store.write(1, data(1, 100), 100);
+		store.flush();
+		store.write(2, data(2, 20000), 20000);
+		store.write(1, data(3, 50), 50);
+		// what is on disk when the process dies before the next flush, plus half of a record being appended
+		copy(new File(folder, "store"), crashed);
+		try (RandomAccessFile f = new RandomAccessFile(segment(crashed), "rw")) {
+			f.seek(f.length());
+			f.writeLong(3);
+			f.writeInt(0);
+			f.writeInt(1000);
+			f.write(data(4, 10));
+		}
+		store.close();
+
+		final IndexStore recovered = IndexStore.open(crashed);
+		try {
+			Assert.assertArrayEquals(data(3, 50), recovered.read(1));
+			Assert.assertArrayEquals(data(2, 20000), recovered.read(2));
+			Assert.assertFalse(recovered.contains(3));
+			// appending after the cut off record works
+			recovered.write(3, data(5, 10), 10);
+			Assert.assertArrayEquals(data(5, 10), recovered.read(3));
+		} finally {
+			recovered.close();
+		}
+	}
+
+	@Test
+	public void testRebuildUnreadableTable() throws IOException {
+		final File storeFolder = new File(folder, "store");
+		final IndexStore store = IndexStore.open(storeFolder);
+		store.write(1, data(1, 100), 100);
+		store.clear();
+		store.write(2, data(2, 20000), 20000);
+		store.write(3, data(3, 50), 50);
+		store.write(3, data(4, 60), 60);
+		store.close();
+		try (RandomAccessFile f = new RandomAccessFile(new File(storeFolder, "store.tbl"), "rw")) {
+			f.setLength(6);
+		}
+
+		final IndexStore rebuilt = IndexStore.open(storeFolder);
+		try {
+			Assert.assertEquals("store.1.seg", segment(storeFolder).getName());
+			Assert.assertFalse(rebuilt.contains(1));
+			Assert.assertArrayEquals(data(2, 20000), rebuilt.read(2));
+			Assert.assertArrayEquals(data(4, 60), rebuilt.read(3));
+		} finally {
+			rebuilt.close();
+		}
+	}
+
+	@Test
+	public void testCompaction() throws IOException {
+		final File storeFolder = new File(folder, "store");
+		final IndexStore store = IndexStore.open(storeFolder);
+		store.compressionThreshold(-1);
+		for (int round = 0; round < 10; round++) {
+			for (int id = 0; id < 20; id++) {
+				store.write(id, data(round*100 + id, 10000), 10000);
+			}
+		}
+		store.remove(0);
+		final long before = segment(storeFolder).length();
+		store.compact();
+		final long after = segment(storeFolder).length();
+		Assert.assertTrue(after < before / 5);
+		for (int id = 1; id < 20; id++) {
+			Assert.assertArrayEquals(data(900 + id, 10000), store.read(id));
+		}
+		store.close();
+
+		final IndexStore reopened = IndexStore.open(storeFolder);
+		try {
+			Assert.assertNotSame(store, reopened);
+			Assert.assertFalse(reopened.contains(0));
+			for (int id = 1; id < 20; id++) {
+				Assert.assertArrayEquals(data(900 + id, 10000), reopened.read(id));
+			}
+		} finally {
+			reopened.close();
+		}
+	}
+
+	@Test
+	public void testSharedUntilLastClose() throws IOException {
+		final File storeFolder = new File(folder, "store");
+		final IndexStore first = IndexStore.open(storeFolder);
+		final IndexStore second = IndexStore.open(storeFolder);
+		Assert.assertSame(first, second);
+		first.write(1, data(1, 10), 10);
+		first.close();
+		Assert.assertArrayEquals(data(1, 10), second.read(1));
+		second.close();
+		final IndexStore third = IndexStore.open(storeFolder);
+		try {
+			Assert.assertNotSame(first, third);
+			Assert.assertArrayEquals(data(1, 10), third.read(1));
+		} finally {
+			third.close();
+		}
+	}
+
+}
@@ -0,0 +1,164 @@
+package net.arctics.clonk.parser;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares the scanning methods of {@link BufferedScanner} working on the buffer directly with the way they used to be written,
+ * reading character by character through {@link BufferedScanner#read()} and {@link BufferedScanner#unread()}.
+ */
+public class BufferedScannerTest {
+
+	private static final char[] ALPHABET = "ab_Z09 \t\n\r;(".toCharArray();
+	private static final char[] OTHER_DELIMITERS = { ';', '(' };
+	private static final char[][] DELIMITERS = {
+		BufferedScanner.WHITESPACE_CHARS,
+		BufferedScanner.NEWLINE_CHARS,
+		BufferedScanner.WHITESPACE_WITHOUT_NEWLINE_CHARS,
+		OTHER_DELIMITERS
+	};
+
+	private static class Scanner extends BufferedScanner {
+		Scanner(final String text) { super(text); }
+		byte indentation() { return figureOutIndentation(); }
+	}
+
+	private static String randomText(final Random random, final int length, final char[] alphabet) {
+		final char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = alphabet[random.nextInt(alphabet.length)];
+		}
+		return new String(chars);
+	}
+
+	private static boolean contains(final char[] chars, final int c) {
+		for (final char x : chars) {
+			if (x == c) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int oldEat(final BufferedScanner s, final char[] charsToEat) {
+		if (s.reachedEOF()) {
+			return 0;
+		}
+		int result = 0;
+		do {
+			if (!contains(charsToEat, s.read())) {
+				s.unread();
+				return result;
+			}
+			result++;
+		} while (!s.reachedEOF());
+		return result;
+	}
+
+	private static int oldEatUntil(final BufferedScanner s, final char[] delimiters) {
+		if (s.reachedEOF()) {
+			return 0;
+		}
+		do {
+			if (contains(delimiters, s.read())) {
+				s.unread();
+				return 1;
+			}
+		} while (!s.reachedEOF());
+		return 0;
+	}
+
+	private static String oldReadStringUntil(final BufferedScanner s, final char[] delimiters) {
+		final int start = s.tell();
+		int subtract = 0;
+		do {
+			if (contains(delimiters, s.read())) {
+				subtract = 1;
+				break;
+			}
+		} while (!s.reachedEOF());
+		final int length = s.tell() - start - subtract;
+		s.seek(start);
+		return s.readString(length);
+	}
+
+	private static byte oldIndentation(final String text) {
+		int gcd = 0;
+		for (final String line : (Iterable<String>)new BufferedReader(new StringReader(text)).lines()::iterator) {
+			if (line.length() > 0 && line.charAt(0) == '\t') {
+				return BufferedScanner.TABINDENTATIONMODE;
+			}
+			int spaces;
+			for (spaces = 0; spaces < line.length() && line.charAt(spaces) == ' '; spaces++);
+			if (spaces > 0) {
+				gcd = gcd == 0 ? spaces : BigInteger.valueOf(spaces).gcd(BigInteger.valueOf(gcd)).intValue();
+			}
+		}
+		return gcd != 0 ? (byte)gcd : BufferedScanner.TABINDENTATIONMODE;
+	}
+
+	@Test
+	public void testEatMatchesOldBehavior() {
+		final Random random = new Random(1);
+		for (int run = 0; run < 2000; run++) {
+			final String text = randomText(random, random.nextInt(20), ALPHABET);
+			final int start = random.nextInt(text.length() + 1);
+			final char[] chars = DELIMITERS[random.nextInt(DELIMITERS.length)];
+			final BufferedScanner expected = new BufferedScanner(text), actual = new BufferedScanner(text);
+			expected.seek(start);
+			actual.seek(start);
+			Assert.assertEquals(text, oldEat(expected, chars), actual.eat(chars));
+			Assert.assertEquals(text, expected.tell(), actual.tell());
+		}
+	}
+
+	@Test
+	public void testEatUntilMatchesOldBehavior() {
+		final Random random = new Random(2);
+		for (int run = 0; run < 2000; run++) {
+			final String text = randomText(random, random.nextInt(20), ALPHABET);
+			final int start = random.nextInt(text.length() + 1);
+			final char[] delimiters = DELIMITERS[random.nextInt(DELIMITERS.length)];
+			final BufferedScanner expected = new BufferedScanner(text), actual = new BufferedScanner(text);
+			expected.seek(start);
+			actual.seek(start);
+			Assert.assertEquals(text, oldEatUntil(expected, delimiters), actual.eatUntil(delimiters));
+			Assert.assertEquals(text, expected.tell(), actual.tell());
+		}
+	}
+
+	@Test
+	public void testReadStringUntilMatchesOldBehavior() {
+		final Random random = new Random(3);
+		for (int run = 0; run < 2000; run++) {
+			final String text = randomText(random, random.nextInt(20), ALPHABET);
+			// at the end of the buffer the old version read past it and returned null
+			final int start = random.nextInt(text.length() + 1);
+			final char[] delimiters = DELIMITERS[random.nextInt(DELIMITERS.length)];
+			final BufferedScanner expected = new BufferedScanner(text), actual = new BufferedScanner(text);
+			expected.seek(start);
+			actual.seek(start);
+			Assert.assertEquals(text, oldReadStringUntil(expected, delimiters), actual.readStringUntil(delimiters));
+			Assert.assertEquals(text, expected.tell(), actual.tell());
+		}
+	}
+
+	@Test
+	public void testIndentationMatchesOldBehavior() {
+		final Random random = new Random(4);
+		final char[] alphabet = "    \t\n\r\r\nx".toCharArray();
+		for (int run = 0; run < 2000; run++) {
+			final String text = randomText(random, random.nextInt(40), alphabet);
+			Assert.assertEquals(text, oldIndentation(text), new Scanner(text).indentation());
+		}
+		Assert.assertEquals(4, new Scanner("func A() {\n    return;\n        x;\n}").indentation());
+		Assert.assertEquals(BufferedScanner.TABINDENTATIONMODE, new Scanner("func A() {\n  return;\n\tx;\n}").indentation());
+		Assert.assertEquals(BufferedScanner.TABINDENTATIONMODE, new Scanner("no indentation").indentation());
+	}
+
+}
@@ -0,0 +1,60 @@
+package net.arctics.clonk.ui.editors.c4script;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ScriptDamageTest {
+
+	private static String replace(final String text, final int offset, final int length, final String replacement) {
+		return text.substring(0, offset) + replacement + text.substring(offset + length);
+	}
+
+	@Test
+	public void testEditsInsideAndOutsideFunctionBeforeReparse() {
+		final ScriptDamage damage = new ScriptDamage();
+		String text = "func A() { return 1; }\nlocal x;\nfunc B() { return 2; }";
+		// outside of functions: damaged
+		final int x = text.indexOf('x');
+		text = replace(text, x, 1, "yy");
+		damage.extend(x, 1, 2);
+		// inside A, before the damaged range: moves it
+		final int inA = text.indexOf("return 1");
+		text = replace(text, inA, 0, "Log(\"\"); ");
+		damage.shift(inA, 0, 9);
+		// inside B, after the damaged range: leaves it alone
+		final int inB = text.indexOf("return 2");
+		text = replace(text, inB, "return 2".length(), "return");
+		damage.shift(inB, "return 2".length(), "return".length());
+		Assert.assertEquals("yy", text.substring(damage.start(), damage.end()));
+
+		final ScriptDamage taken = damage.take();
+		Assert.assertEquals("yy", text.substring(taken.start(), taken.end()));
+		Assert.assertEquals(-1, damage.start());
+		Assert.assertEquals(-1, damage.end());
+	}
+
+	@Test
+	public void testRemovalAcrossDamageStart() {
+		final ScriptDamage damage = new ScriptDamage();
+		String text = "local a;\nlocal b;\nlocal c;";
+		final int b = text.indexOf('b');
+		text = replace(text, b, 1, "bb");
+		damage.extend(b, 1, 2);
+		// removing "a;\nlocal b" collapses the start of the damaged range into the edit
+		final int a = text.indexOf('a');
+		final int removed = b + 1 - a;
+		text = replace(text, a, removed, "");
+		damage.shift(a, removed, 0);
+		Assert.assertEquals(a, damage.start());
+		Assert.assertEquals("b", text.substring(damage.start(), damage.end()));
+	}
+
+	@Test
+	public void testNothingToShiftWithoutDamage() {
+		final ScriptDamage damage = new ScriptDamage();
+		damage.shift(10, 0, 5);
+		Assert.assertEquals(-1, damage.start());
+		Assert.assertTrue(damage.declarations().isEmpty());
+	}
+
+}